@@ -18,19 +18,27 @@ package de.netbeacon.jstorage;
 
 import de.netbeacon.jstorage.server.internal.cachemanager.CacheManager;
 import de.netbeacon.jstorage.server.internal.datamanager.DataManager;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.DataBase;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.DataTable;
 import de.netbeacon.jstorage.server.internal.notificationmanager.NotificationManager;
 import de.netbeacon.jstorage.server.internal.usermanager.UserManager;
 import de.netbeacon.jstorage.server.socket.api.APISocket;
 import de.netbeacon.jstorage.server.socket.hello.HelloSocket;
 import de.netbeacon.jstorage.server.socket.notification.NotificationSocket;
 import de.netbeacon.jstorage.server.tools.exceptions.SetupException;
+import de.netbeacon.jstorage.server.tools.httpprocessing.NDJSONReader;
 import de.netbeacon.jstorage.server.tools.info.Info;
 import de.netbeacon.jstorage.server.tools.ipban.IPBanManager;
 import de.netbeacon.jstorage.server.tools.meta.SystemStats;
 import de.netbeacon.jstorage.server.tools.shutdown.ShutdownHook;
+import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 
 /**
@@ -77,6 +85,10 @@ public class JStorage {
         }
 
         switch(mode){
+            case "import":
+                System.out.println("Mode...Import");
+                modeImport(runEncryptSetup, arguments);
+                break;
             default:
                 System.out.println("Mode...Default");
                 modeDefault(runEncryptSetup);
@@ -84,6 +96,56 @@ public class JStorage {
         }
     }
 
+    private static void modeImport(boolean runEncryptSetup, HashMap<String, String> arguments){
+        try{
+            if(!arguments.containsKey("database") || !arguments.containsKey("table") || !arguments.containsKey("file")){
+                throw new SetupException("Import Requires The Arguments -database:<name> -table:<name> -file:<path>");
+            }
+            File file = new File(arguments.get("file"));
+            if(!file.exists() || !file.isFile()){
+                throw new SetupException("Import File Not Found: "+file.getPath());
+            }
+            try{
+                logger.info("Initializing ShutdownHook...");
+                new ShutdownHook();
+                logger.info("Initializing ShutdownHook finished");
+            }catch (Exception e){
+                logger.info("Initializing ShutdownHook failed");
+                throw e;
+            }
+            try{
+                logger.info("Initializing DataManager...");
+                DataManager.getInstance(true).setup(runEncryptSetup);
+                logger.info("Initializing DataManager finished");
+            }catch (SetupException e){
+                logger.info("Initializing DataManager failed");
+                throw e;
+            }
+            try{
+                logger.info("Importing "+file.getPath()+"...");
+                DataManager dataManager = DataManager.getInstance();
+                DataBase dataBase = (dataManager.containsDataBase(arguments.get("database"))) ? dataManager.getDataBase(arguments.get("database")) : dataManager.createDataBase(arguments.get("database"));
+                if(!dataBase.containsDataTable(arguments.get("table"))){
+                    dataBase.insertTable(new DataTable(dataBase, arguments.get("table")));
+                }
+                DataTable dataTable = dataBase.getTable(arguments.get("table"));
+                JSONObject summary;
+                try(BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8), 1024*1024)){
+                    summary = dataTable.importDataSets(new NDJSONReader(reader, -1), false); // keep the data on disk only, it does not need to be written again on shutdown
+                }
+                logger.info("Importing finished: "+summary.toString());
+            }catch (Exception e){
+                logger.info("Importing failed");
+                throw new SetupException("Import Failed: "+e.getMessage());
+            }
+        }catch (SetupException e){
+            logger.error("Error Importing Data. Exiting.", e);
+            System.exit(-1);
+        }
+        // the shutdown hook takes care of writing everything to disk
+        System.exit(0);
+    }
+
     private static void modeDefault(boolean runEncryptSetup){
         try{
             try{
@@ -20,15 +20,13 @@ import de.netbeacon.jstorage.server.internal.cachemanager.objects.Cache;
 import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
 import de.netbeacon.jstorage.server.tools.exceptions.SetupException;
 import de.netbeacon.jstorage.server.tools.exceptions.ShutdownException;
+import de.netbeacon.jstorage.server.tools.file.AtomicFile;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
-import java.nio.file.Files;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
@@ -198,7 +196,7 @@ public class CacheManager {
             if(!f.exists()){ f.createNewFile(); }
             else{
                 // read
-                String content = new String(Files.readAllBytes(f.toPath()));
+                String content = AtomicFile.read(f);
                 if(!content.isEmpty()){
                     JSONObject jsonObject = new JSONObject(content);
                     JSONArray jsonArray = jsonObject.getJSONArray("caches");
@@ -263,11 +261,7 @@ public class CacheManager {
             File d = new File("./jstorage/data/cache/");
             if(!d.exists()){ d.mkdirs(); }
             File f = new File("./jstorage/data/cache/cachemanager");
-            BufferedWriter writer = new BufferedWriter(new FileWriter(f));
-            writer.write(jsonObject.toString());
-            writer.newLine();
-            writer.flush();
-            writer.close();
+            AtomicFile.write(f, jsonObject.toString());
             // shutdown & clear everything
             cleanTask.cancel(true);
             unloadTask.cancel(true);
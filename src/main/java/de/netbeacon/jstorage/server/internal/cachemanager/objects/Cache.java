@@ -17,6 +17,8 @@
 package de.netbeacon.jstorage.server.internal.cachemanager.objects;
 
 import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
+import de.netbeacon.jstorage.server.tools.executor.IOScheduler;
+import de.netbeacon.jstorage.server.tools.file.AtomicFile;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -293,29 +295,28 @@ public class Cache {
                         // file probably to large to load
                         status.set(-2); // error
                     }else{
-                        BufferedReader br = new BufferedReader(new FileReader(f));
-                        String line;
-                        while((line = br.readLine()) != null) {
-                            if (!line.isEmpty()) {
-                                try{
-                                    JSONObject jsonObject = new JSONObject(line);
-                                    String cid = jsonObject.getString("cacheIdentifier").toLowerCase();
-                                    String id = jsonObject.getString("identifier").toLowerCase();
-                                    long validUntil = jsonObject.getLong("validUntil");
-                                    JSONObject data = jsonObject.getJSONObject("data");
-                                    if(this.identifier.equals(cid) && !cachedData.containsKey(cid)){
-                                        CachedData cData = new CachedData(cid, id, data);
-                                        if(validUntil > 0){
-                                            cData.setValidForDuration(validUntil-System.currentTimeMillis());
-                                        }
-                                        if(cData.isValid()){
-                                            cachedData.put(cData.getIdentifier(), cData);
-                                        }
+                        int damaged = AtomicFile.readLines(f, line -> {
+                            try{
+                                JSONObject jsonObject = new JSONObject(line);
+                                String cid = jsonObject.getString("cacheIdentifier").toLowerCase();
+                                String id = jsonObject.getString("identifier").toLowerCase();
+                                long validUntil = jsonObject.getLong("validUntil");
+                                JSONObject data = jsonObject.getJSONObject("data");
+                                if(this.identifier.equals(cid) && !cachedData.containsKey(cid)){
+                                    CachedData cData = new CachedData(cid, id, data);
+                                    if(validUntil > 0){
+                                        cData.setValidForDuration(validUntil-System.currentTimeMillis());
                                     }
-                                }catch (Exception ignore){}
-                            }
+                                    if(cData.isValid()){
+                                        cachedData.put(cData.getIdentifier(), cData);
+                                    }
+                                }
+                            }catch (Exception ignore){}
+                            return true;
+                        });
+                        if(damaged > 0){
+                            logger.error("Cache: "+this.identifier+": Skipped "+damaged+" Damaged Entries While Loading Data");
                         }
-                        br.close();
                     }
                 }
                 // set loaded
@@ -334,19 +335,17 @@ public class Cache {
     }
 
     /**
-     * Async call loadData() from another thread.
+     * Async call loadData() using the {@link IOScheduler}
      */
     public void loadDataAsync(){
         if(status.get() <= 0){
-            Thread t = new Thread(() -> {
+            IOScheduler.getInstance().submit("cache:"+identifier+":load", IOScheduler.Priority.LOAD, getFile().length(), () -> {
                 try {
                     loadData();
                 } catch (DataStorageException e) {
                     e.printStackTrace();
                 }
             });
-            t.setDaemon(true);
-            t.start();
         }
     }
 
@@ -381,15 +380,14 @@ public class Cache {
                     File d = new File("./jstorage/data/cache/");
                     if(!d.exists()){ d.mkdirs(); }
                     File f = new File("./jstorage/data/cache/"+this.identifier+"_cache");
-                    BufferedWriter writer = new BufferedWriter(new FileWriter(f));
-                    for(Map.Entry<String, CachedData> entry : cachedData.entrySet()){
-                        if(entry.getKey().equals(entry.getValue().getIdentifier())){
-                            writer.write(entry.getValue().export().toString());
-                            writer.newLine();
+                    try(AtomicFile.Writer writer = new AtomicFile.Writer(f)){
+                        for(Map.Entry<String, CachedData> entry : cachedData.entrySet()){
+                            if(entry.getKey().equals(entry.getValue().getIdentifier())){
+                                writer.writeLine(entry.getValue().export().toString());
+                            }
                         }
+                        writer.commit();
                     }
-                    writer.flush();
-                    writer.close();
                     if(unload){
                         // clear content
                         cachedData.clear();
@@ -428,7 +426,7 @@ public class Cache {
     }
 
     /**
-     * Async call unloadData() from another thread
+     * Async call unloadData() using the {@link IOScheduler}
      *
      * @param unload      if the data should be removed from the object
      * @param saveToFile  if the data should be saved to a file
@@ -436,18 +434,26 @@ public class Cache {
      */
     public void unloadDataAsync(boolean unload, boolean saveToFile, boolean deleteTable){
         if(status.get() == 3){
-            Thread t = new Thread(() -> {
+            IOScheduler.Priority priority = (unload || deleteTable) ? IOScheduler.Priority.EVICT : IOScheduler.Priority.SNAPSHOT;
+            IOScheduler.getInstance().submit("cache:"+identifier+":"+unload+":"+saveToFile+":"+deleteTable, priority, getFile().length(), () -> {
                 try {
                     unloadData(unload, saveToFile, deleteTable);
                 } catch (DataStorageException e) {
                     e.printStackTrace();
                 }
             });
-            t.setDaemon(true);
-            t.start();
         }
     }
 
+    /**
+     * Returns the file containing the data of this cache
+     *
+     * @return File
+     */
+    private File getFile(){
+        return new File("./jstorage/data/cache/"+this.identifier+"_cache");
+    }
+
     /*                  POOL                */
 
     /**
@@ -18,19 +18,19 @@ package de.netbeacon.jstorage.server.internal.datamanager;
 
 import de.netbeacon.jstorage.server.internal.datamanager.objects.DataBase;
 import de.netbeacon.jstorage.server.internal.datamanager.objects.DataSet;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.WarmShardCache;
 import de.netbeacon.jstorage.server.tools.crypt.JS2CryptTool;
 import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
 import de.netbeacon.jstorage.server.tools.exceptions.SetupException;
 import de.netbeacon.jstorage.server.tools.exceptions.ShutdownException;
+import de.netbeacon.jstorage.server.tools.executor.IOScheduler;
+import de.netbeacon.jstorage.server.tools.file.AtomicFile;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
-import java.nio.file.Files;
 import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -55,6 +55,8 @@ public class DataManager {
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
     private ScheduledExecutorService ses;
     private Future<?> counterTask; // the fix has been planted
+    private ForkJoinPool processingPool;
+    private int processingThreads = Math.max(4, Runtime.getRuntime().availableProcessors()*2);
     private JS2CryptTool js2CryptTool;
     private final ReentrantLock lock2 = new ReentrantLock();
     private final Logger logger = LoggerFactory.getLogger(DataManager.class);
@@ -215,6 +217,17 @@ public class DataManager {
         }
     }
 
+    /**
+     * Used to get the pool which should be used to process data in parallel
+     * <p>
+     * This pool is shared between all requests and limited to a fixed number of threads
+     *
+     * @return ForkJoinPool
+     */
+    public ForkJoinPool getProcessingPool(){
+        return processingPool;
+    }
+
     /**
      * Used to get the crypt tool
      *
@@ -248,7 +261,7 @@ public class DataManager {
             if(!f.exists()){ f.createNewFile(); }
             else{
                 // read
-                String content = new String(Files.readAllBytes(f.toPath()));
+                String content = AtomicFile.read(f);
                 if(!content.isEmpty()){
                     JSONObject jsonObject = new JSONObject(content);
                     JSONObject jsonObject1 = jsonObject.getJSONObject("dataSetSettings");
@@ -258,6 +271,20 @@ public class DataManager {
                     }catch (Exception e){
                         logger.error("DataSet Configuration Failed", e);
                     }
+                    if(jsonObject.has("shardSettings")){
+                        WarmShardCache.setMaxBytes(jsonObject.getJSONObject("shardSettings").optLong("warmCacheBytes", -1));
+                    }
+                    if(jsonObject.has("ioSettings")){
+                        JSONObject ioSettings = jsonObject.getJSONObject("ioSettings");
+                        IOScheduler.getInstance().setThreads(ioSettings.optInt("threads", IOScheduler.getInstance().getThreads()));
+                        IOScheduler.getInstance().setBytesPerSecond(ioSettings.optLong("bytesPerSecond", 0));
+                    }
+                    if(jsonObject.has("processingSettings")){
+                        int threads = jsonObject.getJSONObject("processingSettings").getInt("threads");
+                        if(threads > 0){
+                            processingThreads = threads;
+                        }
+                    }
                     JSONArray jsonArray = jsonObject.getJSONArray("databases");
                     // might contain other settings in the future
                     for(int i = 0; i < jsonArray.length(); i++){
@@ -275,11 +302,13 @@ public class DataManager {
                     }
                 }
             }
+            // setup processing pool
+            processingPool = new ForkJoinPool(processingThreads);
             // setup task & ses
             ses = Executors.newScheduledThreadPool(1);
             counterTask = ses.scheduleAtFixedRate(() -> {
                 AtomicLong sets = new AtomicLong();
-                dataBasePool.values().forEach(v->v.getDataPool().values().forEach(c-> sets.addAndGet(c.getIndexPool().size())));
+                dataBasePool.values().forEach(v->v.getDataPool().values().forEach(c-> sets.addAndGet(c.getDataSetCount())));
                 long l = Math.abs(DataSet.getDataSetCount()-sets.get());
                 if(l > 0){
                     if(l < 15){
@@ -312,6 +341,7 @@ public class DataManager {
             // shutdown task & ses
             counterTask.cancel(true);
             ses.shutdown();
+            processingPool.shutdown();
             // build json while shutdown databases
             JSONObject jsonObject = new JSONObject();
             JSONArray jsonArray = new JSONArray();
@@ -322,16 +352,12 @@ public class DataManager {
                     jsonArray.put(entry.getValue().getIdentifier());
                 }
             }
-            jsonObject.put("databases", jsonArray).put("dataSetSettings", new JSONObject().put("dataSetsPerThread", DataSet.getDataSetsPerThread()).put("maxSTPEThreads", DataSet.getMaxSTPEThreads()));
+            jsonObject.put("databases", jsonArray).put("dataSetSettings", new JSONObject().put("dataSetsPerThread", DataSet.getDataSetsPerThread()).put("maxSTPEThreads", DataSet.getMaxSTPEThreads())).put("shardSettings", new JSONObject().put("warmCacheBytes", WarmShardCache.getConfiguredMaxBytes())).put("ioSettings", new JSONObject().put("threads", IOScheduler.getInstance().getThreads()).put("bytesPerSecond", IOScheduler.getInstance().getBytesPerSecond())).put("processingSettings", new JSONObject().put("threads", processingThreads));
             // write to file
             File d = new File("./jstorage/data/db/");
             if(!d.exists()){ d.mkdirs(); }
             File f = new File("./jstorage/data/db/datamanager");
-            BufferedWriter writer = new BufferedWriter(new FileWriter(f));
-            writer.write(jsonObject.toString());
-            writer.newLine();
-            writer.flush();
-            writer.close();
+            AtomicFile.write(f, jsonObject.toString());
             // clear
             dataBasePool.clear();
             // shutdown js2
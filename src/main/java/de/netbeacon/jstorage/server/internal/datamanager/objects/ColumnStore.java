@@ -0,0 +1,547 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import de.netbeacon.jstorage.server.tools.query.Aggregation;
+import de.netbeacon.jstorage.server.tools.query.QueryFilter;
+import org.json.JSONObject;
+import org.json.JSONPointer;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * This class keeps the values of selected numeric fields of all DataSets of a table in primitive arrays
+ * <p>
+ * Each DataSet gets an ordinal which is shared by all columns, so filters on multiple columns can be combined as bitmaps.
+ * Filters and aggregations on projected fields run over the arrays without touching the DataSets.
+ * Only values of type int and long (stored as long) as well as double (stored as double) are kept, any other value marks the column as unusable for filters and aggregations until it has been removed.
+ * Used for internal data management only. User should not have direct interactions with this class
+ *
+ * @author horstexplorer
+ */
+public class ColumnStore implements QueryFilter.ColumnSelector {
+
+    private static final byte MISSING = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte OTHER = 3;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final HashMap<String, Column> columns = new HashMap<>();
+    // identifier > ordinal
+    private final HashMap<String, Integer> ordinals = new HashMap<>();
+    private final ArrayDeque<Integer> freeOrdinals = new ArrayDeque<>();
+    private final BitSet used = new BitSet();
+    private String[] identifiers = new String[0];
+    private int size = 0; // highest ordinal + 1
+    private volatile boolean empty = true; // allows skipping updates without locking
+
+    /*                  COLUMNS                  */
+
+    /**
+     * Used to add a new column which will be filled while building
+     * <p>
+     * The column can not be used until {@link #finishBuilding()} has been called
+     *
+     * @param path json pointer to the field, starting with the datatype
+     * @return the normalized path or null if the column already exists
+     * @throws IllegalArgumentException if the path is invalid
+     */
+    protected String addColumn(String path){
+        path = SecondaryIndex.normalizePath(path);
+        try{
+            lock.writeLock().lock();
+            if(columns.containsKey(path)){
+                return null;
+            }
+            columns.put(path, new Column(path, identifiers.length));
+            empty = false;
+            return path;
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Used to remove a column
+     *
+     * @param path json pointer to the field
+     * @return true if the column existed
+     * @throws IllegalArgumentException if the path is invalid
+     */
+    protected boolean removeColumn(String path){
+        path = SecondaryIndex.normalizePath(path);
+        try{
+            lock.writeLock().lock();
+            if(columns.remove(path) == null){
+                return false;
+            }
+            if(columns.isEmpty()){
+                empty = true;
+                clearOrdinals();
+            }
+            return true;
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the paths of all columns
+     *
+     * @return Set of paths
+     */
+    public Set<String> getPaths(){
+        try{
+            lock.readLock().lock();
+            return new TreeSet<>(columns.keySet());
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the paths of all columns which can currently be used for filters and aggregations
+     *
+     * @return Set of paths
+     */
+    public Set<String> getUsablePaths(){
+        try{
+            lock.readLock().lock();
+            Set<String> paths = new HashSet<>();
+            columns.forEach((k, v) -> { if(v.isUsable()){ paths.add(k); } });
+            return paths;
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns whether there are any columns
+     *
+     * @return boolean
+     */
+    public boolean isEmpty(){
+        return empty;
+    }
+
+    /*                  MODIFY                  */
+
+    /**
+     * Used to update the values of a DataSet
+     *
+     * @param identifier identifier of the DataSet
+     * @param accessor returns the value at the given position of the DataSet or null
+     * @param dataType only columns on this datatype will be updated, null for all
+     */
+    protected void update(String identifier, Function<JSONPointer, Object> accessor, String dataType){
+        if(empty){
+            return;
+        }
+        try{
+            lock.writeLock().lock();
+            if(columns.isEmpty()){
+                return;
+            }
+            int ordinal = ordinal(identifier);
+            for(Column column : columns.values()){
+                if(dataType == null || dataType.equals(column.dataType)){
+                    if(column.modifiedWhileBuilding != null){
+                        column.modifiedWhileBuilding.add(identifier);
+                    }
+                    column.set(ordinal, accessor.apply(column.pointer));
+                }
+            }
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Used to remove a DataSet
+     *
+     * @param identifier identifier of the DataSet
+     */
+    protected void remove(String identifier){
+        if(empty){
+            return;
+        }
+        try{
+            lock.writeLock().lock();
+            for(Column column : columns.values()){
+                if(column.modifiedWhileBuilding != null){
+                    column.modifiedWhileBuilding.add(identifier);
+                }
+            }
+            Integer ordinal = ordinals.remove(identifier);
+            if(ordinal == null){
+                return;
+            }
+            for(Column column : columns.values()){
+                column.set(ordinal, null);
+            }
+            used.clear(ordinal);
+            identifiers[ordinal] = null;
+            freeOrdinals.push(ordinal);
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Used to fill the columns which are currently being built
+     * <p>
+     * Values of DataSets which have been modified since the build started are ignored, as they may be outdated
+     *
+     * @param identifier identifier of the DataSet
+     * @param accessor returns the value at the given position of the DataSet at the time it was read
+     */
+    protected void build(String identifier, Function<JSONPointer, Object> accessor){
+        try{
+            lock.writeLock().lock();
+            for(Column column : columns.values()){
+                if(column.modifiedWhileBuilding == null || column.modifiedWhileBuilding.contains(identifier)){
+                    continue;
+                }
+                column.set(ordinal(identifier), accessor.apply(column.pointer));
+            }
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Used to signal that the columns which have not been built yet have been built
+     */
+    protected void finishBuilding(){
+        try{
+            lock.writeLock().lock();
+            columns.values().forEach(c -> c.modifiedWhileBuilding = null);
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Used to mark all columns for (re)building
+     *
+     * @return true if there are any columns
+     */
+    protected boolean startBuilding(){
+        try{
+            lock.writeLock().lock();
+            columns.values().forEach(c -> c.modifiedWhileBuilding = new HashSet<>());
+            return !columns.isEmpty();
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Used to clear the values of all columns
+     */
+    protected void clear(){
+        try{
+            lock.writeLock().lock();
+            clearOrdinals();
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Used to drop all ordinals and values
+     * <p>
+     * Has to be called while holding the write lock
+     */
+    private void clearOrdinals(){
+        ordinals.clear();
+        freeOrdinals.clear();
+        used.clear();
+        identifiers = new String[0];
+        size = 0;
+        columns.values().forEach(c -> c.resize(0));
+    }
+
+    /**
+     * Returns the ordinal of a DataSet, assigning a new one if necessary
+     * <p>
+     * Has to be called while holding the write lock
+     *
+     * @param identifier identifier of the DataSet
+     * @return int
+     */
+    private int ordinal(String identifier){
+        Integer ordinal = ordinals.get(identifier);
+        if(ordinal != null){
+            return ordinal;
+        }
+        ordinal = freeOrdinals.poll();
+        if(ordinal == null){
+            ordinal = size++;
+            if(ordinal >= identifiers.length){
+                int capacity = Math.max(16, identifiers.length+(identifiers.length >> 1));
+                identifiers = Arrays.copyOf(identifiers, capacity);
+                columns.values().forEach(c -> c.resize(capacity));
+            }
+        }
+        ordinals.put(identifier, ordinal);
+        identifiers[ordinal] = identifier;
+        used.set(ordinal);
+        return ordinal;
+    }
+
+    /*                  ACCESS                  */
+
+    @Override
+    public BitSet all() {
+        try{
+            lock.readLock().lock();
+            return (BitSet) used.clone();
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public BitSet select(String path, String op, Number value) {
+        try{
+            lock.readLock().lock();
+            Column column = columns.get(path);
+            if(column == null || !column.isUsable()){
+                return null;
+            }
+            return column.select(op, value, used);
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the identifiers of the selected DataSets
+     *
+     * @param selection bitmap of ordinals
+     * @return List of identifiers
+     */
+    public List<String> getIdentifiers(BitSet selection){
+        try{
+            lock.readLock().lock();
+            List<String> list = new ArrayList<>(selection.cardinality());
+            for(int i = selection.nextSetBit(0); i >= 0 && i < size; i = selection.nextSetBit(i+1)){
+                if(identifiers[i] != null){
+                    list.add(identifiers[i]);
+                }
+            }
+            return list;
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Used to compute an aggregation from the columns only
+     *
+     * @param aggregation the aggregation, has to be columnar for the usable paths
+     * @param excluded identifiers of DataSets which should be ignored
+     * @return JSONObject containing the result or null if the aggregation can not be computed from the columns
+     */
+    public JSONObject aggregate(Aggregation aggregation, Collection<String> excluded){
+        try{
+            lock.readLock().lock();
+            BitSet selection = (aggregation.getFilter() != null) ? aggregation.getFilter().select(this) : (BitSet) used.clone();
+            if(selection == null){
+                return null;
+            }
+            for(String identifier : excluded){
+                Integer ordinal = ordinals.get(identifier);
+                if(ordinal != null){
+                    selection.clear(ordinal);
+                }
+            }
+            HashMap<String, Aggregation.Summary> summaries = new HashMap<>();
+            for(String path : aggregation.getPaths()){
+                Column column = columns.get(path);
+                if(column == null || !column.isUsable()){
+                    return null;
+                }
+                summaries.put(path, column.summarize(selection));
+            }
+            Aggregation.Partial partial = aggregation.newPartial();
+            partial.accept(selection.cardinality(), summaries::get);
+            return partial.toJSON();
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Primitive values of a single field
+     */
+    private static class Column {
+
+        private final String dataType;
+        private final JSONPointer pointer;
+        private long[] longs;
+        private double[] doubles;
+        private byte[] kinds; // bitmap of the value type, MISSING if the DataSet does not contain the field
+        private int others = 0; // number of values which can not be stored
+        private Set<String> modifiedWhileBuilding = new HashSet<>(); // null once built
+
+        private Column(String path, int capacity){
+            this.pointer = new JSONPointer(path);
+            this.dataType = (path.indexOf("/", 1) > 0) ? path.substring(1, path.indexOf("/", 1)) : path.substring(1);
+            resize(capacity);
+        }
+
+        private boolean isUsable(){
+            return modifiedWhileBuilding == null && others == 0;
+        }
+
+        private void resize(int capacity){
+            if(kinds == null || capacity == 0){
+                longs = new long[capacity];
+                doubles = new double[capacity];
+                kinds = new byte[capacity];
+                others = 0;
+            }else{
+                longs = Arrays.copyOf(longs, capacity);
+                doubles = Arrays.copyOf(doubles, capacity);
+                kinds = Arrays.copyOf(kinds, capacity);
+            }
+        }
+
+        private void set(int ordinal, Object value){
+            if(kinds[ordinal] == OTHER){
+                others--;
+            }
+            if(value instanceof Integer || value instanceof Long){
+                longs[ordinal] = ((Number) value).longValue();
+                kinds[ordinal] = LONG;
+            }else if(value instanceof Double){
+                doubles[ordinal] = (Double) value;
+                kinds[ordinal] = DOUBLE;
+            }else if(value == null || value == JSONObject.NULL){
+                kinds[ordinal] = MISSING;
+            }else{
+                kinds[ordinal] = OTHER;
+                others++;
+            }
+        }
+
+        /**
+         * Selects all DataSets where the value matches the comparison
+         *
+         * @param op eq, ne, gt, gte, lt or lte
+         * @param value int, long or double
+         * @param used ordinals in use
+         * @return BitSet or null if the comparison is not supported
+         */
+        private BitSet select(String op, Number value, BitSet used){
+            boolean lower, equal, higher;
+            switch(op){
+                case "eq": case "ne": lower = false; equal = true; higher = false; break;
+                case "gt": lower = false; equal = false; higher = true; break;
+                case "gte": lower = false; equal = true; higher = true; break;
+                case "lt": lower = true; equal = false; higher = false; break;
+                case "lte": lower = true; equal = true; higher = false; break;
+                default: return null;
+            }
+            boolean integral = value instanceof Integer || value instanceof Long;
+            if(!integral && !(value instanceof Double)){
+                return null;
+            }
+            long l = value.longValue();
+            double d = value.doubleValue();
+            long[] longs = this.longs;
+            double[] doubles = this.doubles;
+            byte[] kinds = this.kinds;
+            BitSet selection = new BitSet(kinds.length);
+            for(int i = 0; i < kinds.length; i++){
+                int c;
+                if(kinds[i] == LONG){
+                    c = (integral) ? Long.compare(longs[i], l) : compare(longs[i], d);
+                }else if(kinds[i] == DOUBLE){
+                    c = compare(doubles[i], d);
+                }else{
+                    continue;
+                }
+                if((c < 0) ? lower : (c == 0) ? equal : higher){
+                    selection.set(i);
+                }
+            }
+            if(op.equals("ne")){
+                BitSet inverse = (BitSet) used.clone();
+                inverse.andNot(selection);
+                return inverse;
+            }
+            return selection;
+        }
+
+        private static int compare(double a, double b){
+            return (a < b) ? -1 : (a > b) ? 1 : (a == b) ? 0 : Double.compare(a, b);
+        }
+
+        /**
+         * Computes the values required for aggregations over the selected DataSets
+         *
+         * @param selection bitmap of ordinals
+         * @return Summary
+         */
+        private Aggregation.Summary summarize(BitSet selection){
+            long[] longs = this.longs;
+            double[] doubles = this.doubles;
+            byte[] kinds = this.kinds;
+            long count = 0, longCount = 0, longSum = 0, longMin = Long.MAX_VALUE, longMax = Long.MIN_VALUE;
+            double doubleSum = 0, doubleMin = Double.POSITIVE_INFINITY, doubleMax = Double.NEGATIVE_INFINITY;
+            boolean floating = false;
+            for(int i = selection.nextSetBit(0); i >= 0 && i < kinds.length; i = selection.nextSetBit(i+1)){
+                if(kinds[i] == LONG){
+                    long v = longs[i];
+                    long s = longSum + v;
+                    if(((longSum ^ s) & (v ^ s)) < 0){
+                        // overflow, continue with double precision for this value
+                        doubleSum += v;
+                        floating = true;
+                    }else{
+                        longSum = s;
+                    }
+                    longMin = Math.min(longMin, v);
+                    longMax = Math.max(longMax, v);
+                    longCount++;
+                }else if(kinds[i] == DOUBLE){
+                    double v = doubles[i];
+                    doubleSum += v;
+                    doubleMin = Math.min(doubleMin, v);
+                    doubleMax = Math.max(doubleMax, v);
+                    floating = true;
+                    count++;
+                }
+            }
+            count += longCount;
+            Object min = (longCount > 0) ? (Object) longMin : null;
+            Object max = (longCount > 0) ? (Object) longMax : null;
+            if(count > longCount){
+                Integer c;
+                min = (min == null || ((c = QueryFilter.compare(doubleMin, min)) != null && c < 0)) ? (Object) doubleMin : min;
+                max = (max == null || ((c = QueryFilter.compare(doubleMax, max)) != null && c > 0)) ? (Object) doubleMax : max;
+            }
+            return new Aggregation.Summary(count, count, longSum, doubleSum, floating, min, max);
+        }
+    }
+}
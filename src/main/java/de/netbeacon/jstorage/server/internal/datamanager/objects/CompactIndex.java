@@ -0,0 +1,373 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import de.netbeacon.jstorage.server.tools.index.FrontCodedKeys;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class keeps the index of a table (identifier &gt; shardID) in memory using as little space as possible
+ * <p>
+ * Shard ids are replaced by small numbers. Most identifiers are kept within an immutable sorted array which only stores the part of each
+ * identifier differing from the previous one, recent modifications are kept within a small map and merged into a new array once it grows too large.
+ * Reads do not require any lock, modifications are serialized. Iteration works on the state at its start.
+ * Used for internal data management only. User should not have direct interactions with this class
+ *
+ * @author horstexplorer
+ */
+public class CompactIndex extends AbstractMap<String, String> implements ConcurrentMap<String, String> {
+
+    private static final int REMOVED = -1;
+    private static final int MIN_MERGE_SIZE = 8192;
+
+    private final ConcurrentHashMap<String, Integer> recent = new ConcurrentHashMap<>(); // identifier > shard number or REMOVED
+    private volatile FrontCodedKeys merged = FrontCodedKeys.empty();
+    private final HashMap<String, Integer> shardNumbers = new HashMap<>();
+    private volatile String[] shards = new String[16];
+    private final AtomicBoolean merging = new AtomicBoolean(false);
+    private volatile int size = 0;
+    private long generation = 0; // changes on clear to discard running merges
+
+    /**
+     * Creates a new empty CompactIndex
+     */
+    protected CompactIndex(){}
+
+    /**
+     * Creates a new CompactIndex containing the given entries
+     *
+     * @param map the entries
+     */
+    protected CompactIndex(Map<String, String> map){
+        putAll(map);
+    }
+
+    /*                  ACCESS                  */
+
+    @Override
+    public String get(Object key) {
+        if(!(key instanceof String)){
+            return null;
+        }
+        int shard = shardNumberOf((String) key);
+        return (shard >= 0) ? shards[shard] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return (key instanceof String) && shardNumberOf((String) key) >= 0;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        String previous;
+        synchronized (this){
+            previous = write(key, value);
+        }
+        mergeIfRequired();
+        return previous;
+    }
+
+    @Override
+    public String remove(Object key) {
+        if(!(key instanceof String)){
+            return null;
+        }
+        String previous;
+        synchronized (this){
+            previous = write((String) key, null);
+        }
+        mergeIfRequired();
+        return previous;
+    }
+
+    @Override
+    public String putIfAbsent(String key, String value) {
+        String current;
+        synchronized (this){
+            current = get(key);
+            if(current == null){
+                write(key, value);
+            }
+        }
+        mergeIfRequired();
+        return current;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        synchronized (this){
+            String current = get(key);
+            if(current == null || !current.equals(value)){
+                return false;
+            }
+            write((String) key, null);
+        }
+        mergeIfRequired();
+        return true;
+    }
+
+    @Override
+    public boolean replace(String key, String oldValue, String newValue) {
+        synchronized (this){
+            String current = get(key);
+            if(current == null || !current.equals(oldValue)){
+                return false;
+            }
+            write(key, newValue);
+        }
+        mergeIfRequired();
+        return true;
+    }
+
+    @Override
+    public String replace(String key, String value) {
+        String current;
+        synchronized (this){
+            current = get(key);
+            if(current != null){
+                write(key, value);
+            }
+        }
+        mergeIfRequired();
+        return current;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return CompactIndex.this.size();
+            }
+        };
+    }
+
+    /**
+     * Used to remove all entries
+     */
+    @Override
+    public synchronized void clear() {
+        generation++;
+        merged = FrontCodedKeys.empty();
+        recent.clear();
+        size = 0;
+    }
+
+    /*                  INTERNAL                  */
+
+    /**
+     * Returns the number of the shard containing the given identifier
+     *
+     * @param key the identifier
+     * @return int, -1 if the identifier is not listed
+     */
+    private int shardNumberOf(String key){
+        // recent has to be read first, merges publish the new array before removing entries from it
+        Integer shard = recent.get(key);
+        if(shard != null){
+            return shard;
+        }
+        return merged.get(key);
+    }
+
+    /**
+     * Used to add, update or remove an entry
+     * <p>
+     * Has to be called while holding the lock of this object. Removed entries are marked as such until the next merge,
+     * as a merge which is already running might still contain them.
+     *
+     * @param key the identifier
+     * @param value the shard id or null to remove the entry
+     * @return String previous shard id or null
+     */
+    private String write(String key, String value){
+        String previous = get(key);
+        if(value != null){
+            recent.put(key, numberOf(value));
+            if(previous == null){
+                size++;
+            }
+        }else if(previous != null){
+            recent.put(key, REMOVED);
+            size--;
+        }
+        return previous;
+    }
+
+    /**
+     * Returns the number used for a shard id, assigning a new one if required
+     * <p>
+     * Has to be called while holding the lock of this object
+     *
+     * @param shardID id of the shard
+     * @return int
+     */
+    private int numberOf(String shardID){
+        Integer number = shardNumbers.get(shardID);
+        if(number == null){
+            number = shardNumbers.size();
+            String[] s = shards;
+            if(number >= s.length){
+                s = Arrays.copyOf(s, s.length*2);
+            }
+            s[number] = shardID;
+            shards = s;
+            shardNumbers.put(shardID, number);
+        }
+        return number;
+    }
+
+    /**
+     * Used to merge the recent modifications into a new array once there are enough of them
+     * <p>
+     * Other threads may continue to read and modify the index while the merge is running
+     */
+    private void mergeIfRequired(){
+        if(recent.size() < Math.max(MIN_MERGE_SIZE, merged.size()/8) || !merging.compareAndSet(false, true)){
+            return;
+        }
+        try{
+            FrontCodedKeys base;
+            HashMap<String, Integer> modifications;
+            long startGeneration;
+            synchronized (this){
+                base = merged;
+                modifications = new HashMap<>(recent);
+                startGeneration = generation;
+            }
+            // sort modifications the same way as the array
+            byte[][] keys = new byte[modifications.size()][];
+            int i = 0;
+            for(String key : modifications.keySet()){
+                keys[i++] = key.getBytes(StandardCharsets.UTF_8);
+            }
+            Arrays.sort(keys, (a, b) -> Arrays.compareUnsigned(a, b));
+            FrontCodedKeys.Builder builder = new FrontCodedKeys.Builder(base.size() + keys.length);
+            FrontCodedKeys.Cursor cursor = base.cursor();
+            boolean hasBase = cursor.next();
+            int m = 0;
+            while(hasBase || m < keys.length){
+                int c = (!hasBase) ? 1 : (m >= keys.length) ? -1 : Arrays.compareUnsigned(cursor.key(), 0, cursor.length(), keys[m], 0, keys[m].length);
+                if(c < 0){
+                    builder.add(cursor.key(), cursor.length(), cursor.value());
+                    hasBase = cursor.next();
+                }else{
+                    int shard = modifications.get(new String(keys[m], StandardCharsets.UTF_8));
+                    if(shard != REMOVED){
+                        builder.add(keys[m], keys[m].length, shard);
+                    }
+                    if(c == 0){
+                        hasBase = cursor.next();
+                    }
+                    m++;
+                }
+            }
+            FrontCodedKeys result = builder.build();
+            synchronized (this){
+                if(generation == startGeneration){
+                    merged = result;
+                    modifications.forEach(recent::remove); // keeps entries modified in the meantime
+                }
+            }
+        }finally {
+            merging.set(false);
+        }
+    }
+
+    /**
+     * Iterates over the entries present when the iteration started
+     * <p>
+     * The merged identifiers are returned in ascending order, followed by the recently modified ones
+     */
+    private class EntryIterator implements Iterator<Entry<String, String>> {
+
+        private final FrontCodedKeys.Cursor cursor;
+        private final HashMap<String, Integer> modifications;
+        private final String[] shardIDs;
+        private Iterator<Map.Entry<String, Integer>> modified = null;
+        private Entry<String, String> next = null;
+        private String last = null;
+
+        private EntryIterator(){
+            synchronized (CompactIndex.this){
+                cursor = merged.cursor();
+                modifications = new HashMap<>(recent);
+                shardIDs = shards;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while(next == null){
+                if(modified == null){
+                    if(cursor.next()){
+                        String key = cursor.keyString();
+                        if(!modifications.containsKey(key)){
+                            next = new SimpleImmutableEntry<>(key, shardIDs[cursor.value()]);
+                        }
+                        continue;
+                    }
+                    modified = modifications.entrySet().iterator();
+                }
+                if(!modified.hasNext()){
+                    return false;
+                }
+                Map.Entry<String, Integer> entry = modified.next();
+                if(entry.getValue() != REMOVED){
+                    next = new SimpleImmutableEntry<>(entry.getKey(), shardIDs[entry.getValue()]);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            if(!hasNext()){
+                throw new NoSuchElementException();
+            }
+            Entry<String, String> entry = next;
+            next = null;
+            last = entry.getKey();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if(last == null){
+                throw new IllegalStateException();
+            }
+            CompactIndex.this.remove(last);
+            last = null;
+        }
+    }
+}
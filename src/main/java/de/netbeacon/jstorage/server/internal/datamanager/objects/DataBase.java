@@ -19,6 +19,7 @@ package de.netbeacon.jstorage.server.internal.datamanager.objects;
 import de.netbeacon.jstorage.server.internal.datamanager.DataManager;
 import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
 import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
+import de.netbeacon.jstorage.server.tools.file.AtomicFile;
 import de.netbeacon.jstorage.server.tools.meta.UsageStatistics;
 import org.apache.commons.io.FileUtils;
 import org.json.JSONArray;
@@ -26,10 +27,7 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
-import java.nio.file.Files;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -274,7 +272,7 @@ public class DataBase {
                 if(!f.exists()){ f.createNewFile(); }
                 else{
                     // read
-                    String content = new String(Files.readAllBytes(f.toPath()));
+                    String content = AtomicFile.read(f);
                     if(!content.isEmpty()){
                         JSONObject jsonObject = new JSONObject(content);
                         String dbn = jsonObject.getString("database").toLowerCase();
@@ -330,11 +328,7 @@ public class DataBase {
                 File d = new File("./jstorage/data/db/"+identifier);
                 if(!d.exists()){ d.mkdirs(); }
                 File f = new File("./jstorage/data/db/"+identifier+"/"+identifier+"_settings");
-                BufferedWriter writer = new BufferedWriter(new FileWriter(f));
-                writer.write(jsonObject.toString());
-                writer.newLine();
-                writer.flush();
-                writer.close();
+                AtomicFile.write(f, jsonObject.toString());
             }catch (Exception e){
                 logger.error("DataBase ( Chain "+this.identifier+"; Hash "+hashCode()+" ) Unloading Data Failed", e);
                 throw new DataStorageException(102, "DataBase: "+identifier+": Failed To Write Configuration File, Data May Be Lost: "+e.getMessage());
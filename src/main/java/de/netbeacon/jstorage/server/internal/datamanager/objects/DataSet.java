@@ -16,11 +16,15 @@
 
 package de.netbeacon.jstorage.server.internal.datamanager.objects;
 
+import de.netbeacon.jstorage.server.tools.document.Document;
+import de.netbeacon.jstorage.server.tools.document.OffHeapArena;
+import de.netbeacon.jstorage.server.tools.document.OffHeapDocument;
 import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
 import de.netbeacon.jstorage.server.tools.exceptions.SetupException;
 import de.netbeacon.jstorage.server.tools.jsonmatcher.JSONMatcher;
 import de.netbeacon.jstorage.server.tools.meta.UsageStatistics;
 import org.json.JSONObject;
+import org.json.JSONPointer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,6 +54,9 @@ import java.util.function.Consumer;
  * update() requires
  * dataType already existing
  * dataType, { "database":STRING, "table":STRING, "identifier":STRING, ("uToken":STRING), "timestamp":LONG, DATATYPE:{ NEWDATA } }
+ * <p>
+ * database, table and identifier are not kept within the data but added again when the data is requested.
+ * Data written to storage does only contain the identifier, see {@link #getSerializedData()}
  *
  * @author horstexplorer
  */
@@ -59,7 +66,7 @@ public class DataSet{
     private final String identifier;
     private final DataTable table;
     private final DataBase database;
-    private final JSONObject data;
+    private Document data;
     // access management
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
     private final ReentrantLock updatePermissionLock = new ReentrantLock();
@@ -70,6 +77,8 @@ public class DataSet{
     private final static AtomicInteger dataSetsPerThread = new AtomicInteger(7500);
     private final static AtomicLong dataSets = new AtomicLong(0);
     private final static AtomicInteger maxSTPEThreads = new AtomicInteger(256);
+    private final static VersionStore versionStore = VersionStore.getInstance();
+    private final static JSONObject CURRENT = new JSONObject(); // marks the current data when reading from the version store
     // statistics
     private final Consumer<UsageStatistics.Usage> statistics = new Consumer<>() {
         @Override
@@ -77,7 +86,7 @@ public class DataSet{
             UsageStatistics dsms = table.getStatisticsFor(identifier);
             if(dsms != null){
                 dsms.add(usage);
-            }else{
+            }else if(table.keepsDataSetStatistics()){
                 logger.debug("DataSet ( Chain "+database.getIdentifier()+", "+table.getIdentifier()+", "+identifier+"; Hash "+hashCode()+" ) - Access To Table Statistics Failed. This Object Might Not Be Part Of The Table Yet / Anymore");
             }
         }
@@ -98,7 +107,7 @@ public class DataSet{
         this.identifier = identifier.toLowerCase();
         this.table = table;
         this.database = database;
-        this.data = new JSONObject().put("database", this.database.getIdentifier()).put("table", this.table.getIdentifier()).put("identifier", this.identifier);
+        this.data = Document.of(new JSONObject(), table.hasCompactDocuments(), table.getFieldDictionary());
 
         // update scheduledThreadPoolExecutor
         dataSets.getAndIncrement();
@@ -127,13 +136,9 @@ public class DataSet{
         this.identifier = identifier.toLowerCase();
         this.table = table;
         this.database = database;
-        if(!this.identifier.equals(data.getString("identifier")) || !this.table.getIdentifier().equals(data.getString("table")) || !this.database.getIdentifier().equals(data.getString("database"))){
-            if(this.identifier.equals(data.getString("identifier").toLowerCase()) && this.table.getIdentifier().equals(data.getString("table").toLowerCase()) && this.database.getIdentifier().equals(data.getString("database").toLowerCase())){
-                // just convert to lower case
-                data.put("identifier", data.getString("identifier").toLowerCase())
-                        .put("table", data.getString("table").toLowerCase())
-                        .put("database", data.getString("database").toLowerCase());
-            }else{
+        // database and table may be missing if the data has been read from storage
+        if(!this.identifier.equals(data.getString("identifier")) || !this.table.getIdentifier().equals(data.optString("table", this.table.getIdentifier())) || !this.database.getIdentifier().equals(data.optString("database", this.database.getIdentifier()))){
+            if(!(this.identifier.equals(data.getString("identifier").toLowerCase()) && this.table.getIdentifier().equals(data.optString("table", this.table.getIdentifier()).toLowerCase()) && this.database.getIdentifier().equals(data.optString("database", this.database.getIdentifier()).toLowerCase()))){
                 logger.error("Creation Failed. Data Does Not Match This Object");
                 throw new DataStorageException(220, "DataSet: Identifier/Table/DataBase mismatch");
             }
@@ -147,7 +152,14 @@ public class DataSet{
             }
         }
         list.forEach(data::remove);
-        this.data = data;
+        // keep the data without database, table and identifier
+        JSONObject content = new JSONObject();
+        for(String s : data.keySet()){
+            if(!isEnvelope(s)){
+                content.put(s, data.get(s));
+            }
+        }
+        this.data = Document.of(content, table.hasCompactDocuments(), table.getFieldDictionary());
 
         // update scheduledThreadPoolExecutor
         dataSets.getAndIncrement();
@@ -271,7 +283,7 @@ public class DataSet{
         // lock
         lock.readLock().lock();
         // get
-        JSONObject dataCopy = new JSONObject(this.data.toString());
+        JSONObject dataCopy = withEnvelope(this.data.toJSONObject());
         // unlock
         lock.readLock().unlock();
         // stats
@@ -280,6 +292,97 @@ public class DataSet{
         return dataCopy;
     } // suitable for getting the data for storage
 
+    /**
+     * Returns the stored data serialized as json
+     * <p>
+     * Other than {@link #getFullData()} this does not require a copy of the data. Database and table are not included as they are the same
+     * for all DataSets of a table, the identifier is always the first key.
+     *
+     * @return String containing the stored data without database and table
+     */
+    public String getSerializedData(){
+        // lock
+        lock.readLock().lock();
+        // get
+        String content = this.data.toString();
+        String serialized = "{\"identifier\":"+JSONObject.quote(identifier)+((content.length() > 2) ? ","+content.substring(1) : "}");
+        // unlock
+        lock.readLock().unlock();
+        // stats
+        statistics.accept(UsageStatistics.Usage.get_success);
+        // return
+        return serialized;
+    } // suitable for writing the data to storage
+
+    /**
+     * Returns the data serialized as json as it was when the snapshot has been opened
+     * <p>
+     * Used for internal data management only. See {@link #getSerializedData()} for the format
+     *
+     * @param snapshot the snapshot
+     * @return String containing the data without database and table or null if the DataSet did not exist at this time
+     */
+    protected String getSerializedData(VersionStore.Snapshot snapshot){
+        String content;
+        lock.readLock().lock();
+        try{
+            JSONObject version = versionStore.read(getVersionKey(), snapshot, CURRENT);
+            if(version == null){
+                return null;
+            }
+            content = (version == CURRENT) ? this.data.toString() : version.toString();
+        }finally {
+            lock.readLock().unlock();
+        }
+        return "{\"identifier\":"+JSONObject.quote(identifier)+((content.length() > 2) ? ","+content.substring(1) : "}");
+    }
+
+    /**
+     * Returns a serialized copy of the data as it was when the snapshot has been opened
+     *
+     * @param snapshot the snapshot
+     * @return JSONObject containing a serialized copy of the data or null if the DataSet did not exist at this time. See {@link DataSet} for the expected format.
+     */
+    public JSONObject getFullData(VersionStore.Snapshot snapshot){
+        JSONObject dataCopy;
+        lock.readLock().lock();
+        try{
+            JSONObject version = versionStore.read(getVersionKey(), snapshot, this.data.view());
+            dataCopy = (version != null) ? withEnvelope(new JSONObject(version.toString())) : null;
+        }finally {
+            lock.readLock().unlock();
+        }
+        statistics.accept((dataCopy != null) ? UsageStatistics.Usage.get_success : UsageStatistics.Usage.get_failure);
+        return dataCopy;
+    }
+
+    /**
+     * Used to add database, table and identifier to a copy of the data
+     *
+     * @param dataCopy copy of the data
+     * @return JSONObject dataCopy
+     */
+    private JSONObject withEnvelope(JSONObject dataCopy){
+        return dataCopy.put("database", database.getIdentifier()).put("table", table.getIdentifier()).put("identifier", identifier);
+    }
+
+    /**
+     * Used to check if a key is one of the keys which are not kept within the data
+     *
+     * @param key the key
+     * @return boolean
+     */
+    protected static boolean isEnvelope(String key){
+        return "database".equals(key) || "table".equals(key) || "identifier".equals(key);
+    }
+
+    /**
+     * Returns the key of this DataSet within the {@link VersionStore}
+     *
+     * @return String
+     */
+    protected String getVersionKey(){ return VersionStore.keyOf(database.getIdentifier(), table.getIdentifier(), identifier); }
+
     /**
      * Returns a serialized copy of the data for a specific dataType key, offers the possibility to lock this type for updating purposes
      * <p>
@@ -302,7 +405,7 @@ public class DataSet{
             // get data
             lock.readLock().lock();
             if(this.data.has(dataType) && !updatePermissions.containsKey(dataType)){
-                responseData.put(dataType, new JSONObject(this.data.getJSONObject(dataType).toString()));
+                responseData.put(dataType, this.data.getJSONObject(dataType));
                 statistics.accept(UsageStatistics.Usage.get_success);
             }else{
                 statistics.accept(UsageStatistics.Usage.get_failure);
@@ -392,10 +495,17 @@ public class DataSet{
             // lock
             lock.writeLock().lock();
             // insert data
-            this.data.put(dataType, new JSONObject(data.getJSONObject(dataType).toString()));
+            long seq = versionStore.begin(getVersionKey(), this.data::view); // keep the previous version if required
+            try{
+                this.data.put(dataType, data.getJSONObject(dataType));
+            }finally {
+                versionStore.finish(seq);
+            }
             // unlock & remove uToken
-            lock.writeLock().lock();
+            lock.writeLock().unlock();
             updatePermissions.remove(dataType);
+            // update secondary indexes
+            table.onDataSetModified(this, dataType);
             // stats
             statistics.accept(UsageStatistics.Usage.update_success);
             // return
@@ -446,9 +556,16 @@ public class DataSet{
             // lock
             lock.writeLock().lock();
             // insert
-            this.data.put(dataType, new JSONObject());
+            long seq = versionStore.begin(getVersionKey(), this.data::view); // keep the previous version if required
+            try{
+                this.data.put(dataType, new JSONObject());
+            }finally {
+                versionStore.finish(seq);
+            }
             // unlock
             lock.writeLock().unlock();
+            // update secondary indexes
+            table.onDataSetModified(this, dataType);
             // return
             return true;
         }catch (Exception e){
@@ -517,9 +634,16 @@ public class DataSet{
             // lock
             lock.writeLock().lock();
             // insert
-            this.data.put(dataType, new JSONObject(data.getJSONObject(dataType).toString()));
+            long seq = versionStore.begin(getVersionKey(), this.data::view); // keep the previous version if required
+            try{
+                this.data.put(dataType, data.getJSONObject(dataType));
+            }finally {
+                versionStore.finish(seq);
+            }
             // unlock
             lock.writeLock().unlock();
+            // update secondary indexes
+            table.onDataSetModified(this, dataType);
             // stats
             statistics.accept(UsageStatistics.Usage.insert_success);
             // return
@@ -572,9 +696,16 @@ public class DataSet{
             // lock
             lock.writeLock().lock();
             // remove
-            this.data.remove(dataType);
+            long seq = versionStore.begin(getVersionKey(), this.data::view); // keep the previous version if required
+            try{
+                this.data.remove(dataType);
+            }finally {
+                versionStore.finish(seq);
+            }
             // unlock
             lock.writeLock().unlock();
+            // update secondary indexes
+            table.onDataSetModified(this, dataType);
             // return
             return true;
         }catch (Exception e){
@@ -588,6 +719,62 @@ public class DataSet{
         }
     }
 
+    /**
+     * Returns the value at the given position within the stored data
+     * <p>
+     * Used for internal data management only
+     *
+     * @param pointer pointing to the value, starting with the dataType
+     * @return Object or null if the value does not exist
+     */
+    protected Object query(JSONPointer pointer){
+        lock.readLock().lock();
+        try{
+            return data.optQuery(pointer);
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Used to move the stored data to an arena outside of the heap
+     * <p>
+     * Used for internal data management only. Data which already is stored within the given arena is not copied again
+     *
+     * @param arena the arena
+     */
+    protected void moveTo(OffHeapArena arena){
+        lock.writeLock().lock();
+        try{
+            if(data instanceof OffHeapDocument && ((OffHeapDocument) data).getArena() == arena){
+                return;
+            }
+            Document previous = data;
+            data = new OffHeapDocument(previous, arena, table.getFieldDictionary());
+            if(previous instanceof OffHeapDocument){
+                ((OffHeapDocument) previous).free();
+            }
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Used to mark the stored data as no longer used if it is kept outside of the heap
+     * <p>
+     * Should be called when the object gets deleted while the arena it is stored in is kept
+     */
+    protected void freeData(){
+        lock.readLock().lock();
+        try{
+            if(data instanceof OffHeapDocument){
+                ((OffHeapDocument) data).free();
+            }
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
     /**
      * Used to check if the data contains a specific dataType
      *
@@ -16,23 +16,35 @@
 
 package de.netbeacon.jstorage.server.internal.datamanager.objects;
 
-import de.netbeacon.jstorage.server.internal.datamanager.DataManager;
-import de.netbeacon.jstorage.server.tools.crypt.JS2CryptTool;
-import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
+import de.netbeacon.jstorage.server.tools.document.OffHeapArena;
 import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
 import de.netbeacon.jstorage.server.tools.exceptions.SetupException;
+import de.netbeacon.jstorage.server.tools.executor.IOScheduler;
+import de.netbeacon.jstorage.server.tools.query.Aggregation;
+import de.netbeacon.jstorage.server.tools.query.Query;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 /**
  * This class is used to break down the whole data of a DataTable into multiple smaller objects & files
@@ -48,12 +60,28 @@ public class DataShard {
     private final DataTable table;
     private String shardID;
 
-    private final ConcurrentHashMap<String, DataSet> dataSetPool = new ConcurrentHashMap<String, DataSet>();
+    private final ConcurrentHashMap<String, DataSet> dataSetPool = new ConcurrentHashMap<String, DataSet>(); // only contains accessed DataSets if the storage engine is incremental
+    private final StorageEngine storageEngine;
+    private final IncrementalStorageEngine incrementalEngine; // the storage engine if it is able to access single DataSets, null otherwise
     private static int maxDataSets = 10000; // maximum number of DataSets within one shard
     private final AtomicLong lastAccess = new AtomicLong();
+    private final AtomicInteger storedDataSets = new AtomicInteger(0); // number of DataSets stored in the file while unloaded, always used if the storage engine is incremental
+    private final AtomicLong version = new AtomicLong(0); // changes whenever the data of this shard changes
+    private final ConcurrentHashMap<String, CachedPartial> aggregationCache = new ConcurrentHashMap<>();
+    private volatile OffHeapArena arena = new OffHeapArena(); // keeps the data of the DataSets if the table uses off heap documents
+    private final ConcurrentHashMap<String, DataSet> writeBehind = new ConcurrentHashMap<>(); // modified DataSets which have not been written to the incremental storage engine yet
+    private final AtomicLong writeBehindFirst = new AtomicLong(0); // time of the oldest pending modification, 0 if unknown
+    private final AtomicLong writeBehindLast = new AtomicLong(0); // time of the latest pending modification
+    private volatile boolean batching = false; // modifications are kept pending until the running batch completes
+    private final AtomicLong coalescedWrites = new AtomicLong(0); // modifications which have been merged into a pending write
+    private final AtomicLong bufferedWrites = new AtomicLong(0); // pending writes which have been written
     // status
     private final AtomicInteger status = new AtomicInteger(0); // -2 - insufficient memory error | -1 - general_error | 0 - unloaded | 1 - unloading | 2 - loading | 3 - loaded/ready
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock saveLock = new ReentrantLock(); // required to replace the stored data
+    private final AtomicLong saveSequence = new AtomicLong(0); // numbers the captured states of the data
+    private long savedSequence = 0; // latest state which has been stored, guarded by saveLock
+    private volatile long savedVersion = -1; // version of the data which has been stored by the last snapshot
 
     private final static HashSet<String> occupiedIDs = new HashSet<>();
 
@@ -76,6 +104,8 @@ public class DataShard {
         occupiedIDs.add(this.shardID);
         this.dataBase = dataBase;
         this.table = table;
+        this.storageEngine = (table.getStorageEngineType() == StorageEngine.Type.LSM) ? new LSMStorageEngine(dataBase, table, this.shardID) : new FileStorageEngine(dataBase, table, this.shardID);
+        this.incrementalEngine = (storageEngine instanceof IncrementalStorageEngine) ? (IncrementalStorageEngine) storageEngine : null;
         this.lastAccess.set(System.currentTimeMillis());
 
         logger.debug("Created New Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" )");
@@ -100,6 +130,8 @@ public class DataShard {
         occupiedIDs.add(this.shardID);
         this.dataBase = dataBase;
         this.table = table;
+        this.storageEngine = (table.getStorageEngineType() == StorageEngine.Type.LSM) ? new LSMStorageEngine(dataBase, table, this.shardID) : new FileStorageEngine(dataBase, table, this.shardID);
+        this.incrementalEngine = (storageEngine instanceof IncrementalStorageEngine) ? (IncrementalStorageEngine) storageEngine : null;
         this.lastAccess.set(System.currentTimeMillis());
 
         logger.debug("Created New Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" )");
@@ -141,18 +173,30 @@ public class DataShard {
      * @return int number of DataSets
      */
     protected int getCurrentDataSetCount(){
+        if(status.get() <= 0 || incrementalEngine != null){
+            return storedDataSets.get();
+        }
         return dataSetPool.size();
     }
 
+    /**
+     * Used to set the number of DataSets stored in the file of this shard while it is unloaded
+     *
+     * @param value number of DataSets
+     */
+    protected void setStoredDataSetCount(int value){
+        storedDataSets.set(value);
+    }
+
     /**
      * Returns the current value for the maximum number of DataSets
-     * Returns current+1 if value is set to infinite so there is always 1 slot empty
+     * Returns current+1 if value is set to infinite or the table is hash partitioned so there is always 1 slot empty
      *
      * @return int int
      */
     protected int getMaxDataSetCount(){
-        if(maxDataSets == -1){ // could be used to easily deactivate sharding the data
-            return dataSetPool.size()+1;
+        if(maxDataSets == -1 || table.isHashPartitioned()){ // could be used to easily deactivate sharding the data
+            return getCurrentDataSetCount()+1;
         }
         return maxDataSets;
     }
@@ -166,6 +210,15 @@ public class DataShard {
         return shardID;
     }
 
+    /**
+     * Returns the storage engine used by this shard
+     *
+     * @return StorageEngine
+     */
+    protected StorageEngine getStorageEngine(){
+        return storageEngine;
+    }
+
     /*              ACCESS              */
 
     /**
@@ -205,12 +258,16 @@ public class DataShard {
                 throw new DataStorageException(0, "DataShard: "+dataBase.getIdentifier()+">"+table.getIdentifier()+">"+shardID+": Something Went Wrong - Data Neither Seems To Be Loaded Nor Unloaded Nor In Between.", "This Error Should Not Be Thrown");
             }
             // the data is loaded
-            if(!dataSetPool.containsKey(identifier)) {
+            DataSet dataSet = dataSetPool.get(identifier);
+            if(dataSet == null && incrementalEngine != null){
+                dataSet = readDataSet(identifier);
+            }
+            if(dataSet == null) {
                 logger.debug("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) DataSet "+identifier+" Not Found");
                 throw new DataStorageException(201, "DataShard: "+dataBase.getIdentifier()+">"+table.getIdentifier()+">"+shardID+": DataSet "+identifier+" Not Found.");
             }
             // get
-            return dataSetPool.get(identifier);
+            return dataSet;
         }catch (DataStorageException e){
             throw e;
         }catch (Exception | Error e){
@@ -256,7 +313,7 @@ public class DataShard {
                 logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Something Went Wrong - Data Neither Seems To Be Loaded Nor Unloaded Nor In Between - Something Major Broke");
                 throw new DataStorageException(0, "DataShard: "+dataBase.getIdentifier()+">"+table.getIdentifier()+">"+shardID+": Something Went Wrong - Data Neither Seems To Be Loaded Nor Unloaded Nor In Between.", "This Error Should Not Be Thrown");
             }
-            if(dataSetPool.size() >= getMaxDataSetCount()){
+            if(getCurrentDataSetCount() >= getMaxDataSetCount()){
                 logger.debug("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) DataSet Could Not Be Inserted, Shard Is Full");
                 throw new DataStorageException(220, "DataShard: "+dataBase.getIdentifier()+">"+table.getIdentifier()+">"+shardID+": Shard Is Full");
             }
@@ -264,12 +321,22 @@ public class DataShard {
                 logger.debug("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) DataSet "+dataSet.getIdentifier()+" Does Not Fit Here");
                 throw new DataStorageException(220, "DataShard: "+dataBase.getIdentifier()+">"+table.getIdentifier()+">"+shardID+": DataSet "+dataSet.getIdentifier()+" ("+dataSet.getDataBase().getIdentifier()+">"+dataSet.getTable().getIdentifier()+") Does Not Fit Here.");
             }
-            if(dataSetPool.containsKey(dataSet.getIdentifier())){
+            if(isStored(dataSet.getIdentifier())){
                 logger.debug("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) DataSet "+dataSet.getIdentifier()+" Already Existing");
                 throw new DataStorageException(211, "DataShard: "+dataBase.getIdentifier()+">"+table.getIdentifier()+">"+shardID+": DataSet "+dataSet.getIdentifier()+" Already Existing.");
             }
             // insert
-            dataSetPool.put(dataSet.getIdentifier(), dataSet);
+            if(incrementalEngine != null && !batching){
+                incrementalEngine.put(dataSet.getIdentifier(), dataSet.getSerializedData());
+            }
+            dataSetPool.put(dataSet.getIdentifier(), adopt(dataSet));
+            if(incrementalEngine != null){
+                if(batching){
+                    writeBehind.put(dataSet.getIdentifier(), dataSet); // written once the batch completes
+                }
+                storedDataSets.incrementAndGet();
+            }
+            markModified();
         }catch (DataStorageException e){
             throw e;
         }catch (Exception | Error e){
@@ -322,13 +389,22 @@ public class DataShard {
                 throw new DataStorageException(0, "DataShard: "+dataBase.getIdentifier()+">"+table.getIdentifier()+">"+shardID+": Something Went Wrong - Data Neither Seems To Be Loaded Nor Unloaded Nor In Between.", "This Error Should Not Be Thrown");
             }
             // the data is loaded
-            if(!dataSetPool.containsKey(identifier)) {
+            if(!isStored(identifier)) {
                 logger.debug("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) DataSet "+identifier+" Not Found");
                 throw new DataStorageException(201, "DataShard: "+dataBase.getIdentifier()+">"+table.getIdentifier()+">"+shardID+": DataSet "+identifier+" Not Found.");
             }
             // get & remove
+            if(incrementalEngine != null){
+                writeBehind.remove(identifier);
+                incrementalEngine.delete(identifier);
+                storedDataSets.decrementAndGet();
+            }
             DataSet dataSet = dataSetPool.remove(identifier);
-            dataSet.onUnload();
+            if(dataSet != null){
+                dataSet.freeData();
+                dataSet.onUnload();
+            }
+            markModified();
         }catch (DataStorageException e){
             throw e;
         }catch (Exception | Error e){
@@ -351,10 +427,377 @@ public class DataShard {
      */
     protected boolean containsDataSet(String identifier){
         lock.readLock().lock();
-        identifier = identifier.toLowerCase();
-        boolean contains = dataSetPool.containsKey(identifier);
-        lock.readLock().unlock();
-        return contains;
+        try{
+            return isStored(identifier.toLowerCase());
+        }catch (IOException e){
+            logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Failed To Read DataSet "+identifier, e);
+            return false;
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Used to check if a DataSet is part of this shard
+     * <p>
+     * Shards using an incremental storage engine only keep accessed DataSets in memory, so the engine has to be checked as well
+     *
+     * @param identifier identifier of the DataSet
+     * @return boolean
+     * @throws IOException if the storage engine could not be read
+     */
+    private boolean isStored(String identifier) throws IOException{
+        return dataSetPool.containsKey(identifier) || (incrementalEngine != null && incrementalEngine.get(identifier) != null);
+    }
+
+    /**
+     * Used to read a single DataSet from an incremental storage engine and keep it in memory
+     *
+     * @param identifier identifier of the DataSet
+     * @return DataSet or null if it does not exist
+     * @throws IOException if the storage engine could not be read
+     * @throws DataStorageException if the stored data does not belong to this table
+     */
+    private DataSet readDataSet(String identifier) throws IOException, DataStorageException{
+        String data = incrementalEngine.get(identifier);
+        if(data == null){
+            return null;
+        }
+        DataSet dataSet = new DataSet(dataBase, table, identifier, new JSONObject(data));
+        DataSet existing = dataSetPool.putIfAbsent(identifier, dataSet);
+        if(existing != null){
+            // read concurrently
+            dataSet.onUnload();
+            return existing;
+        }
+        return adopt(dataSet);
+    }
+
+    /**
+     * Used to execute multiple actions while holding the lock of this shard
+     * <p>
+     * Makes sure the data of this shard is loaded before executing the actions.
+     * Shards using an incremental storage engine write all DataSets inserted or modified by the actions at once when the batch completes.
+     *
+     * @param runnable containing the actions
+     * @throws DataStorageException if the data could not be loaded
+     */
+    protected void executeBatch(Runnable runnable) throws DataStorageException {
+        boolean lockedBefore = false;
+        boolean outerBatch = false;
+        try{
+            if(!lock.isWriteLockedByCurrentThread()){
+                lock.writeLock().lock();
+            }else{ lockedBefore = true; }
+            lastAccess.set(System.currentTimeMillis());
+            if(status.get() <= 0){
+                loadData();
+            }
+            outerBatch = !batching;
+            batching = true;
+            runnable.run();
+        }finally {
+            if(outerBatch){
+                batching = false;
+                try{
+                    writePending();
+                }catch (IOException e){
+                    logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Failed To Store DataSets Modified By A Batch. They Will Be Retried", e);
+                }
+            }
+            if(!lockedBefore){
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Used to get the data of all DataSets within this shard without loading the shard
+     * <p>
+     * If the shard is loaded the data will be taken from memory, else it will be read from the storage engine without changing the status of this shard.
+     * Shards using an incremental storage engine are always read from the engine. Returns one serialized DataSet per entry
+     *
+     * @param identifiers identifiers of the DataSets which are listed for this shard in the index of the table, null for all DataSets of this shard
+     * @param raw if the stored data should be returned without checking whether it belongs to this table
+     * @return List of serialized DataSets
+     * @throws DataStorageException if the data could not be read
+     */
+    protected List<String> exportData(Set<String> identifiers, boolean raw) throws DataStorageException{
+        try{
+            lock.readLock().lock();
+            List<String> lines = new ArrayList<>(Math.max((identifiers != null) ? identifiers.size() : getCurrentDataSetCount(), 16));
+            if(status.get() == 3 && incrementalEngine == null){
+                for(DataSet dataSet : dataSetPool.values()){
+                    if(identifiers == null || identifiers.contains(dataSet.getIdentifier())){
+                        lines.add(withEnvelope(dataSet.getSerializedData()));
+                    }
+                }
+                return lines;
+            }
+            boolean unchecked = raw;
+            scanStored(line -> {
+                if(unchecked){
+                    lines.add(line);
+                    return true;
+                }
+                try{
+                    // make sure this is the data listed in the index
+                    JSONObject jsonObject = new JSONObject(line);
+                    if(isIndexed(jsonObject, identifiers)){
+                        lines.add((jsonObject.has("database")) ? line : withEnvelope(line));
+                    }
+                }catch (Exception e){
+                    logger.debug("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Failed To Export DataSet, Skipping It", e);
+                }
+                return true;
+            });
+            return lines;
+        }catch (Exception | Error e){
+            logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) An Unknown Error Occurred While Exporting Data", e);
+            throw new DataStorageException(0, "Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) An Unknown Error Occurred While Exporting Data: "+e.getMessage());
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Used to select the DataSets within this shard matching the given query without loading the shard
+     * <p>
+     * If the shard is loaded the data will be taken from memory, else it will be read from the storage engine without changing the status of this shard.
+     * Ordered queries keep only the best matches up to the limit of the query, unordered queries stop once the limit has been reached.
+     *
+     * @param identifiers identifiers of the DataSets which are listed for this shard in the index of the table, null for all DataSets of this shard
+     * @param query the query
+     * @return List of matching DataSets, ordered if the query is ordered
+     * @throws DataStorageException if the data could not be read
+     */
+    protected List<JSONObject> scanData(Set<String> identifiers, Query query) throws DataStorageException{
+        try{
+            lock.readLock().lock();
+            Comparator<JSONObject> comparator = query.getComparator();
+            int limit = query.getLimit();
+            // keeps the best matches, the worst one on top
+            PriorityQueue<JSONObject> heap = (comparator != null) ? new PriorityQueue<>(limit+1, comparator.reversed()) : null;
+            List<JSONObject> matches = new ArrayList<>();
+            if(status.get() == 3 && incrementalEngine == null){
+                for(DataSet dataSet : dataSetPool.values()){
+                    if((identifiers == null || identifiers.contains(dataSet.getIdentifier())) && query.matches(dataSet::query)){
+                        if(!collect(dataSet.getFullData(), heap, matches, limit)){
+                            break;
+                        }
+                    }
+                }
+            }else{
+                scanStored(line -> {
+                    try{
+                        JSONObject jsonObject = new JSONObject(line);
+                        if(isIndexed(jsonObject, identifiers) && query.matches(jsonObject::optQuery)){
+                            return collect(withEnvelope(jsonObject), heap, matches, limit);
+                        }
+                    }catch (Exception e){
+                        logger.debug("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Failed To Scan DataSet, Skipping It", e);
+                    }
+                    return true;
+                });
+            }
+            if(heap != null){
+                matches.addAll(heap);
+                matches.sort(comparator);
+            }
+            return matches;
+        }catch (Exception | Error e){
+            logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) An Unknown Error Occurred While Scanning Data", e);
+            throw new DataStorageException(0, "Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) An Unknown Error Occurred While Scanning Data: "+e.getMessage());
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Used to compute the partial result of an aggregation over the DataSets within this shard without loading the shard
+     * <p>
+     * Partial results are cached until the data of this shard changes. A cached result is only used for the same set of identifiers,
+     * as the table may exclude DataSets, for example once they expired, without modifying this shard.
+     * If the shard is loaded the data will be taken from memory, else it will be read from the storage engine without changing the status of this shard.
+     *
+     * @param identifiers identifiers of the DataSets which are listed for this shard in the index of the table, null for all DataSets of this shard
+     * @param aggregation the aggregation
+     * @return Aggregation.Partial, must not be modified
+     * @throws DataStorageException if the data could not be read
+     */
+    protected Aggregation.Partial aggregateData(Set<String> identifiers, Aggregation aggregation) throws DataStorageException{
+        try{
+            lock.readLock().lock();
+            if(incrementalEngine != null){
+                writePending(); // changes the version if there have been pending modifications
+            }
+            // modifications of datasets are not covered by the lock, so the version has to be taken before reading the data
+            long currentVersion = version.get();
+            CachedPartial cached = aggregationCache.get(aggregation.getKey());
+            if(cached != null && cached.partial.getVersion() == currentVersion && Objects.equals(cached.identifiers, identifiers)){
+                return cached.partial;
+            }
+            Aggregation.Partial result = aggregation.newPartial();
+            if(status.get() == 3 && incrementalEngine == null){
+                for(DataSet dataSet : dataSetPool.values()){
+                    if(identifiers == null || identifiers.contains(dataSet.getIdentifier())){
+                        result.accept(dataSet::query);
+                    }
+                }
+            }else{
+                scanStored(line -> {
+                    try{
+                        JSONObject jsonObject = new JSONObject(line);
+                        if(isIndexed(jsonObject, identifiers)){
+                            result.accept(jsonObject::optQuery);
+                        }
+                    }catch (Exception e){
+                        logger.debug("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Failed To Aggregate DataSet, Skipping It", e);
+                    }
+                    return true;
+                });
+            }
+            result.setVersion(currentVersion);
+            if(aggregationCache.size() >= 16){
+                aggregationCache.clear(); // keep only a few recent aggregations
+            }
+            aggregationCache.put(aggregation.getKey(), new CachedPartial(result, identifiers));
+            return result;
+        }catch (Exception | Error e){
+            logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) An Unknown Error Occurred While Aggregating Data", e);
+            throw new DataStorageException(0, "Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) An Unknown Error Occurred While Aggregating Data: "+e.getMessage());
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Should be called whenever the data of this shard changes
+     * <p>
+     * Invalidates cached results computed from the previous data
+     */
+    protected void markModified(){
+        version.incrementAndGet();
+        aggregationCache.clear();
+    }
+
+    /**
+     * Should be called whenever a DataSet of this shard has been modified
+     * <p>
+     * Shards using an incremental storage engine write the current data of the DataSet through to the engine.
+     * If the table uses a write behind window the DataSet is only marked as pending, repeated modifications are written once, see {@link #flushWriteBehindAsync()}.
+     * While a batch is running the DataSet is kept pending until the batch completes, see {@link #executeBatch(Runnable)}
+     *
+     * @param dataSet the modified DataSet
+     */
+    protected void onDataSetModified(DataSet dataSet){
+        markModified();
+        if(incrementalEngine == null){
+            return;
+        }
+        if(batching){
+            writeBehind.put(dataSet.getIdentifier(), dataSet);
+            return;
+        }
+        if(table.getWriteBehindWindow() > 0){
+            writeBehindLast.set(System.currentTimeMillis());
+            writeBehindFirst.compareAndSet(0, writeBehindLast.get());
+            if(writeBehind.put(dataSet.getIdentifier(), dataSet) != null){
+                coalescedWrites.incrementAndGet();
+            }
+            return;
+        }
+        lock.readLock().lock();
+        try{
+            if(dataSetPool.get(dataSet.getIdentifier()) != dataSet){
+                return; // not (or no longer) part of this shard
+            }
+            // serialize concurrent writes of this shard so the last write contains the latest data
+            synchronized (writeBehind){
+                incrementalEngine.put(dataSet.getIdentifier(), dataSet.getSerializedData());
+            }
+        }catch (IOException e){
+            logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Failed To Store Modified DataSet "+dataSet.getIdentifier()+". Data May Be Lost", e);
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Used to keep a matching DataSet
+     *
+     * @param data the data of the DataSet
+     * @param heap bounded heap for ordered queries, null if unordered
+     * @param matches list for unordered queries
+     * @param limit max number of DataSets, -1 if unlimited
+     * @return false if no more DataSets are needed
+     */
+    private boolean collect(JSONObject data, PriorityQueue<JSONObject> heap, List<JSONObject> matches, int limit){
+        if(heap != null){
+            heap.add(data);
+            if(heap.size() > limit){
+                heap.poll();
+            }
+            return true;
+        }
+        matches.add(data);
+        return limit < 0 || matches.size() < limit;
+    }
+
+    /**
+     * Used to check if the data read from the storage engine belongs to a DataSet listed in the index
+     *
+     * @param jsonObject the data
+     * @param identifiers identifiers of the DataSets which are listed for this shard in the index of the table, null for all DataSets of this shard
+     * @return boolean
+     */
+    private boolean isIndexed(JSONObject jsonObject, Set<String> identifiers){
+        return dataBase.getIdentifier().equals(jsonObject.optString("database", dataBase.getIdentifier()).toLowerCase()) && table.getIdentifier().equals(jsonObject.optString("table", table.getIdentifier()).toLowerCase()) && (identifiers == null || identifiers.contains(jsonObject.getString("identifier").toLowerCase()));
+    }
+
+    /**
+     * Used to add database and table to data read from the storage engine
+     * <p>
+     * DataSets are stored without those as they are the same for all DataSets of the table
+     *
+     * @param jsonObject the data
+     * @return JSONObject jsonObject
+     */
+    private JSONObject withEnvelope(JSONObject jsonObject){
+        if(!jsonObject.has("database")){
+            jsonObject.put("database", dataBase.getIdentifier()).put("table", table.getIdentifier());
+        }
+        return jsonObject;
+    }
+
+    /**
+     * Used to add database and table to a serialized DataSet which does not contain them
+     *
+     * @param line the serialized DataSet
+     * @return String
+     */
+    private String withEnvelope(String line){
+        return "{\"database\":"+JSONObject.quote(dataBase.getIdentifier())+",\"table\":"+JSONObject.quote(table.getIdentifier())+","+line.substring(1);
+    }
+
+    /**
+     * Used to read the stored DataSets, using the compressed copy within the {@link WarmShardCache} if available
+     * <p>
+     * Pending modifications are written to the incremental storage engine before it is read
+     *
+     * @param consumer receiving each serialized DataSet, may return false to stop
+     * @throws IOException if the data could not be read
+     */
+    private void scanStored(Predicate<String> consumer) throws IOException{
+        if(incrementalEngine != null){
+            writePending(); // the engine does not contain pending modifications yet
+        }
+        byte[] warm = WarmShardCache.get(this);
+        if(warm != null){
+            WarmShardCache.forEachLine(warm, consumer);
+        }else{
+            storageEngine.scan(consumer);
+        }
     }
 
     /*              STATUS              */
@@ -399,50 +842,29 @@ public class DataShard {
                 // check files
                 File d = new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+table.getIdentifier());
                 if(!d.exists()){ d.mkdirs(); }
-                File f = new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+table.getIdentifier()+"/"+table.getIdentifier()+"_"+shardID);
-                if(!f.exists()){ f.createNewFile();}
-                else{
-                    // check if file can be loaded to memory
-                    if(((Runtime.getRuntime().freeMemory()/100)*80) < f.length()){
-                        // file probably to large to load
-                        status.set(-2); // error
-                    }else{
-                        BufferedReader br = new BufferedReader(new FileReader(f));
-                        String line;
-                        while((line = br.readLine()) != null) {
-                            if (!line.isEmpty()) {
-                                try{
-                                    // see if the data is encrypted
-                                    if(JS2CryptTool.isJS2Encrypted(line)){
-                                        // make sure the tool is ready
-                                        if(!DataManager.getInstance().getJs2CryptTool().isReady()){
-                                            logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Loaded DataSet Seems To Be Encrypted But JS2CryptTool Is Not Ready To Work With This Type Of Data. This Results In This Data Being Lost And The Table Being Inconsistent. Please Check What Is Wrong Here.");
-                                            continue;
-                                        }
-                                        // try decrypting
-                                        try{
-                                            line = new String(DataManager.getInstance().getJs2CryptTool().decode(line));
-                                        }catch (CryptException e){
-                                            logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) An Error Occurred While Decrypting A DataSet. This Results In This Data Being Lost And The Table Being Inconsistent. Please Check What Is Wrong Here.", e);
-                                            continue;
-                                        }
-                                    }
-                                    // process data
-                                    JSONObject jsonObject = new JSONObject(line);
-                                    // parse important values
-                                    String gdb = jsonObject.getString("database").toLowerCase();
-                                    String ctable = jsonObject.getString("table").toLowerCase();
-                                    String identifier = jsonObject.getString("identifier").toLowerCase();
-                                    if(gdb.equals(dataBase.getIdentifier()) && ctable.equals(table.getIdentifier()) && !dataSetPool.containsKey(identifier)){
-                                        dataSetPool.put(identifier, new DataSet(dataBase, table, identifier));
-                                    }
-                                    this.lastAccess.set(System.currentTimeMillis()); // update for each so it wont get unloaded
-                                }catch (Exception ignore){}
+                if(incrementalEngine != null){
+                    // DataSets are read when they are accessed
+                }else if(((Runtime.getRuntime().freeMemory()/100)*80) < storageEngine.getStoredBytes()){ // check if file can be loaded to memory
+                    // file probably to large to load
+                    status.set(-2); // error
+                }else{
+                    scanStored(line -> {
+                        try{
+                            // process data
+                            JSONObject jsonObject = new JSONObject(line);
+                            // parse important values
+                            String gdb = jsonObject.optString("database", dataBase.getIdentifier()).toLowerCase();
+                            String ctable = jsonObject.optString("table", table.getIdentifier()).toLowerCase();
+                            String identifier = jsonObject.getString("identifier").toLowerCase();
+                            if(gdb.equals(dataBase.getIdentifier()) && ctable.equals(table.getIdentifier()) && !dataSetPool.containsKey(identifier)){
+                                dataSetPool.put(identifier, adopt(new DataSet(dataBase, table, identifier, jsonObject)));
                             }
-                        }
-                        br.close();
-                    }
+                            this.lastAccess.set(System.currentTimeMillis()); // update for each so it wont get unloaded
+                        }catch (Exception ignore){}
+                        return true;
+                    });
                 }
+                WarmShardCache.remove(this); // no longer required while loaded
                 // set loaded
                 status.set(3);
                 logger.debug("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Loaded Data. New Status: "+status.get());
@@ -459,19 +881,17 @@ public class DataShard {
     }
 
     /**
-     * Async call loadData() from another thread.
+     * Async call loadData() using the {@link IOScheduler}
      */
     protected void loadDataAsync(){
         if(status.get() <= 0){
-            Thread t = new Thread(() -> {
+            IOScheduler.getInstance().submit(shardID+":load", IOScheduler.Priority.LOAD, storageEngine.getStoredBytes(), () -> {
                 try {
                     loadData();
                 } catch (DataStorageException e) {
                     e.printStackTrace();
                 }
             });
-            t.setDaemon(true);
-            t.start();
         }
     }
 
@@ -486,6 +906,27 @@ public class DataShard {
      * @throws DataStorageException if data failed to unload for any reasons. Data may be lost
      */
     protected void unloadData(boolean unload, boolean saveToFile, boolean delete) throws DataStorageException {
+        unloadData(unload, saveToFile, delete, false);
+    }
+
+    /**
+     * Used to unload the content of this object to a file.
+     * <p>
+     * If keepWarm is set a compressed copy of the saved data will be kept within the {@link WarmShardCache} while it has space left,
+     * so that the shard can be loaded again without reading its file. Only applies to shards being unloaded and saved by a storage engine which is not incremental.
+     * Saving the data without unloading or deleting it does not block the shard while the data is written, see {@link #snapshotData()}.
+     *
+     * @param unload      if the data should be removed from the object
+     * @param saveToFile  if the data should be saved to a file
+     * @param delete if the data should be deleted
+     * @param keepWarm if a compressed copy of the data should be kept in memory
+     * @throws DataStorageException if data failed to unload for any reasons. Data may be lost
+     */
+    protected void unloadData(boolean unload, boolean saveToFile, boolean delete, boolean keepWarm) throws DataStorageException {
+        if(!unload && saveToFile && !delete && incrementalEngine == null){
+            snapshotData();
+            return;
+        }
         boolean lockedBefore = false;
         try{
             if(!lock.isWriteLockedByCurrentThread()){
@@ -497,46 +938,36 @@ public class DataShard {
                 // check for delete - ignore others
                 if(delete){
                     // clear content
+                    WarmShardCache.remove(this);
+                    writeBehind.clear();
                     dataSetPool.forEach((key, value) -> value.onUnload());
                     dataSetPool.clear();
+                    releaseArena();
+                    storedDataSets.set(0);
                     occupiedIDs.remove(this.shardID);
-                    // remove file if exists
-                    File f = new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+table.getIdentifier()+"/"+dataBase.getIdentifier()+"_"+shardID);
-                    f.delete();
+                    // remove stored data
+                    destroyStored();
                     status.set(0);
                 }else if(saveToFile){
-                    File d = new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+table.getIdentifier());
-                    if(!d.exists()){ d.mkdirs(); }
-                    File f = new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+table.getIdentifier()+"/"+table.getIdentifier()+"_"+shardID);
-                    BufferedWriter writer = new BufferedWriter(new FileWriter(f));
-                    for(Map.Entry<String, DataSet> entry : dataSetPool.entrySet()){
-                        if(entry.getKey().equals(entry.getValue().getIdentifier())){
-                            if(dataBase.encrypted()){
-                                try{
-                                    String encryptedData = DataManager.getInstance().getJs2CryptTool().encode(entry.getValue().getFullData().toString().getBytes());
-                                    writer.write(encryptedData);
-                                }catch (CryptException e){
-                                    logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Failed To Encrypt Data, Storing It Unencrypted", e);
-                                    writer.write(entry.getValue().getFullData().toString());
-                                }
-                            }else{
-                                writer.write(entry.getValue().getFullData().toString());
-                            }
-                            writer.newLine();
+                    if(incrementalEngine != null){
+                        writePending();
+                        storageEngine.flush(); // other changes have already been written
+                    }else{
+                        long currentVersion = version.get();
+                        List<String> lines = dataSetPool.entrySet().stream().filter(e->e.getKey().equals(e.getValue().getIdentifier())).map(e->e.getValue().getSerializedData()).collect(Collectors.toList());
+                        if(replaceStored(lines, saveSequence.incrementAndGet())){
+                            savedVersion = currentVersion;
+                        }
+                        if(unload && keepWarm){
+                            WarmShardCache.put(this, lines);
                         }
                     }
-                    writer.flush();
-                    writer.close();
                     if(unload){
-                        // clear content
-                        dataSetPool.forEach((key, value) -> value.onUnload());
-                        dataSetPool.clear();
+                        clearPool();
                     }
                 }else{
                     if(unload){
-                        // clear content
-                        dataSetPool.forEach((key, value) -> value.onUnload());
-                        dataSetPool.clear();
+                        clearPool();
                     }
                 }
                 if(!unload && !saveToFile && !delete){
@@ -548,12 +979,15 @@ public class DataShard {
                 status.set(1); // set unloading
                 logger.debug("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Unloading Data With Params: u="+unload+" s="+saveToFile+" d="+delete);
                 // clear content
+                WarmShardCache.remove(this);
+                writeBehind.clear();
                 dataSetPool.forEach((key, value) -> value.onUnload());
                 dataSetPool.clear();
+                releaseArena();
+                storedDataSets.set(0);
                 occupiedIDs.remove(this.shardID);
-                // remove file if exists
-                File f = new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+table.getIdentifier()+"/"+dataBase.getIdentifier()+"_"+shardID);
-                f.delete();
+                // remove stored data
+                destroyStored();
                 status.set(0);
             }
             logger.debug("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Unloaded Data. New Status: "+status.get());
@@ -568,6 +1002,111 @@ public class DataShard {
         }
     }
 
+    /**
+     * Used to save the data of this shard without unloading it
+     * <p>
+     * The lock of this shard is only held while capturing the DataSets together with a {@link VersionStore.Snapshot}, the data is serialized and written afterwards.
+     * Changes made in the meantime are not included and will be saved the next time. Does nothing if the data is not loaded
+     * or has not been modified since it has been saved the last time, so repeated snapshots of an unchanged shard do not rewrite the same data.
+     *
+     * @throws DataStorageException if the data could not be written
+     */
+    private void snapshotData() throws DataStorageException {
+        List<DataSet> dataSets;
+        long sequence;
+        long currentVersion = version.get(); // before opening the snapshot, so that the snapshot contains at least this version
+        if(currentVersion == savedVersion){
+            logger.debug("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Snapshot Skipped, Data Has Not Been Modified");
+            return;
+        }
+        VersionStore.Snapshot snapshot = VersionStore.getInstance().openSnapshot();
+        try{
+            lock.readLock().lock(); // inserting or deleting DataSets requires the write lock
+            try{
+                if(status.get() != 3){
+                    return;
+                }
+                dataSets = dataSetPool.entrySet().stream().filter(e->e.getKey().equals(e.getValue().getIdentifier())).map(Map.Entry::getValue).collect(Collectors.toList());
+                sequence = saveSequence.incrementAndGet();
+            }finally {
+                lock.readLock().unlock();
+            }
+            logger.debug("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Saving Snapshot Of "+dataSets.size()+" DataSets");
+            List<String> lines = new ArrayList<>(dataSets.size());
+            for(DataSet dataSet : dataSets){
+                String line = dataSet.getSerializedData(snapshot);
+                if(line != null){
+                    lines.add(line);
+                }
+            }
+            if(replaceStored(lines, sequence)){
+                savedVersion = currentVersion;
+            }else{
+                logger.debug("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Snapshot Skipped, Newer Data Has Been Stored Already");
+            }
+        }catch (Exception | Error e){
+            logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Saving Snapshot Failed", e);
+            throw new DataStorageException(102,"DataShard: "+dataBase.getIdentifier()+">"+table.getIdentifier()+">"+shardID+": Saving Snapshot Failed: "+e.getMessage());
+        }finally {
+            snapshot.close();
+        }
+    }
+
+    /**
+     * Used to replace the stored data if no newer state has been stored in the meantime
+     * <p>
+     * Only used for storage engines which are not incremental
+     *
+     * @param lines serialized DataSets
+     * @param sequence number of the captured state, see saveSequence
+     * @return true if the data has been stored
+     * @throws IOException if the data could not be written
+     */
+    private boolean replaceStored(List<String> lines, long sequence) throws IOException{
+        saveLock.lock();
+        try{
+            if(sequence < savedSequence){
+                return false;
+            }
+            storageEngine.replaceAll(lines);
+            savedSequence = sequence;
+            return true;
+        }finally {
+            saveLock.unlock();
+        }
+    }
+
+    /**
+     * Used to remove the stored data, snapshots which are still being written will be discarded
+     */
+    private void destroyStored(){
+        saveLock.lock();
+        try{
+            savedSequence = Long.MAX_VALUE;
+            savedVersion = -1;
+            storageEngine.destroy();
+        }finally {
+            saveLock.unlock();
+        }
+    }
+
+    /**
+     * Used to remove all DataSets from memory while unloading
+     *
+     * @throws IOException if the storage engine could not be closed
+     */
+    private void clearPool() throws IOException{
+        if(incrementalEngine == null){
+            storedDataSets.set(dataSetPool.size());
+        }else{
+            writePending(); // pending changes would otherwise be lost
+        }
+        dataSetPool.forEach((key, value) -> value.onUnload());
+        dataSetPool.clear();
+        releaseArena();
+        storageEngine.close();
+    }
+
     /**
      * Async call unloadData() from another thread
      *
@@ -576,19 +1115,245 @@ public class DataShard {
      * @param deleteTable if the data should be deleted
      */
     protected void unloadDataAsync(boolean unload, boolean saveToFile, boolean deleteTable){
+        unloadDataAsync(unload, saveToFile, deleteTable, false);
+    }
+
+    /**
+     * Async call unloadData() using the {@link IOScheduler}
+     * <p>
+     * Unloading is executed with a higher priority than saving data which stays loaded. Unloading or saving is only queued once until it has been started
+     *
+     * @param unload      if the data should be removed from the object
+     * @param saveToFile  if the data should be saved to a file
+     * @param deleteTable if the data should be deleted
+     * @param keepWarm if a compressed copy of the data should be kept in memory
+     */
+    protected void unloadDataAsync(boolean unload, boolean saveToFile, boolean deleteTable, boolean keepWarm){
         if(status.get() == 3){
-            Thread t = new Thread(() -> {
+            IOScheduler.Priority priority = (unload || deleteTable) ? IOScheduler.Priority.EVICT : IOScheduler.Priority.SNAPSHOT;
+            String key = (deleteTable) ? null : shardID+":"+priority+":"+unload+":"+saveToFile+":"+keepWarm;
+            IOScheduler.getInstance().submit(key, priority, storageEngine.getStoredBytes(), () -> {
                 try {
-                    unloadData(unload, saveToFile, deleteTable);
+                    unloadData(unload, saveToFile, deleteTable, keepWarm);
                 } catch (DataStorageException e) {
                     e.printStackTrace();
                 }
             });
-            t.setDaemon(true);
-            t.start();
         }
     }
 
+    /**
+     * Used to fill this shard with a set of new DataSets at once
+     * <p>
+     * The data will be written to the storage engine of this shard in one go. Only works on shards which have not been loaded yet and do not contain any data
+     *
+     * @param dataSets the DataSets which should be stored in this shard
+     * @param keepLoaded if the DataSets should be kept in memory
+     * @throws DataStorageException if the shard is not empty or the data could not be written
+     */
+    protected void importDataSets(List<DataSet> dataSets, boolean keepLoaded) throws DataStorageException{
+        boolean lockedBefore = false;
+        try{
+            if(!lock.isWriteLockedByCurrentThread()){
+                lock.writeLock().lock();
+            }else{ lockedBefore = true; }
+            if(status.get() != 0 || !dataSetPool.isEmpty() || storedDataSets.get() != 0){
+                throw new DataStorageException(220, "DataShard: "+dataBase.getIdentifier()+">"+table.getIdentifier()+">"+shardID+": Shard Is Not Empty");
+            }
+            if(dataSets.size() > getMaxDataSetCount()){
+                throw new DataStorageException(220, "DataShard: "+dataBase.getIdentifier()+">"+table.getIdentifier()+">"+shardID+": Shard Is Full");
+            }
+            lastAccess.set(System.currentTimeMillis());
+            WarmShardCache.remove(this);
+            if(incrementalEngine != null){
+                HashMap<String, String> data = new HashMap<>(dataSets.size()*2);
+                dataSets.forEach(dataSet -> data.put(dataSet.getIdentifier(), dataSet.getSerializedData()));
+                incrementalEngine.putAll(data);
+                storageEngine.flush();
+                storedDataSets.set(dataSets.size());
+            }else{
+                replaceStored(dataSets.stream().map(dataSet -> dataSet.getSerializedData()).collect(Collectors.toList()), saveSequence.incrementAndGet());
+            }
+            markModified();
+            if(keepLoaded){
+                HashMap<String, DataSet> map = new HashMap<>(dataSets.size()*2);
+                dataSets.forEach(dataSet -> map.put(dataSet.getIdentifier(), adopt(dataSet)));
+                dataSetPool.putAll(map);
+                status.set(3);
+            }else{
+                storedDataSets.set(dataSets.size());
+                dataSets.forEach(DataSet::onUnload);
+            }
+            logger.debug("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Imported "+dataSets.size()+" DataSets. New Status: "+status.get());
+        }catch (DataStorageException e){
+            throw e;
+        }catch (Exception | Error e){
+            status.set(-1);
+            logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Importing Data Failed. New Status: "+status.get(), e);
+            throw new DataStorageException(102,"DataShard: "+dataBase.getIdentifier()+">"+table.getIdentifier()+">"+shardID+": Importing Data Failed, Data May Be Lost: "+e.getMessage());
+        }finally {
+            if(!lockedBefore){
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /*              WRITE BEHIND              */
+
+    /**
+     * Used to write the pending modifications of this shard if they are due
+     * <p>
+     * Pending modifications are due once no further modification has been made within the write behind window of the table,
+     * or once the oldest of them has been waiting for the max write behind delay. The write is executed using the {@link IOScheduler} and only queued once.
+     */
+    protected void flushWriteBehindAsync(){
+        if(writeBehind.isEmpty() || batching){
+            return;
+        }
+        long now = System.currentTimeMillis();
+        writeBehindFirst.compareAndSet(0, now);
+        if(now-writeBehindLast.get() < table.getWriteBehindWindow() && now-writeBehindFirst.get() < table.getWriteBehindMaxDelay()){
+            return;
+        }
+        IOScheduler.getInstance().submit(shardID+":writeBehind", IOScheduler.Priority.SNAPSHOT, 0, () -> {
+            try{
+                writePending();
+            }catch (IOException e){
+                logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Failed To Store Modified DataSets. Data May Be Lost", e);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of modified DataSets which have not been written yet
+     *
+     * @return int
+     */
+    protected int getPendingWrites(){
+        return writeBehind.size();
+    }
+
+    /**
+     * Returns the number of modifications which did not require a write of their own as they have been merged into a pending write
+     *
+     * @return long
+     */
+    protected long getCoalescedWrites(){
+        return coalescedWrites.get();
+    }
+
+    /**
+     * Returns the number of pending writes which have been written
+     *
+     * @return long
+     */
+    protected long getBufferedWrites(){
+        return bufferedWrites.get();
+    }
+
+    /**
+     * Used to write the current data of all modified DataSets to the incremental storage engine
+     * <p>
+     * The DataSets are written at once. DataSets which have been deleted or removed from the shard in the meantime are skipped
+     *
+     * @throws IOException if the data could not be written, the DataSets stay pending
+     */
+    private void writePending() throws IOException{
+        if(writeBehind.isEmpty()){
+            return;
+        }
+        lock.readLock().lock(); // removing DataSets requires the write lock
+        try{
+            // serialize concurrent writes of this shard so the last write contains the latest data
+            synchronized (writeBehind){
+                writeBehindFirst.set(0);
+                HashMap<String, DataSet> written = new HashMap<>();
+                HashMap<String, String> data = new HashMap<>();
+                for(String identifier : writeBehind.keySet()){
+                    DataSet dataSet = writeBehind.remove(identifier);
+                    if(dataSet == null || dataSetPool.get(identifier) != dataSet){
+                        continue; // not (or no longer) part of this shard
+                    }
+                    data.put(identifier, dataSet.getSerializedData());
+                    written.put(identifier, dataSet);
+                }
+                try{
+                    incrementalEngine.putAll(data);
+                }catch (IOException e){
+                    written.forEach(writeBehind::putIfAbsent);
+                    throw e;
+                }
+                bufferedWrites.addAndGet(written.size());
+                if(!written.isEmpty()){
+                    markModified(); // results computed while the data was pending did not contain it
+                }
+            }
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*              OFF HEAP              */
+
+    /**
+     * Returns the number of bytes allocated outside of the heap for the DataSets of this shard
+     *
+     * @return long
+     */
+    protected long getOffHeapBytes(){
+        return arena.getAllocatedBytes();
+    }
+
+    /**
+     * Used to reclaim the space of replaced documents within the arena of this shard
+     * <p>
+     * The DataSets are copied to a new arena once at least half of the current arena is no longer used, the current arena is released afterwards.
+     * Does nothing if the shard is busy.
+     */
+    protected void compactArena(){
+        OffHeapArena current = arena;
+        if(!table.hasOffHeapDocuments() || current.getFreedBytes() < Math.max(1024*1024, current.getLiveBytes())){
+            return;
+        }
+        if(!lock.writeLock().tryLock()){
+            return; // try again later
+        }
+        try{
+            if(status.get() != 3 || current != arena){
+                return;
+            }
+            OffHeapArena compacted = new OffHeapArena();
+            dataSetPool.values().forEach(dataSet -> dataSet.moveTo(compacted));
+            arena = compacted;
+            current.release();
+            logger.debug("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Compacted Off Heap Data To "+compacted.getAllocatedBytes()+" Bytes");
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Used to move the data of a DataSet belonging to this shard outside of the heap if the table uses off heap documents
+     *
+     * @param dataSet the DataSet
+     * @return the DataSet
+     */
+    private DataSet adopt(DataSet dataSet){
+        if(table.hasOffHeapDocuments()){
+            dataSet.moveTo(arena);
+        }
+        return dataSet;
+    }
+
+    /**
+     * Used to release the arena of this shard once its DataSets have been removed
+     */
+    private void releaseArena(){
+        OffHeapArena released = arena;
+        arena = new OffHeapArena();
+        released.release();
+    }
+
     /*              POOL              */
 
     /**
@@ -600,4 +1365,77 @@ public class DataShard {
         return dataSetPool;
     }
 
+    /**
+     * Used to read all DataSets of a loaded shard into the pool
+     * <p>
+     * Only required for shards using an incremental storage engine, as those only keep accessed DataSets in memory
+     *
+     * @throws DataStorageException if the data could not be read
+     */
+    protected void cacheAllDataSets() throws DataStorageException{
+        if(incrementalEngine == null){
+            return;
+        }
+        try{
+            lock.writeLock().lock();
+            if(status.get() != 3){
+                return;
+            }
+            storageEngine.scan(line -> {
+                try{
+                    JSONObject jsonObject = new JSONObject(line);
+                    String identifier = jsonObject.getString("identifier").toLowerCase();
+                    if(isIndexed(jsonObject, null) && !dataSetPool.containsKey(identifier)){
+                        dataSetPool.put(identifier, adopt(new DataSet(dataBase, table, identifier, jsonObject)));
+                    }
+                }catch (Exception ignore){}
+                return true;
+            });
+        }catch (IOException e){
+            logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Failed To Read DataSets", e);
+            throw new DataStorageException(101, "DataShard: "+dataBase.getIdentifier()+">"+table.getIdentifier()+">"+shardID+": Reading Data Failed: "+e.getMessage());
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Used to remove all DataSets from this shard
+     *
+     * @throws DataStorageException if the data could not be removed from the storage engine
+     */
+    protected void clearDataSets() throws DataStorageException{
+        try{
+            lock.writeLock().lock();
+            writeBehind.clear();
+            dataSetPool.forEach((key, value) -> value.onUnload());
+            dataSetPool.clear();
+            releaseArena();
+            if(incrementalEngine != null){
+                storageEngine.replaceAll(Collections.emptyList());
+                storedDataSets.set(0);
+            }
+            markModified();
+        }catch (IOException e){
+            logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Failed To Remove DataSets", e);
+            throw new DataStorageException(102, "DataShard: "+dataBase.getIdentifier()+">"+table.getIdentifier()+">"+shardID+": Removing Data Failed: "+e.getMessage());
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Partial result of an aggregation together with the identifiers it has been computed for
+     */
+    private static class CachedPartial {
+
+        private final Aggregation.Partial partial;
+        private final Set<String> identifiers; // null if computed for all DataSets, not modified by the table once passed to this shard
+
+        private CachedPartial(Aggregation.Partial partial, Set<String> identifiers){
+            this.partial = partial;
+            this.identifiers = identifiers;
+        }
+    }
+
 }
@@ -16,9 +16,18 @@
 
 package de.netbeacon.jstorage.server.internal.datamanager.objects;
 
+import de.netbeacon.jstorage.server.internal.datamanager.DataManager;
+import de.netbeacon.jstorage.server.tools.document.FieldDictionary;
 import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
+import de.netbeacon.jstorage.server.tools.file.AtomicFile;
 import de.netbeacon.jstorage.server.tools.jsonmatcher.JSONMatcher;
+import de.netbeacon.jstorage.server.tools.jsonmatcher.JSONStructure;
 import de.netbeacon.jstorage.server.tools.meta.UsageStatistics;
+import de.netbeacon.jstorage.server.tools.pagination.KeyPagination;
+import de.netbeacon.jstorage.server.tools.query.Aggregation;
+import de.netbeacon.jstorage.server.tools.query.Query;
+import de.netbeacon.jstorage.server.tools.query.QueryFilter;
+import de.netbeacon.jstorage.server.tools.timing.TimingWheel;
 import org.apache.commons.io.FileUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -33,7 +42,9 @@ import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
 
 import static java.util.stream.Collectors.toMap;
 
@@ -49,16 +60,33 @@ public class DataTable {
     private final DataBase dataBase;
     private final String identifier;
     // data
-    private final ConcurrentHashMap<String, String> indexPool = new ConcurrentHashMap<>();
+    private volatile ConcurrentMap<String, String> indexPool = new CompactIndex(); // DiskIndex if the index is kept on disk
     private final ConcurrentHashMap<String, DataShard> shardPool = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, UsageStatistics> statisticsPool = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SecondaryIndex> secondaryIndexPool = new ConcurrentHashMap<>();
+    private volatile ConcurrentSkipListSet<String> orderedIndex = null; // sorted identifiers, null if disabled
+    private volatile String[] buckets = null; // shard of each hash partition, null if DataSets are located using the index
+    private final ColumnStore columnStore = new ColumnStore();
+    private final ConcurrentHashMap<String, FieldSketch> sketchPool = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Long> expiryPool = new ConcurrentHashMap<>(); // identifier > timestamp after which the DataSet expires
+    private final TimingWheel<String> expiryWheel = new TimingWheel<>(1000);
+    private final Set<String> expiring = ConcurrentHashMap.newKeySet(); // expired DataSets which have not been purged yet
     // settings
     private JSONObject defaultStructure = new JSONObject();
+    private JSONStructure compiledStructure = null;
     private final AtomicBoolean adaptiveLoad = new AtomicBoolean(false);
     private final AtomicBoolean autoOptimization = new AtomicBoolean(false);
     private final AtomicInteger autoResolveDataInconsistency = new AtomicInteger(-1);
     private final AtomicBoolean dataInconsistency = new AtomicBoolean(false);
     private final AtomicBoolean secureInsert = new AtomicBoolean(false);
+    private final AtomicLong defaultTTL = new AtomicLong(0);
+    private volatile StorageEngine.Type storageEngineType = StorageEngine.Type.FILE;
+    private final AtomicBoolean compactDocuments = new AtomicBoolean(false);
+    private final AtomicBoolean offHeapDocuments = new AtomicBoolean(false);
+    private final AtomicLong writeBehindWindow = new AtomicLong(0);
+    private final AtomicLong writeBehindMaxDelay = new AtomicLong(5000);
+    private final FieldDictionary fieldDictionary = new FieldDictionary();
+    private final VersionStore versionStore = VersionStore.getInstance();
     private final UsageStatistics usageStatistic = new UsageStatistics();
     // status
     private final AtomicBoolean ready = new AtomicBoolean(false);
@@ -69,6 +97,8 @@ public class DataTable {
     private Future<?> sESUnloadTask;
     private Future<?> sESSnapshotTask;
     private Future<?> sESBackgroundTask;
+    private Future<?> sESExpiryTask;
+    private Future<?> sESWriteBehindTask;
     // logger
     private final Logger logger = LoggerFactory.getLogger(DataTable.class);
 
@@ -199,6 +229,7 @@ public class DataTable {
             }
         }
         this.defaultStructure = defaultSNorm;
+        this.compiledStructure = null;
     }
 
     /**
@@ -227,11 +258,27 @@ public class DataTable {
      */
     private boolean matchesDefaultStructure(DataSet dataSet){
         if(!defaultStructure.isEmpty()){
-            return JSONMatcher.structureMatch(getDefaultStructure().put("database", "").put("table", "").put("identifier", ""), dataSet.getFullData());
+            return getCompiledStructure().matches(dataSet.getFullData());
         }
         return true;
     }
 
+    /**
+     * Returns the compiled version of the default structure including the default dataset keys
+     * <p>
+     * The structure will be compiled on first use after it has been changed
+     *
+     * @return JSONStructure
+     */
+    private JSONStructure getCompiledStructure(){
+        JSONStructure structure = compiledStructure;
+        if(structure == null){
+            structure = new JSONStructure(getDefaultStructure().put("database", "").put("table", "").put("identifier", ""));
+            compiledStructure = structure;
+        }
+        return structure;
+    }
+
     /**
      * Used to determine if this table requires a specific structure;
      *
@@ -241,6 +288,43 @@ public class DataTable {
         return !defaultStructure.isEmpty();
     }
 
+    /**
+     * Used to enable or disable the ordered index
+     * <p>
+     * The ordered index keeps the identifiers of all DataSets sorted, which allows listing DataSets by prefix or range without looking at all identifiers.
+     * New DataSets will be placed next to their neighbours if possible, so a range of identifiers is spread over less shards
+     *
+     * @param value boolean
+     * @throws DataStorageException if the table is hash partitioned or uses a disk index
+     */
+    public void setOrderedIndex(boolean value) throws DataStorageException{
+        lock.writeLock().lock();
+        try{
+            if(value && buckets != null){
+                throw new DataStorageException(400, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Hash Partitioned Tables Do Not Support An Ordered Index");
+            }
+            if(value && indexPool instanceof DiskIndex){
+                throw new DataStorageException(400, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Tables With A Disk Index Do Not Support An Ordered Index");
+            }
+            if(value && orderedIndex == null){
+                orderedIndex = new ConcurrentSkipListSet<>(indexPool.keySet());
+            }else if(!value){
+                orderedIndex = null;
+            }
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Used to determine if the ordered index is enabled
+     *
+     * @return boolean
+     */
+    public boolean hasOrderedIndex(){
+        return orderedIndex != null;
+    }
+
     /**
      * Used to enable or disable secure insert mode
      * @param value boolean
@@ -276,12 +360,12 @@ public class DataTable {
                 throw new DataStorageException(231, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Object Not Ready");
             }
             identifier = identifier.toLowerCase();
-            if(!indexPool.containsKey(identifier)){
+            // get the value > get the shard
+            String shardID = locate(identifier);
+            if(shardID == null || isExpired(identifier, System.currentTimeMillis())){
                 logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") DataSet "+identifier+" Not Found");
                 throw new DataStorageException(201, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": DataSet "+identifier+" Not Found.");
             }
-            // get the value > get the shard
-            String shardID = indexPool.get(identifier);
             if(!shardPool.containsKey(shardID)){
                 // shard not found but listed in index
                 dataInconsistency.set(true);
@@ -318,156 +402,1971 @@ public class DataTable {
     }
 
     /**
-     * Used to insert a DataSet to the DataTable
+     * Used to insert a DataSet to the DataTable
+     *
+     * @param dataSet The DataSet which should be inserted
+     * @throws DataStorageException on various errors such as an object already existing with the same identifier, loading issues and other
+     */
+    public void insertDataSet(DataSet dataSet) throws DataStorageException{
+        try{
+            lock.writeLock().lock();
+            if(!ready.get()){
+                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Not Ready");
+                throw new DataStorageException(231, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Object Not Ready");
+            }
+            if(dataInconsistency.get()){
+                throw new DataStorageException(300, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Data Inconsistency Needs To Be Resolved Before Inserting New Objects.");
+            }
+            // check if the dataset fits to this
+            if(!(dataBase.getIdentifier().equals(dataSet.getDataBase().getIdentifier()) && identifier.equals(dataSet.getTable().getIdentifier()))){
+                logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") DataSet "+dataSet.getIdentifier()+" Does Not Fit Here");
+                throw new DataStorageException(220, "DataTable: "+dataBase.getIdentifier()+">"+identifier+">: DataSet "+dataSet.getIdentifier()+" ("+dataSet.getDataBase().getIdentifier()+">"+dataSet.getTable().getIdentifier()+") Does Not Fit Here.");
+            }
+            // check if we dont have an object with the current id
+            if(locate(dataSet.getIdentifier()) != null){
+                logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") DataSet "+dataSet.getIdentifier()+" Already Existing");
+                throw new DataStorageException(211, "DataShard: "+dataBase.getIdentifier()+">"+identifier+": DataSet "+dataSet.getIdentifier()+" Already Existing.");
+            }
+            // check if the object matches a specific structure
+            if(hasDefaultStructure() && !matchesDefaultStructure(dataSet)){
+                logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") DataSet "+dataSet.getIdentifier()+" Does Not Match Required Structure");
+                throw new DataStorageException(221, "DataShard: "+dataBase.getIdentifier()+">"+identifier+": DataSet "+dataSet.getIdentifier()+" Does Not Match Required Structure");
+            }
+            // check if the identifier can be stored within the disk index
+            if(indexPool instanceof DiskIndex && !DiskIndex.fits(dataSet.getIdentifier(), String.valueOf(Long.MAX_VALUE))){
+                throw new DataStorageException(241, "DataShard: "+dataBase.getIdentifier()+">"+identifier+": DataSet "+dataSet.getIdentifier()+" Identifier Too Long For Disk Index");
+            }
+            // try to put this object in some shard
+            String validShardID = null;
+            // hash partitioned tables have one shard per partition
+            if(buckets != null){
+                validShardID = getBucketShard(dataSet.getIdentifier(), true).getShardID();
+            }
+            // check if the shard of a neighbouring dataset has enough space to keep ranges together
+            if(validShardID == null && orderedIndex != null){
+                validShardID = getNeighbourShardID(dataSet.getIdentifier());
+            }
+            // check if we have a shard ready which is active & has enough space
+            Optional<Map.Entry<String, DataShard>> o = shardPool.entrySet().stream().filter(e->e.getValue().getStatus() == 3 && e.getValue().getCurrentDataSetCount()<e.getValue().getMaxDataSetCount()).findAny();
+            if(validShardID == null && o.isPresent()){
+                validShardID = o.get().getValue().getShardID();
+            }
+            // if validShardID is still null, check if any would have space at all, ignoring shards loading/unloading
+            if(validShardID == null){
+                o = shardPool.entrySet().stream().filter(e->e.getValue().getStatus() <=0 && e.getValue().getCurrentDataSetCount()<e.getValue().getMaxDataSetCount()).findAny();
+                if(o.isPresent()){
+                    validShardID = o.get().getValue().getShardID();
+                }
+            }
+            // if there is no shard available, just create a new one
+            if(validShardID == null){
+                DataShard dataShard = new DataShard(dataBase, this);
+                shardPool.put(dataShard.getShardID(), dataShard);
+                validShardID = dataShard.getShardID();
+            }
+            // we should have a shardID set here
+            DataShard dataShard = shardPool.get(validShardID);
+            // try to insert, hidden from snapshots opened before
+            long seq = versionStore.begin(dataSet.getVersionKey(), null);
+            try{
+                dataShard.insertDataSet(dataSet);
+            }finally {
+                versionStore.finish(seq);
+            }
+            // write to index
+            if(buckets == null){
+                indexPool.put(dataSet.getIdentifier(), dataShard.getShardID());
+            }
+            if(keepsDataSetStatistics()){
+                statisticsPool.put(dataSet.getIdentifier(), new UsageStatistics());
+            }
+            if(orderedIndex != null){
+                orderedIndex.add(dataSet.getIdentifier());
+            }
+            // update secondary indexes
+            updateSecondaryIndexes(dataSet, null);
+            if(defaultTTL.get() > 0){
+                scheduleExpiry(dataSet.getIdentifier(), defaultTTL.get());
+            }
+            // add statistics
+            usageStatistic.add(UsageStatistics.Usage.insert_success);
+        }catch (DataStorageException e){
+            usageStatistic.add(UsageStatistics.Usage.insert_failure);
+            throw e;
+        }catch (Exception | Error e){
+            logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Unknown Error", e);
+            usageStatistic.add(UsageStatistics.Usage.insert_failure);
+            throw new DataStorageException(0, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Unknown Error: "+e.getMessage());
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Used to delete a DataSet from the DataTable
+     * <p>
+     * Every String type input will be converted to lowercase only to simplify handling.
+     *
+     * @param identifier of the target DataSet
+     * @throws DataStorageException on various errors such as the object not being found, loading issues and other
+     */
+    public void deleteDataSet(String identifier) throws DataStorageException {
+        try{
+            lock.writeLock().lock();
+            if(!ready.get()){
+                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Not Ready");
+                throw new DataStorageException(231, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Object Not Ready");
+            }
+            identifier = identifier.toLowerCase();
+            // get dataShard
+            String shardID = locate(identifier);
+            if(shardID == null){
+                logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") DataSet "+identifier+" Not Found");
+                throw new DataStorageException(201, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": DataSet "+identifier+" Not Found.");
+            }
+            if(!shardPool.containsKey(shardID)){
+                // shard not found but listed in index
+                dataInconsistency.set(true);
+                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Shard "+shardID+" Not Found. Possible Data Inconsistency Detected");
+                throw new DataStorageException(202, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": DataShard "+shardID+" Not Found But Listed In Index. Possible Data Inconsistency.", "Locking DataSet Insert Until Resolved.");
+            }
+            DataShard dataShard = shardPool.get(shardID);
+            // try to delete
+            try{
+                removeDataSet(dataShard, identifier);
+                // check if shard is empty, then we just remove it
+                if(dataShard.getCurrentDataSetCount() == 0){
+                    dataShard.unloadData(false, false, false);
+                    shardPool.remove(dataShard.getShardID());
+                }
+                usageStatistic.add(UsageStatistics.Usage.delete_success);
+            }catch (DataStorageException e){
+                switch(e.getType()){
+                    case 201:
+                        dataInconsistency.set(true);
+                        logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") DataSet "+identifier+" Not Found But Indexed. Possible Data Inconsistency Detected");
+                        throw new DataStorageException(201, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": DataSet "+identifier+" Not Found But Listed In Index. Possible Data Inconsistency.", "Locking DataSet Insert Until Resolved.");
+                    default:
+                        logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") DataSet "+identifier+" Causes An Exception", e);
+                        throw e;
+                }
+            }
+        }catch (DataStorageException e){
+            usageStatistic.add(UsageStatistics.Usage.delete_failure);
+            throw e;
+        }catch (Exception | Error e){
+            logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Unknown Error", e);
+            usageStatistic.add(UsageStatistics.Usage.delete_failure);
+            throw new DataStorageException(0, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Unknown Error: "+e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the data of a DataSet as it was when the snapshot has been opened
+     * <p>
+     * DataSets deleted after the snapshot has been opened are still visible, DataSets inserted afterwards are not.
+     * Every String type input will be converted to lowercase only to simplify handling.
+     *
+     * @param identifier identifier of the DataSet
+     * @param snapshot the snapshot
+     * @return JSONObject containing a serialized copy of the data. See {@link DataSet} for the expected format.
+     * @throws DataStorageException if the DataSet did not exist at this time or could not be loaded
+     */
+    public JSONObject getDataSet(String identifier, VersionStore.Snapshot snapshot) throws DataStorageException{
+        identifier = identifier.toLowerCase();
+        JSONObject data;
+        try{
+            data = getDataSet(identifier).getFullData(snapshot);
+        }catch (DataStorageException e){
+            if(e.getType() != 201){
+                throw e;
+            }
+            // may have been deleted after the snapshot has been opened
+            data = versionStore.read(VersionStore.keyOf(dataBase.getIdentifier(), this.identifier, identifier), snapshot, null);
+            data = (data != null) ? new JSONObject(data.toString()).put("database", dataBase.getIdentifier()).put("table", this.identifier).put("identifier", identifier) : null;
+        }
+        if(data == null){
+            throw new DataStorageException(201, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": DataSet "+identifier+" Not Found.");
+        }
+        return data;
+    }
+
+    /**
+     * Used to remove a DataSet from its shard and from all indexes
+     * <p>
+     * Has to be called while holding the write lock
+     *
+     * @param dataShard the shard containing the DataSet
+     * @param identifier identifier of the DataSet
+     * @throws DataStorageException if the shard failed to delete the DataSet
+     */
+    private void removeDataSet(DataShard dataShard, String identifier) throws DataStorageException{
+        // keep the data for snapshots opened before
+        long seq = versionStore.begin(VersionStore.keyOf(dataBase.getIdentifier(), this.identifier, identifier), () -> {
+            try{
+                return dataShard.getDataSet(identifier).getFullData();
+            }catch (DataStorageException e){
+                return null;
+            }
+        });
+        try{
+            dataShard.deleteDataSet(identifier);
+        }finally {
+            versionStore.finish(seq);
+        }
+        // remove from index
+        indexPool.remove(identifier);
+        if(orderedIndex != null){
+            orderedIndex.remove(identifier);
+        }
+        // remove from secondary indexes
+        for(SecondaryIndex secondaryIndex : secondaryIndexPool.values()){
+            secondaryIndex.remove(identifier);
+        }
+        columnStore.remove(identifier);
+        // remove statistics & expiry
+        statisticsPool.remove(identifier);
+        expiryPool.remove(identifier);
+        expiring.remove(identifier);
+    }
+
+    /**
+     * Used to check if the DataTable contains a specific DataSet
+     * <p>
+     * Every String type input will be converted to lowercase only to simplify handling.
+     *
+     * @param identifier identifier of the DataSet. See {@link DataSet} for further information.
+     * @return boolean boolean
+     */
+    public boolean containsDataSet(String identifier){
+        lock.readLock().lock();
+        try{
+            identifier = identifier.toLowerCase();
+            return locate(identifier) != null && !isExpired(identifier, System.currentTimeMillis());
+        }catch (DataStorageException e){
+            return false;
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Used to list the identifiers of the DataSets within this table page by page
+     * <p>
+     * Identifiers are listed in their natural order, expired DataSets which have not been purged yet are not listed.
+     * Hash partitioned tables list the identifiers of one partition after another, each in their natural order,
+     * so that a page only reads the shards of the partitions it contains.
+     *
+     * @param pagination describing the requested page
+     * @return KeyPagination.Page
+     */
+    public KeyPagination.Page listDataSets(KeyPagination pagination){
+        if(!expiryPool.isEmpty()){
+            long now = System.currentTimeMillis();
+            pagination = pagination.withFilter(identifier -> !isExpired(identifier, now));
+        }
+        ConcurrentSkipListSet<String> ordered = orderedIndex;
+        if(ordered != null){
+            return pagination.page(ordered);
+        }
+        if(buckets != null){
+            return listPartitionedDataSets(pagination);
+        }
+        return pagination.page(indexPool.keySet().iterator());
+    }
+
+    /**
+     * Used to list the identifiers of a hash partitioned table page by page
+     * <p>
+     * The listing continues within the partition of the identifier of the cursor, the shards of the following partitions are only read until the page is full
+     *
+     * @param pagination describing the requested page
+     * @return KeyPagination.Page
+     */
+    private KeyPagination.Page listPartitionedDataSets(KeyPagination pagination){
+        String[] b = buckets;
+        int step = (pagination.isReverse()) ? -1 : 1;
+        int bucket = (pagination.getAfter() != null) ? bucketOf(pagination.getAfter()) : ((pagination.isReverse()) ? b.length-1 : 0);
+        List<String> identifiers = new ArrayList<>();
+        KeyPagination current = pagination;
+        for(; bucket >= 0 && bucket < b.length; bucket += step){
+            DataShard dataShard = (b[bucket] != null) ? shardPool.get(b[bucket]) : null;
+            if(dataShard == null){
+                continue;
+            }
+            if(identifiers.size() >= pagination.getLimit()){
+                return new KeyPagination.Page(identifiers, true); // there may be more within this shard
+            }
+            TreeSet<String> stored;
+            try{
+                stored = getStoredIdentifiers(dataShard);
+            }catch (Exception e){
+                logger.error("Table ( Chain "+dataBase.getIdentifier()+", "+identifier+"; Hash "+hashCode()+") Listing DataSets Of Shard "+dataShard.getShardID()+" Failed", e);
+                continue;
+            }
+            KeyPagination.Page page = current.page(stored);
+            identifiers.addAll(page.getIdentifiers());
+            if(page.hasMore()){
+                return new KeyPagination.Page(identifiers, true);
+            }
+            current = pagination.withoutCursor(pagination.getLimit()-identifiers.size());
+        }
+        return new KeyPagination.Page(identifiers, false);
+    }
+
+    /**
+     * Returns the id of a shard containing a DataSet with a neighbouring identifier which still has space left
+     * <p>
+     * Has to be called while holding the lock
+     *
+     * @param identifier identifier of the new DataSet
+     * @return String or null if there is no such shard
+     */
+    private String getNeighbourShardID(String identifier){
+        for(String neighbour : new String[]{orderedIndex.lower(identifier), orderedIndex.higher(identifier)}){
+            if(neighbour == null){
+                continue;
+            }
+            DataShard dataShard = shardPool.get(indexPool.getOrDefault(neighbour, ""));
+            if(dataShard != null && (dataShard.getStatus() == 3 || dataShard.getStatus() <= 0) && dataShard.getCurrentDataSetCount() < dataShard.getMaxDataSetCount()){
+                return dataShard.getShardID();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the id of the shard containing the DataSet with the given identifier
+     * <p>
+     * Every String type input will be converted to lowercase only to simplify handling.
+     * Returns null if no such DataSet is listed in the index
+     *
+     * @param identifier identifier of the DataSet
+     * @return String
+     */
+    public String getShardIDFor(String identifier){
+        lock.readLock().lock();
+        try{
+            return locate(identifier.toLowerCase());
+        }catch (DataStorageException e){
+            return null;
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Used to execute multiple operations on this table with a single lock acquisition
+     * <p>
+     * Operations are grouped by the shard containing their DataSet and each group is executed while holding the lock of this shard.
+     * The order of operations targeting the same DataSet is preserved.
+     * If atomic is set to true, all changes will be reverted as soon as a single operation fails. Reverted DataSets keep their previous time to live.
+     *
+     * @param operations list of operations which should be executed
+     * @param atomic     if either all or none of the operations should be applied
+     * @return List containing either the JSONObject or the Exception returned by each operation, in the order of the input
+     * @throws DataStorageException if the table is not ready or locked by a data inconsistency
+     */
+    public List<Object> executeBatch(List<BatchOperation> operations, boolean atomic) throws DataStorageException{
+        try{
+            lock.writeLock().lock();
+            if(!ready.get()){
+                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Not Ready");
+                throw new DataStorageException(231, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Object Not Ready");
+            }
+            if(dataInconsistency.get()){
+                throw new DataStorageException(300, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Data Inconsistency Needs To Be Resolved Before Modifying Objects.");
+            }
+            Object[] results = new Object[operations.size()];
+            // group by shard; all operations for the same dataset end up in the same group
+            LinkedHashMap<String, List<Integer>> groups = new LinkedHashMap<>();
+            for(int i = 0; i < operations.size(); i++){
+                String shardID = getShardKey(operations.get(i).getDataSetIdentifier().toLowerCase());
+                groups.computeIfAbsent(shardID, k->new ArrayList<>()).add(i);
+            }
+            // state of each touched dataset before the batch, used for rolling back
+            LinkedHashMap<String, JSONObject> previousState = new LinkedHashMap<>();
+            HashMap<String, Long> previousExpiry = new HashMap<>();
+            AtomicBoolean failed = new AtomicBoolean(false);
+            for(Map.Entry<String, List<Integer>> group : groups.entrySet()){
+                Runnable runnable = ()->{
+                    for(int i : group.getValue()){
+                        if(atomic && failed.get()){
+                            break;
+                        }
+                        BatchOperation operation = operations.get(i);
+                        String dataSetIdentifier = operation.getDataSetIdentifier().toLowerCase();
+                        try{
+                            if(atomic && !previousState.containsKey(dataSetIdentifier)){
+                                previousState.put(dataSetIdentifier, (locate(dataSetIdentifier) != null) ? getDataSet(dataSetIdentifier).getFullData() : null);
+                                previousExpiry.put(dataSetIdentifier, expiryPool.get(dataSetIdentifier));
+                            }
+                            results[i] = operation.execute();
+                        }catch (DataStorageException e){
+                            results[i] = e;
+                            failed.set(true);
+                        }catch (Exception e){
+                            results[i] = new DataStorageException(0, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Unknown Error: "+e.getMessage());
+                            failed.set(true);
+                        }
+                    }
+                };
+                DataShard dataShard = shardPool.get(group.getKey());
+                if(dataShard != null){
+                    dataShard.executeBatch(runnable);
+                }else{
+                    runnable.run();
+                }
+                if(atomic && failed.get()){
+                    break;
+                }
+            }
+            // roll back if required
+            if(atomic && failed.get()){
+                logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Batch Failed, Rolling Back "+previousState.size()+" DataSets");
+                List<String> identifiers = new ArrayList<>(previousState.keySet());
+                Collections.reverse(identifiers);
+                for(String dataSetIdentifier : identifiers){
+                    try{
+                        if(locate(dataSetIdentifier) != null){
+                            deleteDataSet(dataSetIdentifier);
+                        }
+                        JSONObject previous = previousState.get(dataSetIdentifier);
+                        if(previous != null){
+                            insertDataSet(new DataSet(dataBase, this, dataSetIdentifier, previous));
+                            restoreExpiry(dataSetIdentifier, previousExpiry.get(dataSetIdentifier));
+                        }
+                    }catch (DataStorageException e){
+                        logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Failed To Roll Back DataSet "+dataSetIdentifier+". Data May Be Lost", e);
+                    }
+                }
+                for(int i = 0; i < results.length; i++){
+                    if(!(results[i] instanceof Exception)){
+                        results[i] = new DataStorageException(400, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Operation Rolled Back Due To Another Operation Failing.");
+                    }
+                }
+            }
+            return Arrays.asList(results);
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Used to insert a large number of new DataSets at once
+     * <p>
+     * Each DataSet is checked against the default structure of this table. Invalid DataSets or DataSets with an already existing identifier are skipped.
+     * The DataSets are read and checked without locking the table and placed into new shards which are filled one after another,
+     * the table is only locked while a full shard is added. The index will be written once all DataSets have been processed.
+     *
+     * @param source providing the data of each DataSet, null objects are counted as invalid
+     * @param keepLoaded if the new shards should keep their data in memory
+     * @return JSONObject containing the number of imported & skipped DataSets and created shards
+     * @throws DataStorageException on various errors such as the table not being ready or a shard failing to write its data
+     */
+    public JSONObject importDataSets(Iterator<JSONObject> source, boolean keepLoaded) throws DataStorageException{
+        try{
+            checkImportable();
+            logger.info("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Importing DataSets");
+            int maxDataSets = DataShard.getMaxDataSetCountStatic();
+            int shardSize = (maxDataSets > 0) ? maxDataSets : 10000; // unlimited shards still get written in parts
+            HashSet<String> imported = new HashSet<>();
+            List<DataSet> buffer = new ArrayList<>(shardSize);
+            long skipped = 0;
+            long existing = 0; // only known once the table is locked
+            int shards = 0;
+            while(source.hasNext()){
+                JSONObject jsonObject = source.next();
+                try{
+                    if(jsonObject == null || !jsonObject.has("identifier")){
+                        skipped++;
+                        continue;
+                    }
+                    String id = jsonObject.getString("identifier").toLowerCase();
+                    if(id.isBlank() || imported.contains(id) || (indexPool instanceof DiskIndex && !DiskIndex.fits(id, String.valueOf(Long.MAX_VALUE)))){
+                        skipped++;
+                        continue;
+                    }
+                    jsonObject.put("database", dataBase.getIdentifier()).put("table", identifier).put("identifier", id);
+                    if(hasDefaultStructure() && !getCompiledStructure().matches(jsonObject)){
+                        skipped++;
+                        continue;
+                    }
+                    buffer.add(new DataSet(dataBase, this, id, jsonObject));
+                    imported.add(id);
+                }catch (Exception e){
+                    skipped++;
+                    continue;
+                }
+                if(buffer.size() >= shardSize){
+                    existing += importBatch(buffer, keepLoaded);
+                    buffer = new ArrayList<>(shardSize);
+                    shards++;
+                }
+            }
+            if(!buffer.isEmpty()){
+                existing += importBatch(buffer, keepLoaded);
+                shards++;
+            }
+            // persist index once
+            lock.writeLock().lock();
+            try{
+                writeIndex();
+            }finally {
+                lock.writeLock().unlock();
+            }
+            long count = imported.size() - existing;
+            skipped += existing;
+            logger.info("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Imported "+count+" DataSets Into "+shards+" Shards, Skipped "+skipped);
+            return new JSONObject().put("imported", count).put("skipped", skipped).put("shards", shards);
+        }catch (DataStorageException e){
+            usageStatistic.add(UsageStatistics.Usage.insert_failure);
+            throw e;
+        }catch (Exception | Error e){
+            logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Unknown Error", e);
+            usageStatistic.add(UsageStatistics.Usage.insert_failure);
+            throw new DataStorageException(0, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Unknown Error: "+e.getMessage());
+        }
+    }
+
+    /**
+     * Used to check whether DataSets can be imported into this table
+     *
+     * @throws DataStorageException if the table is not ready or contains inconsistent data
+     */
+    private void checkImportable() throws DataStorageException{
+        if(!ready.get()){
+            logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Not Ready");
+            throw new DataStorageException(231, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Object Not Ready");
+        }
+        if(dataInconsistency.get()){
+            throw new DataStorageException(300, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Data Inconsistency Needs To Be Resolved Before Inserting New Objects.");
+        }
+    }
+
+    /**
+     * Used to add a set of imported DataSets to this table while holding its lock
+     * <p>
+     * DataSets whose identifier has been used in the meantime are skipped
+     *
+     * @param dataSets the DataSets
+     * @param keepLoaded if the shard should keep its data in memory
+     * @return number of DataSets which have not been stored as they already exist
+     * @throws DataStorageException if the table is no longer ready or the shard could not store the data
+     */
+    private int importBatch(List<DataSet> dataSets, boolean keepLoaded) throws DataStorageException{
+        lock.writeLock().lock();
+        try{
+            checkImportable();
+            int existing = 0;
+            if(buckets == null){
+                List<DataSet> fresh = new ArrayList<>(dataSets.size());
+                for(DataSet dataSet : dataSets){
+                    if(indexPool.containsKey(dataSet.getIdentifier())){
+                        existing++;
+                    }else{
+                        fresh.add(dataSet);
+                    }
+                }
+                if(fresh.isEmpty()){
+                    return existing;
+                }
+                dataSets = fresh;
+            }
+            return existing + flushImport(dataSets, keepLoaded);
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Used to store a set of imported DataSets within a new shard
+     *
+     * @param dataSets the DataSets
+     * @param keepLoaded if the shard should keep its data in memory
+     * @return number of DataSets which have not been stored as they already exist
+     * @throws DataStorageException if the shard could not store the data
+     */
+    private int flushImport(List<DataSet> dataSets, boolean keepLoaded) throws DataStorageException{
+        if(buckets != null){
+            return flushHashPartitionedImport(dataSets, keepLoaded);
+        }
+        DataShard dataShard = new DataShard(dataBase, this);
+        long[] seqs = new long[dataSets.size()];
+        for(int i = 0; i < seqs.length; i++){
+            seqs[i] = versionStore.begin(dataSets.get(i).getVersionKey(), null);
+        }
+        try{
+            dataShard.importDataSets(dataSets, keepLoaded);
+        }finally {
+            for(long seq : seqs){
+                versionStore.finish(seq);
+            }
+        }
+        shardPool.put(dataShard.getShardID(), dataShard);
+        for(DataSet dataSet : dataSets){
+            indexPool.put(dataSet.getIdentifier(), dataShard.getShardID());
+            if(keepsDataSetStatistics()){
+                statisticsPool.put(dataSet.getIdentifier(), new UsageStatistics());
+            }
+            updateSecondaryIndexes(dataSet, null);
+            if(orderedIndex != null){
+                orderedIndex.add(dataSet.getIdentifier());
+            }
+            if(defaultTTL.get() > 0){
+                scheduleExpiry(dataSet.getIdentifier(), defaultTTL.get());
+            }
+        }
+        usageStatistic.add(UsageStatistics.Usage.insert_success); // once per shard, as each entry schedules its own expiry task
+        return 0;
+    }
+
+    /**
+     * Used to store a set of imported DataSets within the shards of their hash partitions
+     * <p>
+     * Each shard is loaded once per set. DataSets which already exist are skipped
+     *
+     * @param dataSets the DataSets
+     * @param keepLoaded if the shards should keep their data in memory
+     * @return number of DataSets which already existed
+     * @throws DataStorageException if a shard could not store the data
+     */
+    private int flushHashPartitionedImport(List<DataSet> dataSets, boolean keepLoaded) throws DataStorageException{
+        AtomicInteger existing = new AtomicInteger();
+        HashMap<DataShard, List<DataSet>> partitions = new HashMap<>();
+        for(DataSet dataSet : dataSets){
+            partitions.computeIfAbsent(getBucketShard(dataSet.getIdentifier(), true), k->new ArrayList<>()).add(dataSet);
+        }
+        for(Map.Entry<DataShard, List<DataSet>> partition : partitions.entrySet()){
+            DataShard dataShard = partition.getKey();
+            dataShard.executeBatch(() -> {
+                for(DataSet dataSet : partition.getValue()){
+                    long seq = versionStore.begin(dataSet.getVersionKey(), null);
+                    try{
+                        dataShard.insertDataSet(dataSet);
+                    }catch (DataStorageException e){
+                        existing.incrementAndGet();
+                        continue;
+                    }finally {
+                        versionStore.finish(seq);
+                    }
+                    updateSecondaryIndexes(dataSet, null);
+                    if(defaultTTL.get() > 0){
+                        scheduleExpiry(dataSet.getIdentifier(), defaultTTL.get());
+                    }
+                }
+            });
+            if(!keepLoaded){
+                dataShard.unloadData(true, true, false);
+            }
+        }
+        usageStatistic.add(UsageStatistics.Usage.insert_success);
+        return existing.get();
+    }
+
+    /**
+     * Used to export the data of all DataSets within this table, one shard at a time
+     * <p>
+     * Shards which are not loaded will be read from their file without being loaded, so exporting does not change which data is kept in memory.
+     * The table is only locked while collecting the index, DataSets inserted afterwards are not exported.
+     *
+     * @param target receiving one serialized DataSet at a time
+     * @param raw if shard files may be exported as they are; only used if the database is not encrypted
+     * @throws DataStorageException on various errors such as the table not being ready or a shard failing to read its data
+     */
+    public void exportDataSets(ExportTarget target, boolean raw) throws DataStorageException{
+        HashMap<DataShard, Set<String>> shardIndex;
+        try{
+            lock.readLock().lock();
+            if(!ready.get()){
+                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Not Ready");
+                throw new DataStorageException(231, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Object Not Ready");
+            }
+            // group the index by shard in one pass
+            shardIndex = getShardIndex();
+        }finally {
+            lock.readLock().unlock();
+        }
+        for(Map.Entry<DataShard, Set<String>> entry : shardIndex.entrySet()){
+            for(String line : entry.getKey().exportData(entry.getValue(), raw)){
+                try{
+                    target.accept(line);
+                }catch (Exception e){
+                    logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Export Aborted By Target", e);
+                    throw new DataStorageException(0, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Export Aborted: "+e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Used to select DataSets matching the given query
+     * <p>
+     * Shards are scanned in parallel using the processing pool of the DataManager. Shards which are not loaded will be read from their file without being loaded.
+     * If the filter contains a condition on a field covered by a secondary index, only the DataSets selected by this index will be checked.
+     * Matches of unordered queries are passed to the target as soon as their shard has been scanned, ordered queries pass all matches at the end.
+     * The table is only locked while collecting the index, DataSets inserted afterwards are not selected.
+     *
+     * @param query the query
+     * @param target receiving one serialized (and projected) DataSet at a time
+     * @throws DataStorageException on various errors such as the table not being ready or a shard failing to read its data
+     */
+    public void queryDataSets(Query query, ExportTarget target) throws DataStorageException{
+        HashMap<DataShard, Set<String>> shardIndex = getShardIndexFor(query.getFilter());
+        Comparator<JSONObject> comparator = query.getComparator();
+        int limit = query.getLimit();
+        PriorityQueue<JSONObject> heap = (comparator != null) ? new PriorityQueue<>(limit+1, comparator.reversed()) : null;
+        ForkJoinPool pool = DataManager.getInstance().getProcessingPool();
+        int window = Math.max(pool.getParallelism()*2, 2); // limit the number of scanned shards held in memory
+        Iterator<Map.Entry<DataShard, Set<String>>> iterator = shardIndex.entrySet().iterator();
+        Deque<Future<List<JSONObject>>> running = new ArrayDeque<>();
+        int sent = 0;
+        try{
+            while(iterator.hasNext() && running.size() < window){
+                Map.Entry<DataShard, Set<String>> entry = iterator.next();
+                running.add(pool.submit(() -> entry.getKey().scanData(entry.getValue(), query)));
+            }
+            while(!running.isEmpty()){
+                List<JSONObject> matches = running.poll().get();
+                if(iterator.hasNext()){
+                    Map.Entry<DataShard, Set<String>> entry = iterator.next();
+                    running.add(pool.submit(() -> entry.getKey().scanData(entry.getValue(), query)));
+                }
+                if(heap != null){
+                    // keep the best matches of all shards
+                    for(JSONObject match : matches){
+                        heap.add(match);
+                        if(heap.size() > limit){
+                            heap.poll();
+                        }
+                    }
+                    continue;
+                }
+                for(JSONObject match : matches){
+                    if(limit >= 0 && sent >= limit){
+                        break;
+                    }
+                    target.accept(query.project(match).toString());
+                    sent++;
+                }
+                if(limit >= 0 && sent >= limit){
+                    break;
+                }
+            }
+            if(heap != null){
+                List<JSONObject> matches = new ArrayList<>(heap);
+                matches.sort(comparator);
+                for(JSONObject match : matches){
+                    target.accept(query.project(match).toString());
+                }
+            }
+            usageStatistic.add(UsageStatistics.Usage.get_success);
+        }catch (ExecutionException e){
+            usageStatistic.add(UsageStatistics.Usage.get_failure);
+            if(e.getCause() instanceof DataStorageException){
+                throw (DataStorageException) e.getCause();
+            }
+            logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Unknown Error", e);
+            throw new DataStorageException(0, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Unknown Error: "+e.getMessage());
+        }catch (Exception e){
+            usageStatistic.add(UsageStatistics.Usage.get_failure);
+            logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Query Aborted By Target", e);
+            throw new DataStorageException(0, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Query Aborted: "+e.getMessage());
+        }finally {
+            // stop scanning shards which are no longer needed
+            running.forEach(f -> f.cancel(false));
+        }
+    }
+
+    /**
+     * Used to compute aggregates over the DataSets of this table
+     * <p>
+     * Partial results are computed per shard in parallel using the processing pool of the DataManager and merged afterwards.
+     * Partial results of shards which have not changed since the last equal aggregation are taken from their cache.
+     * Shards which are not loaded will be read from their file without being loaded. Secondary indexes are used like for queries.
+     * Aggregations without groups on fields covered by column projections, filtered by these fields only, are computed from the columns without reading any shard.
+     *
+     * @param aggregation the aggregation
+     * @return JSONObject containing the result of each group
+     * @throws DataStorageException on various errors such as the table not being ready or a shard failing to read its data
+     */
+    public JSONObject aggregateDataSets(Aggregation aggregation) throws DataStorageException{
+        // try to compute the result from the column projections only
+        try{
+            lock.readLock().lock();
+            if(ready.get()){
+                Set<String> usable = columnStore.getUsablePaths();
+                if(!usable.isEmpty() && aggregation.isColumnar(usable)){
+                    JSONObject result = columnStore.aggregate(aggregation, (expiryPool.isEmpty()) ? Collections.emptySet() : collectExpiredDataSets());
+                    if(result != null){
+                        usageStatistic.add(UsageStatistics.Usage.get_success);
+                        return result.put("shards", 0);
+                    }
+                }
+            }
+        }finally {
+            lock.readLock().unlock();
+        }
+        HashMap<DataShard, Set<String>> shardIndex = getShardIndexFor(aggregation.getFilter());
+        ForkJoinPool pool = DataManager.getInstance().getProcessingPool();
+        List<Future<Aggregation.Partial>> futures = new ArrayList<>(shardIndex.size());
+        try{
+            shardIndex.forEach((key, value) -> futures.add(pool.submit(() -> key.aggregateData(value, aggregation))));
+            Aggregation.Partial result = aggregation.newPartial();
+            for(Future<Aggregation.Partial> future : futures){
+                result.merge(future.get());
+            }
+            usageStatistic.add(UsageStatistics.Usage.get_success);
+            return result.toJSON().put("shards", shardIndex.size());
+        }catch (ExecutionException e){
+            usageStatistic.add(UsageStatistics.Usage.get_failure);
+            if(e.getCause() instanceof DataStorageException){
+                throw (DataStorageException) e.getCause();
+            }
+            logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Unknown Error", e);
+            throw new DataStorageException(0, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Unknown Error: "+e.getMessage());
+        }catch (Exception e){
+            usageStatistic.add(UsageStatistics.Usage.get_failure);
+            logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Unknown Error", e);
+            throw new DataStorageException(0, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Unknown Error: "+e.getMessage());
+        }finally {
+            futures.forEach(f -> f.cancel(false));
+        }
+    }
+
+    /**
+     * Returns the identifiers of the DataSets which may match the given filter grouped by their shard
+     * <p>
+     * If the filter contains a condition on a field covered by a secondary index, only the DataSets selected by this index will be returned.
+     * Else if the filter can be evaluated using the column projections, only the matching DataSets will be returned
+     *
+     * @param filter the filter, may be null
+     * @return HashMap
+     * @throws DataStorageException if the table is not ready
+     */
+    private HashMap<DataShard, Set<String>> getShardIndexFor(QueryFilter filter) throws DataStorageException{
+        try{
+            lock.readLock().lock();
+            if(!ready.get()){
+                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Not Ready");
+                throw new DataStorageException(231, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Object Not Ready");
+            }
+            // try to narrow down the DataSets using a secondary index
+            QueryFilter.Condition condition = (filter != null && !secondaryIndexPool.isEmpty()) ? filter.getIndexCondition(secondaryIndexPool.keySet()) : null;
+            if(condition == null){
+                // try to select the DataSets using the column projections
+                BitSet selection = (filter != null && !columnStore.getUsablePaths().isEmpty()) ? filter.select(columnStore) : null;
+                return (selection != null) ? getShardIndex(columnStore.getIdentifiers(selection)) : getShardIndex();
+            }
+            SecondaryIndex secondaryIndex = secondaryIndexPool.get(condition.getPath());
+            List<String> candidates;
+            switch(condition.getOp()){
+                case "eq":
+                    candidates = secondaryIndex.lookup(condition.getValue(), Integer.MAX_VALUE);
+                    break;
+                case "gt":
+                case "gte":
+                    candidates = secondaryIndex.lookupRange(condition.getValue(), null, Integer.MAX_VALUE);
+                    break;
+                default:
+                    candidates = secondaryIndex.lookupRange(null, condition.getValue(), Integer.MAX_VALUE);
+                    break;
+            }
+            return getShardIndex(candidates);
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*                  SECONDARY INDEX                   */
+
+    /**
+     * Used to add a secondary index for the field at the given path
+     * <p>
+     * The path is a json pointer starting with the datatype (/datatype/path/to/field).
+     * The index will be built from the existing DataSets without locking the table for the whole time; shards which are not loaded stay unloaded.
+     *
+     * @param path json pointer to the field
+     * @throws DataStorageException if the path is invalid, already indexed or the table is not ready
+     */
+    public void addSecondaryIndex(String path) throws DataStorageException{
+        SecondaryIndex secondaryIndex;
+        HashMap<DataShard, Set<String>> shardIndex;
+        try{
+            lock.writeLock().lock();
+            if(!ready.get()){
+                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Not Ready");
+                throw new DataStorageException(231, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Object Not Ready");
+            }
+            try{
+                secondaryIndex = new SecondaryIndex(path);
+            }catch (IllegalArgumentException e){
+                throw new DataStorageException(241, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Invalid Path For Secondary Index "+path+": "+e.getMessage());
+            }
+            if(secondaryIndexPool.containsKey(secondaryIndex.getPath())){
+                throw new DataStorageException(217, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Secondary Index "+secondaryIndex.getPath()+" Already Existing.");
+            }
+            // modifications from now on will be tracked by the index
+            secondaryIndex.startBuilding();
+            secondaryIndexPool.put(secondaryIndex.getPath(), secondaryIndex);
+            shardIndex = getShardIndex();
+        }finally {
+            lock.writeLock().unlock();
+        }
+        logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Building Secondary Index "+secondaryIndex.getPath());
+        buildSecondaryIndexes(Collections.singletonList(secondaryIndex), false, shardIndex);
+    }
+
+    /**
+     * Used to remove the secondary index for the given path
+     *
+     * @param path json pointer to the field
+     * @throws DataStorageException if there is no index for this path
+     */
+    public void removeSecondaryIndex(String path) throws DataStorageException{
+        SecondaryIndex secondaryIndex = secondaryIndexPool.remove(normalizeIndexPath(path));
+        if(secondaryIndex == null){
+            throw new DataStorageException(207, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Secondary Index "+path+" Not Found.");
+        }
+        secondaryIndex.clear();
+    }
+
+    /**
+     * Returns the secondary index for the given path
+     *
+     * @param path json pointer to the field
+     * @return SecondaryIndex
+     * @throws DataStorageException if there is no index for this path
+     */
+    public SecondaryIndex getSecondaryIndex(String path) throws DataStorageException{
+        SecondaryIndex secondaryIndex = secondaryIndexPool.get(normalizeIndexPath(path));
+        if(secondaryIndex == null){
+            throw new DataStorageException(207, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Secondary Index "+path+" Not Found.");
+        }
+        return secondaryIndex;
+    }
+
+    /**
+     * Used to bring a path to the format used by secondary indexes
+     *
+     * @param path json pointer to the field
+     * @return String
+     * @throws DataStorageException if the path is invalid
+     */
+    private String normalizeIndexPath(String path) throws DataStorageException{
+        try{
+            return SecondaryIndex.normalizePath(path);
+        }catch (IllegalArgumentException e){
+            throw new DataStorageException(241, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Invalid Path For Secondary Index "+path+": "+e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the paths of all secondary indexes of this table
+     *
+     * @return Set of paths
+     */
+    public Set<String> getSecondaryIndexPaths(){
+        return new TreeSet<>(secondaryIndexPool.keySet());
+    }
+
+    /**
+     * Should be called by DataSets of this table after one of their datatypes has been modified
+     *
+     * @param dataSet the modified DataSet
+     * @param dataType the modified datatype
+     */
+    protected void onDataSetModified(DataSet dataSet, String dataType){
+        DataShard dataShard = shardPool.get(getShardKey(dataSet.getIdentifier()));
+        if(buckets != null && (dataShard == null || !dataShard.containsDataSet(dataSet.getIdentifier()))){
+            return; // not part of this table (yet)
+        }
+        if(buckets == null && !indexPool.containsKey(dataSet.getIdentifier())){
+            return; // not part of this table (yet)
+        }
+        if(dataShard != null){
+            dataShard.onDataSetModified(dataSet);
+        }
+        updateSecondaryIndexes(dataSet, dataType);
+    }
+
+    /**
+     * Used to update the secondary indexes and column projections with the current values of a DataSet
+     *
+     * @param dataSet the DataSet
+     * @param dataType only indexes on this datatype will be updated, null for all
+     */
+    private void updateSecondaryIndexes(DataSet dataSet, String dataType){
+        for(SecondaryIndex secondaryIndex : secondaryIndexPool.values()){
+            if(dataType == null || dataType.equals(secondaryIndex.getDataType())){
+                secondaryIndex.update(dataSet.getIdentifier(), dataSet.query(secondaryIndex.getPointer()));
+            }
+        }
+        columnStore.update(dataSet.getIdentifier(), dataSet::query, dataType);
+        updateSketches(dataSet, dataType);
+    }
+
+    /**
+     * Used to add the current values of a DataSet to the sketches
+     *
+     * @param dataSet the DataSet
+     * @param dataType only sketches on this datatype will be updated, null for all
+     */
+    private void updateSketches(DataSet dataSet, String dataType){
+        for(FieldSketch fieldSketch : sketchPool.values()){
+            if(dataType == null || dataType.equals(fieldSketch.getDataType())){
+                fieldSketch.add(dataSet.query(fieldSketch.getPointer()));
+            }
+        }
+    }
+
+    /**
+     * Returns the identifiers of all DataSets grouped by their shard
+     * <p>
+     * Has to be called while holding the lock. Expired DataSets are ignored.
+     * Hash partitioned tables do not know the identifiers of their DataSets, each shard is mapped to null (all DataSets) instead.
+     * Only shards containing expired DataSets which have not been purged yet are read to list their remaining DataSets.
+     *
+     * @return HashMap
+     */
+    private HashMap<DataShard, Set<String>> getShardIndex(){
+        HashMap<DataShard, Set<String>> shardIndex = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        if(buckets != null){
+            HashMap<DataShard, Set<String>> expired = new HashMap<>();
+            expiryPool.keySet().forEach(key -> {
+                DataShard dataShard = shardPool.get(getShardKey(key));
+                if(dataShard != null && isHiddenByExpiry(dataShard, key, now)){
+                    expired.computeIfAbsent(dataShard, k->new HashSet<>()).add(key);
+                }
+            });
+            for(DataShard dataShard : shardPool.values()){
+                Set<String> excluded = expired.get(dataShard);
+                if(excluded == null){
+                    shardIndex.put(dataShard, null);
+                    continue;
+                }
+                try{
+                    Set<String> identifiers = getStoredIdentifiers(dataShard);
+                    identifiers.removeAll(excluded);
+                    shardIndex.put(dataShard, identifiers);
+                }catch (DataStorageException e){
+                    logger.error("Table ( Chain "+dataBase.getIdentifier()+", "+identifier+"; Hash "+hashCode()+") Listing DataSets Of Shard "+dataShard.getShardID()+" Failed, Skipping It", e);
+                }
+            }
+            return shardIndex;
+        }
+        indexPool.forEach((key, value) -> {
+            DataShard dataShard = shardPool.get(value);
+            if(dataShard != null && !isHiddenByExpiry(dataShard, key, now)){
+                shardIndex.computeIfAbsent(dataShard, k->new HashSet<>()).add(key);
+            }
+        });
+        return shardIndex;
+    }
+
+    /**
+     * Returns the identifiers of all DataSets stored within a shard
+     *
+     * @param dataShard the shard
+     * @return TreeSet
+     * @throws DataStorageException if the shard could not be read
+     */
+    private TreeSet<String> getStoredIdentifiers(DataShard dataShard) throws DataStorageException{
+        TreeSet<String> stored = new TreeSet<>();
+        for(String line : dataShard.exportData(null, false)){
+            stored.add(new JSONObject(line).getString("identifier").toLowerCase());
+        }
+        return stored;
+    }
+
+    /**
+     * Returns the given identifiers grouped by their shard
+     * <p>
+     * Has to be called while holding the lock. Identifiers which are not listed in the index or expired are ignored
+     *
+     * @param identifiers identifiers of DataSets
+     * @return HashMap
+     */
+    private HashMap<DataShard, Set<String>> getShardIndex(Collection<String> identifiers){
+        HashMap<DataShard, Set<String>> shardIndex = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        for(String key : identifiers){
+            DataShard dataShard = shardPool.get(getShardKey(key));
+            if(dataShard != null && !isHiddenByExpiry(dataShard, key, now)){
+                shardIndex.computeIfAbsent(dataShard, k->new HashSet<>()).add(key);
+            }
+        }
+        return shardIndex;
+    }
+
+    /**
+     * Used to build secondary indexes and column projections from the data of all shards, one shard at a time
+     * <p>
+     * The indexes have to be marked as building before the shard index has been collected
+     *
+     * @param secondaryIndexes the indexes which should be built
+     * @param columns whether the column projections marked as building should be built
+     * @param shardIndex identifiers of all DataSets grouped by their shard
+     */
+    private void buildSecondaryIndexes(Collection<SecondaryIndex> secondaryIndexes, boolean columns, HashMap<DataShard, Set<String>> shardIndex){
+        try{
+            forEachStoredDataSet(shardIndex, (dataSetIdentifier, jsonObject) -> {
+                for(SecondaryIndex secondaryIndex : secondaryIndexes){
+                    secondaryIndex.build(dataSetIdentifier, jsonObject.optQuery(secondaryIndex.getPointer()));
+                }
+                if(columns){
+                    columnStore.build(dataSetIdentifier, jsonObject::optQuery);
+                }
+            });
+        }catch (DataStorageException e){
+            logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Building Secondary Indexes Failed. Lookups May Be Incomplete", e);
+        }finally {
+            for(SecondaryIndex secondaryIndex : secondaryIndexes){
+                secondaryIndex.finishBuilding();
+            }
+            if(columns){
+                columnStore.finishBuilding();
+            }
+        }
+    }
+
+    /**
+     * Used to read the current data of all given DataSets, one shard at a time and without loading the shards
+     *
+     * @param shardIndex identifiers of the DataSets grouped by their shard
+     * @param consumer receiving the identifier and data of each DataSet
+     * @throws DataStorageException if a shard could not be read
+     */
+    private void forEachStoredDataSet(HashMap<DataShard, Set<String>> shardIndex, BiConsumer<String, JSONObject> consumer) throws DataStorageException{
+        for(Map.Entry<DataShard, Set<String>> entry : shardIndex.entrySet()){
+            for(String line : entry.getKey().exportData(entry.getValue(), false)){
+                try{
+                    JSONObject jsonObject = new JSONObject(line);
+                    consumer.accept(jsonObject.getString("identifier").toLowerCase(), jsonObject);
+                }catch (Exception e){
+                    logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Skipping Invalid DataSet", e);
+                }
+            }
+        }
+    }
+
+    /*                  EXPIRY                   */
+
+    /**
+     * Used to set the time to live of a DataSet
+     * <p>
+     * Expired DataSets are invisible to reads and will be deleted in the background, one batch per shard.
+     * Every String type input will be converted to lowercase only to simplify handling.
+     *
+     * @param identifier identifier of the DataSet
+     * @param seconds time to live in seconds, 0 or less to keep the DataSet forever
+     * @throws DataStorageException if the table is not ready or the DataSet does not exist
+     */
+    public void setDataSetTTL(String identifier, long seconds) throws DataStorageException{
+        try{
+            lock.readLock().lock();
+            if(!ready.get()){
+                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Not Ready");
+                throw new DataStorageException(231, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Object Not Ready");
+            }
+            identifier = identifier.toLowerCase();
+            if(locate(identifier) == null || isExpired(identifier, System.currentTimeMillis())){
+                throw new DataStorageException(201, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": DataSet "+identifier+" Not Found.");
+            }
+            if(seconds > 0){
+                scheduleExpiry(identifier, seconds);
+            }else{
+                expiryPool.remove(identifier);
+            }
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the timestamp after which the DataSet expires
+     *
+     * @param identifier identifier of the DataSet
+     * @return long, -1 if the DataSet does not expire
+     */
+    public long getDataSetExpiry(String identifier){
+        return expiryPool.getOrDefault(identifier.toLowerCase(), -1L);
+    }
+
+    /**
+     * Used to set the time to live for new DataSets
+     *
+     * @param seconds time to live in seconds, 0 or less to disable
+     */
+    public void setDefaultTTL(long seconds){
+        defaultTTL.set(Math.max(seconds, 0));
+    }
+
+    /**
+     * Returns the time to live for new DataSets
+     *
+     * @return long, seconds, 0 if disabled
+     */
+    public long getDefaultTTL(){
+        return defaultTTL.get();
+    }
+
+    /**
+     * Used to set the expiry of a DataSet
+     *
+     * @param identifier identifier of the DataSet
+     * @param seconds time to live in seconds
+     */
+    private void scheduleExpiry(String identifier, long seconds){
+        long deadline = System.currentTimeMillis()+seconds*1000;
+        expiryPool.put(identifier, deadline);
+        expiryWheel.schedule(identifier, deadline);
+    }
+
+    /**
+     * Used to restore a previously read expiry of a DataSet
+     *
+     * @param identifier identifier of the DataSet
+     * @param deadline timestamp after which the DataSet expires, null if it should not expire
+     */
+    private void restoreExpiry(String identifier, Long deadline){
+        if(deadline == null){
+            expiryPool.remove(identifier);
+            return;
+        }
+        expiryPool.put(identifier, deadline);
+        expiryWheel.schedule(identifier, deadline);
+    }
+
+    /**
+     * Checks whether the DataSet has expired
+     *
+     * @param identifier identifier of the DataSet
+     * @param now current timestamp
+     * @return boolean
+     */
+    private boolean isExpired(String identifier, long now){
+        Long deadline = expiryPool.get(identifier);
+        return deadline != null && deadline <= now;
+    }
+
+    /**
+     * Checks whether the DataSet has expired, invalidating cached results of its shard if so
+     *
+     * @param dataShard the shard containing the DataSet
+     * @param identifier identifier of the DataSet
+     * @param now current timestamp
+     * @return boolean
+     */
+    private boolean isHiddenByExpiry(DataShard dataShard, String identifier, long now){
+        if(isExpired(identifier, now)){
+            dataShard.markModified();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the expired DataSets which have not been purged yet
+     * <p>
+     * Advances the expiry wheel, so this only looks at DataSets which expired since the last call
+     *
+     * @return Set of identifiers
+     */
+    private Set<String> collectExpiredDataSets(){
+        long now = System.currentTimeMillis();
+        for(TimingWheel.Entry<String> entry : expiryWheel.advance(now)){
+            // the expiry may have been changed or removed since this entry has been scheduled
+            Long deadline = expiryPool.get(entry.getKey());
+            if(deadline != null && deadline == entry.getDeadline()){
+                expiring.add(entry.getKey());
+            }
+        }
+        Set<String> expired = new HashSet<>();
+        for(String identifier : expiring){
+            if(isExpired(identifier, now)){
+                expired.add(identifier);
+            }else{
+                expiring.remove(identifier);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Used to delete all expired DataSets
+     * <p>
+     * DataSets are deleted one shard at a time, locking the table once per shard
+     */
+    private void purgeExpiredDataSets(){
+        try{
+            if(!ready.get() || expiryPool.isEmpty()){
+                return;
+            }
+            Set<String> expired = collectExpiredDataSets();
+            if(expired.isEmpty()){
+                return;
+            }
+            // group by shard
+            HashMap<String, List<String>> batches = new HashMap<>();
+            for(String identifier : expired){
+                String shardID = getShardKey(identifier);
+                if(shardID.isEmpty()){
+                    expiryPool.remove(identifier);
+                    expiring.remove(identifier);
+                    continue;
+                }
+                batches.computeIfAbsent(shardID, k->new ArrayList<>()).add(identifier);
+            }
+            for(Map.Entry<String, List<String>> batch : batches.entrySet()){
+                try{
+                    lock.writeLock().lock();
+                    DataShard dataShard = shardPool.get(batch.getKey());
+                    if(!ready.get() || dataShard == null){
+                        continue;
+                    }
+                    long now = System.currentTimeMillis();
+                    for(String identifier : batch.getValue()){
+                        // may have been changed while waiting for the lock
+                        if(!isExpired(identifier, now) || !batch.getKey().equals(getShardKey(identifier))){
+                            expiring.remove(identifier);
+                            continue;
+                        }
+                        try{
+                            removeDataSet(dataShard, identifier);
+                            usageStatistic.add(UsageStatistics.Usage.delete_success);
+                        }catch (DataStorageException e){
+                            usageStatistic.add(UsageStatistics.Usage.delete_failure);
+                            logger.warn("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Failed To Delete Expired DataSet "+identifier+": "+e.getMessage());
+                        }
+                    }
+                    // check if shard is empty, then we just remove it
+                    if(dataShard.getCurrentDataSetCount() == 0){
+                        dataShard.unloadData(false, false, false);
+                        shardPool.remove(dataShard.getShardID());
+                    }
+                }finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Purged "+expired.size()+" Expired DataSets");
+        }catch (Exception e){
+            logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Purging Expired DataSets Failed", e);
+        }
+    }
+
+    /*                  COLUMN PROJECTIONS                   */
+
+    /**
+     * Used to add a column projection for the given path
+     * <p>
+     * The numeric values of the field will be kept in primitive arrays, so filters and aggregations on this field do not need to touch the DataSets.
+     * Column projections are not stored and will be rebuilt from the data of all shards on startup
+     *
+     * @param path json pointer to the field
+     * @throws DataStorageException if the path is invalid, already projected or the table is not ready
+     */
+    public void addColumnProjection(String path) throws DataStorageException{
+        HashMap<DataShard, Set<String>> shardIndex;
+        try{
+            lock.writeLock().lock();
+            if(!ready.get()){
+                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Not Ready");
+                throw new DataStorageException(231, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Object Not Ready");
+            }
+            // modifications from now on will be tracked by the column
+            String normalized;
+            try{
+                normalized = columnStore.addColumn(path);
+            }catch (IllegalArgumentException e){
+                throw new DataStorageException(241, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Invalid Path For Column Projection "+path+": "+e.getMessage());
+            }
+            if(normalized == null){
+                throw new DataStorageException(218, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Column Projection "+path+" Already Existing.");
+            }
+            shardIndex = getShardIndex();
+        }finally {
+            lock.writeLock().unlock();
+        }
+        logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Building Column Projection "+path);
+        buildSecondaryIndexes(Collections.emptyList(), true, shardIndex);
+    }
+
+    /**
+     * Used to remove the column projection for the given path
+     *
+     * @param path json pointer to the field
+     * @throws DataStorageException if there is no column projection for this path
+     */
+    public void removeColumnProjection(String path) throws DataStorageException{
+        boolean removed;
+        try{
+            removed = columnStore.removeColumn(path);
+        }catch (IllegalArgumentException e){
+            throw new DataStorageException(241, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Invalid Path For Column Projection "+path+": "+e.getMessage());
+        }
+        if(!removed){
+            throw new DataStorageException(208, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Column Projection "+path+" Not Found.");
+        }
+    }
+
+    /**
+     * Returns the paths of all column projections of this table
+     *
+     * @return Set of paths
+     */
+    public Set<String> getColumnProjectionPaths(){
+        return columnStore.getPaths();
+    }
+
+    /*                  SKETCHES                   */
+
+    /**
+     * Used to add a sketch for the given path
+     * <p>
+     * Sketches estimate the number of distinct values and the quantiles of numeric values of a field in constant time and space.
+     * They are stored together with the index of the table
+     *
+     * @param path json pointer to the field
+     * @throws DataStorageException if the path is invalid, already sketched or the table is not ready
+     */
+    public void addSketch(String path) throws DataStorageException{
+        FieldSketch fieldSketch;
+        HashMap<DataShard, Set<String>> shardIndex;
+        try{
+            lock.writeLock().lock();
+            if(!ready.get()){
+                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Not Ready");
+                throw new DataStorageException(231, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Object Not Ready");
+            }
+            try{
+                fieldSketch = new FieldSketch(path);
+            }catch (IllegalArgumentException e){
+                throw new DataStorageException(241, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Invalid Path For Sketch "+path+": "+e.getMessage());
+            }
+            if(sketchPool.containsKey(fieldSketch.getPath())){
+                throw new DataStorageException(219, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Sketch "+fieldSketch.getPath()+" Already Existing.");
+            }
+            sketchPool.put(fieldSketch.getPath(), fieldSketch);
+            shardIndex = getShardIndex();
+        }finally {
+            lock.writeLock().unlock();
+        }
+        logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Building Sketch "+fieldSketch.getPath());
+        buildSketches(Collections.singletonList(fieldSketch), shardIndex);
+    }
+
+    /**
+     * Used to rebuild all sketches from the current data
+     * <p>
+     * Each sketch is replaced by an empty one which is filled from the data of all shards, dropping values of removed or modified DataSets.
+     * Estimates are incomplete until the rebuild has finished
+     *
+     * @throws DataStorageException if the table is not ready
+     */
+    public void rebuildSketches() throws DataStorageException{
+        List<FieldSketch> fieldSketches = new ArrayList<>();
+        HashMap<DataShard, Set<String>> shardIndex;
+        try{
+            lock.writeLock().lock();
+            if(!ready.get()){
+                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Not Ready");
+                throw new DataStorageException(231, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Object Not Ready");
+            }
+            for(String path : sketchPool.keySet()){
+                FieldSketch fieldSketch = new FieldSketch(path);
+                sketchPool.put(path, fieldSketch);
+                fieldSketches.add(fieldSketch);
+            }
+            shardIndex = getShardIndex();
+        }finally {
+            lock.writeLock().unlock();
+        }
+        logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Rebuilding "+fieldSketches.size()+" Sketches");
+        buildSketches(fieldSketches, shardIndex);
+    }
+
+    /**
+     * Used to remove the sketch for the given path
+     *
+     * @param path json pointer to the field
+     * @throws DataStorageException if there is no sketch for this path
+     */
+    public void removeSketch(String path) throws DataStorageException{
+        if(sketchPool.remove(normalizeSketchPath(path)) == null){
+            throw new DataStorageException(209, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Sketch "+path+" Not Found.");
+        }
+    }
+
+    /**
+     * Returns the sketch for the given path
+     *
+     * @param path json pointer to the field
+     * @return FieldSketch
+     * @throws DataStorageException if there is no sketch for this path
+     */
+    public FieldSketch getSketch(String path) throws DataStorageException{
+        FieldSketch fieldSketch = sketchPool.get(normalizeSketchPath(path));
+        if(fieldSketch == null){
+            throw new DataStorageException(209, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Sketch "+path+" Not Found.");
+        }
+        return fieldSketch;
+    }
+
+    /**
+     * Returns the paths of all sketches of this table
+     *
+     * @return Set of paths
+     */
+    public Set<String> getSketchPaths(){
+        return new TreeSet<>(sketchPool.keySet());
+    }
+
+    /**
+     * Used to bring a path to the format used by sketches
+     *
+     * @param path json pointer to the field
+     * @return String
+     * @throws DataStorageException if the path is invalid
+     */
+    private String normalizeSketchPath(String path) throws DataStorageException{
+        try{
+            return SecondaryIndex.normalizePath(path);
+        }catch (IllegalArgumentException e){
+            throw new DataStorageException(241, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Invalid Path For Sketch "+path+": "+e.getMessage());
+        }
+    }
+
+    /**
+     * Used to fill sketches from the data of all shards, one shard at a time
+     *
+     * @param fieldSketches the sketches which should be built
+     * @param shardIndex identifiers of all DataSets grouped by their shard
+     */
+    private void buildSketches(Collection<FieldSketch> fieldSketches, HashMap<DataShard, Set<String>> shardIndex){
+        try{
+            forEachStoredDataSet(shardIndex, (dataSetIdentifier, jsonObject) -> {
+                for(FieldSketch fieldSketch : fieldSketches){
+                    fieldSketch.add(jsonObject.optQuery(fieldSketch.getPointer()));
+                }
+            });
+        }catch (DataStorageException e){
+            logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Building Sketches Failed. Estimates May Be Incomplete", e);
+        }
+    }
+
+    /*                  STORAGE ENGINE                   */
+
+    /**
+     * Returns the storage engine used by the shards of this table
+     *
+     * @return StorageEngine.Type
+     */
+    public StorageEngine.Type getStorageEngineType(){
+        return storageEngineType;
+    }
+
+    /**
+     * Used to select the storage engine used by the shards of this table
+     * <p>
+     * The engine can only be changed as long as the table does not contain any shards as existing data is not converted.
+     * See {@link StorageEngine.Type} for the available engines.
+     *
+     * @param type the storage engine
+     * @throws DataStorageException if the table already contains shards
+     */
+    public void setStorageEngineType(StorageEngine.Type type) throws DataStorageException{
+        try{
+            lock.writeLock().lock();
+            if(type == storageEngineType){
+                return;
+            }
+            if(!shardPool.isEmpty()){
+                throw new DataStorageException(400, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Storage Engine Can Only Be Changed While The Table Does Not Contain Any Shards");
+            }
+            storageEngineType = type;
+            logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Storage Engine Set To "+type);
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*                  COMPACT DOCUMENTS                   */
+
+    /**
+     * Used to select how the data of loaded DataSets should be kept in memory
+     * <p>
+     * Compact documents store their data as binary document and only create json objects when the data is requested,
+     * reducing the memory required per DataSet at the cost of additional work for each access. Their keys are numbered by the {@link FieldDictionary} of this table.
+     * Only applies to DataSets being loaded or inserted afterwards.
+     *
+     * @param value boolean
+     */
+    public void setCompactDocuments(boolean value){
+        compactDocuments.set(value);
+    }
+
+    /**
+     * Returns whether the data of loaded DataSets is kept as compact documents
+     *
+     * @return boolean
+     */
+    public boolean hasCompactDocuments(){
+        return compactDocuments.get();
+    }
+
+    /*                  OFF HEAP DOCUMENTS                   */
+
+    /**
+     * Used to select whether the data of loaded DataSets should be kept outside of the heap
+     * <p>
+     * Each shard keeps the data of its DataSets within an {@link de.netbeacon.jstorage.server.tools.document.OffHeapArena} which is released as a whole when the shard gets unloaded.
+     * Only applies to DataSets being loaded or inserted afterwards.
+     *
+     * @param value boolean
+     */
+    public void setOffHeapDocuments(boolean value){
+        offHeapDocuments.set(value);
+    }
+
+    /**
+     * Returns whether the data of loaded DataSets is kept outside of the heap
+     *
+     * @return boolean
+     */
+    public boolean hasOffHeapDocuments(){
+        return offHeapDocuments.get();
+    }
+
+    /**
+     * Returns the number of bytes allocated outside of the heap by the shards of this table
+     *
+     * @return long
+     */
+    public long getOffHeapBytes(){
+        return shardPool.values().stream().mapToLong(DataShard::getOffHeapBytes).sum();
+    }
+
+    /*                  WRITE BEHIND                   */
+
+    /**
+     * Used to set the time within which repeated modifications of a DataSet are merged into one write
+     * <p>
+     * Only applies to tables using an incremental storage engine, which would otherwise write each modification on its own.
+     * Modified DataSets are written once no further modification has been made within this time, but no later than the max write behind delay.
+     * Pending modifications are always written when the shard is unloaded or the table is shut down.
+     *
+     * @param millis time in milliseconds, 0 to write each modification directly
+     */
+    public void setWriteBehindWindow(long millis){
+        writeBehindWindow.set(Math.max(millis, 0));
+    }
+
+    /**
+     * Returns the time within which repeated modifications of a DataSet are merged into one write
+     *
+     * @return long, milliseconds, 0 if disabled
+     */
+    public long getWriteBehindWindow(){
+        return writeBehindWindow.get();
+    }
+
+    /**
+     * Used to set the maximum time a modification may stay pending while the DataSets of a shard keep being modified
+     *
+     * @param millis time in milliseconds
+     */
+    public void setWriteBehindMaxDelay(long millis){
+        writeBehindMaxDelay.set(Math.max(millis, 0));
+    }
+
+    /**
+     * Returns the maximum time a modification may stay pending
+     *
+     * @return long, milliseconds
+     */
+    public long getWriteBehindMaxDelay(){
+        return writeBehindMaxDelay.get();
+    }
+
+    /**
+     * Returns the number of modified DataSets of this table which have not been written yet
+     *
+     * @return long
+     */
+    public long getPendingWrites(){
+        return shardPool.values().stream().mapToLong(DataShard::getPendingWrites).sum();
+    }
+
+    /**
+     * Returns the number of modifications which did not require a write of their own
+     *
+     * @return long
+     */
+    public long getCoalescedWrites(){
+        return shardPool.values().stream().mapToLong(DataShard::getCoalescedWrites).sum();
+    }
+
+    /**
+     * Returns the number of writes of pending modifications
+     *
+     * @return long
+     */
+    public long getBufferedWrites(){
+        return shardPool.values().stream().mapToLong(DataShard::getBufferedWrites).sum();
+    }
+
+    /*                  FIELD DICTIONARY                   */
+
+    /**
+     * Returns the dictionary used for the field names of the DataSets of this table
+     *
+     * @return FieldDictionary
+     */
+    public FieldDictionary getFieldDictionary(){
+        return fieldDictionary;
+    }
+
+    /*                  HASH PARTITIONING                   */
+
+    /**
+     * Returns whether the DataSets of this table are located by the hash of their identifier
+     * <p>
+     * Hash partitioned tables do not keep an index of all identifiers in memory. Each identifier belongs to a fixed partition with its own shard
+     *
+     * @return boolean
+     */
+    public boolean isHashPartitioned(){
+        return buckets != null;
+    }
+
+    /**
+     * Returns the number of hash partitions
      *
-     * @param dataSet The DataSet which should be inserted
-     * @throws DataStorageException on various errors such as an object already existing with the same identifier, loading issues and other
+     * @return int, 0 if the table is not hash partitioned
      */
-    public void insertDataSet(DataSet dataSet) throws DataStorageException{
+    public int getHashPartitions(){
+        String[] b = buckets;
+        return (b != null) ? b.length : 0;
+    }
+
+    /**
+     * Used to enable or disable hash partitioning
+     * <p>
+     * The number of partitions is fixed and can only be changed while the table is empty as DataSets are not moved between partitions.
+     * Hash partitioned tables do not support an ordered index and can not be optimized.
+     *
+     * @param partitions number of partitions, 0 to disable hash partitioning
+     * @throws DataStorageException if the table is not empty, uses an ordered index or the number is invalid
+     */
+    public void setHashPartitions(int partitions) throws DataStorageException{
         try{
             lock.writeLock().lock();
-            if(!ready.get()){
-                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Not Ready");
-                throw new DataStorageException(231, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Object Not Ready");
-            }
-            if(dataInconsistency.get()){
-                throw new DataStorageException(300, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Data Inconsistency Needs To Be Resolved Before Inserting New Objects.");
-            }
-            // check if the dataset fits to this
-            if(!(dataBase.getIdentifier().equals(dataSet.getDataBase().getIdentifier()) && identifier.equals(dataSet.getTable().getIdentifier()))){
-                logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") DataSet "+dataSet.getIdentifier()+" Does Not Fit Here");
-                throw new DataStorageException(220, "DataTable: "+dataBase.getIdentifier()+">"+identifier+">: DataSet "+dataSet.getIdentifier()+" ("+dataSet.getDataBase().getIdentifier()+">"+dataSet.getTable().getIdentifier()+") Does Not Fit Here.");
-            }
-            // check if we dont have an object with the current id
-            if(indexPool.containsKey(dataSet.getIdentifier())){
-                logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") DataSet "+dataSet.getIdentifier()+" Already Existing");
-                throw new DataStorageException(211, "DataShard: "+dataBase.getIdentifier()+">"+identifier+": DataSet "+dataSet.getIdentifier()+" Already Existing.");
+            if(partitions < 0 || partitions > 65536){
+                throw new DataStorageException(400, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Invalid Number Of Hash Partitions "+partitions);
             }
-            // check if the object matches a specific structure
-            if(hasDefaultStructure() && !matchesDefaultStructure(dataSet)){
-                logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") DataSet "+dataSet.getIdentifier()+" Does Not Match Required Structure");
-                throw new DataStorageException(221, "DataShard: "+dataBase.getIdentifier()+">"+identifier+": DataSet "+dataSet.getIdentifier()+" Does Not Match Required Structure");
+            if(partitions == getHashPartitions()){
+                return;
             }
-            // try to put this object in some shard
-            String validShardID = null;
-            // check if we have a shard ready which is active & has enough space
-            Optional<Map.Entry<String, DataShard>> o = shardPool.entrySet().stream().filter(e->e.getValue().getStatus() == 3 && e.getValue().getCurrentDataSetCount()<e.getValue().getMaxDataSetCount()).findAny();
-            if(o.isPresent()){
-                validShardID = o.get().getValue().getShardID();
+            if(!shardPool.isEmpty() || !indexPool.isEmpty()){
+                throw new DataStorageException(400, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Hash Partitions Can Only Be Changed While The Table Is Empty");
             }
-            // if validShardID is still null, check if any would have space at all, ignoring shards loading/unloading
-            if(validShardID == null){
-                o = shardPool.entrySet().stream().filter(e->e.getValue().getStatus() <=0 && e.getValue().getCurrentDataSetCount()<e.getValue().getMaxDataSetCount()).findAny();
-                if(o.isPresent()){
-                    validShardID = o.get().getValue().getShardID();
-                }
+            if(orderedIndex != null){
+                throw new DataStorageException(400, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Hash Partitioned Tables Do Not Support An Ordered Index");
             }
-            // if there is no shard available, just create a new one
-            if(validShardID == null){
-                DataShard dataShard = new DataShard(dataBase, this);
-                shardPool.put(dataShard.getShardID(), dataShard);
-                validShardID = dataShard.getShardID();
+            if(indexPool instanceof DiskIndex){
+                throw new DataStorageException(400, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Hash Partitioned Tables Do Not Use An Index");
             }
-            // we should have a shardID set here
-            DataShard dataShard = shardPool.get(validShardID);
-            // try to insert
-            dataShard.insertDataSet(dataSet);
-            // write to index
-            indexPool.put(dataSet.getIdentifier(), dataShard.getShardID());
-            // add statistics
-            statisticsPool.put(dataSet.getIdentifier(), new UsageStatistics());
-            usageStatistic.add(UsageStatistics.Usage.insert_success);
-        }catch (DataStorageException e){
-            usageStatistic.add(UsageStatistics.Usage.insert_failure);
-            throw e;
-        }catch (Exception | Error e){
-            logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Unknown Error", e);
-            usageStatistic.add(UsageStatistics.Usage.insert_failure);
-            throw new DataStorageException(0, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Unknown Error: "+e.getMessage());
+            buckets = (partitions > 0) ? new String[partitions] : null;
+            logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Hash Partitions Set To "+partitions);
         }finally {
             lock.writeLock().unlock();
         }
     }
 
     /**
-     * Used to delete a DataSet from the DataTable
+     * Returns the partition of an identifier
      * <p>
-     * Every String type input will be converted to lowercase only to simplify handling.
+     * String.hashCode is specified and therefore stable across restarts, the bits are mixed to spread similar identifiers
      *
-     * @param identifier of the target DataSet
-     * @throws DataStorageException on various errors such as the object not being found, loading issues and other
+     * @param identifier identifier of the DataSet
+     * @return int
      */
-    public void deleteDataSet(String identifier) throws DataStorageException {
+    private int bucketOf(String identifier){
+        int h = identifier.hashCode();
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        h ^= (h >>> 13);
+        return Math.floorMod(h, buckets.length);
+    }
+
+    /**
+     * Returns the shard of the partition of an identifier
+     * <p>
+     * Has to be called while holding the lock, the write lock is required to create the shard
+     *
+     * @param identifier identifier of the DataSet
+     * @param create if the shard should be created if it does not exist
+     * @return DataShard or null if it does not exist
+     */
+    private DataShard getBucketShard(String identifier, boolean create){
+        int bucket = bucketOf(identifier);
+        String shardID = buckets[bucket];
+        DataShard dataShard = (shardID != null) ? shardPool.get(shardID) : null;
+        if(dataShard == null && create){
+            dataShard = new DataShard(dataBase, this);
+            shardPool.put(dataShard.getShardID(), dataShard);
+            buckets[bucket] = dataShard.getShardID();
+        }
+        return dataShard;
+    }
+
+    /**
+     * Returns the id of the shard containing a DataSet
+     * <p>
+     * Has to be called while holding the lock. Hash partitioned tables have to ask the shard of the partition, which may load its data
+     *
+     * @param identifier identifier of the DataSet
+     * @return String or null if the DataSet does not exist
+     * @throws DataStorageException if the shard could not be loaded
+     */
+    private String locate(String identifier) throws DataStorageException{
+        if(buckets == null){
+            return indexPool.get(identifier);
+        }
+        DataShard dataShard = getBucketShard(identifier, false);
+        if(dataShard == null){
+            return null;
+        }
+        try{
+            dataShard.getDataSet(identifier);
+            return dataShard.getShardID();
+        }catch (DataStorageException e){
+            if(e.getType() == 201){
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the id of the shard which would contain a DataSet without checking whether it exists
+     *
+     * @param identifier identifier of the DataSet
+     * @return String, empty if there is no such shard
+     */
+    private String getShardKey(String identifier){
+        if(buckets == null){
+            return indexPool.getOrDefault(identifier, "");
+        }
+        DataShard dataShard = getBucketShard(identifier, false);
+        return (dataShard != null) ? dataShard.getShardID() : "";
+    }
+
+    /**
+     * Returns the number of DataSets within this table
+     *
+     * @return long
+     */
+    public long getDataSetCount(){
+        if(buckets == null){
+            return indexPool.size();
+        }
+        long count = 0;
+        for(DataShard dataShard : shardPool.values()){
+            count += dataShard.getCurrentDataSetCount();
+        }
+        return count;
+    }
+
+    /*                  DISK INDEX                   */
+
+    /**
+     * Returns whether the index of this table is kept on disk
+     *
+     * @return boolean
+     */
+    public boolean hasDiskIndex(){
+        return indexPool instanceof DiskIndex;
+    }
+
+    /**
+     * Returns whether usage statistics are kept for each DataSet
+     * <p>
+     * Tables which do not keep their index in memory do not keep statistics per DataSet either
+     *
+     * @return boolean
+     */
+    protected boolean keepsDataSetStatistics(){
+        return buckets == null && !(indexPool instanceof DiskIndex);
+    }
+
+    /**
+     * Used to move the index of this table to disk or back to memory
+     * <p>
+     * The disk index is a B+-tree accessed through a bounded page cache with a bloom filter in front. See {@link DiskIndex} for further information.
+     * Tables with a disk index do not support an ordered index, do not keep usage statistics per DataSet and can not be optimized.
+     *
+     * @param value true to keep the index on disk
+     * @throws DataStorageException if the table is hash partitioned, uses an ordered index or the index could not be written
+     */
+    public void setDiskIndex(boolean value) throws DataStorageException{
         try{
             lock.writeLock().lock();
-            if(!ready.get()){
-                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Not Ready");
-                throw new DataStorageException(231, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Object Not Ready");
+            if(value == hasDiskIndex()){
+                return;
             }
-            identifier = identifier.toLowerCase();
-            if(!indexPool.containsKey(identifier)){
-                logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") DataSet "+identifier+" Not Found");
-                throw new DataStorageException(201, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": DataSet "+identifier+" Not Found.");
+            if(value && buckets != null){
+                throw new DataStorageException(400, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Hash Partitioned Tables Do Not Use An Index");
             }
-            // get dataShard
-            String shardID = indexPool.get(identifier);
-            if(!shardPool.containsKey(shardID)){
-                // shard not found but listed in index
-                dataInconsistency.set(true);
-                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Shard "+shardID+" Not Found. Possible Data Inconsistency Detected");
-                throw new DataStorageException(202, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": DataShard "+shardID+" Not Found But Listed In Index. Possible Data Inconsistency.", "Locking DataSet Insert Until Resolved.");
+            if(value && orderedIndex != null){
+                throw new DataStorageException(400, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Tables With A Disk Index Do Not Support An Ordered Index");
             }
-            DataShard dataShard = shardPool.get(shardID);
-            // try to delete
-            try{
-                dataShard.deleteDataSet(identifier);
-                // remove from index
-                indexPool.remove(identifier);
-                // remove statistics
-                statisticsPool.remove(identifier);
-                // check if shard is empty, then we just remove it
-                if(dataShard.getCurrentDataSetCount() == 0){
-                    dataShard.unloadData(false, false, false);
-                    shardPool.remove(dataShard.getShardID());
-                }
-                usageStatistic.add(UsageStatistics.Usage.delete_success);
-            }catch (DataStorageException e){
-                switch(e.getType()){
-                    case 201:
-                        dataInconsistency.set(true);
-                        logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") DataSet "+identifier+" Not Found But Indexed. Possible Data Inconsistency Detected");
-                        throw new DataStorageException(201, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": DataSet "+identifier+" Not Found But Listed In Index. Possible Data Inconsistency.", "Locking DataSet Insert Until Resolved.");
-                    default:
-                        logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") DataSet "+identifier+" Causes An Exception", e);
-                        throw e;
+            if(value){
+                for(Map.Entry<String, String> entry : indexPool.entrySet()){
+                    if(!DiskIndex.fits(entry.getKey(), entry.getValue())){
+                        throw new DataStorageException(400, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": DataSet "+entry.getKey()+" Identifier Too Long For Disk Index");
+                    }
                 }
+                File treeFile = getDiskIndexFile("_btree");
+                File bloomFile = getDiskIndexFile("_bloom");
+                treeFile.delete();
+                bloomFile.delete();
+                DiskIndex diskIndex = new DiskIndex(treeFile, bloomFile);
+                diskIndex.putAll(new TreeMap<>(indexPool)); // ascending keys only touch the last leaf
+                diskIndex.flush();
+                indexPool = diskIndex;
+                statisticsPool.clear();
+            }else{
+                DiskIndex diskIndex = (DiskIndex) indexPool;
+                CompactIndex compactIndex = new CompactIndex(diskIndex);
+                compactIndex.keySet().forEach(key -> statisticsPool.put(key, new UsageStatistics()));
+                indexPool = compactIndex;
+                diskIndex.delete();
             }
-        }catch (DataStorageException e){
-            usageStatistic.add(UsageStatistics.Usage.delete_failure);
-            throw e;
-        }catch (Exception | Error e){
-            logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Unknown Error", e);
-            usageStatistic.add(UsageStatistics.Usage.delete_failure);
-            throw new DataStorageException(0, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Unknown Error: "+e.getMessage());
-        } finally {
+            writeIndex();
+            logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Disk Index "+(value ? "Enabled" : "Disabled"));
+        }catch (IOException | UncheckedIOException e){
+            logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Moving Index Failed", e);
+            throw new DataStorageException(0, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Moving Index Failed: "+e.getMessage());
+        }finally {
             lock.writeLock().unlock();
         }
     }
 
     /**
-     * Used to check if the DataTable contains a specific DataSet
-     * <p>
-     * Every String type input will be converted to lowercase only to simplify handling.
+     * Returns a file belonging to the disk index of this table
      *
-     * @param identifier identifier of the DataSet. See {@link DataSet} for further information.
-     * @return boolean boolean
+     * @param suffix suffix of the file
+     * @return File
      */
-    public boolean containsDataSet(String identifier){
-        lock.readLock().lock();
-        identifier = identifier.toLowerCase();
-        boolean contains = indexPool.containsKey(identifier);
-        lock.readLock().unlock();
-        return contains;
+    private File getDiskIndexFile(String suffix){
+        File d = new File("./jstorage/data/db/"+dataBase.getIdentifier());
+        if(!d.exists()){ d.mkdirs(); }
+        return new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+identifier+suffix);
     }
 
     /*                  Statistics                   */
@@ -506,12 +2405,16 @@ public class DataTable {
      * 1 - remove entries from index with non existing shards only
      * 2 - remove entries from index with non existing shards & check if the shard contains the other objects
      * 3 - rebuild index from loaded shards & all files inside the storage dir
+     * Hash partitioned tables do not have an index, every mode will only remove the lock
      *
      * @param mode selection of the action
      */
     public void resolveDataInconsistency(int mode){
         if(ready.get()){
             lock.writeLock().lock();
+            if(buckets != null){
+                mode = 0;
+            }
             switch (mode){
                 case 0:
                     // do nothing but remove lock
@@ -535,36 +2438,48 @@ public class DataTable {
                     // rebuild index from loaded shards & all files inside the storage dir
                     HashMap<String, DataSet> dataSets = new HashMap<>();
                     // get all dataSets from all running dataShards
+                    for(DataShard dataShard : shardPool.values()){
+                        try{
+                            dataShard.cacheAllDataSets();
+                        }catch (DataStorageException e){
+                            logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Reading DataSets Of Shard "+dataShard.getShardID()+" Failed. Data May Be Lost", e);
+                        }
+                    }
                     shardPool.entrySet().stream().filter(e->e.getValue().getStatus() == 3).forEach(e-> e.getValue().getDataPool().forEach((key, value) -> dataSets.put(value.getIdentifier(),value)));
-                    // get all datasets from existing files except those with ids in processedShardIDs
-                    File d = new File("./jstorage/data/"+dataBase.getIdentifier());
+                    // get all datasets from the remaining files of this table
+                    File d = new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+identifier);
                     if(!d.exists()){ d.mkdirs(); }
                     File[] files = d.listFiles();
                     if(files != null){
                         for(File f : files){
                             if(f.isFile()){
                                 try{
-                                    BufferedReader bufferedReader = new BufferedReader(new FileReader(f));
-                                    String line;
-                                    while((line = bufferedReader.readLine()) != null){
-                                        if(!line.isEmpty()){
-                                            // try building DataSets
-                                            try{
-                                                JSONObject jsonObject = new JSONObject(line);
-                                                String gdb = jsonObject.getString("database").toLowerCase();
-                                                String ctable = jsonObject.getString("table").toLowerCase();
-                                                String identifier = jsonObject.getString("identifier").toLowerCase();
-                                                if(dataBase.getIdentifier().equals(gdb) && identifier.equals(ctable) && !dataSets.containsKey(identifier)){
-                                                    dataSets.put(identifier, new DataSet(dataBase, this, identifier));
-                                                }else{
-                                                    logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Creating DataSet From File "+f.getName()+" Failed. Data Does Not Fit To This Table/Database Or Does Already Exist.");
-                                                }
-                                            }catch (Exception e){
-                                                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Creating DataSet From File "+f.getName()+" Failed. Data May Be Lost", e);
+                                    int damaged = AtomicFile.readLines(f, line -> {
+                                        // try building DataSets
+                                        try{
+                                            line = StorageEngine.decode(line);
+                                            if(line == null){
+                                                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Creating DataSet From File "+f.getName()+" Failed. JS2CryptTool Is Not Ready To Decrypt It. Data May Be Lost");
+                                                return true;
                                             }
+                                            JSONObject jsonObject = new JSONObject(line);
+                                            // stored data does not contain the database and table
+                                            String gdb = jsonObject.optString("database", dataBase.getIdentifier()).toLowerCase();
+                                            String ctable = jsonObject.optString("table", this.identifier).toLowerCase();
+                                            String identifier = jsonObject.getString("identifier").toLowerCase();
+                                            if(dataBase.getIdentifier().equals(gdb) && this.identifier.equals(ctable) && !dataSets.containsKey(identifier)){
+                                                dataSets.put(identifier, new DataSet(dataBase, this, identifier, jsonObject));
+                                            }else{
+                                                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Creating DataSet From File "+f.getName()+" Failed. Data Does Not Fit To This Table/Database Or Does Already Exist.");
+                                            }
+                                        }catch (Exception e){
+                                            logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Creating DataSet From File "+f.getName()+" Failed. Data May Be Lost", e);
                                         }
+                                        return true;
+                                    });
+                                    if(damaged > 0){
+                                        logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Skipped "+damaged+" Damaged DataSets In File "+f.getName()+". Data May Be Lost");
                                     }
-                                    bufferedReader.close();
                                 }catch (Exception e){
                                     // could not read
                                     logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Loading Data From File "+f.getName()+" Failed. Data May Be Lost", e);
@@ -584,8 +2499,11 @@ public class DataTable {
                         value.unloadDataAsync(false, false, true); // this would otherwise call unload on them
                     });
                     shardPool.clear();
-                    new File("./jstorage/data/"+dataBase.getIdentifier()+"/"+identifier+"_index").delete();
+                    new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+identifier+"_index").delete();
                     // rebuild index & shards
+                    secondaryIndexPool.forEach((key, value) -> value.clear());
+                    columnStore.clear();
+                    sketchPool.forEach((key, value) -> value.clear());
                     List<DataSet> buffer = new ArrayList<>();
                     int processed = 0;
                     for(Map.Entry<String, DataSet> entry : dataSets.entrySet()){
@@ -603,6 +2521,7 @@ public class DataTable {
                                 try{
                                     indexPool.put(dataSet1.getIdentifier(), shardID);
                                     dataShard.insertDataSet(dataSet1);
+                                    updateSecondaryIndexes(dataSet1, null);
                                 }catch (DataStorageException e){
                                     logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") An Error Occurred While Rebuilding Index & Shards. DataSet Will Be Deleted", e);
                                     indexPool.remove(dataSet1.getIdentifier());
@@ -623,6 +2542,9 @@ public class DataTable {
                     // do nothing
                     break;
             }
+            if(orderedIndex != null){
+                orderedIndex = new ConcurrentSkipListSet<>(indexPool.keySet());
+            }
             lock.writeLock().unlock();
         }
     }
@@ -637,6 +2559,7 @@ public class DataTable {
             logger.warn("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Upgrading Structure - This May Result In Data Loss");
             JSONObject defaultStructure = new JSONObject(getDefaultStructure()).put("database", "").put("table", "").put("identifier", "");
             for(Map.Entry<String, DataShard> entry : shardPool.entrySet()){
+                entry.getValue().cacheAllDataSets();
                 Map<String, DataSet> oldDs = entry.getValue().getDataPool();
                 ArrayList<DataSet> newDs = new ArrayList<>();
                 for(Map.Entry<String, DataSet> entry1 : oldDs.entrySet()){
@@ -648,14 +2571,12 @@ public class DataTable {
                     }
                 }
                 // delete all datasets in this shard
-                for(Map.Entry<String, DataSet> entry1 : entry.getValue().getDataPool().entrySet()){
-                    try{entry1.getValue().onUnload();}catch (Exception ignore){}
-                }
-                entry.getValue().getDataPool().clear();
+                entry.getValue().clearDataSets();
                 // insert new datasets
                 for(DataSet dataSet : newDs){
                     try{
                         entry.getValue().insertDataSet(dataSet);
+                        updateSecondaryIndexes(dataSet, null);
                     }catch (DataStorageException e){
                         logger.warn("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Error Inserting New DataSet "+dataSet.getIdentifier()+" : "+e.getMessage()+" - Dropping This DataSet");
                     }
@@ -679,8 +2600,12 @@ public class DataTable {
      * Optimizes utilisation of shards by grouping frequently used data sets
      * <p>
      * ! Using this function may result in data loss. Manual correction recommended.
+     * Hash partitioned tables and tables with a disk index can not be optimized as they do not keep statistics per DataSet
      */
     public void optimize(){
+        if(!keepsDataSetStatistics()){
+            return;
+        }
         // enable lock
         lock.writeLock().lock();
         try{
@@ -691,7 +2616,7 @@ public class DataTable {
             // sort
             HashMap<String, Long> sorted = unsorted.entrySet().stream().sorted(Collections.reverseOrder(Map.Entry.comparingByValue())).collect(toMap(Map.Entry::getKey, Map.Entry::getValue, (e1, e2) -> e2, LinkedHashMap::new));
             // check if both the index size & sorted list match in size
-            if(!(sorted.keySet().containsAll(Collections.list(indexPool.keys())) && sorted.size() == indexPool.size())){
+            if(!(sorted.keySet().containsAll(indexPool.keySet()) && sorted.size() == indexPool.size())){
                 throw new Exception("Meta Data Does Not Match Objects From Index");
             }
             // load all datasets (this is scary)
@@ -723,6 +2648,8 @@ public class DataTable {
             shardPool.clear();
             indexPool.clear();
             logger.warn("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Optimizing Shards - Rebuilding Index & Restoring DataSets");
+            // sketches will be rebuilt from the remaining datasets
+            sketchPool.forEach((key, value) -> value.clear());
             int processed = 0;
             int dsc = DataShard.getMaxDataSetCountStatic();
             DataShard dataShard = null;
@@ -745,6 +2672,7 @@ public class DataTable {
                     dataShard.insertDataSet(dataSet);
                     // add to index
                     indexPool.put(dataSet.getIdentifier(), dataShard.getShardID());
+                    updateSketches(dataSet, null);
                 }catch (DataStorageException e){
                     logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Optimizing Shards - Failed To Insert DataSet Into New Shard, Dropping DataSet");
                 }
@@ -761,6 +2689,7 @@ public class DataTable {
                     try{
                         dataShard.insertDataSet(entry.getValue());
                         indexPool.put(entry.getValue().getIdentifier(), dataShard.getShardID());
+                        updateSketches(entry.getValue(), null);
                     }catch (DataStorageException e){
                         logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Optimizing Shards - Failed To Insert DataSet Into New Shard, Dropping DataSet");
                     }
@@ -770,6 +2699,9 @@ public class DataTable {
             datasetTransferCache.clear();
             unsorted.clear();
             sorted.clear();
+            if(orderedIndex != null){
+                orderedIndex = new ConcurrentSkipListSet<>(indexPool.keySet());
+            }
             logger.info("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Optimizing Shards - Finished");
         }catch (DataStorageException e){
             logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Error Optimizing Shards", e);
@@ -793,6 +2725,7 @@ public class DataTable {
         if(!ready.get() && !shutdown.get()){
             // build index & prepare shards
             logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Loading Data");
+            List<FieldSketch> rebuildSketches = new ArrayList<>();
             try{
                 // read from file
                 File d = new File("./jstorage/data/db/"+dataBase.getIdentifier());
@@ -801,33 +2734,104 @@ public class DataTable {
                 if(!f.exists()){ f.createNewFile(); }
                 else{
                     // read
-                    String content = new String(Files.readAllBytes(f.toPath()));
+                    String content = AtomicFile.read(f);
                     if(!content.isEmpty()){
                         JSONObject jsonObject = new JSONObject(content);
                         String dbn = jsonObject.getString("database").toLowerCase();
                         String tbn = jsonObject.getString("table").toLowerCase();
                         defaultStructure = jsonObject.getJSONObject("defaultStructure");
+                        compiledStructure = null;
                         adaptiveLoad.set(jsonObject.getBoolean("adaptiveLoad"));
                         autoOptimization.set(jsonObject.getBoolean("autoOptimize"));
                         secureInsert.set(jsonObject.getBoolean("secureInsert"));
+                        compactDocuments.set(jsonObject.optBoolean("compactDocuments", false));
+                        offHeapDocuments.set(jsonObject.optBoolean("offHeapDocuments", false));
+                        writeBehindWindow.set(Math.max(jsonObject.optLong("writeBehindWindow", 0), 0));
+                        writeBehindMaxDelay.set(Math.max(jsonObject.optLong("writeBehindMaxDelay", 5000), 0));
+                        boolean ordered = jsonObject.optBoolean("orderedIndex", false);
+                        defaultTTL.set(Math.max(jsonObject.optLong("defaultTTL", 0), 0));
+                        storageEngineType = StorageEngine.Type.of(jsonObject.optString("storageEngine", StorageEngine.Type.FILE.name()));
+                        int hashPartitions = jsonObject.optInt("hashPartitions", 0);
+                        if(hashPartitions > 0){
+                            buckets = new String[hashPartitions];
+                        }
+                        if(jsonObject.optBoolean("diskIndex", false)){
+                            // only reads the header of the tree
+                            indexPool = new DiskIndex(getDiskIndexFile("_btree"), getDiskIndexFile("_bloom"));
+                        }
                         int a = jsonObject.getInt("autoResolveDataInconsistency");
                         autoResolveDataInconsistency.set( (-1 <= a && a < 4) ? a : -1);
+                        JSONArray secondaryIndexes = jsonObject.optJSONArray("secondaryIndexes");
+                        if(secondaryIndexes != null){
+                            for(int i = 0; i < secondaryIndexes.length(); i++){
+                                SecondaryIndex secondaryIndex = new SecondaryIndex(secondaryIndexes.getString(i));
+                                secondaryIndexPool.put(secondaryIndex.getPath(), secondaryIndex);
+                            }
+                        }
+                        JSONObject sketches = jsonObject.optJSONObject("sketches");
+                        if(sketches != null){
+                            for(String path : sketches.keySet()){
+                                FieldSketch fieldSketch = new FieldSketch(path);
+                                try{
+                                    fieldSketch.restore(sketches.getJSONObject(path));
+                                }catch (Exception e){
+                                    logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Loading Sketch "+path+" Failed. Rebuilding It", e);
+                                    fieldSketch.clear();
+                                    rebuildSketches.add(fieldSketch);
+                                }
+                                sketchPool.put(fieldSketch.getPath(), fieldSketch);
+                            }
+                        }
+                        JSONArray columnProjections = jsonObject.optJSONArray("columnProjections");
+                        if(columnProjections != null){
+                            for(int i = 0; i < columnProjections.length(); i++){
+                                columnStore.addColumn(columnProjections.getString(i));
+                            }
+                        }
                         if(dataBase.getIdentifier().equals(dbn) && identifier.equals(tbn)){
                             JSONArray shards = jsonObject.getJSONArray("shards");
                             for(int i = 0; i < shards.length(); i++){
                                 JSONObject shard = shards.getJSONObject(i);
                                 String shardID = shard.getString("shardID");
+                                if(buckets != null && shard.has("bucket")){
+                                    // shard of a hash partition, the identifiers are only known by the shard
+                                    DataShard dataShard = new DataShard(dataBase, this, shardID);
+                                    shardPool.put(dataShard.getShardID(), dataShard);
+                                    dataShard.setStoredDataSetCount(shard.getInt("dataSetCount"));
+                                    buckets[shard.getInt("bucket")] = dataShard.getShardID();
+                                    continue;
+                                }
+                                if(indexPool instanceof DiskIndex){
+                                    // the identifiers are listed within the disk index
+                                    DataShard dataShard = new DataShard(dataBase, this, shardID);
+                                    shardPool.put(dataShard.getShardID(), dataShard);
+                                    dataShard.setStoredDataSetCount(shard.getInt("dataSetCount"));
+                                    continue;
+                                }
                                 JSONArray index = shard.getJSONArray("dataSets");
                                 if(!index.isEmpty()){
                                     // create shard
                                     DataShard dataShard = new DataShard(dataBase, this, shardID);
                                     shardPool.put(dataShard.getShardID(), dataShard);
+                                    dataShard.setStoredDataSetCount(index.length());
                                     // fill index
                                     for(int o = 0; o < index.length(); o++){
                                         indexPool.put(index.getString(o), dataShard.getShardID());
                                     }
                                 }
                             }
+                            if(ordered){
+                                orderedIndex = new ConcurrentSkipListSet<>(indexPool.keySet());
+                            }
+                            JSONObject expiries = jsonObject.optJSONObject("expiries");
+                            if(expiries != null){
+                                for(String key : expiries.keySet()){
+                                    if(buckets != null || indexPool.containsKey(key)){
+                                        expiryPool.put(key, expiries.getLong(key));
+                                        expiryWheel.schedule(key, expiries.getLong(key));
+                                    }
+                                }
+                            }
                         }else{
                             throw new Exception("Index Content Does Not Match Expectations");
                         }
@@ -840,10 +2844,15 @@ public class DataTable {
             // start scheduled worker
             sESUnloadTask = sES.scheduleAtFixedRate(() -> {
                 if(adaptiveLoad.get()){
-                    shardPool.entrySet().stream().filter(e->(((e.getValue().getLastAccess()+900000) < System.currentTimeMillis()) && (e.getValue().getStatus() == 3))).forEach(e->e.getValue().unloadDataAsync(true, true, false));
+                    shardPool.entrySet().stream().filter(e->(((e.getValue().getLastAccess()+900000) < System.currentTimeMillis()) && (e.getValue().getStatus() == 3))).forEach(e->e.getValue().unloadDataAsync(true, true, false, true)); // keep them warm
+                }
+                if(offHeapDocuments.get()){
+                    shardPool.values().stream().filter(s->s.getStatus() == 3).forEach(DataShard::compactArena); // reclaim replaced documents
                 }
             }, 5, 5, TimeUnit.SECONDS);
             sESSnapshotTask = sES.scheduleAtFixedRate(() -> shardPool.entrySet().stream().filter(e->(((e.getValue().getLastAccess()+850000) > System.currentTimeMillis()) && (e.getValue().getStatus() == 3))).forEach(e->e.getValue().unloadDataAsync(false, true, false)), 30, 30, TimeUnit.MINUTES);
+            sESExpiryTask = sES.scheduleAtFixedRate(this::purgeExpiredDataSets, 1, 1, TimeUnit.SECONDS);
+            sESWriteBehindTask = sES.scheduleAtFixedRate(() -> shardPool.values().forEach(DataShard::flushWriteBehindAsync), 100, 100, TimeUnit.MILLISECONDS);
             sESBackgroundTask = sES.scheduleAtFixedRate(() -> {
                 if(autoOptimization.get()){ optimize(); }
                 if(autoResolveDataInconsistency.get() >= 0 && dataInconsistency.get()){ resolveDataInconsistency(autoResolveDataInconsistency.get()); }
@@ -854,6 +2863,49 @@ public class DataTable {
                     entry.getValue().loadData();
                 }
             }
+            // restore secondary indexes
+            if(!secondaryIndexPool.isEmpty()){
+                restoreSecondaryIndexes();
+            }
+            if(!rebuildSketches.isEmpty()){
+                buildSketches(rebuildSketches, getShardIndex());
+            }
+            // column projections are not stored
+            if(columnStore.startBuilding()){
+                logger.info("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Building Column Projections");
+                buildSecondaryIndexes(Collections.emptyList(), true, getShardIndex());
+            }
+        }
+    }
+
+    /**
+     * Used to restore the secondary indexes from their file
+     * <p>
+     * Indexes which can not be restored will be rebuilt from the data of the shards
+     */
+    private void restoreSecondaryIndexes(){
+        List<SecondaryIndex> rebuild = new ArrayList<>(secondaryIndexPool.values());
+        File f = new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+identifier+"_sindex");
+        if(f.exists()){
+            try{
+                JSONObject jsonObject = new JSONObject(AtomicFile.read(f));
+                for(SecondaryIndex secondaryIndex : secondaryIndexPool.values()){
+                    JSONObject values = jsonObject.optJSONObject(secondaryIndex.getPath());
+                    if(values != null){
+                        secondaryIndex.restore(values);
+                        rebuild.remove(secondaryIndex);
+                    }
+                }
+            }catch (Exception e){
+                logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Loading Secondary Indexes Failed. Rebuilding Them", e);
+                secondaryIndexPool.forEach((key, value) -> value.clear());
+                rebuild = new ArrayList<>(secondaryIndexPool.values());
+            }
+        }
+        if(!rebuild.isEmpty()){
+            logger.info("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Rebuilding "+rebuild.size()+" Secondary Indexes");
+            rebuild.forEach(SecondaryIndex::startBuilding);
+            buildSecondaryIndexes(rebuild, false, getShardIndex());
         }
     }
 
@@ -871,40 +2923,13 @@ public class DataTable {
             logger.debug("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Shutdown");
             // write index & shard data to file
             try{
-                // build json object
-                JSONObject jsonObject = new JSONObject()
-                        .put("database", dataBase.getIdentifier())
-                        .put("table", identifier)
-                        .put("adaptiveLoad", adaptiveLoad.get())
-                        .put("defaultStructure", defaultStructure)
-                        .put("autoOptimize", autoOptimization.get())
-                        .put("secureInsert", secureInsert.get())
-                        .put("autoResolveDataInconsistency", autoResolveDataInconsistency.get());
-                JSONArray shards = new JSONArray();
-                shardPool.forEach((key, value) -> {
-                    JSONObject shard = new JSONObject()
-                            .put("shardID", value.getShardID());
-                    JSONArray data = new JSONArray();
-                    indexPool.entrySet().stream().filter(e -> value.getShardID().equals(e.getValue())).forEach(e->data.put(e.getKey()));
-                    shard.put("dataSets", data);
-                    if(!data.isEmpty()){ // we dont need to keep track of empty shards
-                        shards.put(shard);
-                    }
-                });
-                jsonObject.put("shards", shards);
-                // write to file
-                File d = new File("./jstorage/data/db/"+dataBase.getIdentifier());
-                if(!d.exists()){ d.mkdirs(); }
-                File f = new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+identifier+"_index");
-                BufferedWriter writer = new BufferedWriter(new FileWriter(f));
-                writer.write(jsonObject.toString());
-                writer.newLine();
-                writer.flush();
-                writer.close();
+                writeIndex();
                 // shutdown & clear everything
                 sESUnloadTask.cancel(true);
                 sESSnapshotTask.cancel(true);
                 sESBackgroundTask.cancel(true);
+                sESExpiryTask.cancel(true);
+                sESWriteBehindTask.cancel(true);
                 sES.shutdown();
                 shardPool.forEach((k, v)-> {
                     try{
@@ -912,8 +2937,21 @@ public class DataTable {
                     } catch (DataStorageException ignored){}
                 });
                 shardPool.clear();
-                indexPool.clear();
+                if(indexPool instanceof DiskIndex){
+                    ((DiskIndex) indexPool).close();
+                }else{
+                    indexPool.clear();
+                }
                 statisticsPool.clear();
+                secondaryIndexPool.clear();
+                columnStore.clear();
+                sketchPool.clear();
+                expiryPool.clear();
+                expiryWheel.clear();
+                expiring.clear();
+                if(orderedIndex != null){
+                    orderedIndex.clear();
+                }
             }catch (Exception e){
                 logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Shutdown Failed. Data May Be Lost", e);
                 throw new DataStorageException(102, "DataTable: "+dataBase.getIdentifier()+">"+identifier+": Unloading Data Failed, Data May Be Lost: "+e.getMessage());
@@ -922,6 +2960,86 @@ public class DataTable {
         }
     }
 
+    /**
+     * Used to write the index and settings of this table to its file
+     *
+     * @throws IOException on exception
+     */
+    private void writeIndex() throws IOException{
+        // build json object
+        JSONObject jsonObject = new JSONObject()
+                .put("database", dataBase.getIdentifier())
+                .put("table", identifier)
+                .put("adaptiveLoad", adaptiveLoad.get())
+                .put("defaultStructure", defaultStructure)
+                .put("autoOptimize", autoOptimization.get())
+                .put("secureInsert", secureInsert.get())
+                .put("orderedIndex", orderedIndex != null)
+                .put("hashPartitions", getHashPartitions())
+                .put("diskIndex", indexPool instanceof DiskIndex)
+                .put("storageEngine", storageEngineType.name().toLowerCase())
+                .put("compactDocuments", compactDocuments.get())
+                .put("offHeapDocuments", offHeapDocuments.get())
+                .put("writeBehindWindow", writeBehindWindow.get())
+                .put("writeBehindMaxDelay", writeBehindMaxDelay.get())
+                .put("defaultTTL", defaultTTL.get())
+                .put("autoResolveDataInconsistency", autoResolveDataInconsistency.get())
+                .put("secondaryIndexes", new JSONArray(getSecondaryIndexPaths()))
+                .put("columnProjections", new JSONArray(getColumnProjectionPaths()));
+        JSONObject sketches = new JSONObject();
+        sketchPool.forEach((key, value) -> sketches.put(key, value.export()));
+        jsonObject.put("sketches", sketches);
+        JSONObject expiries = new JSONObject();
+        expiryPool.forEach(expiries::put);
+        jsonObject.put("expiries", expiries);
+        JSONArray shards = new JSONArray();
+        ConcurrentMap<String, String> index = indexPool;
+        if(index instanceof DiskIndex){
+            // only the shards are listed, the identifiers are kept within the disk index
+            ((DiskIndex) index).flush();
+            shardPool.forEach((key, value) -> {
+                if(value.getCurrentDataSetCount() > 0){
+                    shards.put(new JSONObject().put("shardID", value.getShardID()).put("dataSetCount", value.getCurrentDataSetCount()));
+                }
+            });
+        }
+        // group index by shard in one pass
+        HashMap<String, JSONArray> shardIndex = new HashMap<>();
+        if(!(index instanceof DiskIndex)){
+            index.forEach((key, value) -> shardIndex.computeIfAbsent(value, k->new JSONArray()).put(key));
+        }
+        String[] b = buckets;
+        if(b != null){
+            for(int i = 0; i < b.length; i++){
+                DataShard dataShard = (b[i] != null) ? shardPool.get(b[i]) : null;
+                if(dataShard != null && dataShard.getCurrentDataSetCount() > 0){
+                    shards.put(new JSONObject().put("shardID", dataShard.getShardID()).put("bucket", i).put("dataSetCount", dataShard.getCurrentDataSetCount()));
+                }
+            }
+        }
+        shardPool.forEach((key, value) -> {
+            JSONArray data = shardIndex.get(value.getShardID());
+            if(data != null && !data.isEmpty()){ // we dont need to keep track of empty shards
+                shards.put(new JSONObject().put("shardID", value.getShardID()).put("dataSets", data));
+            }
+        });
+        jsonObject.put("shards", shards);
+        // write to file
+        File d = new File("./jstorage/data/db/"+dataBase.getIdentifier());
+        if(!d.exists()){ d.mkdirs(); }
+        File f = new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+identifier+"_index");
+        AtomicFile.write(f, jsonObject.toString());
+        // write secondary indexes
+        File sf = new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+identifier+"_sindex");
+        if(secondaryIndexPool.isEmpty()){
+            if(sf.exists()){ sf.delete(); }
+            return;
+        }
+        JSONObject secondaryIndexes = new JSONObject();
+        secondaryIndexPool.forEach((key, value) -> secondaryIndexes.put(key, value.export()));
+        AtomicFile.write(sf, secondaryIndexes.toString());
+    }
+
     /**
      * Used to safely delete this object and its content
      * <p>
@@ -933,6 +3051,9 @@ public class DataTable {
         // shutdown & clear everything
         sESUnloadTask.cancel(true);
         sESSnapshotTask.cancel(true);
+        sESBackgroundTask.cancel(true);
+        sESExpiryTask.cancel(true);
+        sESWriteBehindTask.cancel(true);
         sES.shutdown();
         shardPool.forEach((k, v)-> {
             try{
@@ -940,14 +3061,29 @@ public class DataTable {
             } catch (DataStorageException ignore){}
         });
         shardPool.clear();
-        indexPool.clear();
+        if(indexPool instanceof DiskIndex){
+            ((DiskIndex) indexPool).delete();
+            indexPool = new CompactIndex();
+        }else{
+            indexPool.clear();
+        }
         statisticsPool.clear();
+        secondaryIndexPool.clear();
+        columnStore.clear();
+        sketchPool.clear();
+        expiryPool.clear();
+        expiryWheel.clear();
+        expiring.clear();
+        orderedIndex = null;
+        buckets = null;
         // delete files
         try{
             File d = new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+identifier);
             FileUtils.deleteDirectory(d);
             File f = new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+identifier+"_index");
             if(f.exists()){ f.delete(); }
+            File sf = new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+identifier+"_sindex");
+            if(sf.exists()){ sf.delete(); }
         }catch (Exception e){
             logger.error("Table ( Chain "+this.dataBase.getIdentifier()+", "+this.identifier+"; Hash "+hashCode()+") Deleting Files Failed. Manual Actions May Be Required.", e);
         }
@@ -968,9 +3104,9 @@ public class DataTable {
     /**
      * Returns the internal index
      *
-     * @return ConcurrentHashMap<String, String> concurrent hash map
+     * @return ConcurrentMap<String, String> concurrent map, a {@link CompactIndex} or backed by a file if the table uses a disk index
      */
-    public ConcurrentHashMap<String, String> getIndexPool(){
+    public ConcurrentMap<String, String> getIndexPool(){
         return indexPool;
     }
 
@@ -982,4 +3118,43 @@ public class DataTable {
     public ConcurrentHashMap<String, UsageStatistics> getStatisticsPool() {
         return statisticsPool;
     }
+
+    /*              EXPORT              */
+
+    /**
+     * Receives the data exported from a table
+     */
+    public interface ExportTarget {
+
+        /**
+         * Called for each exported DataSet
+         *
+         * @param data the serialized DataSet
+         * @throws Exception on exception, aborts the export
+         */
+        void accept(String data) throws Exception;
+    }
+
+    /*              BATCH              */
+
+    /**
+     * Represents a single operation which can be executed as part of a batch. See {@link DataTable#executeBatch(List, boolean)}
+     */
+    public interface BatchOperation {
+
+        /**
+         * Returns the identifier of the DataSet this operation targets
+         *
+         * @return String
+         */
+        String getDataSetIdentifier();
+
+        /**
+         * Executes the operation
+         *
+         * @return JSONObject containing the result
+         * @throws DataStorageException if the operation failed
+         */
+        JSONObject execute() throws DataStorageException;
+    }
 }
@@ -0,0 +1,300 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import de.netbeacon.jstorage.server.tools.btree.BloomFilter;
+import de.netbeacon.jstorage.server.tools.btree.DiskBPlusTree;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class keeps the index of a table (identifier &gt; shardID) within a B+-tree on disk instead of memory
+ * <p>
+ * Only a bounded number of pages is cached, a bloom filter answers lookups of most non existing identifiers without reading any page.
+ * Opening the index only reads the header of the tree and the bloom filter, so neither startup time nor memory usage depend on the number of DataSets.
+ * The bloom filter file records the generation of the tree it has been written for. If the tree has been modified afterwards, for example by pages
+ * evicted before an unclean shutdown, the bloom filter is rebuilt from the tree.
+ * Iteration is weakly consistent and reads the entries one leaf at a time.
+ * Used for internal data management only. User should not have direct interactions with this class
+ *
+ * @author horstexplorer
+ */
+public class DiskIndex extends AbstractMap<String, String> implements ConcurrentMap<String, String> {
+
+    private static final int bloomMagic = 0x4a53424c; // JSBL
+    private static volatile int cachedPages = 1024;
+
+    private final File treeFile;
+    private final File bloomFile;
+    private final DiskBPlusTree tree;
+    private BloomFilter bloomFilter;
+
+    /**
+     * Opens or creates the index of a table
+     *
+     * @param treeFile the file containing the tree
+     * @param bloomFile the file containing the bloom filter, rebuilt from the tree if missing or outdated
+     * @throws IOException if the files could not be read
+     */
+    protected DiskIndex(File treeFile, File bloomFile) throws IOException{
+        this.treeFile = treeFile;
+        this.bloomFile = bloomFile;
+        this.tree = new DiskBPlusTree(treeFile, cachedPages);
+        BloomFilter filter = null;
+        if(bloomFile.exists()){
+            try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(bloomFile)))){
+                if(in.readInt() == bloomMagic && in.readLong() == tree.getGeneration()){
+                    filter = BloomFilter.readFrom(in);
+                }
+            }catch (IOException ignore){} // rebuilt below
+        }
+        if(filter == null){
+            rebuildBloomFilter();
+        }else{
+            bloomFilter = filter;
+        }
+    }
+
+    /**
+     * Used to set the number of pages each index keeps in memory
+     * <p>
+     * Only applies to indexes opened afterwards
+     *
+     * @param value number of 4 KiB pages
+     */
+    public static void setCachedPages(int value){
+        cachedPages = Math.max(value, 16);
+    }
+
+    /**
+     * Returns the number of pages each index keeps in memory
+     *
+     * @return int
+     */
+    public static int getCachedPages(){ return cachedPages; }
+
+    /**
+     * Checks whether an entry could be stored within the index
+     *
+     * @param identifier identifier of the DataSet
+     * @param shardID id of the shard
+     * @return boolean
+     */
+    protected static boolean fits(String identifier, String shardID){
+        return DiskBPlusTree.fits(identifier, shardID);
+    }
+
+    /*                  ACCESS                  */
+
+    @Override
+    public synchronized String get(Object key) {
+        if(!(key instanceof String) || !bloomFilter.mightContain((String) key)){
+            return null;
+        }
+        return tree.get((String) key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public synchronized String put(String key, String value) {
+        String previous = tree.put(key, value);
+        if(previous == null){
+            bloomFilter.add(key);
+            if(bloomFilter.isSaturated()){
+                rebuildBloomFilter();
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public synchronized String remove(Object key) {
+        if(!(key instanceof String) || !bloomFilter.mightContain((String) key)){
+            return null;
+        }
+        return tree.remove((String) key);
+    }
+
+    @Override
+    public synchronized String putIfAbsent(String key, String value) {
+        String current = get(key);
+        return (current != null) ? current : put(key, value);
+    }
+
+    @Override
+    public synchronized boolean remove(Object key, Object value) {
+        String current = get(key);
+        if(current == null || !current.equals(value)){
+            return false;
+        }
+        remove(key);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean replace(String key, String oldValue, String newValue) {
+        String current = get(key);
+        if(current == null || !current.equals(oldValue)){
+            return false;
+        }
+        put(key, newValue);
+        return true;
+    }
+
+    @Override
+    public synchronized String replace(String key, String value) {
+        return (get(key) != null) ? put(key, value) : null;
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(tree.size(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return DiskIndex.this.size();
+            }
+        };
+    }
+
+    /*                  STORAGE                  */
+
+    /**
+     * Used to remove all entries
+     */
+    @Override
+    public synchronized void clear() {
+        try{
+            tree.clear();
+            bloomFilter = new BloomFilter(0);
+        }catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Used to write all modifications and the bloom filter to their files
+     *
+     * @throws IOException on exception
+     */
+    protected synchronized void flush() throws IOException{
+        tree.flush();
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(bloomFile)))){
+            out.writeInt(bloomMagic);
+            out.writeLong(tree.getGeneration());
+            bloomFilter.writeTo(out);
+        }
+    }
+
+    /**
+     * Used to flush and close the index. The index can not be used afterwards
+     *
+     * @throws IOException on exception
+     */
+    protected synchronized void close() throws IOException{
+        flush();
+        tree.close();
+    }
+
+    /**
+     * Used to close the index and delete its files
+     */
+    protected synchronized void delete(){
+        try{
+            tree.close();
+        }catch (IOException ignore){}
+        treeFile.delete();
+        bloomFile.delete();
+    }
+
+    /**
+     * Used to replace the bloom filter with a new one sized for twice the current number of entries
+     */
+    private void rebuildBloomFilter(){
+        BloomFilter filter = new BloomFilter(tree.size() * 2);
+        String after = null;
+        List<Entry<String, String>> entries;
+        while(!(entries = tree.entriesAfter(after, 1024)).isEmpty()){
+            for(Entry<String, String> entry : entries){
+                filter.add(entry.getKey());
+            }
+            after = entries.get(entries.size()-1).getKey();
+        }
+        bloomFilter = filter;
+    }
+
+    /**
+     * Iterates over all entries in ascending order, reading a few leaves at a time
+     */
+    private class EntryIterator implements Iterator<Entry<String, String>> {
+
+        private List<Entry<String, String>> batch = Collections.emptyList();
+        private int position = 0;
+        private String after = null;
+        private String last = null;
+        private boolean finished = false;
+
+        @Override
+        public boolean hasNext() {
+            if(position >= batch.size() && !finished){
+                batch = tree.entriesAfter(after, 256);
+                position = 0;
+                if(batch.isEmpty()){
+                    finished = true;
+                }else{
+                    after = batch.get(batch.size()-1).getKey();
+                }
+            }
+            return position < batch.size();
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            if(!hasNext()){
+                throw new NoSuchElementException();
+            }
+            Entry<String, String> entry = batch.get(position++);
+            last = entry.getKey();
+            return entry;
+        }
+
+        @Override
+        public void remove() {
+            if(last == null){
+                throw new IllegalStateException();
+            }
+            DiskIndex.this.remove(last);
+            last = null;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import de.netbeacon.jstorage.server.tools.sketch.HyperLogLog;
+import de.netbeacon.jstorage.server.tools.sketch.KLLSketch;
+import org.json.JSONObject;
+import org.json.JSONPointer;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is used to estimate the number of distinct values and the quantiles of a specific field within one of the datatypes of a table
+ * <p>
+ * The field is selected using a json pointer (/datatype/path/to/field). The sketches have a fixed size, so estimates are returned in constant time.
+ * Values are only added, values of removed or modified DataSets remain counted until the sketch has been rebuilt, which happens whenever the table gets optimized
+ * or {@link DataTable#rebuildSketches()} is called. Estimates therefore describe the write history of the field rather than its current values.
+ * Used for internal data management only. User should not have direct interactions with this class
+ *
+ * @author horstexplorer
+ */
+public class FieldSketch {
+
+    private final String path;
+    private final String dataType;
+    private final JSONPointer pointer;
+    private final AtomicLong values = new AtomicLong(0);
+    private final HyperLogLog distinct = new HyperLogLog();
+    private final KLLSketch quantiles = new KLLSketch();
+
+    /**
+     * Creates a new FieldSketch
+     *
+     * @param path json pointer to the field, starting with the datatype
+     * @throws IllegalArgumentException if the path is not a valid json pointer
+     */
+    protected FieldSketch(String path){
+        path = SecondaryIndex.normalizePath(path);
+        this.path = path;
+        this.pointer = new JSONPointer(path);
+        this.dataType = (path.indexOf("/", 1) > 0) ? path.substring(1, path.indexOf("/", 1)) : path.substring(1);
+    }
+
+    /**
+     * Returns the path of the field
+     *
+     * @return String
+     */
+    public String getPath(){ return path; }
+
+    /**
+     * Returns the datatype containing the field
+     *
+     * @return String
+     */
+    public String getDataType(){ return dataType; }
+
+    /**
+     * Returns the pointer to the field
+     *
+     * @return JSONPointer
+     */
+    protected JSONPointer getPointer(){ return pointer; }
+
+    /**
+     * Used to add the current value of a DataSet
+     *
+     * @param value the value, null if it does not exist
+     */
+    protected void add(Object value){
+        if(value == null || value == JSONObject.NULL){
+            return;
+        }
+        values.incrementAndGet();
+        if(value instanceof Number){
+            try{
+                // equal numbers of different types should be counted once
+                distinct.add("n"+new BigDecimal(value.toString()).stripTrailingZeros().toPlainString());
+            }catch (NumberFormatException e){
+                distinct.add("n"+value);
+            }
+            quantiles.add(((Number) value).doubleValue());
+        }else if(value instanceof String){
+            distinct.add("s"+value);
+        }else if(value instanceof Boolean){
+            distinct.add("b"+value);
+        }else{
+            distinct.add("o"+value.toString());
+        }
+    }
+
+    /**
+     * Used to reset this sketch
+     */
+    protected void clear(){
+        values.set(0);
+        distinct.clear();
+        quantiles.clear();
+    }
+
+    /**
+     * Returns the estimates of this sketch
+     *
+     * @param q quantiles within 0 and 1 which should be estimated
+     * @return JSONObject
+     */
+    public JSONObject estimate(double[] q){
+        JSONObject estimates = new JSONObject();
+        for(double v : q){
+            double estimate = quantiles.quantile(v);
+            estimates.put(String.valueOf(v), (Double.isNaN(estimate)) ? JSONObject.NULL : (Object) estimate);
+        }
+        long numbers = quantiles.getCount();
+        return new JSONObject()
+                .put("path", path)
+                .put("values", values.get())
+                .put("distinct", distinct.estimate())
+                .put("numbers", numbers)
+                .put("min", (numbers > 0) ? (Object) quantiles.getMin() : JSONObject.NULL)
+                .put("max", (numbers > 0) ? (Object) quantiles.getMax() : JSONObject.NULL)
+                .put("quantiles", estimates);
+    }
+
+    /**
+     * Returns the content as json object
+     *
+     * @return JSONObject
+     */
+    protected JSONObject export(){
+        return new JSONObject()
+                .put("values", values.get())
+                .put("distinct", distinct.export())
+                .put("quantiles", quantiles.export());
+    }
+
+    /**
+     * Used to restore previously exported content
+     *
+     * @param jsonObject exported content
+     */
+    protected void restore(JSONObject jsonObject){
+        values.set(jsonObject.getLong("values"));
+        distinct.restore(jsonObject.getString("distinct"));
+        quantiles.restore(jsonObject.getJSONObject("quantiles"));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
+import de.netbeacon.jstorage.server.tools.file.AtomicFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/**
+ * Stores all DataSets of a shard within a single file, one DataSet per line
+ * <p>
+ * The file is rewritten as a whole whenever the data is saved, see {@link AtomicFile}. This is the default storage engine.
+ * Used for internal data management only. User should not have direct interactions with this class
+ *
+ * @author horstexplorer
+ */
+public class FileStorageEngine implements StorageEngine {
+
+    private final DataBase dataBase;
+    private final DataTable table;
+    private final String shardID;
+
+    private final Logger logger = LoggerFactory.getLogger(FileStorageEngine.class);
+
+    /**
+     * Creates a new FileStorageEngine
+     *
+     * @param dataBase the superordinate DataBase {@link DataBase} object
+     * @param table the superordinate DataTable {@link DataTable} object
+     * @param shardID id of the shard
+     */
+    protected FileStorageEngine(DataBase dataBase, DataTable table, String shardID){
+        this.dataBase = dataBase;
+        this.table = table;
+        this.shardID = shardID;
+    }
+
+    /**
+     * Returns the file containing the data
+     *
+     * @return File
+     */
+    private File getFile(){
+        return new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+table.getIdentifier()+"/"+table.getIdentifier()+"_"+shardID);
+    }
+
+    @Override
+    public void replaceAll(Collection<String> data) throws IOException {
+        File d = new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+table.getIdentifier());
+        if(!d.exists()){ d.mkdirs(); }
+        try(AtomicFile.Writer writer = new AtomicFile.Writer(getFile())){
+            for(String line : data){
+                try{
+                    writer.writeLine(StorageEngine.encode(dataBase, line));
+                }catch (CryptException e){
+                    logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Failed To Encrypt Data, Storing It Unencrypted", e);
+                    writer.writeLine(line);
+                }
+            }
+            writer.commit();
+        }
+    }
+
+    @Override
+    public void scan(Predicate<String> consumer) throws IOException {
+        int damaged = AtomicFile.readLines(getFile(), line -> {
+            try{
+                line = StorageEngine.decode(line);
+                if(line == null){
+                    logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Stored DataSet Seems To Be Encrypted But JS2CryptTool Is Not Ready To Work With This Type Of Data. Skipping It");
+                    return true;
+                }
+            }catch (CryptException e){
+                logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) An Error Occurred While Decrypting A DataSet. Skipping It", e);
+                return true;
+            }
+            return consumer.test(line);
+        });
+        if(damaged > 0){
+            logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Skipped "+damaged+" Damaged DataSets While Reading The Stored Data");
+        }
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+
+    @Override
+    public void destroy() {
+        getFile().delete();
+    }
+
+    @Override
+    public long getStoredBytes() {
+        return getFile().length();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * This interface describes a {@link StorageEngine} which is able to read and write single DataSets
+ * <p>
+ * Shards using such an engine do not need to keep all of their DataSets in memory.
+ * Used for internal data management only. User should not have direct interactions with this class
+ *
+ * @author horstexplorer
+ */
+public interface IncrementalStorageEngine extends StorageEngine {
+
+    /**
+     * Returns the serialized data of a DataSet
+     *
+     * @param identifier identifier of the DataSet
+     * @return String or null if the DataSet does not exist
+     * @throws IOException on exception
+     */
+    String get(String identifier) throws IOException;
+
+    /**
+     * Used to store the serialized data of a DataSet
+     *
+     * @param identifier identifier of the DataSet
+     * @param data serialized data
+     * @throws IOException on exception
+     */
+    void put(String identifier, String data) throws IOException;
+
+    /**
+     * Used to store the serialized data of multiple DataSets at once
+     * <p>
+     * Engines should persist all of them together, which is usually cheaper than storing them one by one
+     *
+     * @param data identifiers of the DataSets and their serialized data
+     * @throws IOException on exception
+     */
+    void putAll(Map<String, String> data) throws IOException;
+
+    /**
+     * Used to remove a DataSet
+     *
+     * @param identifier identifier of the DataSet
+     * @throws IOException on exception
+     */
+    void delete(String identifier) throws IOException;
+}
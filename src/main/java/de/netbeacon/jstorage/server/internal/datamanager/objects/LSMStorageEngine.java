@@ -0,0 +1,160 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
+import de.netbeacon.jstorage.server.tools.lsm.LSMTree;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Stores the DataSets of a shard within a {@link LSMTree}, keyed by their identifier
+ * <p>
+ * Single DataSets can be read, written and deleted without loading or rewriting the other DataSets of the shard.
+ * Used for internal data management only. User should not have direct interactions with this class
+ *
+ * @author horstexplorer
+ */
+public class LSMStorageEngine implements IncrementalStorageEngine {
+
+    private final DataBase dataBase;
+    private final DataTable table;
+    private final String shardID;
+    private final LSMTree tree;
+
+    private final Logger logger = LoggerFactory.getLogger(LSMStorageEngine.class);
+
+    /**
+     * Creates a new LSMStorageEngine
+     *
+     * @param dataBase the superordinate DataBase {@link DataBase} object
+     * @param table the superordinate DataTable {@link DataTable} object
+     * @param shardID id of the shard
+     */
+    protected LSMStorageEngine(DataBase dataBase, DataTable table, String shardID){
+        this.dataBase = dataBase;
+        this.table = table;
+        this.shardID = shardID;
+        this.tree = new LSMTree(new File("./jstorage/data/db/"+dataBase.getIdentifier()+"/"+table.getIdentifier()+"/"+table.getIdentifier()+"_"+shardID+".lsm"));
+    }
+
+    @Override
+    public String get(String identifier) throws IOException {
+        String data = tree.get(identifier);
+        return (data != null) ? decode(data) : null;
+    }
+
+    @Override
+    public void put(String identifier, String data) throws IOException {
+        try{
+            tree.put(identifier, StorageEngine.encode(dataBase, data));
+        }catch (CryptException e){
+            logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Failed To Encrypt Data, Storing It Unencrypted", e);
+            tree.put(identifier, data);
+        }
+    }
+
+    @Override
+    public void putAll(Map<String, String> data) throws IOException {
+        HashMap<String, String> entries = new HashMap<>(data.size()*2);
+        for(Map.Entry<String, String> entry : data.entrySet()){
+            try{
+                entries.put(entry.getKey(), StorageEngine.encode(dataBase, entry.getValue()));
+            }catch (CryptException e){
+                logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Failed To Encrypt Data, Storing It Unencrypted", e);
+                entries.put(entry.getKey(), entry.getValue());
+            }
+        }
+        tree.putAll(entries);
+    }
+
+    @Override
+    public void delete(String identifier) throws IOException {
+        tree.delete(identifier);
+    }
+
+    @Override
+    public void replaceAll(Collection<String> data) throws IOException {
+        HashMap<String, String> entries = new HashMap<>(data.size()*2);
+        for(String d : data){
+            String identifier = new JSONObject(d).getString("identifier").toLowerCase();
+            try{
+                entries.put(identifier, StorageEngine.encode(dataBase, d));
+            }catch (CryptException e){
+                logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Failed To Encrypt Data, Storing It Unencrypted", e);
+                entries.put(identifier, d);
+            }
+        }
+        tree.replaceAll(entries); // the previous data is kept until the new data has been written
+    }
+
+    @Override
+    public void scan(Predicate<String> consumer) throws IOException {
+        tree.scan((identifier, data) -> {
+            String decoded = decode(data);
+            return decoded == null || consumer.test(decoded);
+        });
+    }
+
+    @Override
+    public void flush() throws IOException {
+        tree.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        tree.close();
+    }
+
+    @Override
+    public void destroy() {
+        tree.destroy();
+    }
+
+    @Override
+    public long getStoredBytes() {
+        return tree.getStoredBytes();
+    }
+
+    /**
+     * Used to decrypt stored data, logging failures
+     *
+     * @param data stored data
+     * @return String or null if the data could not be decrypted
+     */
+    private String decode(String data){
+        try{
+            String decoded = StorageEngine.decode(data);
+            if(decoded == null){
+                logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) Stored DataSet Seems To Be Encrypted But JS2CryptTool Is Not Ready To Work With This Type Of Data. Skipping It");
+            }
+            return decoded;
+        }catch (CryptException e){
+            logger.error("Shard ( Chain "+this.dataBase.getIdentifier()+", "+this.table.getIdentifier()+"#"+this.shardID+"; Hash "+hashCode()+" ) An Error Occurred While Decrypting A DataSet. Skipping It", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import de.netbeacon.jstorage.server.tools.query.QueryFilter;
+import org.json.JSONObject;
+import org.json.JSONPointer;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * This class is used to find DataSets by the value of a specific field within one of their datatypes
+ * <p>
+ * The field is selected using a json pointer (/datatype/path/to/field). Only values of type string, number and boolean are indexed.
+ * Used for internal data management only. User should not have direct interactions with this class
+ *
+ * @author horstexplorer
+ */
+public class SecondaryIndex {
+
+    private final String path;
+    private final String dataType;
+    private final JSONPointer pointer;
+    // value > identifiers
+    private final ConcurrentSkipListMap<IndexValue, Set<String>> valueIndex = new ConcurrentSkipListMap<>();
+    // identifier > value
+    private final ConcurrentHashMap<String, IndexValue> identifierIndex = new ConcurrentHashMap<>();
+    // identifiers modified while building
+    private Set<String> modifiedWhileBuilding = null;
+
+    /**
+     * Creates a new SecondaryIndex
+     * <p>
+     * The datatype within the path will be converted to lowercase only to simplify handling.
+     *
+     * @param path json pointer to the indexed field, starting with the datatype
+     * @throws IllegalArgumentException if the path is not a valid json pointer
+     */
+    protected SecondaryIndex(String path){
+        path = normalizePath(path);
+        this.path = path;
+        this.pointer = new JSONPointer(path);
+        this.dataType = (path.indexOf("/", 1) > 0) ? path.substring(1, path.indexOf("/", 1)) : path.substring(1);
+    }
+
+    /**
+     * Used to bring a path to the format used by indexes
+     *
+     * @param path json pointer starting with the datatype
+     * @return String
+     * @throws IllegalArgumentException if the path is invalid
+     */
+    protected static String normalizePath(String path){
+        try{
+            return QueryFilter.normalizePath(path);
+        }catch (GenericObjectException e){
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the path of the indexed field
+     *
+     * @return String
+     */
+    public String getPath(){ return path; }
+
+    /**
+     * Returns the datatype containing the indexed field
+     *
+     * @return String
+     */
+    public String getDataType(){ return dataType; }
+
+    /**
+     * Returns the pointer to the indexed field
+     *
+     * @return JSONPointer
+     */
+    protected JSONPointer getPointer(){ return pointer; }
+
+    /**
+     * Returns the number of indexed DataSets
+     *
+     * @return int
+     */
+    public int size(){ return identifierIndex.size(); }
+
+    /*                  MODIFY                  */
+
+    /**
+     * Used to update the indexed value of a DataSet
+     *
+     * @param identifier identifier of the DataSet
+     * @param value the current value of the field, null if it does not exist
+     */
+    protected synchronized void update(String identifier, Object value){
+        if(modifiedWhileBuilding != null){
+            modifiedWhileBuilding.add(identifier);
+        }
+        put(identifier, value);
+    }
+
+    /**
+     * Used to remove a DataSet from the index
+     *
+     * @param identifier identifier of the DataSet
+     */
+    protected synchronized void remove(String identifier){
+        update(identifier, null);
+    }
+
+    /**
+     * Used to update the index while (re)building it
+     * <p>
+     * Values of DataSets which have been modified since the build started are ignored, as they may be outdated
+     *
+     * @param identifier identifier of the DataSet
+     * @param value the value of the field at the time it was read, null if it does not exist
+     */
+    protected synchronized void build(String identifier, Object value){
+        if(modifiedWhileBuilding != null && modifiedWhileBuilding.contains(identifier)){
+            return;
+        }
+        put(identifier, value);
+    }
+
+    /**
+     * Used to signal that the index will be (re)build
+     */
+    protected synchronized void startBuilding(){
+        modifiedWhileBuilding = new HashSet<>();
+    }
+
+    /**
+     * Used to signal that the index has been (re)build
+     */
+    protected synchronized void finishBuilding(){
+        modifiedWhileBuilding = null;
+    }
+
+    /**
+     * Used to clear the index
+     */
+    protected synchronized void clear(){
+        valueIndex.clear();
+        identifierIndex.clear();
+    }
+
+    /**
+     * Used to put a new value to the index, removing the old one
+     *
+     * @param identifier identifier of the DataSet
+     * @param value value of the field or null
+     */
+    private void put(String identifier, Object value){
+        IndexValue newValue = IndexValue.of(value);
+        IndexValue oldValue = (newValue != null) ? identifierIndex.put(identifier, newValue) : identifierIndex.remove(identifier);
+        if(oldValue != null){
+            if(oldValue.equals(newValue)){
+                return;
+            }
+            Set<String> set = valueIndex.get(oldValue);
+            if(set != null){
+                set.remove(identifier);
+                if(set.isEmpty()){
+                    valueIndex.remove(oldValue);
+                }
+            }
+        }
+        if(newValue != null){
+            valueIndex.computeIfAbsent(newValue, k->new ConcurrentSkipListSet<>()).add(identifier);
+        }
+    }
+
+    /*                  LOOKUP                  */
+
+    /**
+     * Returns the identifiers of all DataSets where the field equals the given value
+     *
+     * @param value the value
+     * @param limit max number of identifiers
+     * @return List of identifiers
+     */
+    public List<String> lookup(Object value, int limit){
+        IndexValue key = IndexValue.of(value);
+        List<String> list = new ArrayList<>();
+        if(key == null){
+            return list;
+        }
+        Set<String> set = valueIndex.get(key);
+        if(set != null){
+            for(String s : set){
+                if(list.size() >= limit){ break; }
+                list.add(s);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns the identifiers of all DataSets where the field is within the given range
+     * <p>
+     * Values of different types are ordered boolean &lt; number &lt; string
+     *
+     * @param from lower bound (inclusive), null for no bound
+     * @param to upper bound (inclusive), null for no bound
+     * @param limit max number of identifiers
+     * @return List of identifiers, ordered by value
+     */
+    public List<String> lookupRange(Object from, Object to, int limit){
+        IndexValue f = IndexValue.of(from);
+        IndexValue t = IndexValue.of(to);
+        NavigableMap<IndexValue, Set<String>> range;
+        if(f != null && t != null){
+            if(f.compareTo(t) > 0){
+                return new ArrayList<>();
+            }
+            range = valueIndex.subMap(f, true, t, true);
+        }else if(f != null){
+            range = valueIndex.tailMap(f, true);
+        }else if(t != null){
+            range = valueIndex.headMap(t, true);
+        }else{
+            range = valueIndex;
+        }
+        List<String> list = new ArrayList<>();
+        for(Set<String> set : range.values()){
+            for(String s : set){
+                if(list.size() >= limit){ return list; }
+                list.add(s);
+            }
+        }
+        return list;
+    }
+
+    /*                  STORAGE                  */
+
+    /**
+     * Returns the indexed values as json object
+     *
+     * @return JSONObject containing identifier:value pairs
+     */
+    protected JSONObject export(){
+        JSONObject jsonObject = new JSONObject();
+        identifierIndex.forEach((k, v) -> jsonObject.put(k, v.getValue()));
+        return jsonObject;
+    }
+
+    /**
+     * Used to fill the index from previously exported values
+     *
+     * @param jsonObject containing identifier:value pairs
+     */
+    protected synchronized void restore(JSONObject jsonObject){
+        for(String identifier : jsonObject.keySet()){
+            put(identifier, jsonObject.get(identifier));
+        }
+    }
+
+    /**
+     * Comparable representation of an indexed value
+     */
+    private static class IndexValue implements Comparable<IndexValue>{
+
+        private final int type; // 0 - boolean | 1 - number | 2 - string
+        private final Object value;
+        private final Comparable<Object> comparable;
+
+        @SuppressWarnings("unchecked")
+        private IndexValue(int type, Object value, Comparable<?> comparable){
+            this.type = type;
+            this.value = value;
+            this.comparable = (Comparable<Object>) comparable;
+        }
+
+        /**
+         * Creates a new IndexValue
+         *
+         * @param value boolean, number or string
+         * @return IndexValue or null if the value can not be indexed
+         */
+        private static IndexValue of(Object value){
+            if(value instanceof Boolean){
+                return new IndexValue(0, value, (Boolean) value);
+            }else if(value instanceof Number){
+                try{
+                    return new IndexValue(1, value, new BigDecimal(value.toString()).stripTrailingZeros());
+                }catch (NumberFormatException e){
+                    return null; // NaN or infinite
+                }
+            }else if(value instanceof String){
+                return new IndexValue(2, value, (String) value);
+            }
+            return null;
+        }
+
+        private Object getValue(){ return value; }
+
+        @Override
+        public int compareTo(IndexValue o) {
+            if(type != o.type){
+                return Integer.compare(type, o.type);
+            }
+            return comparable.compareTo(o.comparable);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof IndexValue)){
+                return false;
+            }
+            return compareTo((IndexValue) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, comparable);
+        }
+    }
+}
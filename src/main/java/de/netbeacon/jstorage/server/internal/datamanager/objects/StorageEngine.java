@@ -0,0 +1,141 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import de.netbeacon.jstorage.server.internal.datamanager.DataManager;
+import de.netbeacon.jstorage.server.tools.crypt.JS2CryptTool;
+import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.function.Predicate;
+
+/**
+ * This interface describes how a {@link DataShard} stores the serialized data of its DataSets
+ * <p>
+ * Engines store the data of a single shard. The data is handed over already serialized, encryption is handled by the engine.
+ * Engines which are able to access single DataSets implement {@link IncrementalStorageEngine}, all others only support replacing the whole content at once.
+ * Used for internal data management only. User should not have direct interactions with this class
+ *
+ * @author horstexplorer
+ */
+public interface StorageEngine {
+
+    /**
+     * Available storage engines
+     */
+    enum Type {
+        /**
+         * All DataSets of a shard are stored within one file which is rewritten as a whole. See {@link FileStorageEngine}
+         */
+        FILE,
+        /**
+         * DataSets are stored within a log structured merge tree and written individually. See {@link LSMStorageEngine}
+         */
+        LSM;
+
+        /**
+         * Returns the type matching the given name
+         *
+         * @param name name of the type, case insensitive
+         * @return Type
+         * @throws IllegalArgumentException if no type matches the name
+         */
+        public static Type of(String name){
+            return Type.valueOf(name.toUpperCase());
+        }
+    }
+
+    /**
+     * Used to replace the whole content with the given data
+     *
+     * @param data serialized DataSets
+     * @throws IOException on exception
+     */
+    void replaceAll(Collection<String> data) throws IOException;
+
+    /**
+     * Used to visit the serialized data of all stored DataSets
+     * <p>
+     * Data which can not be decrypted is skipped
+     *
+     * @param consumer receives the data, returns false to stop
+     * @throws IOException on exception
+     */
+    void scan(Predicate<String> consumer) throws IOException;
+
+    /**
+     * Used to make sure all changes have been written to the drive
+     *
+     * @throws IOException on exception
+     */
+    void flush() throws IOException;
+
+    /**
+     * Used to release all resources held in memory. The engine may still be used afterwards
+     *
+     * @throws IOException on exception
+     */
+    void close() throws IOException;
+
+    /**
+     * Used to delete all stored data
+     */
+    void destroy();
+
+    /**
+     * Returns the number of bytes used on the drive
+     *
+     * @return long
+     */
+    long getStoredBytes();
+
+    /*                  STATIC                  */
+
+    /**
+     * Used to encrypt serialized data if the DataBase is encrypted
+     *
+     * @param dataBase the DataBase the data belongs to
+     * @param data serialized data
+     * @return String
+     * @throws CryptException if the data could not be encrypted
+     */
+    static String encode(DataBase dataBase, String data) throws CryptException{
+        if(dataBase.encrypted()){
+            return DataManager.getInstance().getJs2CryptTool().encode(data.getBytes());
+        }
+        return data;
+    }
+
+    /**
+     * Used to decrypt stored data if necessary
+     *
+     * @param data stored data
+     * @return String or null if the data is encrypted but the JS2CryptTool is not ready
+     * @throws CryptException if the data could not be decrypted
+     */
+    static String decode(String data) throws CryptException{
+        if(JS2CryptTool.isJS2Encrypted(data)){
+            if(!DataManager.getInstance().getJs2CryptTool().isReady()){
+                return null;
+            }
+            return new String(DataManager.getInstance().getJs2CryptTool().decode(data));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import org.json.JSONObject;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * This class keeps previous versions of recently changed DataSets so that multiple DataSets can be read as they were at the same point in time
+ * <p>
+ * Every change to a DataSet receives a number from a global commit sequence. A snapshot remembers the sequence at the time it has been opened
+ * and reads the newest version of each DataSet which is not newer than this number. Previous versions are only kept while snapshots are open
+ * and dropped once no open snapshot needs them anymore, so writers never wait for readers.
+ * The datatypes of a DataSet are replaced, never modified, so versions only need to copy the top level of the data.
+ * Used for internal data management only. User should not have direct interactions with this class
+ *
+ * @author horstexplorer
+ */
+public class VersionStore {
+
+    private static VersionStore instance;
+
+    private final Object monitor = new Object();
+    private long sequence = 0; // guarded by monitor
+    private final TreeMap<Long, Integer> openSnapshots = new TreeMap<>(); // guarded by monitor; sequence > number of snapshots
+    private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+    private final ConcurrentHashMap<String, Chain> chains = new ConcurrentHashMap<>();
+    private final AtomicBoolean collecting = new AtomicBoolean(false);
+
+    private VersionStore(){}
+
+    /**
+     * Used to get the instance of this class
+     *
+     * @return VersionStore
+     */
+    public static synchronized VersionStore getInstance(){
+        if(instance == null){
+            instance = new VersionStore();
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the key used to identify a DataSet
+     *
+     * @param database identifier of the database
+     * @param table identifier of the table
+     * @param identifier identifier of the DataSet
+     * @return String
+     */
+    protected static String keyOf(String database, String table, String identifier){
+        return database+">"+table+">"+identifier;
+    }
+
+    /**
+     * Returns the number of DataSets with previous versions
+     *
+     * @return int
+     */
+    public int size(){ return chains.size(); }
+
+    /*                  SNAPSHOTS                   */
+
+    /**
+     * Used to open a new snapshot
+     * <p>
+     * Waits for changes which are already in progress to complete, so that those are either fully visible or not at all.
+     * The snapshot has to be closed once it is no longer needed
+     *
+     * @return Snapshot
+     */
+    public Snapshot openSnapshot(){
+        long at;
+        synchronized (monitor){
+            at = sequence;
+            openSnapshots.merge(at, 1, Integer::sum);
+        }
+        // changes in progress have been numbered before the snapshot, so they have to be visible
+        int spins = 0;
+        while(!inFlight.headSet(at, true).isEmpty()){
+            if(++spins < 100){
+                Thread.onSpinWait();
+            }else{
+                LockSupport.parkNanos(10000);
+            }
+        }
+        return new Snapshot(at);
+    }
+
+    /**
+     * Used to close a snapshot
+     *
+     * @param snapshot the snapshot
+     */
+    private void closeSnapshot(Snapshot snapshot){
+        synchronized (monitor){
+            openSnapshots.computeIfPresent(snapshot.getSequence(), (k, v) -> (v > 1) ? v-1 : null);
+        }
+        collectGarbage();
+    }
+
+    /**
+     * Returns the oldest sequence which may still be read
+     * <p>
+     * Has to be called while holding the monitor
+     *
+     * @return long
+     */
+    private long getHorizon(){
+        return (openSnapshots.isEmpty()) ? sequence : Math.min(openSnapshots.firstKey(), sequence);
+    }
+
+    /**
+     * Used to drop all versions which are no longer needed by any open snapshot
+     */
+    private void collectGarbage(){
+        if(chains.isEmpty() || !collecting.compareAndSet(false, true)){
+            return;
+        }
+        try{
+            long horizon;
+            synchronized (monitor){
+                horizon = getHorizon();
+            }
+            for(String key : chains.keySet()){
+                chains.computeIfPresent(key, (k, chain) -> (chain.current <= horizon) ? null : chain.prune(horizon));
+            }
+        }finally {
+            collecting.set(false);
+        }
+    }
+
+    /*                  CHANGES                  */
+
+    /**
+     * Used to signal that a DataSet is about to change
+     * <p>
+     * The previous state is only requested if a snapshot might need it. Has to be called while the DataSet can not be read,
+     * {@link #finish(long)} has to be called once the change has been applied, even if it failed
+     *
+     * @param key key of the DataSet, see {@link #keyOf(String, String, String)}
+     * @param previous supplies the current data of the DataSet, null if the DataSet does not exist yet
+     * @return long, the sequence of the change
+     */
+    protected long begin(String key, Supplier<JSONObject> previous){
+        long seq;
+        long horizon;
+        boolean record;
+        synchronized (monitor){
+            seq = ++sequence;
+            inFlight.add(seq);
+            record = !openSnapshots.isEmpty();
+            horizon = getHorizon();
+        }
+        if(record){
+            JSONObject data = (previous != null) ? previous.get() : null;
+            JSONObject copy = (data != null) ? new JSONObject(data, JSONObject.getNames(data)) : null;
+            chains.compute(key, (k, chain) -> {
+                Version version = new Version((chain != null) ? chain.current : 0, copy);
+                return new Chain(seq, (chain != null) ? chain.prepend(version).versions : new Version[]{version}).prune(horizon);
+            });
+        }
+        return seq;
+    }
+
+    /**
+     * Used to signal that a change has been applied
+     *
+     * @param seq the sequence of the change
+     */
+    protected void finish(long seq){
+        inFlight.remove(seq);
+    }
+
+    /**
+     * Returns the data of a DataSet as it was when the snapshot has been opened
+     * <p>
+     * Has to be called while the DataSet can not be changed. The result must not be modified
+     *
+     * @param key key of the DataSet, see {@link #keyOf(String, String, String)}
+     * @param snapshot the snapshot
+     * @param current the current data of the DataSet, null if it does not exist anymore
+     * @return JSONObject or null if the DataSet did not exist at this time
+     */
+    protected JSONObject read(String key, Snapshot snapshot, JSONObject current){
+        Chain chain = chains.get(key);
+        if(chain == null || chain.current <= snapshot.getSequence()){
+            return current;
+        }
+        for(Version version : chain.versions){
+            if(version.seq <= snapshot.getSequence()){
+                return version.data;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A consistent view on all DataSets
+     */
+    public class Snapshot implements AutoCloseable{
+
+        private final long seq;
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+
+        private Snapshot(long seq){
+            this.seq = seq;
+        }
+
+        /**
+         * Returns the sequence of the last change visible to this snapshot
+         *
+         * @return long
+         */
+        public long getSequence(){ return seq; }
+
+        @Override
+        public void close(){
+            if(closed.compareAndSet(false, true)){
+                closeSnapshot(this);
+            }
+        }
+    }
+
+    /**
+     * Previous versions of a single DataSet, newest first
+     */
+    private static class Chain {
+
+        private final long current; // sequence of the current data
+        private final Version[] versions;
+
+        private Chain(long current, Version[] versions){
+            this.current = current;
+            this.versions = versions;
+        }
+
+        private Chain prepend(Version version){
+            Version[] v = new Version[versions.length+1];
+            v[0] = version;
+            System.arraycopy(versions, 0, v, 1, versions.length);
+            return new Chain(current, v);
+        }
+
+        /**
+         * Drops all versions older than the newest one visible at the horizon
+         *
+         * @param horizon the oldest sequence which may still be read
+         * @return Chain
+         */
+        private Chain prune(long horizon){
+            for(int i = 0; i < versions.length; i++){
+                if(versions[i].seq <= horizon){
+                    return (i == versions.length-1) ? this : new Chain(current, Arrays.copyOf(versions, i+1));
+                }
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Data of a DataSet since the given sequence
+     */
+    private static class Version {
+
+        private final long seq;
+        private final JSONObject data; // null if the DataSet did not exist
+
+        private Version(long seq, JSONObject data){
+            this.seq = seq;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * This class keeps compressed copies of the data of recently unloaded shards in memory
+ * <p>
+ * Idle shards are unloaded to this cache first, loading them again only requires decompressing their data instead of reading and decrypting their files.
+ * The copies are shared between all tables and limited by the number of compressed bytes. Once the limit has been reached the least recently used copies are dropped,
+ * their shards will then be loaded from their files again.
+ * Used for internal data management only. User should not have direct interactions with this class
+ *
+ * @author horstexplorer
+ */
+public class WarmShardCache {
+
+    private static final LinkedHashMap<DataShard, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private static long maxBytes = defaultMaxBytes();
+    private static long configuredMaxBytes = -1;
+    private static long usedBytes = 0;
+
+    private WarmShardCache(){}
+
+    /**
+     * Used to set the number of bytes the compressed copies may use
+     * <p>
+     * 0 disables the cache, negative values restore the default of 1/16 of the maximum heap size
+     *
+     * @param value number of bytes
+     */
+    public static void setMaxBytes(long value){
+        synchronized (cache){
+            configuredMaxBytes = (value < 0) ? -1 : value;
+            maxBytes = (value < 0) ? defaultMaxBytes() : value;
+            evict();
+        }
+    }
+
+    /**
+     * Returns the number of bytes the compressed copies may use
+     *
+     * @return long
+     */
+    public static long getMaxBytes(){
+        synchronized (cache){
+            return maxBytes;
+        }
+    }
+
+    /**
+     * Returns the number of bytes the compressed copies may use as it has been set
+     *
+     * @return long, -1 if the default is used
+     */
+    public static long getConfiguredMaxBytes(){
+        synchronized (cache){
+            return configuredMaxBytes;
+        }
+    }
+
+    /**
+     * Returns the number of bytes currently used by the compressed copies
+     *
+     * @return long
+     */
+    public static long getUsedBytes(){
+        synchronized (cache){
+            return usedBytes;
+        }
+    }
+
+    /**
+     * Returns the number of shards with a compressed copy
+     *
+     * @return int
+     */
+    public static int getShardCount(){
+        synchronized (cache){
+            return cache.size();
+        }
+    }
+
+    /*                  ACCESS                  */
+
+    /**
+     * Used to keep a compressed copy of the data of a shard
+     * <p>
+     * Replaces an existing copy. The copy might be dropped immediately if it does not fit into the cache
+     *
+     * @param dataShard the shard
+     * @param lines serialized DataSets, has to match the data stored by the storage engine of the shard
+     * @throws IOException if the data could not be compressed
+     */
+    protected static void put(DataShard dataShard, List<String> lines) throws IOException{
+        if(getMaxBytes() == 0){
+            return;
+        }
+        byte[] compressed = compress(lines);
+        synchronized (cache){
+            byte[] previous = cache.put(dataShard, compressed);
+            usedBytes += compressed.length - ((previous != null) ? previous.length : 0);
+            evict();
+        }
+    }
+
+    /**
+     * Returns the compressed copy of the data of a shard
+     *
+     * @param dataShard the shard
+     * @return byte[] or null if there is no copy
+     */
+    protected static byte[] get(DataShard dataShard){
+        synchronized (cache){
+            return cache.get(dataShard);
+        }
+    }
+
+    /**
+     * Used to drop the compressed copy of the data of a shard
+     *
+     * @param dataShard the shard
+     * @return byte[] the copy or null if there was none
+     */
+    protected static byte[] remove(DataShard dataShard){
+        synchronized (cache){
+            byte[] previous = cache.remove(dataShard);
+            if(previous != null){
+                usedBytes -= previous.length;
+            }
+            return previous;
+        }
+    }
+
+    /**
+     * Used to read the serialized DataSets of a compressed copy
+     *
+     * @param compressed the copy
+     * @param consumer receiving each serialized DataSet, may return false to stop
+     * @throws IOException if the copy could not be decompressed
+     */
+    protected static void forEachLine(byte[] compressed, Predicate<String> consumer) throws IOException{
+        try(BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(new InflaterInputStream(new ByteArrayInputStream(compressed)), StandardCharsets.UTF_8), 65536)){
+            String line;
+            while((line = bufferedReader.readLine()) != null){
+                if(!line.isEmpty() && !consumer.test(line)){
+                    return;
+                }
+            }
+        }
+    }
+
+    /*                  INTERNAL                  */
+
+    private static byte[] compress(List<String> lines) throws IOException{
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(new DeflaterOutputStream(byteArrayOutputStream, deflater, 65536), StandardCharsets.UTF_8), 65536)){
+            for(String line : lines){
+                writer.write(line);
+                writer.write('\n');
+            }
+        }finally {
+            deflater.end();
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Used to drop the least recently used copies until the cache fits its limit
+     * <p>
+     * Has to be called while holding the lock of the cache
+     */
+    private static void evict(){
+        Iterator<Map.Entry<DataShard, byte[]>> iterator = cache.entrySet().iterator();
+        while(usedBytes > maxBytes && iterator.hasNext()){
+            usedBytes -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+
+    private static long defaultMaxBytes(){
+        return Runtime.getRuntime().maxMemory()/16;
+    }
+}
@@ -22,16 +22,14 @@ import de.netbeacon.jstorage.server.internal.usermanager.object.User;
 import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
 import de.netbeacon.jstorage.server.tools.exceptions.SetupException;
 import de.netbeacon.jstorage.server.tools.exceptions.ShutdownException;
+import de.netbeacon.jstorage.server.tools.file.AtomicFile;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
-import java.nio.file.Files;
 import java.util.Base64;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -210,7 +208,7 @@ public class UserManager {
             if(!f.exists()){ f.createNewFile(); }
             else{
                 // load users from file
-                String content = new String(Files.readAllBytes(f.toPath()));
+                String content = AtomicFile.read(f);
                 if(!content.isEmpty()){
                     JSONObject jsonObject = new JSONObject(content);
                     JSONArray users = jsonObject.getJSONArray("users");
@@ -307,11 +305,7 @@ public class UserManager {
             File d = new File("./jstorage/config/");
             if(!d.exists()){ d.mkdirs(); }
             File f = new File("./jstorage/config/usermanager");
-            BufferedWriter writer = new BufferedWriter(new FileWriter(f));
-            writer.write(jsonObject.toString());
-            writer.newLine();
-            writer.flush();
-            writer.close();
+            AtomicFile.write(f, jsonObject.toString());
             // clear
             userPool.clear();
         }catch (Exception e){
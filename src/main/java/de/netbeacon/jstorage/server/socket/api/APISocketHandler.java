@@ -22,6 +22,8 @@ import de.netbeacon.jstorage.server.socket.api.processing.APIProcessor;
 import de.netbeacon.jstorage.server.socket.api.processing.APIProcessorResult;
 import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
 import de.netbeacon.jstorage.server.tools.exceptions.HTTPException;
+import de.netbeacon.jstorage.server.tools.httpprocessing.ChunkedWriter;
+import de.netbeacon.jstorage.server.tools.httpprocessing.NDJSONReader;
 import de.netbeacon.jstorage.server.tools.info.Info;
 import de.netbeacon.jstorage.server.tools.ipban.IPBanManager;
 import org.json.JSONObject;
@@ -175,47 +177,59 @@ public class APISocketHandler implements Runnable {
                     }
                     // analyze method
                     JSONObject bodycontent = null;
+                    NDJSONReader bodystream = null;
                     if(headers.get("http_method").equalsIgnoreCase("PUT") || headers.get("http_method").equalsIgnoreCase("POST") || headers.get("http_method").equalsIgnoreCase("DELETE")){
                         // check if contains data
                         if(headers.containsKey("content-length") ^ headers.containsKey("content-type")){ // only partial headers (xor)
                             throw new HTTPException(400);
                         }else if(headers.containsKey("content-length") && headers.containsKey("content-type")){ // both
                             // check values
-                            if(!(headers.get("content-type").equalsIgnoreCase("application/json") || headers.get("content-type").equalsIgnoreCase("application/json; charset=utf-8"))){
-                                throw new HTTPException(406);
-                            }
-                            // start timeout; this is the maximum amount of data / a second per mbyte (of the max request)
-                            startTimeoutTask(maxbodysize);
-
-                            int clength = -1;
-                            try{clength = Integer.parseInt(headers.get("content-length"));if(clength <= 0){throw new Exception();}
-                            }catch (Exception e){throw new HTTPException(400);}
-                            // get data
-                            //bufferedReader.readLine(); // skip empty line // not needed as we use this line to determine that we stop reading the header
-                            // start reading, max at the maximum body size
-                            if(1024*maxbodysize >= clength){
-                                ByteBuffer bodyBuffer = ByteBuffer.allocate(1024*maxbodysize);
-                                try{
-                                    int byt;
-                                    while (clength > 0 && (byt = bufferedReader.read()) != -1){
-                                        clength--;
-                                        bodyBuffer.put((byte) byt);
+                            if(headers.get("content-type").equalsIgnoreCase("application/x-ndjson") || headers.get("content-type").equalsIgnoreCase("application/x-ndjson; charset=utf-8")){
+                                // streamed body, will be read while processing; not limited by the max body size
+                                long clength = -1;
+                                try{clength = Long.parseLong(headers.get("content-length"));if(clength <= 0){throw new Exception();}
+                                }catch (Exception e){throw new HTTPException(400);}
+                                bodystream = new NDJSONReader(bufferedReader, clength, 1024*maxbodysize); // a single line may not exceed the max body size
+                                // the body might not be fully consumed, so this connection cant be reused
+                                keepAlive = false;
+                                // start timeout; base timeout + a second per mbyte
+                                startTimeoutTask(timeoutms+(clength/1024));
+                            }else{
+                                if(!(headers.get("content-type").equalsIgnoreCase("application/json") || headers.get("content-type").equalsIgnoreCase("application/json; charset=utf-8"))){
+                                    throw new HTTPException(406);
+                                }
+                                // start timeout; this is the maximum amount of data / a second per mbyte (of the max request)
+                                startTimeoutTask(maxbodysize);
+
+                                int clength = -1;
+                                try{clength = Integer.parseInt(headers.get("content-length"));if(clength <= 0){throw new Exception();}
+                                }catch (Exception e){throw new HTTPException(400);}
+                                // get data
+                                //bufferedReader.readLine(); // skip empty line // not needed as we use this line to determine that we stop reading the header
+                                // start reading, max at the maximum body size
+                                if(1024*maxbodysize >= clength){
+                                    ByteBuffer bodyBuffer = ByteBuffer.allocate(1024*maxbodysize);
+                                    try{
+                                        int byt;
+                                        while (clength > 0 && (byt = bufferedReader.read()) != -1){
+                                            clength--;
+                                            bodyBuffer.put((byte) byt);
+                                        }
+                                        bodyBuffer.flip();
+                                        byte[] bodydata = new byte[bodyBuffer.remaining()];
+                                        bodyBuffer.get(bodydata);
+                                        bodycontent = new JSONObject(new String(bodydata));
+                                    }catch (BufferOverflowException e){ // should never be thrown
+                                        throw new HTTPException(413, "Body/Payload Exceeds Limit");
+                                    }catch (Exception e){ // most likely failed to build the json
+                                        throw new HTTPException(422);
                                     }
-                                    bodyBuffer.flip();
-                                    byte[] bodydata = new byte[bodyBuffer.remaining()];
-                                    bodyBuffer.get(bodydata);
-                                    bodycontent = new JSONObject(new String(bodydata));
-                                }catch (BufferOverflowException e){ // should never be thrown
-                                    throw new HTTPException(413, "Body/Payload Exceeds Limit");
-                                }catch (Exception e){ // most likely failed to build the json
-                                    throw new HTTPException(422);
+                                }else{
+                                    throw new HTTPException(413, "Body/Payload Exceeds Limit"); // should be thrown instead of rethrow in BOE
                                 }
-                            }else{
-                                throw new HTTPException(413, "Body/Payload Exceeds Limit"); // should be thrown instead of rethrow in BOE
+                                // stop timeout
+                                stopTimeout();
                             }
-                            // stop timeout
-                            stopTimeout();
-
                         }else{ // none
                             // not required as some data may be updated via header/request url
                             // may throw an exception in the future
@@ -280,9 +294,13 @@ public class APISocketHandler implements Runnable {
                  */
 
                     // prepare
-                    APIProcessor httpProcessor = new APIProcessor(user, user_loginMode, headers.get("http_method"), headers.get("http_url"), bodycontent);
+                    APIProcessor httpProcessor = new APIProcessor(user, user_loginMode, headers.get("http_method"), headers.get("http_url"), bodycontent, bodystream);
                     // process
                     httpProcessor.process();
+                    if(bodystream != null){
+                        // stop timeout of the streamed body
+                        stopTimeout();
+                    }
                     // get result
                     APIProcessorResult hpr = httpProcessor.getResult();
 
@@ -314,14 +332,26 @@ public class APISocketHandler implements Runnable {
                     // send max & remaining bucket size + estimated refill time
                     sendLines("Ratelimit-Limit: "+user.getMaxBucket(),"Ratelimit-Remaining: "+user.getRemainingBucket(), "Ratelimit-Reset: "+user.getBucketRefillTime());
                     // send data
-                    if(hpr.getResult() != null){
+                    if(hpr.getStreamedResult() != null){
+                        sendLines("Content-Type: "+hpr.getStreamedResult().getContentType(), "Transfer-Encoding: chunked");
+                        endHeaders(); // spacer between header and data
+                        ChunkedWriter chunkedWriter = new ChunkedWriter(socket.getOutputStream(), 1024*64);
+                        try{
+                            hpr.getStreamedResult().writeTo(chunkedWriter);
+                            chunkedWriter.close(); // sends the last chunk
+                        }catch (Exception e){
+                            // headers are already sent, we can only abort the transfer
+                            logger.debug("Streaming Result Failed: ", e);
+                            keepAlive = false;
+                        }
+                    }else if(hpr.getResult() != null){
                         sendLines("Content-Type: application/json", "Content-Length: "+hpr.getResult().toString().length());
                         endHeaders(); // spacer between header and data
                         sendData(hpr.getResult().toString());
                     }else{
                         endHeaders(); // "server: I finished sending headers"
                     }
-                    logger.debug("Sent Result: "+hpr.getHTTPStatusMessage()+ " "+((hpr.getResult() != null)? hpr.getResult().toString() : "empty"));
+                    logger.debug("Sent Result: "+hpr.getHTTPStatusMessage()+ " "+((hpr.getStreamedResult() != null)? "streamed" : (hpr.getResult() != null)? hpr.getResult().toString() : "empty"));
                     // done processing :3 *happy calculation noises*
                     logger.debug("Finished Processing Of "+socket.getRemoteSocketAddress());
                     if(!keepAlive){
@@ -23,6 +23,7 @@ import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
 import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
 import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
 import de.netbeacon.jstorage.server.tools.httpprocessing.HTTPProcessorHelper;
+import de.netbeacon.jstorage.server.tools.httpprocessing.NDJSONReader;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +46,7 @@ public class APIProcessor {
     private final User user;
     private final int userLoginMode;
     private final JSONObject payload;
+    private final NDJSONReader stream;
     private List<String> path;
     private HashMap<String, String> args;
     private final APIProcessorResult result = new APIProcessorResult();
@@ -64,11 +66,26 @@ public class APIProcessor {
      * @param payload       data which might be send to the server within the body
      */
     public APIProcessor(User user, int userLoginMode, String requestMethod, String requestURL, JSONObject payload){
+        this(user, userLoginMode, requestMethod, requestURL, payload, null);
+    }
+
+    /**
+     * Sets up a new APIProcessor for the given input
+     *
+     * @param user          the user which requested processing
+     * @param userLoginMode describes the mode the user used to authenticate
+     * @param requestMethod the request method
+     * @param requestURL    the request url
+     * @param payload       data which might be send to the server within the body
+     * @param stream        streamed data which might be send to the server within the body instead of the payload
+     */
+    public APIProcessor(User user, int userLoginMode, String requestMethod, String requestURL, JSONObject payload, NDJSONReader stream){
         this.user = user;
         this.userLoginMode = userLoginMode;
         this.requestMethod = requestMethod;
         this.requestURL = requestURL;
         this.payload = payload;
+        this.stream = stream;
         this.processingId = UUID.randomUUID().toString();
     }
 
@@ -98,12 +115,20 @@ public class APIProcessor {
                     result.addAdditionalInformation("Invalid Arguments");
                     return;
                 }
-                if((action.requiresData() && (payload == null))) {
+                if(stream != null && !action.supportsStream()){
+                    result.setHTTPStatusCode(415);
+                    result.addAdditionalInformation("Stream Not Supported");
+                    return;
+                }
+                if((action.requiresData() && (payload == null) && (stream == null))) {
                     result.setHTTPStatusCode(400);
                     result.addAdditionalInformation("Data Required");
                     return;
                 }else{
                     action.setPayload(payload); // might be null - required to allow optional payloads
+                    if(stream != null){
+                        action.setStream(stream);
+                    }
                 }
                 if(!action.loginModeIsSupported(userLoginMode)) {
                     result.setHTTPStatusCode(401);
@@ -137,6 +162,9 @@ public class APIProcessor {
                         case 204:
                         case 205:
                         case 206:
+                        case 207:
+                        case 208:
+                        case 209:
                             result.setHTTPStatusCode(404);
                             break;
                         case 211:
@@ -145,6 +173,9 @@ public class APIProcessor {
                         case 214:
                         case 215:
                         case 216:
+                        case 217:
+                        case 218:
+                        case 219:
                         case 220:
                         case 221:
                         case 231:
@@ -240,8 +271,16 @@ public class APIProcessor {
             addAction(Arrays.asList("data", "db"), new DataAction_DataBaseSettings());
             addAction(Arrays.asList("data", "db", "table"), new DataAction_DataTableSettings());
             addAction(Arrays.asList("data", "db", "table", "dataset"), new DataAction_DataSetSettings());
+            addAction(Arrays.asList("data", "db", "table", "dataset"), new DataAction_DataSetTTL());
             addAction(Arrays.asList("data", "db", "table", "dataset"), new DataAction_GetDataSet());
+            addAction(Arrays.asList("data", "db", "table"), new DataAction_ImportDataSets());
+            addAction(Arrays.asList("data", "db", "table"), new DataAction_ExportDataSets());
+            addAction(Arrays.asList("data", "db", "table"), new DataAction_LookupDataSets());
+            addAction(Arrays.asList("data", "db", "table"), new DataAction_QueryDataSets());
+            addAction(Arrays.asList("data", "db", "table"), new DataAction_AggregateDataSets());
+            addAction(Arrays.asList("data", "db", "table"), new DataAction_DataTableSketches());
             addAction(Arrays.asList("data", "tool"), new DataAction_MultiSelect());
+            addAction(Arrays.asList("data", "tool"), new DataAction_MultiWrite());
             addAction(Arrays.asList("data", "db", "table", "dataset", "datatype"), new DataAction_UpdateDataType());
             // cache actions
             addAction(Arrays.asList("cache"), new CacheAction_CacheSettings());
@@ -18,6 +18,8 @@ package de.netbeacon.jstorage.server.socket.api.processing;
 
 import org.json.JSONObject;
 
+import java.io.Writer;
+
 /**
  * Used as container for return data from processing
  *
@@ -29,6 +31,7 @@ public class APIProcessorResult {
     private String internalStatus;
     private String additionalInformation;
     private JSONObject result;
+    private StreamedResult streamedResult;
 
     /**
      * Instantiates a new API processor result.
@@ -71,6 +74,17 @@ public class APIProcessorResult {
         this.result = jsonObject;
     }
 
+    /**
+     * Used to set result data which will be streamed to the client
+     * <p>
+     * The data will be written once the headers have been sent. This replaces the default result
+     *
+     * @param streamedResult StreamedResult
+     */
+    public void addStreamedResult(StreamedResult streamedResult){
+        this.streamedResult = streamedResult;
+    }
+
     /*                  GET                 */
 
     // HEADER
@@ -262,4 +276,40 @@ public class APIProcessorResult {
         return result;
     }
 
+    /**
+     * Returns the StreamedResult for the body/payload
+     * <p>
+     * Might be null
+     *
+     * @return StreamedResult
+     */
+    public StreamedResult getStreamedResult(){
+        return streamedResult;
+    }
+
+    /*                  STREAM                 */
+
+    /**
+     * Used to write large results to the client without building them in memory first
+     */
+    public interface StreamedResult {
+
+        /**
+         * Returns the content type of the data
+         *
+         * @return String
+         */
+        String getContentType();
+
+        /**
+         * Used to write the data to the client
+         * <p>
+         * Writing blocks while the client is not able to receive more data
+         *
+         * @param writer the writer
+         * @throws Exception on exception
+         */
+        void writeTo(Writer writer) throws Exception;
+    }
+
 }
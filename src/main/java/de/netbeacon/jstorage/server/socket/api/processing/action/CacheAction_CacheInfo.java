@@ -25,6 +25,7 @@ import de.netbeacon.jstorage.server.socket.api.processing.APIProcessorResult;
 import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
 import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
 import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import de.netbeacon.jstorage.server.tools.pagination.KeyPagination;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -39,7 +40,7 @@ import java.util.List;
  * Tries to list information for all or a specific cache <br>
  * Exceptions catched by superordinate processing handler <br>
  * --- Returns --- <br>
- * identifier, lastAccess, status, size, adaptiveLoading as JSONObject <br>
+ * identifier, lastAccess, status, size, adaptiveLoading, content (one page), cursor (next page or null) as JSONObject <br>
  * --- Requirements --- <br>
  * path: cache<br>
  * action: info <br>
@@ -48,7 +49,7 @@ import java.util.List;
  * payload: no <br>
  * permissions: GlobalPermission.Admin, GlobalPermission.CacheAdmin, CacheAdmin_Creator, CacheAdmin_User <br>
  * required_arguments: <br>
- * optional_arguments: identifier(String, cacheIdentifier) <br>
+ * optional_arguments: identifier(String, cacheIdentifier), limit(Integer, entries per page), cursor(String, cursor of the next page), prefix(String, cachedDataIdentifierPrefix), from(String, first cachedDataIdentifier), to(String, last cachedDataIdentifier), reverse(Boolean) <br>
  *
  * @author horstexplorer
  */
@@ -100,9 +101,7 @@ public class CacheAction_CacheInfo implements ProcessingAction {
         if(args.containsKey("identifier")){
             Cache c = CacheManager.getInstance().getCache(args.get("identifier"));
             customResponseData.put("identifier", c.getIdentifier()).put("lastAccess", c.getLastAccess()).put("status", c.getStatus()).put("size", c.size()).put("adaptiveLoading", c.isAdaptive());
-            JSONArray jsonArray = new JSONArray();
-            c.getDataPool().values().forEach(v->jsonArray.put(v.getIdentifier()));
-            customResponseData.put("content", jsonArray);
+            KeyPagination.fromArgs(args).page(c.getDataPool().keySet().iterator()).appendTo(customResponseData, "content");
         }else{
             JSONArray jsonArray = new JSONArray();
             CacheManager.getInstance().getDataPool().values().forEach(v->{
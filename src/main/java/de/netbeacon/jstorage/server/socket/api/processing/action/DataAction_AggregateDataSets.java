@@ -0,0 +1,122 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.socket.api.processing.action;
+
+import de.netbeacon.jstorage.server.internal.datamanager.DataManager;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.DataBase;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.DataTable;
+import de.netbeacon.jstorage.server.internal.usermanager.object.DependentPermission;
+import de.netbeacon.jstorage.server.internal.usermanager.object.GlobalPermission;
+import de.netbeacon.jstorage.server.internal.usermanager.object.User;
+import de.netbeacon.jstorage.server.socket.api.processing.APIProcessorResult;
+import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
+import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
+import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import de.netbeacon.jstorage.server.tools.query.Aggregation;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Data Action - Aggregate DataSets
+ * <p>
+ * --- Does --- <br>
+ * Tries to compute count, sum, avg, min and max of fields of all datasets within the selected table from a database matching the given filter, optionally grouped by other fields <br>
+ * Partial results are computed per shard in parallel and cached until the shard changes, shards which are not loaded stay unloaded. Secondary indexes are used if the filter allows it <br>
+ * Exceptions catched by superordinate processing handler <br>
+ * --- Returns --- <br>
+ * database, identifier, groups as JSONArray (group values and one entry per aggregate), groupCount, shards <br>
+ * --- Requirements --- <br>
+ * path: data/db/table <br>
+ * action: aggregate <br>
+ * http_method: put <br>
+ * login-mode: token <br>
+ * payload: yes - required: aggregates(JSONArray, { "op":"count|sum|avg|min|max", "path":"/datatype/field", "as":NAME }, path optional for count, as optional) - optional: filter(JSONObject, see query), groupBy(JSONArray of paths) <br>
+ * permissions: GlobalPermission.Admin, GlobalPermission.DBAdmin, DependentPermission.DBAdmin_Creator, DependentPermission.DBAdmin_User, DependentPermission.DBAccess_Read <br>
+ * required_arguments: database(String, databaseIdentifier), identifier(String, tableIdentifier) <br>
+ * optional_arguments: <br>
+ *
+ * @author horstexplorer
+ */
+public class DataAction_AggregateDataSets implements ProcessingAction{
+
+    private APIProcessorResult result;
+    private HashMap<String, String> args;
+    private User user;
+    private JSONObject data;
+
+    @Override
+    public ProcessingAction createNewInstance() {
+        return new DataAction_AggregateDataSets();
+    }
+
+    @Override
+    public String getAction() {
+        return "aggregate";
+    }
+
+    @Override
+    public void setup(User user, APIProcessorResult result, HashMap<String, String> args) {
+        this.user = user;
+        this.result = result;
+        this.args = args;
+    }
+
+    @Override
+    public void setPayload(JSONObject payload) {
+        this.data = payload;
+    }
+
+    @Override
+    public boolean supportedHTTPMethod(String method) {
+        return "put".equalsIgnoreCase(method);
+    }
+
+    @Override
+    public List<String> requiredArguments() {
+        return Arrays.asList("database", "identifier");
+    }
+
+    @Override
+    public boolean requiresData() {
+        return true;
+    }
+
+    @Override
+    public boolean userHasPermission() {
+        return
+                user.hasGlobalPermission(GlobalPermission.Admin) ||
+                user.hasGlobalPermission(GlobalPermission.DBAdmin) ||
+                (user.hasDependentPermission(args.get("database"), DependentPermission.DBAdmin_Creator)) ||
+                (user.hasDependentPermission(args.get("database"), DependentPermission.DBAdmin_User)) ||
+                (user.hasDependentPermission(args.get("database"), DependentPermission.DBAccess_Read));
+    }
+
+    @Override
+    public void process() throws DataStorageException, GenericObjectException, CryptException, NullPointerException {
+        DataBase d = DataManager.getInstance().getDataBase(args.get("database"));
+        DataTable t = d.getTable(args.get("identifier"));
+        Aggregation aggregation = new Aggregation(data);
+        JSONObject customResponseData = t.aggregateDataSets(aggregation)
+                .put("database", d.getIdentifier())
+                .put("identifier", t.getIdentifier());
+        // set result
+        result.addResult(this.getDefaultResponse(customResponseData));
+    }
+}
@@ -51,7 +51,7 @@ import java.util.List;
  * payload: optional <br>
  * permissions: GlobalPermission.Admin, GlobalPermission.DBAdmin, DependentPermission.DBAdmin_Creator, DependentPermission.DBAdmin_User, DependentPermission.DBAccess_Modify <br>
  * required_arguments: database(String, databaseIdentifier), table(String, tableIdentifier), identifier(String, datasetIdentifier) <br>
- * optional_arguments: <br>
+ * optional_arguments: ttl(Long, seconds until the dataset expires) <br>
  *
  * @author horstexplorer
  */
@@ -121,6 +121,9 @@ public class DataAction_CreateDataSet implements ProcessingAction{
             ds = new DataSet(d, t, args.get("identifier"), data);
         }
         t.insertDataSet(ds); // as this might throw, leaving an increased dataset count but no actual dataset, the DataManager corrects the count from time to time
+        if(args.containsKey("ttl")){
+            t.setDataSetTTL(ds.getIdentifier(), parseTTL(args.get("ttl")));
+        }
         JSONObject customResponseData = ds.getFullData();
         // set result
         result.addResult(this.getDefaultResponse(customResponseData));
@@ -131,4 +134,19 @@ public class DataAction_CreateDataSet implements ProcessingAction{
             );
         }catch (Exception ignore){}
     }
+
+    /**
+     * Used to parse the time to live argument
+     *
+     * @param ttl seconds
+     * @return long
+     * @throws GenericObjectException if the argument is not a number
+     */
+    static long parseTTL(String ttl) throws GenericObjectException {
+        try{
+            return Long.parseLong(ttl);
+        }catch (NumberFormatException e){
+            throw new GenericObjectException(400, "Invalid Argument \"ttl\"");
+        }
+    }
 }
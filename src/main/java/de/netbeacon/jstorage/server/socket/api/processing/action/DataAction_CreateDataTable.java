@@ -19,6 +19,7 @@ package de.netbeacon.jstorage.server.socket.api.processing.action;
 import de.netbeacon.jstorage.server.internal.datamanager.DataManager;
 import de.netbeacon.jstorage.server.internal.datamanager.objects.DataBase;
 import de.netbeacon.jstorage.server.internal.datamanager.objects.DataTable;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.StorageEngine;
 import de.netbeacon.jstorage.server.internal.notificationmanager.NotificationManager;
 import de.netbeacon.jstorage.server.internal.notificationmanager.objects.DataNotification;
 import de.netbeacon.jstorage.server.internal.usermanager.object.DependentPermission;
@@ -41,7 +42,7 @@ import java.util.List;
  * Tries to create a specific datatable within the selected database <br>
  * Exceptions catched by superordinate processing handler <br>
  * --- Returns --- <br>
- * database, table as JSONObject <br>
+ * database, table, storageEngine as JSONObject <br>
  * --- Requirements --- <br>
  * path: data/db/table <br>
  * action: create <br>
@@ -50,7 +51,7 @@ import java.util.List;
  * payload: no <br>
  * permissions: GlobalPermission.Admin, GlobalPermission.DBAdmin, DependentPermission.DBAdmin_Creator, DependentPermission.DBAdmin_User <br>
  * required_arguments: database(String, databaseIdentifier), identifier(String, tableIdentifier) <br>
- * optional_arguments: adaptiveLoad(Boolean, Setting) <br>
+ * optional_arguments: adaptiveLoad(Boolean, Setting), storageEngine(String, file or lsm, Setting) <br>
  *
  * @author horstexplorer
  */
@@ -99,7 +100,16 @@ public class DataAction_CreateDataTable implements ProcessingAction{
     @Override
     public void process() throws DataStorageException, GenericObjectException, CryptException, NullPointerException {
         DataBase d = DataManager.getInstance().getDataBase(args.get("database"));
+        StorageEngine.Type storageEngine = StorageEngine.Type.FILE;
+        if(args.containsKey("storageEngine")){
+            try{
+                storageEngine = StorageEngine.Type.of(args.get("storageEngine"));
+            }catch (Exception e){
+                throw new GenericObjectException(200, "Error Parsing Setting \"storageEngine\"");
+            }
+        }
         DataTable t = new DataTable(d, args.get("identifier"));
+        t.setStorageEngineType(storageEngine);
         d.insertTable(t);
 
         if(args.containsKey("adaptiveLoad")){
@@ -112,7 +122,8 @@ public class DataAction_CreateDataTable implements ProcessingAction{
         }
         JSONObject customResponseData = new JSONObject()
                 .put("database", d.getIdentifier())
-                .put("identifier", t.getIdentifier());
+                .put("identifier", t.getIdentifier())
+                .put("storageEngine", t.getStorageEngineType().name().toLowerCase());
         // set result
         result.addResult(this.getDefaultResponse(customResponseData));
         // notify
@@ -41,7 +41,7 @@ import java.util.List;
  * Tries to list information for a specific database within a within a datatable <br>
  * Exceptions catched by superordinate processing handler <br>
  * --- Returns --- <br>
- * database, table, identifier, size, keys <br>
+ * database, table, identifier, size, keys, expiresAt <br>
  * --- Requirements --- <br>
  * path: data/db/table/dataset <br>
  * action: info <br>
@@ -111,7 +111,8 @@ public class DataAction_DataSetInfo implements ProcessingAction{
                 .put("table", ds.getTable().getIdentifier())
                 .put("identifier", ds.getIdentifier())
                 .put("size", data.toString().getBytes().length)
-                .put("keys", jsonArray);
+                .put("keys", jsonArray)
+                .put("expiresAt", t.getDataSetExpiry(ds.getIdentifier()));
         // set result
         result.addResult(this.getDefaultResponse(customResponseData));
     }
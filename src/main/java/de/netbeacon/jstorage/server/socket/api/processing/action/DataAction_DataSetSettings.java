@@ -23,6 +23,7 @@ import de.netbeacon.jstorage.server.socket.api.processing.APIProcessorResult;
 import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
 import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
 import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import de.netbeacon.jstorage.server.tools.executor.IOScheduler;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
@@ -36,13 +37,13 @@ import java.util.List;
  * Tries to change settings for dataset management <br>
  * Exceptions catched by superordinate processing handler <br>
  * --- Returns --- <br>
- * global dataset settings <br>
+ * global dataset settings, io settings and the number of queued io tasks <br>
  * --- Requirements --- <br>
  * path: data/db/table/dataset <br>
  * action: settings <br>
  * http_method: put <br>
  * login-mode: token <br>
- * payload: yes - optional: maxSTPEThreads(int), dataSetsPerThread(int) <br>
+ * payload: yes - optional: maxSTPEThreads(int), dataSetsPerThread(int), ioThreads(int), ioBytesPerSecond(long, 0 to disable) <br>
  * permissions: GlobalPermission.Admin, GlobalPermission.UserAdmin <br>
  * required_arguments: <br>
  * optional_arguments: <br>
@@ -121,10 +122,36 @@ public class DataAction_DataSetSettings implements ProcessingAction{
             }
         }
 
+        if(data.has("ioThreads")){
+            try{
+                int i = data.getInt("ioThreads");
+                IOScheduler.getInstance().setThreads(i);
+            }catch (Exception ignore){
+                throw new GenericObjectException(200, "Error Parsing Setting \"ioThreads\"");
+            }
+        }
+
+        if(data.has("ioBytesPerSecond")){
+            try{
+                long l = data.getLong("ioBytesPerSecond");
+                IOScheduler.getInstance().setBytesPerSecond(l);
+            }catch (Exception ignore){
+                throw new GenericObjectException(200, "Error Parsing Setting \"ioBytesPerSecond\"");
+            }
+        }
+
+        IOScheduler ioScheduler = IOScheduler.getInstance();
+        JSONObject queued = new JSONObject();
+        for(IOScheduler.Priority priority : IOScheduler.Priority.values()){
+            queued.put(priority.name().toLowerCase(), ioScheduler.getQueued(priority));
+        }
         JSONObject customResponseData = new JSONObject()
                 .put("maxSTPEThreads", DataSet.getMaxSTPEThreads())
                 .put("dataSetsPerThread", DataSet.getDataSetsPerThread())
-                .put("dataSets", DataSet.getDataSetCount());
+                .put("dataSets", DataSet.getDataSetCount())
+                .put("ioThreads", ioScheduler.getThreads())
+                .put("ioBytesPerSecond", ioScheduler.getBytesPerSecond())
+                .put("ioTasks", new JSONObject().put("queued", queued).put("running", ioScheduler.getRunning()));
         // set result
         result.addResult(this.getDefaultResponse(customResponseData));
     }
@@ -26,6 +26,7 @@ import de.netbeacon.jstorage.server.socket.api.processing.APIProcessorResult;
 import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
 import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
 import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import de.netbeacon.jstorage.server.tools.pagination.KeyPagination;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -40,7 +41,7 @@ import java.util.List;
  * Tries to list information for all or a specific data table within a database <br>
  * Exceptions catched by superordinate processing handler <br>
  * --- Returns --- <br>
- * database, table, adaptiveLoad, datasets, shards or <br>
+ * database, table, settings, datasets (one page), cursor (next page or null), datasetCount, shards, offHeapBytes, pendingWrites, coalescedWrites, bufferedWrites or <br>
  * database, tables as JSONObject <br>
  * --- Requirements --- <br>
  * path: data/db/table <br>
@@ -50,7 +51,7 @@ import java.util.List;
  * payload: no <br>
  * permissions: GlobalPermission.Admin, GlobalPermission.DBAdmin, DependentPermission.DBAdmin_Creator, DependentPermission.DBAdmin_User, DependentPermission.DBAccess_Modify, DependentPermission.DBAccess_Read <br>
  * required_arguments: database(String, databaseIdentifier) <br>
- * optional_arguments: identifier(String, tableIdentifier) <br>
+ * optional_arguments: identifier(String, tableIdentifier), limit(Integer, datasets per page), cursor(String, cursor of the next page), prefix(String, datasetIdentifierPrefix), from(String, first datasetIdentifier), to(String, last datasetIdentifier), reverse(Boolean) <br>
  *
  * @author horstexplorer
  */
@@ -62,7 +63,7 @@ public class DataAction_DataTableInfo implements ProcessingAction{
 
     @Override
     public ProcessingAction createNewInstance() {
-        return new DataAction_DataBaseInfo();
+        return new DataAction_DataTableInfo();
     }
 
     @Override
@@ -104,8 +105,7 @@ public class DataAction_DataTableInfo implements ProcessingAction{
         DataBase d = DataManager.getInstance().getDataBase(args.get("database"));
         if(args.containsKey("identifier")){
             DataTable t = d.getTable(args.get("identifier"));
-            JSONArray jsonArray = new JSONArray();
-            t.getIndexPool().forEach((k,v)->jsonArray.put(k));
+            KeyPagination.Page page = t.listDataSets(KeyPagination.fromArgs(args));
             customResponseData
                     .put("database", d.getIdentifier())
                     .put("identifier", t.getIdentifier())
@@ -114,10 +114,26 @@ public class DataAction_DataTableInfo implements ProcessingAction{
                             .put("defaultStructure", t.getDefaultStructure())
                             .put("autoResolveDataInconsistency", t.autoResolveDataInconsistencyMode())
                             .put("autoOptimize", t.autoOptimizationEnabled())
-                            .put("secureInsert", t.hasSecureInsertEnabled()))
-                    .put("stats", new JSONObject()
-                            .put("datasets", jsonArray)
-                            .put("shards", t.getDataPool().size()));
+                            .put("secureInsert", t.hasSecureInsertEnabled())
+                            .put("orderedIndex", t.hasOrderedIndex())
+                            .put("hashPartitions", t.getHashPartitions())
+                            .put("diskIndex", t.hasDiskIndex())
+                            .put("storageEngine", t.getStorageEngineType().name().toLowerCase())
+                            .put("compactDocuments", t.hasCompactDocuments())
+                            .put("offHeapDocuments", t.hasOffHeapDocuments())
+                            .put("writeBehindWindow", t.getWriteBehindWindow())
+                            .put("writeBehindMaxDelay", t.getWriteBehindMaxDelay())
+                            .put("defaultTTL", t.getDefaultTTL())
+                            .put("secondaryIndexes", new JSONArray(t.getSecondaryIndexPaths()))
+                            .put("columnProjections", new JSONArray(t.getColumnProjectionPaths()))
+                            .put("sketches", new JSONArray(t.getSketchPaths())))
+                    .put("stats", page.appendTo(new JSONObject(), "datasets")
+                            .put("datasetCount", t.getDataSetCount())
+                            .put("shards", t.getDataPool().size())
+                            .put("offHeapBytes", t.getOffHeapBytes())
+                            .put("pendingWrites", t.getPendingWrites())
+                            .put("coalescedWrites", t.getCoalescedWrites())
+                            .put("bufferedWrites", t.getBufferedWrites()));
         }else{
             JSONArray jsonArray = new JSONArray();
             d.getDataPool().values().forEach(v->jsonArray.put(v.getIdentifier()));
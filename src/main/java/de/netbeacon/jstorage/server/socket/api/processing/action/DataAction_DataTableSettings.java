@@ -26,6 +26,7 @@ import de.netbeacon.jstorage.server.socket.api.processing.APIProcessorResult;
 import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
 import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
 import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.util.Arrays;
@@ -45,7 +46,7 @@ import java.util.List;
  * action: settings <br>
  * http_method: put <br>
  * login-mode: token <br>
- * payload: yes - optional: adaptiveLoading(boolean), defaultStructure(JSONObject), autoOptimize(Boolean), autoResolveDataInconsistency(Integer in range -1 to 3), secureInsert (Boolean) <br>
+ * payload: yes - optional: adaptiveLoading(boolean), defaultStructure(JSONObject), autoOptimize(Boolean), autoResolveDataInconsistency(Integer in range -1 to 3), secureInsert (Boolean), orderedIndex (Boolean), hashPartitions (Integer, only while the table is empty, 0 to disable), diskIndex (Boolean), compactDocuments (Boolean), offHeapDocuments (Boolean), writeBehindWindow(Long, milliseconds, 0 to disable), writeBehindMaxDelay(Long, milliseconds), addSecondaryIndexes(JSONArray of json pointers /datatype/path), removeSecondaryIndexes(JSONArray of json pointers), addColumnProjections(JSONArray of json pointers /datatype/path), removeColumnProjections(JSONArray of json pointers), addSketches(JSONArray of json pointers /datatype/path), removeSketches(JSONArray of json pointers), rebuildSketches(Boolean, rebuilds all sketches from the current data), defaultTTL(Long, seconds, 0 to disable) <br>
  * permissions: GlobalPermission.Admin, GlobalPermission.DBAdmin, DependentPermission.DBAdmin_Creator <br>
  * required_arguments: database(String, databaseIdentifier), identifier(String, tableIdentifier) <br>
  * optional_arguments: optimize(Boolean), resolvedatainconsistency(Integer in range -1 to 3), upgradestructure (Boolean) <br>
@@ -134,6 +135,128 @@ public class DataAction_DataTableSettings implements ProcessingAction{
             t.setSecureInsert(data.getBoolean("secureInsert"));
         }
 
+        if(data.has("hashPartitions")){
+            int partitions;
+            try{
+                partitions = data.getInt("hashPartitions");
+            }catch (Exception e){
+                throw new GenericObjectException(400, "Error Parsing Setting \"hashPartitions\"");
+            }
+            t.setHashPartitions(partitions);
+        }
+
+        if(data.has("diskIndex")){
+            t.setDiskIndex(data.getBoolean("diskIndex"));
+        }
+
+        if(data.has("compactDocuments")){
+            t.setCompactDocuments(data.getBoolean("compactDocuments"));
+        }
+
+        if(data.has("offHeapDocuments")){
+            t.setOffHeapDocuments(data.getBoolean("offHeapDocuments"));
+        }
+
+        if(data.has("writeBehindWindow")){
+            try{
+                t.setWriteBehindWindow(data.getLong("writeBehindWindow"));
+            }catch (Exception e){
+                throw new GenericObjectException(400, "Error Parsing Setting \"writeBehindWindow\"");
+            }
+        }
+
+        if(data.has("writeBehindMaxDelay")){
+            try{
+                t.setWriteBehindMaxDelay(data.getLong("writeBehindMaxDelay"));
+            }catch (Exception e){
+                throw new GenericObjectException(400, "Error Parsing Setting \"writeBehindMaxDelay\"");
+            }
+        }
+
+        if(data.has("orderedIndex")){
+            t.setOrderedIndex(data.getBoolean("orderedIndex"));
+        }
+
+        if(data.has("defaultTTL")){
+            try{
+                t.setDefaultTTL(data.getLong("defaultTTL"));
+            }catch (Exception e){
+                throw new GenericObjectException(400, "Error Parsing Setting \"defaultTTL\"");
+            }
+        }
+
+        if(data.has("removeSecondaryIndexes")){
+            JSONArray paths = data.optJSONArray("removeSecondaryIndexes");
+            if(paths == null){
+                throw new GenericObjectException(400, "Error Parsing Setting \"removeSecondaryIndexes\"");
+            }
+            for(int i = 0; i < paths.length(); i++){
+                t.removeSecondaryIndex(paths.getString(i));
+            }
+        }
+
+        if(data.has("addSecondaryIndexes")){
+            JSONArray paths = data.optJSONArray("addSecondaryIndexes");
+            if(paths == null){
+                throw new GenericObjectException(400, "Error Parsing Setting \"addSecondaryIndexes\"");
+            }
+            for(int i = 0; i < paths.length(); i++){
+                t.addSecondaryIndex(paths.getString(i));
+            }
+        }
+
+        if(data.has("removeColumnProjections")){
+            JSONArray paths = data.optJSONArray("removeColumnProjections");
+            if(paths == null){
+                throw new GenericObjectException(400, "Error Parsing Setting \"removeColumnProjections\"");
+            }
+            for(int i = 0; i < paths.length(); i++){
+                t.removeColumnProjection(paths.getString(i));
+            }
+        }
+
+        if(data.has("addColumnProjections")){
+            JSONArray paths = data.optJSONArray("addColumnProjections");
+            if(paths == null){
+                throw new GenericObjectException(400, "Error Parsing Setting \"addColumnProjections\"");
+            }
+            for(int i = 0; i < paths.length(); i++){
+                t.addColumnProjection(paths.getString(i));
+            }
+        }
+
+        if(data.has("removeSketches")){
+            JSONArray paths = data.optJSONArray("removeSketches");
+            if(paths == null){
+                throw new GenericObjectException(400, "Error Parsing Setting \"removeSketches\"");
+            }
+            for(int i = 0; i < paths.length(); i++){
+                t.removeSketch(paths.getString(i));
+            }
+        }
+
+        if(data.has("addSketches")){
+            JSONArray paths = data.optJSONArray("addSketches");
+            if(paths == null){
+                throw new GenericObjectException(400, "Error Parsing Setting \"addSketches\"");
+            }
+            for(int i = 0; i < paths.length(); i++){
+                t.addSketch(paths.getString(i));
+            }
+        }
+
+        if(data.has("rebuildSketches")){
+            boolean rebuild;
+            try{
+                rebuild = data.getBoolean("rebuildSketches");
+            }catch (Exception e){
+                throw new GenericObjectException(400, "Error Parsing Setting \"rebuildSketches\"");
+            }
+            if(rebuild){
+                t.rebuildSketches();
+            }
+        }
+
         if(args.containsKey("optimize") && Boolean.parseBoolean(args.get("optimize"))){
             // optimize table now
             t.optimize();
@@ -157,7 +280,19 @@ public class DataAction_DataTableSettings implements ProcessingAction{
                 .put("defaultStructure", t.getDefaultStructure())
                 .put("autoResolveDataInconsistency", t.autoResolveDataInconsistencyMode())
                 .put("autoOptimize", t.autoOptimizationEnabled())
-                .put("secureInsert", t.hasSecureInsertEnabled());
+                .put("secureInsert", t.hasSecureInsertEnabled())
+                .put("orderedIndex", t.hasOrderedIndex())
+                .put("hashPartitions", t.getHashPartitions())
+                .put("diskIndex", t.hasDiskIndex())
+                .put("storageEngine", t.getStorageEngineType().name().toLowerCase())
+                .put("compactDocuments", t.hasCompactDocuments())
+                .put("offHeapDocuments", t.hasOffHeapDocuments())
+                .put("writeBehindWindow", t.getWriteBehindWindow())
+                .put("writeBehindMaxDelay", t.getWriteBehindMaxDelay())
+                .put("defaultTTL", t.getDefaultTTL())
+                .put("secondaryIndexes", new JSONArray(t.getSecondaryIndexPaths()))
+                .put("columnProjections", new JSONArray(t.getColumnProjectionPaths()))
+                .put("sketches", new JSONArray(t.getSketchPaths()));
         JSONObject customResponseData = new JSONObject()
                 .put("database", d.getIdentifier())
                 .put("identifier", t.getIdentifier())
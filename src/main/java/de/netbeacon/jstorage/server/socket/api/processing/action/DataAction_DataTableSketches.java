@@ -0,0 +1,139 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.socket.api.processing.action;
+
+import de.netbeacon.jstorage.server.internal.datamanager.DataManager;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.DataBase;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.DataTable;
+import de.netbeacon.jstorage.server.internal.usermanager.object.DependentPermission;
+import de.netbeacon.jstorage.server.internal.usermanager.object.GlobalPermission;
+import de.netbeacon.jstorage.server.internal.usermanager.object.User;
+import de.netbeacon.jstorage.server.socket.api.processing.APIProcessorResult;
+import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
+import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
+import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Data Action - DataTable Sketches
+ * <p>
+ * --- Does --- <br>
+ * Provides the estimated number of distinct values and quantiles of fields covered by a sketch, see DataTable Settings <br>
+ * Estimates are taken from the sketches only, so the time required does not depend on the size of the table <br>
+ * Sketches are approximate over the write history of the table: values of modified or deleted DataSets remain counted until the sketches are rebuilt,
+ * which happens when the table gets optimized or when requested using the rebuildSketches setting, see DataTable Settings <br>
+ * Exceptions catched by superordinate processing handler <br>
+ * --- Returns --- <br>
+ * database, identifier, sketches as JSONArray (path, values, distinct, numbers, min, max, quantiles) <br>
+ * --- Requirements --- <br>
+ * path: data/db/table <br>
+ * action: sketches <br>
+ * http_method: get <br>
+ * login-mode: token <br>
+ * payload: no <br>
+ * permissions: GlobalPermission.Admin, GlobalPermission.DBAdmin, DependentPermission.DBAdmin_Creator, DependentPermission.DBAdmin_User, DependentPermission.DBAccess_Read <br>
+ * required_arguments: database(String, databaseIdentifier), identifier(String, tableIdentifier) <br>
+ * optional_arguments: path(String, json pointer /datatype/path/to/field; all sketches by default), quantiles(String, comma separated values within 0 and 1; 0.5,0.9,0.99 by default) <br>
+ *
+ * @author horstexplorer
+ */
+public class DataAction_DataTableSketches implements ProcessingAction{
+
+    private static final double[] defaultQuantiles = new double[]{0.5, 0.9, 0.99};
+
+    private APIProcessorResult result;
+    private HashMap<String, String> args;
+    private User user;
+
+    @Override
+    public ProcessingAction createNewInstance() {
+        return new DataAction_DataTableSketches();
+    }
+
+    @Override
+    public String getAction() {
+        return "sketches";
+    }
+
+    @Override
+    public void setup(User user, APIProcessorResult result, HashMap<String, String> args) {
+        this.user = user;
+        this.result = result;
+        this.args = args;
+    }
+
+    @Override
+    public boolean supportedHTTPMethod(String method) {
+        return "get".equalsIgnoreCase(method);
+    }
+
+    @Override
+    public List<String> requiredArguments() {
+        return Arrays.asList("database", "identifier");
+    }
+
+    @Override
+    public boolean userHasPermission() {
+        return
+                user.hasGlobalPermission(GlobalPermission.Admin) ||
+                user.hasGlobalPermission(GlobalPermission.DBAdmin) ||
+                (user.hasDependentPermission(args.get("database"), DependentPermission.DBAdmin_Creator)) ||
+                (user.hasDependentPermission(args.get("database"), DependentPermission.DBAdmin_User)) ||
+                (user.hasDependentPermission(args.get("database"), DependentPermission.DBAccess_Read));
+    }
+
+    @Override
+    public void process() throws DataStorageException, GenericObjectException, CryptException, NullPointerException {
+        DataBase d = DataManager.getInstance().getDataBase(args.get("database"));
+        DataTable t = d.getTable(args.get("identifier"));
+        double[] quantiles = defaultQuantiles;
+        if(args.containsKey("quantiles")){
+            try{
+                quantiles = Arrays.stream(URLDecoder.decode(args.get("quantiles"), StandardCharsets.UTF_8).split(",")).mapToDouble(s -> Double.parseDouble(s.trim())).toArray();
+            }catch (NumberFormatException e){
+                throw new GenericObjectException(400, "Invalid Quantiles");
+            }
+            for(double q : quantiles){
+                if(!(0 <= q && q <= 1)){
+                    throw new GenericObjectException(400, "Invalid Quantile "+q+", Has To Be Within 0 And 1");
+                }
+            }
+        }
+        JSONArray sketches = new JSONArray();
+        if(args.containsKey("path")){
+            sketches.put(t.getSketch(URLDecoder.decode(args.get("path"), StandardCharsets.UTF_8)).estimate(quantiles));
+        }else{
+            for(String path : t.getSketchPaths()){
+                sketches.put(t.getSketch(path).estimate(quantiles));
+            }
+        }
+        JSONObject customResponseData = new JSONObject()
+                .put("database", d.getIdentifier())
+                .put("identifier", t.getIdentifier())
+                .put("sketches", sketches);
+        // set result
+        result.addResult(this.getDefaultResponse(customResponseData));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.socket.api.processing.action;
+
+import de.netbeacon.jstorage.server.internal.datamanager.DataManager;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.DataBase;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.DataTable;
+import de.netbeacon.jstorage.server.internal.usermanager.object.DependentPermission;
+import de.netbeacon.jstorage.server.internal.usermanager.object.GlobalPermission;
+import de.netbeacon.jstorage.server.internal.usermanager.object.User;
+import de.netbeacon.jstorage.server.socket.api.processing.APIProcessorResult;
+import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
+import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
+import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Data Action - Export DataSets
+ * <p>
+ * --- Does --- <br>
+ * Tries to export all datasets within the selected table from a database <br>
+ * The data is streamed one shard at a time, shards which are not loaded stay unloaded <br>
+ * Exceptions catched by superordinate processing handler <br>
+ * --- Returns --- <br>
+ * one dataset per line (Content-Type: application/x-ndjson, Transfer-Encoding: chunked) <br>
+ * --- Requirements --- <br>
+ * path: data/db/table <br>
+ * action: export <br>
+ * http_method: get <br>
+ * login-mode: token <br>
+ * payload: no <br>
+ * permissions: GlobalPermission.Admin, GlobalPermission.DBAdmin, DependentPermission.DBAdmin_Creator, DependentPermission.DBAdmin_User, DependentPermission.DBAccess_Read <br>
+ * required_arguments: database(String, databaseIdentifier), identifier(String, tableIdentifier) <br>
+ * optional_arguments: raw(Boolean, export unloaded shards of unencrypted databases as stored) <br>
+ *
+ * @author horstexplorer
+ */
+public class DataAction_ExportDataSets implements ProcessingAction{
+
+    private APIProcessorResult result;
+    private HashMap<String, String> args;
+    private User user;
+
+    @Override
+    public ProcessingAction createNewInstance() {
+        return new DataAction_ExportDataSets();
+    }
+
+    @Override
+    public String getAction() {
+        return "export";
+    }
+
+    @Override
+    public void setup(User user, APIProcessorResult result, HashMap<String, String> args) {
+        this.user = user;
+        this.result = result;
+        this.args = args;
+    }
+
+    @Override
+    public boolean supportedHTTPMethod(String method) {
+        return "get".equalsIgnoreCase(method);
+    }
+
+    @Override
+    public List<String> requiredArguments() {
+        return Arrays.asList("database", "identifier");
+    }
+
+    @Override
+    public boolean userHasPermission() {
+        return
+                user.hasGlobalPermission(GlobalPermission.Admin) ||
+                user.hasGlobalPermission(GlobalPermission.DBAdmin) ||
+                (user.hasDependentPermission(args.get("database"), DependentPermission.DBAdmin_Creator)) ||
+                (user.hasDependentPermission(args.get("database"), DependentPermission.DBAdmin_User)) ||
+                (user.hasDependentPermission(args.get("database"), DependentPermission.DBAccess_Read));
+    }
+
+    @Override
+    public void process() throws DataStorageException, GenericObjectException, CryptException, NullPointerException {
+        DataBase d = DataManager.getInstance().getDataBase(args.get("database"));
+        DataTable t = d.getTable(args.get("identifier"));
+        boolean raw = args.containsKey("raw") && Boolean.parseBoolean(args.get("raw"));
+        // set result; the data will be written once the headers have been sent
+        result.addStreamedResult(new APIProcessorResult.StreamedResult() {
+            @Override
+            public String getContentType() {
+                return "application/x-ndjson";
+            }
+
+            @Override
+            public void writeTo(Writer writer) throws Exception {
+                t.exportDataSets(data -> {
+                    writer.write(data);
+                    writer.write("\n");
+                }, raw);
+            }
+        });
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.socket.api.processing.action;
+
+import de.netbeacon.jstorage.server.internal.datamanager.DataManager;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.DataBase;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.DataTable;
+import de.netbeacon.jstorage.server.internal.usermanager.object.DependentPermission;
+import de.netbeacon.jstorage.server.internal.usermanager.object.GlobalPermission;
+import de.netbeacon.jstorage.server.internal.usermanager.object.User;
+import de.netbeacon.jstorage.server.socket.api.processing.APIProcessorResult;
+import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
+import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
+import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import de.netbeacon.jstorage.server.tools.httpprocessing.NDJSONReader;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Data Action - Import DataSets
+ * <p>
+ * --- Does --- <br>
+ * Tries to insert a large number of datasets into the selected table from a database at once <br>
+ * Datasets which do not match the required structure or already exist are skipped <br>
+ * A line exceeding the maximum body size stops the import, datasets of the previous lines stay imported <br>
+ * Exceptions catched by superordinate processing handler <br>
+ * --- Returns --- <br>
+ * number of imported & skipped datasets, number of created shards <br>
+ * --- Requirements --- <br>
+ * path: data/db/table <br>
+ * action: import <br>
+ * http_method: put <br>
+ * login-mode: token <br>
+ * payload: yes, streamed (Content-Type: application/x-ndjson; one dataset per line) <br>
+ * permissions: GlobalPermission.Admin, GlobalPermission.DBAdmin, DependentPermission.DBAdmin_Creator, DependentPermission.DBAdmin_User <br>
+ * required_arguments: database(String, databaseIdentifier), identifier(String, tableIdentifier) <br>
+ * optional_arguments: <br>
+ *
+ * @author horstexplorer
+ */
+public class DataAction_ImportDataSets implements ProcessingAction{
+
+    private APIProcessorResult result;
+    private HashMap<String, String> args;
+    private User user;
+    private NDJSONReader stream;
+
+    @Override
+    public ProcessingAction createNewInstance() {
+        return new DataAction_ImportDataSets();
+    }
+
+    @Override
+    public String getAction() {
+        return "import";
+    }
+
+    @Override
+    public void setup(User user, APIProcessorResult result, HashMap<String, String> args) {
+        this.user = user;
+        this.result = result;
+        this.args = args;
+    }
+
+    @Override
+    public void setStream(NDJSONReader stream) {
+        this.stream = stream;
+    }
+
+    @Override
+    public boolean supportedHTTPMethod(String method) {
+        return "put".equalsIgnoreCase(method);
+    }
+
+    @Override
+    public List<String> requiredArguments() {
+        return Arrays.asList("database", "identifier");
+    }
+
+    @Override
+    public boolean requiresData() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsStream() {
+        return true;
+    }
+
+    @Override
+    public boolean userHasPermission() {
+        return
+                user.hasGlobalPermission(GlobalPermission.Admin) ||
+                user.hasGlobalPermission(GlobalPermission.DBAdmin) ||
+                (user.hasDependentPermission(args.get("database"), DependentPermission.DBAdmin_Creator)) ||
+                (user.hasDependentPermission(args.get("database"), DependentPermission.DBAdmin_User));
+    }
+
+    @Override
+    public void process() throws DataStorageException, GenericObjectException, CryptException, NullPointerException {
+        if(stream == null){
+            throw new GenericObjectException(400, "Streamed Data Required");
+        }
+        DataBase d = DataManager.getInstance().getDataBase(args.get("database"));
+        DataTable t = d.getTable(args.get("identifier"));
+        JSONObject customResponseData = t.importDataSets(stream, !t.isAdaptive())
+                .put("lines", stream.getLineCount());
+        if(stream.exceededLineLength()){
+            throw new GenericObjectException(400, "Line "+(stream.getLineCount()+1)+" Exceeds The Maximum Length, Import Stopped After "+customResponseData.getLong("imported")+" DataSets");
+        }
+        // set result
+        result.addResult(this.getDefaultResponse(customResponseData));
+    }
+}
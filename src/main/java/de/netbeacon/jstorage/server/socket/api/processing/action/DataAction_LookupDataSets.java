@@ -0,0 +1,197 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.socket.api.processing.action;
+
+import de.netbeacon.jstorage.server.internal.datamanager.DataManager;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.DataBase;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.DataTable;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.SecondaryIndex;
+import de.netbeacon.jstorage.server.internal.usermanager.object.DependentPermission;
+import de.netbeacon.jstorage.server.internal.usermanager.object.GlobalPermission;
+import de.netbeacon.jstorage.server.internal.usermanager.object.User;
+import de.netbeacon.jstorage.server.socket.api.processing.APIProcessorResult;
+import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
+import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
+import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Data Action - Lookup DataSets
+ * <p>
+ * --- Does --- <br>
+ * Tries to find datasets within the selected table by the value of an indexed field <br>
+ * Requires a secondary index for the given path, see DataTable Settings <br>
+ * Either value (equality) or from and/or to (inclusive range) have to be set <br>
+ * Exceptions catched by superordinate processing handler <br>
+ * --- Returns --- <br>
+ * database, table, path, datasets <br>
+ * --- Requirements --- <br>
+ * path: data/db/table <br>
+ * action: lookup <br>
+ * http_method: get <br>
+ * login-mode: token <br>
+ * payload: no <br>
+ * permissions: GlobalPermission.Admin, GlobalPermission.DBAdmin, DependentPermission.DBAdmin_Creator, DependentPermission.DBAdmin_User, DependentPermission.DBAccess_Read <br>
+ * required_arguments: database(String, databaseIdentifier), identifier(String, tableIdentifier), path(String, json pointer /datatype/path/to/field) <br>
+ * optional_arguments: value(String), from(String), to(String), type(String, string|number|boolean; detected by default), limit(Integer, max number of datasets) <br>
+ *
+ * @author horstexplorer
+ */
+public class DataAction_LookupDataSets implements ProcessingAction{
+
+    private static final int defaultLimit = 1000;
+    private static final int maxLimit = 10000;
+
+    private APIProcessorResult result;
+    private HashMap<String, String> args;
+    private User user;
+
+    @Override
+    public ProcessingAction createNewInstance() {
+        return new DataAction_LookupDataSets();
+    }
+
+    @Override
+    public String getAction() {
+        return "lookup";
+    }
+
+    @Override
+    public void setup(User user, APIProcessorResult result, HashMap<String, String> args) {
+        this.user = user;
+        this.result = result;
+        this.args = args;
+    }
+
+    @Override
+    public boolean supportedHTTPMethod(String method) {
+        return "get".equalsIgnoreCase(method);
+    }
+
+    @Override
+    public List<String> requiredArguments() {
+        return Arrays.asList("database", "identifier", "path");
+    }
+
+    @Override
+    public boolean userHasPermission() {
+        return
+                user.hasGlobalPermission(GlobalPermission.Admin) ||
+                user.hasGlobalPermission(GlobalPermission.DBAdmin) ||
+                (user.hasDependentPermission(args.get("database"), DependentPermission.DBAdmin_Creator)) ||
+                (user.hasDependentPermission(args.get("database"), DependentPermission.DBAdmin_User)) ||
+                (user.hasDependentPermission(args.get("database"), DependentPermission.DBAccess_Read));
+    }
+
+    @Override
+    public void process() throws DataStorageException, GenericObjectException, CryptException, NullPointerException {
+        DataBase d = DataManager.getInstance().getDataBase(args.get("database"));
+        DataTable t = d.getTable(args.get("identifier"));
+        SecondaryIndex secondaryIndex = t.getSecondaryIndex(decode(args.get("path")));
+        int limit = defaultLimit;
+        if(args.containsKey("limit")){
+            try{
+                limit = Integer.parseInt(args.get("limit"));
+            }catch (NumberFormatException e){
+                throw new GenericObjectException(400, "Invalid Limit");
+            }
+            limit = (limit < 1) ? defaultLimit : Math.min(limit, maxLimit);
+        }
+        String type = args.getOrDefault("type", "").toLowerCase();
+        List<String> identifiers;
+        if(args.containsKey("value")){
+            identifiers = secondaryIndex.lookup(parse(args.get("value"), type), limit);
+        }else if(args.containsKey("from") || args.containsKey("to")){
+            identifiers = secondaryIndex.lookupRange(parse(args.get("from"), type), parse(args.get("to"), type), limit);
+        }else{
+            throw new GenericObjectException(400, "Value Or Range Required");
+        }
+        // the index may still contain datasets which have been removed from the table by other means
+        JSONArray dataSets = new JSONArray();
+        for(String identifier : identifiers){
+            if(t.containsDataSet(identifier)){
+                dataSets.put(identifier);
+            }
+        }
+        JSONObject customResponseData = new JSONObject()
+                .put("database", d.getIdentifier())
+                .put("identifier", t.getIdentifier())
+                .put("path", secondaryIndex.getPath())
+                .put("datasets", dataSets);
+        // set result
+        result.addResult(this.getDefaultResponse(customResponseData));
+    }
+
+    /**
+     * Used to decode an argument
+     *
+     * @param arg the argument
+     * @return String
+     */
+    private String decode(String arg){
+        return URLDecoder.decode(arg, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Used to convert an argument to the type of the indexed value
+     *
+     * @param arg the argument, may be null
+     * @param type string, number, boolean or empty to detect the type
+     * @return Object or null if the argument is not set
+     * @throws GenericObjectException if the argument does not match the type
+     */
+    private Object parse(String arg, String type) throws GenericObjectException {
+        if(arg == null){
+            return null;
+        }
+        arg = decode(arg);
+        switch(type){
+            case "string":
+                return arg;
+            case "number":
+                try{
+                    return new BigDecimal(arg);
+                }catch (NumberFormatException e){
+                    throw new GenericObjectException(400, "Invalid Number "+arg);
+                }
+            case "boolean":
+                if(!("true".equalsIgnoreCase(arg) || "false".equalsIgnoreCase(arg))){
+                    throw new GenericObjectException(400, "Invalid Boolean "+arg);
+                }
+                return Boolean.parseBoolean(arg);
+            case "":
+                if("true".equalsIgnoreCase(arg) || "false".equalsIgnoreCase(arg)){
+                    return Boolean.parseBoolean(arg);
+                }
+                try{
+                    return new BigDecimal(arg);
+                }catch (NumberFormatException e){
+                    return arg;
+                }
+            default:
+                throw new GenericObjectException(400, "Invalid Type "+type);
+        }
+    }
+}
@@ -20,6 +20,7 @@ import de.netbeacon.jstorage.server.internal.datamanager.DataManager;
 import de.netbeacon.jstorage.server.internal.datamanager.objects.DataBase;
 import de.netbeacon.jstorage.server.internal.datamanager.objects.DataSet;
 import de.netbeacon.jstorage.server.internal.datamanager.objects.DataTable;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.VersionStore;
 import de.netbeacon.jstorage.server.internal.usermanager.object.DependentPermission;
 import de.netbeacon.jstorage.server.internal.usermanager.object.GlobalPermission;
 import de.netbeacon.jstorage.server.internal.usermanager.object.User;
@@ -32,16 +33,20 @@ import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.Future;
 
 /**
  * Data Action - Multi Select
  * <p>
  * --- Does --- <br>
- * Tries to update the data from a specific datatype within the selected dataset <br>
+ * Tries to select multiple datasets from different databases / tables <br>
+ * Selections are grouped by shard, groups are processed in parallel <br>
+ * If a snapshot is requested all datasets are read as they were at the same point in time, without blocking concurrent writes. Datatypes can not be acquired then <br>
  * Exceptions catched by superordinate processing handler <br>
  * --- Returns --- <br>
- * datatype data <br>
+ * datatype data, snapshot sequence if requested <br>
  * --- Requirements --- <br>
  * path: data/tool <br>
  * action: multiselect <br>
@@ -112,6 +117,47 @@ public class DataAction_MultiSelect implements ProcessingAction{
                 (user.hasDependentPermission(database, DependentPermission.DBAccess_Modify));
     }
 
+    /**
+     * Used to process all selections of the same shard
+     *
+     * @param group indices of the selections
+     * @param selections all selections
+     * @param tables table of each selection
+     * @param results array to store the results in
+     * @param snapshot snapshot to read from, null to read the current data
+     */
+    private void processGroup(List<Integer> group, JSONArray selections, HashMap<Integer, DataTable> tables, Object[] results, VersionStore.Snapshot snapshot){
+        for(int i : group){
+            try{
+                JSONObject jsonObject = selections.getJSONObject(i);
+                if(snapshot != null){
+                    JSONObject fullData = tables.get(i).getDataSet(jsonObject.getString("dataset"), snapshot);
+                    if(jsonObject.has("datatype")){
+                        String dataType = jsonObject.getString("datatype").toLowerCase();
+                        JSONObject responseData = new JSONObject().put("identifier", fullData.getString("identifier"));
+                        if(fullData.has(dataType) && !(dataType.equals("identifier") || dataType.equals("table") || dataType.equals("database"))){
+                            responseData.put(dataType, fullData.getJSONObject(dataType));
+                        }
+                        results[i] = responseData;
+                    }else{
+                        results[i] = fullData;
+                    }
+                    continue;
+                }
+                DataSet ds = tables.get(i).getDataSet(jsonObject.getString("dataset"));
+                if(jsonObject.has("datatype")){
+                    if(jsonObject.has("acquire")){
+                        results[i] = ds.get(jsonObject.getString("datatype"), jsonObject.getBoolean("acquire"));
+                    }else{
+                        results[i] = ds.get(jsonObject.getString("datatype"), false);
+                    }
+                }else{
+                    results[i] = ds.getFullData();
+                }
+            }catch (Exception ignore){}
+        }
+    }
+
     @Override
     public void process() throws DataStorageException, GenericObjectException, CryptException, NullPointerException {
         /*
@@ -120,15 +166,19 @@ public class DataAction_MultiSelect implements ProcessingAction{
                     { database:"", table:"", dataset:"" },
                     { database:"", table:"", dataset:"", datatype:"" },
                     { database:"", table:"", dataset:"", datatype:"" , acquire=bool},
-             ]}
+             ], snapshot:bool}
 
          */
 
         // prepare result
         JSONArray resultArray = new JSONArray();
         JSONObject customResponse = new JSONObject().put("selection", resultArray);
-        // parse data
+        // parse data & group selections by database, table & shard
         JSONArray selections = data.getJSONArray("selection");
+        Object[] results = new Object[selections.length()];
+        VersionStore.Snapshot snapshot = (data.optBoolean("snapshot", false)) ? VersionStore.getInstance().openSnapshot() : null;
+        LinkedHashMap<String, List<Integer>> groups = new LinkedHashMap<>();
+        HashMap<Integer, DataTable> tables = new HashMap<>();
         for(int i = 0; i < selections.length(); i++) {
             try{
                 JSONObject jsonObject = selections.getJSONObject(i);
@@ -137,18 +187,42 @@ public class DataAction_MultiSelect implements ProcessingAction{
                 }
                 DataBase d = DataManager.getInstance().getDataBase(jsonObject.getString("database"));
                 DataTable t = d.getTable(jsonObject.getString("table"));
-                DataSet ds = t.getDataSet(jsonObject.getString("dataset"));
-                if(jsonObject.has("datatype")){
-                    if(jsonObject.has("acquire")){
-                        resultArray.put(ds.get(jsonObject.getString("datatype"), jsonObject.getBoolean("acquire")));
-                    }else{
-                        resultArray.put(ds.get(jsonObject.getString("datatype"), false));
+                String shardID = t.getShardIDFor(jsonObject.getString("dataset"));
+                if(shardID == null){
+                    if(snapshot == null){
+                        continue;
                     }
-                }else{
-                    resultArray.put(ds.getFullData());
+                    shardID = ""; // might have been deleted after the snapshot has been opened
                 }
+                tables.put(i, t);
+                groups.computeIfAbsent(d.getIdentifier()+">"+t.getIdentifier()+">"+shardID, k->new ArrayList<>()).add(i);
             }catch (Exception ignore){}
         }
+        // process each group in parallel; the first selection of each group loads the shard if required
+        try{
+            if(groups.size() == 1){
+                groups.values().forEach(group -> processGroup(group, selections, tables, results, snapshot));
+            }else if(groups.size() > 1){
+                List<Future<?>> futures = new ArrayList<>();
+                groups.values().forEach(group -> futures.add(DataManager.getInstance().getProcessingPool().submit(() -> processGroup(group, selections, tables, results, snapshot))));
+                for(Future<?> future : futures){
+                    try{
+                        future.get();
+                    }catch (Exception ignore){}
+                }
+            }
+        }finally {
+            if(snapshot != null){
+                snapshot.close();
+                customResponse.put("snapshot", snapshot.getSequence());
+            }
+        }
+        // keep the original order
+        for(Object o : results){
+            if(o != null){
+                resultArray.put(o);
+            }
+        }
         // set result
         result.addResult(getDefaultResponse(customResponse));
     }
@@ -0,0 +1,343 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.socket.api.processing.action;
+
+import de.netbeacon.jstorage.server.internal.datamanager.DataManager;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.DataBase;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.DataSet;
+import de.netbeacon.jstorage.server.internal.datamanager.objects.DataTable;
+import de.netbeacon.jstorage.server.internal.notificationmanager.NotificationManager;
+import de.netbeacon.jstorage.server.internal.notificationmanager.objects.DataNotification;
+import de.netbeacon.jstorage.server.internal.usermanager.object.DependentPermission;
+import de.netbeacon.jstorage.server.internal.usermanager.object.GlobalPermission;
+import de.netbeacon.jstorage.server.internal.usermanager.object.User;
+import de.netbeacon.jstorage.server.socket.api.processing.APIProcessorResult;
+import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
+import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
+import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.*;
+
+/**
+ * Data Action - Multi Write
+ * <p>
+ * --- Does --- <br>
+ * Tries to apply multiple dataset and datatype modifications from different databases / tables <br>
+ * Operations are grouped by table, each table is modified with a single lock acquisition <br>
+ * Atomic requests are rejected as a whole if any operation is invalid or not authorized <br>
+ * Exceptions catched by superordinate processing handler <br>
+ * --- Returns --- <br>
+ * result for each operation <br>
+ * --- Requirements --- <br>
+ * path: data/tool <br>
+ * action: multiwrite <br>
+ * http_method: put <br>
+ * login-mode: token <br>
+ * payload: yes <br>
+ * permissions: none -> GlobalPermission.Admin, GlobalPermission.DBAdmin, DependentPermission.DBAdmin_Creator, DependentPermission.DBAdmin_User, DependentPermission.DBAccess_Modify <br>
+ * required_arguments: <br>
+ * optional_arguments: <br>
+ *
+ * @author horstexplorer
+ */
+public class DataAction_MultiWrite implements ProcessingAction{
+
+    private APIProcessorResult result;
+    private HashMap<String, String> args;
+    private User user;
+    private JSONObject data;
+
+    @Override
+    public ProcessingAction createNewInstance() {
+        return new DataAction_MultiWrite();
+    }
+
+    @Override
+    public String getAction() {
+        return "multiwrite";
+    }
+
+    @Override
+    public void setup(User user, APIProcessorResult result, HashMap<String, String> args) {
+        this.user = user;
+        this.result = result;
+        this.args = args;
+    }
+
+    @Override
+    public void setPayload(JSONObject payload) {
+        this.data = payload;
+    }
+
+    @Override
+    public boolean supportedHTTPMethod(String method) {
+        return "put".equalsIgnoreCase(method);
+    }
+
+    @Override
+    public List<String> requiredArguments() {
+        return new ArrayList<>();
+    }
+
+    @Override
+    public boolean requiresData() {
+        return true;
+    }
+
+    @Override
+    public boolean userHasPermission() {
+        return true; // do the actual check later
+    }
+
+    private boolean userHasPermission(String database){
+        return
+                user.hasGlobalPermission(GlobalPermission.Admin) ||
+                user.hasGlobalPermission(GlobalPermission.DBAdmin) ||
+                (user.hasDependentPermission(database, DependentPermission.DBAdmin_Creator)) ||
+                (user.hasDependentPermission(database, DependentPermission.DBAdmin_User)) ||
+                (user.hasDependentPermission(database, DependentPermission.DBAccess_Modify));
+    }
+
+    @Override
+    public void process() throws DataStorageException, GenericObjectException, CryptException, NullPointerException {
+        /*
+
+            {
+                atomic: bool, // optional, nothing is executed if any operation is invalid or not authorized, either all or none of the operations of the same table are applied
+                operations:[
+                    { operation:"create_dataset", database:"", table:"", dataset:"", (data:{}) },
+                    { operation:"delete_dataset", database:"", table:"", dataset:"" },
+                    { operation:"create_datatype", database:"", table:"", dataset:"", datatype:"", (data:{}) },
+                    { operation:"update_datatype", database:"", table:"", dataset:"", datatype:"", data:{} },
+                    { operation:"delete_datatype", database:"", table:"", dataset:"", datatype:"" },
+                ]
+            }
+
+         */
+
+        boolean atomic = data.has("atomic") && data.getBoolean("atomic");
+        JSONArray operations = data.getJSONArray("operations");
+        JSONObject[] results = new JSONObject[operations.length()];
+        // group by database & table
+        LinkedHashMap<DataTable, List<Integer>> tableGroups = new LinkedHashMap<>();
+        HashMap<Integer, DataTable.BatchOperation> batchOperations = new HashMap<>();
+        for(int i = 0; i < operations.length(); i++){
+            try{
+                JSONObject operation = operations.getJSONObject(i);
+                if(!userHasPermission(operation.getString("database"))){
+                    results[i] = getOperationResult(i, null, "Not Authorized");
+                    continue;
+                }
+                DataBase d = DataManager.getInstance().getDataBase(operation.getString("database"));
+                DataTable t = d.getTable(operation.getString("table"));
+                batchOperations.put(i, getBatchOperation(d, t, operation));
+                tableGroups.computeIfAbsent(t, k->new ArrayList<>()).add(i);
+            }catch (DataStorageException e){
+                results[i] = getOperationResult(i, null, "DataStorageException "+e.getType()+" "+e.getMessage());
+            }catch (Exception e){
+                results[i] = getOperationResult(i, null, "Invalid Operation");
+            }
+        }
+        // atomic requests are only executed if every operation could be prepared
+        if(atomic && batchOperations.size() < operations.length()){
+            for(int i = 0; i < results.length; i++){
+                if(results[i] == null){
+                    results[i] = getOperationResult(i, null, "Operation Rejected Due To Another Operation Failing");
+                }
+            }
+            tableGroups.clear();
+        }
+        // execute
+        for(Map.Entry<DataTable, List<Integer>> entry : tableGroups.entrySet()){
+            List<DataTable.BatchOperation> batch = new ArrayList<>();
+            entry.getValue().forEach(i->batch.add(batchOperations.get(i)));
+            try{
+                List<Object> batchResults = entry.getKey().executeBatch(batch, atomic);
+                for(int o = 0; o < batchResults.size(); o++){
+                    int i = entry.getValue().get(o);
+                    Object batchResult = batchResults.get(o);
+                    if(batchResult instanceof DataStorageException){
+                        DataStorageException e = (DataStorageException) batchResult;
+                        results[i] = getOperationResult(i, null, "DataStorageException "+e.getType()+" "+e.getMessage());
+                    }else{
+                        results[i] = getOperationResult(i, (JSONObject) batchResult, null);
+                        notify(operations.getJSONObject(i));
+                    }
+                }
+            }catch (DataStorageException e){
+                for(int i : entry.getValue()){
+                    results[i] = getOperationResult(i, null, "DataStorageException "+e.getType()+" "+e.getMessage());
+                }
+            }
+        }
+        // prepare result
+        JSONArray resultArray = new JSONArray();
+        for(JSONObject jsonObject : results){
+            resultArray.put(jsonObject);
+        }
+        JSONObject customResponse = new JSONObject().put("operations", resultArray);
+        // set result
+        result.addResult(getDefaultResponse(customResponse));
+    }
+
+    /**
+     * Used to build the batch operation for the given json
+     *
+     * @param d DataBase
+     * @param t DataTable
+     * @param operation JSONObject describing the operation
+     * @return DataTable.BatchOperation
+     * @throws GenericObjectException on unknown operations
+     */
+    private DataTable.BatchOperation getBatchOperation(DataBase d, DataTable t, JSONObject operation) throws GenericObjectException {
+        String dataSetIdentifier = operation.getString("dataset").toLowerCase();
+        JSONObject payload = (operation.has("data")) ? operation.getJSONObject("data") : null;
+        switch (operation.getString("operation").toLowerCase()){
+            case "create_dataset":
+                return new Operation(dataSetIdentifier, ()->{
+                    DataSet ds;
+                    if(payload == null){
+                        if(t.hasDefaultStructure()){
+                            ds = new DataSet(d, t, dataSetIdentifier, t.getPreparedDefaultStructure(dataSetIdentifier));
+                        }else{
+                            ds = new DataSet(d, t, dataSetIdentifier);
+                        }
+                    }else{
+                        ds = new DataSet(d, t, dataSetIdentifier, payload);
+                    }
+                    t.insertDataSet(ds);
+                    return ds.getFullData();
+                });
+            case "delete_dataset":
+                return new Operation(dataSetIdentifier, ()->{
+                    t.deleteDataSet(dataSetIdentifier);
+                    return new JSONObject()
+                            .put("database", d.getIdentifier())
+                            .put("table", t.getIdentifier())
+                            .put("identifier", dataSetIdentifier);
+                });
+            case "create_datatype":{
+                String dataType = operation.getString("datatype").toLowerCase();
+                return new Operation(dataSetIdentifier, ()->{
+                    DataSet ds = t.getDataSet(dataSetIdentifier);
+                    verify((payload == null) ? ds.insert(dataType) : ds.insert(dataType, payload), dataSetIdentifier, dataType);
+                    return ds.get(dataType, false);
+                });
+            }
+            case "update_datatype":{
+                String dataType = operation.getString("datatype").toLowerCase();
+                if(payload == null){
+                    throw new GenericObjectException(400, "Data Required");
+                }
+                return new Operation(dataSetIdentifier, ()->{
+                    DataSet ds = t.getDataSet(dataSetIdentifier);
+                    verify(ds.update(dataType, payload), dataSetIdentifier, dataType);
+                    return ds.get(dataType, false);
+                });
+            }
+            case "delete_datatype":{
+                String dataType = operation.getString("datatype").toLowerCase();
+                return new Operation(dataSetIdentifier, ()->{
+                    DataSet ds = t.getDataSet(dataSetIdentifier);
+                    verify(ds.delete(dataType), dataSetIdentifier, dataType);
+                    return new JSONObject()
+                            .put("database", d.getIdentifier())
+                            .put("table", t.getIdentifier())
+                            .put("dataset", dataSetIdentifier)
+                            .put("identifier", dataType);
+                });
+            }
+            default:
+                throw new GenericObjectException(400, "Unknown Operation");
+        }
+    }
+
+    /**
+     * Used to convert the result of a datatype modification to an exception
+     *
+     * @param success result of the modification
+     * @param dataSetIdentifier identifier of the dataset
+     * @param dataType the datatype
+     * @throws DataStorageException if the modification failed
+     */
+    private void verify(Boolean success, String dataSetIdentifier, String dataType) throws DataStorageException {
+        if(success == null || !success){
+            throw new DataStorageException(400, "DataSet: "+dataSetIdentifier+": Unable To Modify DataType "+dataType);
+        }
+    }
+
+    /**
+     * Used to build the result for a single operation
+     *
+     * @param index of the operation
+     * @param data result data, might be null
+     * @param error error description, might be null
+     * @return JSONObject
+     */
+    private JSONObject getOperationResult(int index, JSONObject data, String error){
+        JSONObject jsonObject = new JSONObject().put("operation", index).put("success", error == null);
+        if(error == null){
+            jsonObject.put("result", data);
+        }else{
+            jsonObject.put("error", error);
+        }
+        return jsonObject;
+    }
+
+    /**
+     * Used to send notifications for a successful operation
+     *
+     * @param operation JSONObject describing the operation
+     */
+    private void notify(JSONObject operation){
+        try{
+            String type = operation.getString("operation").toLowerCase();
+            DataNotification.Content content = (type.startsWith("create")) ? DataNotification.Content.created : (type.startsWith("update")) ? DataNotification.Content.updated : DataNotification.Content.deleted;
+            NotificationManager.getInstance().notify(
+                    new DataNotification(user, operation.getString("database"), operation.getString("table"), operation.getString("dataset"), (type.endsWith("datatype")) ? operation.getString("datatype") : null, content)
+            );
+        }catch (Exception ignore){}
+    }
+
+    /**
+     * Used to create batch operations from lambdas
+     * <p>
+     * This class contains no further documentation as this gets rather replaced than modified
+     */
+    private static class Operation implements DataTable.BatchOperation {
+
+        private final String dataSetIdentifier;
+        private final Executable executable;
+
+        Operation(String dataSetIdentifier, Executable executable){
+            this.dataSetIdentifier = dataSetIdentifier;
+            this.executable = executable;
+        }
+
+        @Override
+        public String getDataSetIdentifier() { return dataSetIdentifier; }
+
+        @Override
+        public JSONObject execute() throws DataStorageException { return executable.execute(); }
+
+        private interface Executable {
+            JSONObject execute() throws DataStorageException;
+        }
+    }
+}
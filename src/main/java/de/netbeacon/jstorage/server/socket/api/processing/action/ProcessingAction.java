@@ -22,6 +22,7 @@ import de.netbeacon.jstorage.server.socket.api.processing.APIProcessorResult;
 import de.netbeacon.jstorage.server.tools.exceptions.CryptException;
 import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
 import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import de.netbeacon.jstorage.server.tools.httpprocessing.NDJSONReader;
 import org.json.JSONObject;
 
 import java.util.HashMap;
@@ -68,6 +69,15 @@ public interface ProcessingAction {
      */
     default void setPayload(JSONObject payload){};
 
+    /**
+     * Set stream.
+     * <p>
+     * Only used if the action supports streamed payloads
+     *
+     * @param stream the stream providing one json object per line
+     */
+    default void setStream(NDJSONReader stream){};
+
     /*                  ANALYSIS                    */
 
     /**
@@ -92,6 +102,13 @@ public interface ProcessingAction {
      */
     default boolean requiresData(){return false;}
 
+    /**
+     * Supports streamed data boolean.
+     *
+     * @return the boolean
+     */
+    default boolean supportsStream(){return false;}
+
     /**
      * Login mode is supported boolean.
      *
@@ -0,0 +1,186 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.tools.btree;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Probabilistic set used to quickly rule out keys which have never been added
+ * <p>
+ * Uses 10 bits and 7 hash functions per expected key for a false positive rate of about 1%. Keys can not be removed,
+ * the owner should rebuild the filter once more keys than expected have been added.
+ *
+ * @author horstexplorer
+ */
+public class BloomFilter {
+
+    private static final int bitsPerKey = 10;
+    private static final int hashes = 7;
+
+    private final long[] bits;
+    private final long bitCount;
+    private final long capacity;
+    private long added = 0;
+
+    /**
+     * Creates a new BloomFilter
+     *
+     * @param capacity expected number of keys
+     */
+    public BloomFilter(long capacity){
+        this.capacity = Math.max(capacity, 1024);
+        this.bits = new long[(int) Math.min((this.capacity * bitsPerKey + 63) / 64, Integer.MAX_VALUE - 8)];
+        this.bitCount = (long) bits.length * 64;
+    }
+
+    private BloomFilter(long capacity, long added, long[] bits){
+        this.capacity = capacity;
+        this.added = added;
+        this.bits = bits;
+        this.bitCount = (long) bits.length * 64;
+    }
+
+    /**
+     * Used to add a key
+     *
+     * @param key the key
+     */
+    public synchronized void add(String key){
+        long h = hash(key);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for(int i = 0; i < hashes; i++){
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        added++;
+    }
+
+    /**
+     * Checks whether a key might have been added
+     *
+     * @param key the key
+     * @return false if the key has never been added
+     */
+    public synchronized boolean mightContain(String key){
+        long h = hash(key);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        for(int i = 0; i < hashes; i++){
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            if((bits[(int) (bit >>> 6)] & (1L << bit)) == 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether more keys have been added than this filter has been sized for
+     *
+     * @return boolean
+     */
+    public synchronized boolean isSaturated(){
+        return added > capacity;
+    }
+
+    /**
+     * Returns the number of keys this filter has been sized for
+     *
+     * @return long
+     */
+    public long getCapacity(){ return capacity; }
+
+    /**
+     * 64 bit FNV-1a hash of the utf-8 bytes of the key, mixed to spread the upper bits
+     *
+     * @param key the key
+     * @return long
+     */
+    private static long hash(String key){
+        long h = 0xcbf29ce484222325L;
+        for(byte b : key.getBytes(StandardCharsets.UTF_8)){
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return h;
+    }
+
+    /*                  STORAGE                  */
+
+    /**
+     * Used to write this filter to a file
+     *
+     * @param file the file
+     * @throws IOException on exception
+     */
+    public void write(File file) throws IOException{
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))){
+            writeTo(out);
+        }
+    }
+
+    /**
+     * Used to write this filter to a stream
+     *
+     * @param out the stream
+     * @throws IOException on exception
+     */
+    public synchronized void writeTo(DataOutput out) throws IOException{
+        out.writeLong(capacity);
+        out.writeLong(added);
+        out.writeInt(bits.length);
+        for(long l : bits){
+            out.writeLong(l);
+        }
+    }
+
+    /**
+     * Used to read a filter from a file
+     *
+     * @param file the file
+     * @return BloomFilter
+     * @throws IOException if the file could not be read
+     */
+    public static BloomFilter read(File file) throws IOException{
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            return readFrom(in);
+        }
+    }
+
+    /**
+     * Used to read a filter from a stream
+     *
+     * @param in the stream
+     * @return BloomFilter
+     * @throws IOException if the filter could not be read
+     */
+    public static BloomFilter readFrom(DataInput in) throws IOException{
+        long capacity = in.readLong();
+        long added = in.readLong();
+        long[] bits = new long[in.readInt()];
+        for(int i = 0; i < bits.length; i++){
+            bits[i] = in.readLong();
+        }
+        return new BloomFilter(capacity, added, bits);
+    }
+}
@@ -0,0 +1,488 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.tools.btree;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * B+-tree mapping string keys to string values, stored within a single file
+ * <p>
+ * The file consists of fixed size pages, page 0 contains the header. Inner pages contain separator keys and the page numbers of their children,
+ * leaf pages contain the entries and the page number of the next leaf. Pages are accessed through a bounded {@link PageCache},
+ * so memory usage does not depend on the number of entries. Removed entries are not merged, empty leaves stay part of the tree.
+ * <p>
+ * Modifications are written to the file when pages are evicted or on {@link #flush()}. All methods are synchronized.
+ * The header contains a generation which is increased before the first page is written after each flush, so that data derived from the tree
+ * can detect whether the file has been modified since it has been created.
+ *
+ * @author horstexplorer
+ */
+public class DiskBPlusTree {
+
+    private static final int magic = 0x4a534254; // JSBT
+    private static final int pageSize = 4096;
+    private static final int pageHeader = 11; // type, count, next leaf / first child
+    /** Max encoded size of a single key and value in bytes */
+    public static final int maxEntrySize = (pageSize - pageHeader) / 4;
+
+    private final FileChannel channel;
+    private final PageCache<Node> cache;
+    private long root;
+    private long pageCount;
+    private long size;
+    private long generation;
+    private boolean writing = false; // whether pages have been written since the last flush
+
+    /**
+     * Opens or creates a tree
+     *
+     * @param file the file containing the tree
+     * @param cachedPages max number of pages kept in memory
+     * @throws IOException if the file could not be opened or does not contain a valid tree
+     */
+    public DiskBPlusTree(File file, int cachedPages) throws IOException{
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.cache = new PageCache<>(Math.max(cachedPages, 16), this::writePage);
+        if(channel.size() == 0){
+            reset();
+        }else{
+            ByteBuffer buffer = ByteBuffer.allocate(40);
+            channel.read(buffer, 0);
+            buffer.flip();
+            if(buffer.remaining() < 32 || buffer.getInt() != magic || buffer.getInt() != pageSize){
+                channel.close();
+                throw new IOException("Invalid Tree File "+file.getName());
+            }
+            root = buffer.getLong();
+            pageCount = buffer.getLong();
+            size = buffer.getLong();
+            generation = (buffer.remaining() >= 8) ? buffer.getLong() : 0;
+        }
+    }
+
+    /**
+     * Returns the number of entries
+     *
+     * @return long
+     */
+    public synchronized long size(){ return size; }
+
+    /**
+     * Returns the generation of the file
+     * <p>
+     * Only matches the generation returned after the last flush if no page has been written since
+     *
+     * @return long
+     */
+    public synchronized long getGeneration(){ return generation; }
+
+    /**
+     * Checks whether an entry could be stored
+     *
+     * @param key the key
+     * @param value the value
+     * @return boolean
+     */
+    public static boolean fits(String key, String value){
+        return 4 + key.getBytes(StandardCharsets.UTF_8).length + value.getBytes(StandardCharsets.UTF_8).length <= maxEntrySize;
+    }
+
+    /*                  ACCESS                  */
+
+    /**
+     * Returns the value of a key
+     *
+     * @param key the key
+     * @return String or null if the key does not exist
+     */
+    public synchronized String get(String key){
+        Node leaf = findLeaf(key, null);
+        int i = Collections.binarySearch(leaf.keys, key);
+        return (i >= 0) ? leaf.values.get(i) : null;
+    }
+
+    /**
+     * Used to set the value of a key
+     *
+     * @param key the key
+     * @param value the value
+     * @return the previous value or null
+     * @throws IllegalArgumentException if the entry is too large
+     */
+    public synchronized String put(String key, String value){
+        if(!fits(key, value)){
+            throw new IllegalArgumentException("Entry Too Large");
+        }
+        Deque<Node> path = new ArrayDeque<>();
+        Node leaf = findLeaf(key, path);
+        int i = Collections.binarySearch(leaf.keys, key);
+        if(i >= 0){
+            String previous = leaf.values.set(i, value);
+            if(leaf.encodedSize() > pageSize){
+                split(leaf, path);
+            }else{
+                cache.putDirty(leaf.page, leaf);
+            }
+            return previous;
+        }
+        leaf.keys.add(-i-1, key);
+        leaf.values.add(-i-1, value);
+        size++;
+        if(leaf.encodedSize() > pageSize){
+            split(leaf, path);
+        }else{
+            cache.putDirty(leaf.page, leaf);
+        }
+        return null;
+    }
+
+    /**
+     * Used to remove a key
+     *
+     * @param key the key
+     * @return the previous value or null
+     */
+    public synchronized String remove(String key){
+        Node leaf = findLeaf(key, null);
+        int i = Collections.binarySearch(leaf.keys, key);
+        if(i < 0){
+            return null;
+        }
+        leaf.keys.remove(i);
+        String previous = leaf.values.remove(i);
+        size--;
+        cache.putDirty(leaf.page, leaf);
+        return previous;
+    }
+
+    /**
+     * Returns up to limit entries with keys greater than the given key, in ascending order
+     *
+     * @param after exclusive lower bound, null to start with the first key
+     * @param limit max number of entries
+     * @return List of key value pairs
+     */
+    public synchronized List<Map.Entry<String, String>> entriesAfter(String after, int limit){
+        List<Map.Entry<String, String>> list = new ArrayList<>();
+        Node leaf = findLeaf((after != null) ? after : "", null);
+        int i = 0;
+        if(after != null){
+            i = Collections.binarySearch(leaf.keys, after);
+            i = (i >= 0) ? i+1 : -i-1;
+        }
+        while(list.size() < limit){
+            if(i >= leaf.keys.size()){
+                if(leaf.next < 0){
+                    break;
+                }
+                leaf = readPage(leaf.next);
+                i = 0;
+                continue;
+            }
+            list.add(new AbstractMap.SimpleImmutableEntry<>(leaf.keys.get(i), leaf.values.get(i)));
+            i++;
+        }
+        return list;
+    }
+
+    /*                  MODIFY                  */
+
+    /**
+     * Used to find the leaf which should contain a key
+     *
+     * @param key the key
+     * @param path filled with the inner nodes on the way to the leaf, may be null
+     * @return Node
+     */
+    private Node findLeaf(String key, Deque<Node> path){
+        Node node = readPage(root);
+        while(!node.leaf){
+            if(path != null){
+                path.push(node);
+            }
+            int i = Collections.binarySearch(node.keys, key);
+            i = (i >= 0) ? i+1 : -i-1;
+            node = readPage(node.children.get(i));
+        }
+        return node;
+    }
+
+    /**
+     * Used to split a node which does not fit its page anymore
+     * <p>
+     * The node is split at half of its encoded size, so both parts fit a page as long as entries are not larger than {@link #maxEntrySize}
+     *
+     * @param node the node
+     * @param path inner nodes on the way to the node
+     */
+    private void split(Node node, Deque<Node> path){
+        int total = node.encodedSize();
+        int at = 0;
+        int bytes = pageHeader;
+        while(at < node.keys.size()-1 && bytes < total / 2){
+            bytes += node.entrySize(at);
+            at++;
+        }
+        at = Math.max(at, 1);
+        Node right = new Node(pageCount++, node.leaf);
+        String separator;
+        if(node.leaf){
+            right.keys.addAll(node.keys.subList(at, node.keys.size()));
+            right.values.addAll(node.values.subList(at, node.values.size()));
+            node.keys.subList(at, node.keys.size()).clear();
+            node.values.subList(at, node.values.size()).clear();
+            right.next = node.next;
+            node.next = right.page;
+            separator = right.keys.get(0);
+        }else{
+            // the separator moves up, its right child becomes the first child of the new node
+            separator = node.keys.get(at);
+            right.keys.addAll(node.keys.subList(at+1, node.keys.size()));
+            right.children.addAll(node.children.subList(at+1, node.children.size()));
+            node.keys.subList(at, node.keys.size()).clear();
+            node.children.subList(at+1, node.children.size()).clear();
+        }
+        cache.putDirty(node.page, node);
+        cache.putDirty(right.page, right);
+        Node parent = path.poll();
+        if(parent == null){
+            // new root
+            parent = new Node(pageCount++, false);
+            parent.children.add(node.page);
+            root = parent.page;
+        }
+        int i = Collections.binarySearch(parent.keys, separator);
+        i = (i >= 0) ? i+1 : -i-1;
+        parent.keys.add(i, separator);
+        parent.children.add(i+1, right.page);
+        if(parent.encodedSize() > pageSize){
+            split(parent, path);
+        }else{
+            cache.putDirty(parent.page, parent);
+        }
+    }
+
+    /*                  STORAGE                  */
+
+    /**
+     * Used to write all modifications to the file
+     *
+     * @throws IOException on exception
+     */
+    public synchronized void flush() throws IOException{
+        try{
+            cache.flush();
+        }catch (UncheckedIOException e){
+            throw e.getCause();
+        }
+        writeHeader();
+        channel.force(false);
+        writing = false;
+    }
+
+    /**
+     * Used to remove all entries
+     *
+     * @throws IOException on exception
+     */
+    public synchronized void clear() throws IOException{
+        channel.truncate(0);
+        reset();
+    }
+
+    /**
+     * Used to flush and close the file. The tree can not be used afterwards
+     *
+     * @throws IOException on exception
+     */
+    public synchronized void close() throws IOException{
+        if(channel.isOpen()){
+            flush();
+            channel.close();
+        }
+        cache.clear();
+    }
+
+    /**
+     * Used to initialize an empty tree
+     *
+     * @throws IOException on exception
+     */
+    private void reset() throws IOException{
+        cache.clear();
+        root = 1;
+        pageCount = 2;
+        size = 0;
+        cache.putDirty(root, new Node(root, true));
+        flush();
+    }
+
+    private void writeHeader() throws IOException{
+        ByteBuffer buffer = ByteBuffer.allocate(40);
+        buffer.putInt(magic).putInt(pageSize).putLong(root).putLong(pageCount).putLong(size).putLong(generation);
+        buffer.flip();
+        channel.write(buffer, 0);
+    }
+
+    /**
+     * Used to increase the generation before the first page is written after a flush
+     * <p>
+     * Only the generation is written, the rest of the header has to stay unchanged until the pages it references have been written
+     *
+     * @throws IOException on exception
+     */
+    private void beginWriting() throws IOException{
+        if(writing){
+            return;
+        }
+        generation++;
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putLong(generation);
+        buffer.flip();
+        channel.write(buffer, 32);
+        channel.force(false);
+        writing = true;
+    }
+
+    /**
+     * Returns the node stored within a page
+     *
+     * @param page number of the page
+     * @return Node
+     */
+    private Node readPage(long page){
+        Node node = cache.get(page);
+        if(node != null){
+            return node;
+        }
+        try{
+            ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+            while(buffer.hasRemaining()){
+                if(channel.read(buffer, page * pageSize + buffer.position()) < 0){
+                    break;
+                }
+            }
+            buffer.flip();
+            node = Node.decode(page, buffer);
+        }catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+        cache.put(page, node);
+        return node;
+    }
+
+    private void writePage(long page, Node node){
+        try{
+            beginWriting();
+            ByteBuffer buffer = ByteBuffer.allocate(pageSize);
+            node.encode(buffer);
+            buffer.position(0).limit(pageSize);
+            while(buffer.hasRemaining()){
+                channel.write(buffer, page * pageSize + buffer.position());
+            }
+        }catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Decoded content of a page
+     */
+    private static class Node {
+
+        private final long page;
+        private final boolean leaf;
+        private final List<String> keys = new ArrayList<>();
+        private final List<String> values = new ArrayList<>(); // leaf only
+        private final List<Long> children = new ArrayList<>(); // inner only, one more than keys
+        private long next = -1; // leaf only
+
+        private Node(long page, boolean leaf){
+            this.page = page;
+            this.leaf = leaf;
+        }
+
+        private int entrySize(int i){
+            int size = 2 + keys.get(i).getBytes(StandardCharsets.UTF_8).length;
+            return (leaf) ? size + 2 + values.get(i).getBytes(StandardCharsets.UTF_8).length : size + 8;
+        }
+
+        private int encodedSize(){
+            int size = pageHeader;
+            for(int i = 0; i < keys.size(); i++){
+                size += entrySize(i);
+            }
+            return size;
+        }
+
+        private void encode(ByteBuffer buffer){
+            buffer.put((byte) (leaf ? 0 : 1));
+            buffer.putShort((short) keys.size());
+            buffer.putLong((leaf) ? next : children.get(0));
+            for(int i = 0; i < keys.size(); i++){
+                putString(buffer, keys.get(i));
+                if(leaf){
+                    putString(buffer, values.get(i));
+                }else{
+                    buffer.putLong(children.get(i+1));
+                }
+            }
+        }
+
+        private static Node decode(long page, ByteBuffer buffer){
+            if(buffer.remaining() < pageHeader){
+                throw new IllegalStateException("Page "+page+" Does Not Exist");
+            }
+            Node node = new Node(page, buffer.get() == 0);
+            int count = buffer.getShort() & 0xffff;
+            if(node.leaf){
+                node.next = buffer.getLong();
+            }else{
+                node.children.add(buffer.getLong());
+            }
+            for(int i = 0; i < count; i++){
+                node.keys.add(getString(buffer));
+                if(node.leaf){
+                    node.values.add(getString(buffer));
+                }else{
+                    node.children.add(buffer.getLong());
+                }
+            }
+            return node;
+        }
+
+        private static void putString(ByteBuffer buffer, String s){
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+
+        private static String getString(ByteBuffer buffer){
+            byte[] bytes = new byte[buffer.getShort() & 0xffff];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
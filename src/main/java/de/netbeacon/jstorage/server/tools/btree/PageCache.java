@@ -0,0 +1,116 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.tools.btree;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Bounded cache of decoded pages, evicting the least recently used page first
+ * <p>
+ * Modified pages are only written back when they get evicted or the cache is flushed. Not thread safe, the owner has to synchronize all access.
+ *
+ * @param <T> type of the pages
+ * @author horstexplorer
+ */
+public class PageCache<T> {
+
+    private final LinkedHashMap<Long, T> pages;
+    private final Set<Long> dirty = new HashSet<>();
+    private final BiConsumer<Long, T> writer;
+
+    /**
+     * Creates a new PageCache
+     *
+     * @param capacity max number of cached pages
+     * @param writer used to write a modified page back to its storage
+     */
+    public PageCache(int capacity, BiConsumer<Long, T> writer){
+        this.writer = writer;
+        this.pages = new LinkedHashMap<>(Math.min(capacity, 1024), 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, T> eldest) {
+                if(size() <= capacity){
+                    return false;
+                }
+                if(dirty.remove(eldest.getKey())){
+                    writer.accept(eldest.getKey(), eldest.getValue());
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a cached page
+     *
+     * @param page number of the page
+     * @return the page or null if it is not cached
+     */
+    public T get(long page){
+        return pages.get(page);
+    }
+
+    /**
+     * Used to add a page which has been read from the storage
+     *
+     * @param page number of the page
+     * @param value the page
+     */
+    public void put(long page, T value){
+        pages.put(page, value);
+    }
+
+    /**
+     * Used to add or update a modified page
+     *
+     * @param page number of the page
+     * @param value the page
+     */
+    public void putDirty(long page, T value){
+        dirty.add(page);
+        pages.put(page, value);
+    }
+
+    /**
+     * Used to write all modified pages back to the storage
+     */
+    public void flush(){
+        List<Long> list = new ArrayList<>(dirty);
+        Collections.sort(list); // sequential writes
+        for(Long page : list){
+            writer.accept(page, pages.get(page));
+        }
+        dirty.clear();
+    }
+
+    /**
+     * Used to drop all pages without writing them
+     */
+    public void clear(){
+        dirty.clear();
+        pages.clear();
+    }
+
+    /**
+     * Returns the number of cached pages
+     *
+     * @return int
+     */
+    public int size(){ return pages.size(); }
+}
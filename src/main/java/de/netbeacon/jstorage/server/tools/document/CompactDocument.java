@@ -0,0 +1,586 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.document;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONPointer;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Document keeping its data within a single byte array
+ * <p>
+ * Values are written as tag byte followed by their content. Objects and arrays start with their total length and the number of entries
+ * followed by an offset table, object entries are ordered by the number the {@link FieldDictionary} of the table assigned to their key.
+ * Keys which did not get a number because the dictionary is full are written in front of their value and listed after all numbered keys.
+ * Offsets are relative to the start of the object or array so that values can be copied without being decoded.
+ * Single values can be read without decoding the rest of the document, json objects are only created when they are requested.
+ * Modifications replace the array.
+ *
+ * @author horstexplorer
+ */
+public class CompactDocument implements Document {
+
+    private static final byte NULL = 0;
+    private static final byte FALSE = 1;
+    private static final byte TRUE = 2;
+    private static final byte INT = 3;
+    private static final byte LONG = 4;
+    private static final byte FLOAT = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte BIG_INTEGER = 7;
+    private static final byte BIG_DECIMAL = 8;
+    private static final byte STRING = 9;
+    private static final byte OBJECT = 10;
+    private static final byte ARRAY = 11;
+    private static final int CONTAINER_HEADER = 9; // tag, length, entries
+
+    private static final ConcurrentHashMap<String, String[]> pointerCache = new ConcurrentHashMap<>();
+
+    private final FieldDictionary dictionary;
+    private byte[] doc;
+
+    /**
+     * Creates a new CompactDocument
+     *
+     * @param data the data, will not be retained
+     * @param dictionary dictionary used to number the keys
+     */
+    public CompactDocument(JSONObject data, FieldDictionary dictionary){
+        this.dictionary = dictionary;
+        Writer writer = new Writer(256, dictionary);
+        writer.writeValue(data);
+        this.doc = writer.toByteArray();
+    }
+
+    /**
+     * Creates a new CompactDocument from data encoded by another CompactDocument
+     *
+     * @param doc the encoded data, will be retained
+     * @param dictionary dictionary which has been used to encode the data
+     */
+    CompactDocument(byte[] doc, FieldDictionary dictionary){
+        this.dictionary = dictionary;
+        this.doc = doc;
+    }
+
+    /**
+     * Returns the number of bytes used by the data of this document
+     *
+     * @return int
+     */
+    public int getBytes(){
+        return doc.length;
+    }
+
+    /**
+     * Returns the encoded data of this document
+     *
+     * @return byte[] which must not be modified
+     */
+    byte[] getEncoded(){
+        return doc;
+    }
+
+    /**
+     * Returns the dictionary used to number the keys of this document
+     *
+     * @return FieldDictionary
+     */
+    FieldDictionary getDictionary(){
+        return dictionary;
+    }
+
+    /*                  ACCESS                  */
+
+    @Override
+    public boolean has(String key) {
+        return find(0, key) >= 0;
+    }
+
+    @Override
+    public JSONObject getJSONObject(String key) {
+        int pos = find(0, key);
+        if(pos < 0 || doc[pos] != OBJECT){
+            return null;
+        }
+        return (JSONObject) decode(pos);
+    }
+
+    @Override
+    public void put(String key, JSONObject value) {
+        Writer writer = new Writer(64, dictionary);
+        writer.writeValue(value);
+        replace(key, writer.toByteArray());
+    }
+
+    @Override
+    public void remove(String key) {
+        if(find(0, key) >= 0){
+            replace(key, null);
+        }
+    }
+
+    @Override
+    public Object optQuery(JSONPointer pointer) {
+        String[] tokens = tokensOf(pointer);
+        int pos = 0;
+        for(String token : tokens){
+            if(doc[pos] == OBJECT){
+                pos = find(pos, token);
+            }else if(doc[pos] == ARRAY){
+                try{
+                    int index = Integer.parseInt(token);
+                    pos = (index >= 0 && index < readInt(pos+5)) ? pos + readInt(pos+CONTAINER_HEADER+index*4) : -1;
+                }catch (NumberFormatException e){
+                    pos = -1;
+                }
+            }else{
+                pos = -1;
+            }
+            if(pos < 0){
+                return null;
+            }
+        }
+        return decode(pos);
+    }
+
+    @Override
+    public JSONObject toJSONObject() {
+        return (JSONObject) decode(0);
+    }
+
+    @Override
+    public JSONObject view() {
+        return toJSONObject();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder(doc.length + doc.length/4);
+        write(0, stringBuilder);
+        return stringBuilder.toString();
+    }
+
+    /*                  INTERNAL                  */
+
+    /**
+     * Used to replace or remove a single entry of the top level object
+     * <p>
+     * The other entries are copied without being decoded
+     *
+     * @param key the key
+     * @param value encoded value or null to remove the entry
+     */
+    private void replace(String key, byte[] value){
+        int keyId = (value != null) ? dictionary.assign(key) : dictionary.idOf(key);
+        byte[] block = value; // new entry, the key is written in front of the value if it has no number
+        int blockDelta = 0;
+        if(value != null && keyId < 0){
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            blockDelta = 5 + keyBytes.length;
+            block = new byte[blockDelta + value.length];
+            block[0] = STRING;
+            writeInt(block, 1, keyBytes.length);
+            System.arraycopy(keyBytes, 0, block, 5, keyBytes.length);
+            System.arraycopy(value, 0, block, blockDelta, value.length);
+        }
+        int n = readInt(5);
+        List<int[]> entries = new ArrayList<>(n+1); // keyId or -1, start within the old document or -1 for the new entry, length, offset of the value within the entry
+        boolean inserted = (value == null);
+        for(int i = 0; i < n; i++){
+            int ref = readInt(CONTAINER_HEADER+i*8);
+            int valuePos = readInt(CONTAINER_HEADER+i*8+4);
+            if(!inserted && keyId >= 0 && Integer.compareUnsigned(ref, keyId) >= 0){
+                entries.add(new int[]{keyId, -1, block.length, blockDelta});
+                inserted = true;
+            }
+            if(ref >= 0){
+                if(ref != keyId){
+                    entries.add(new int[]{ref, valuePos, length(valuePos), 0});
+                }
+            }else if(!readString(~ref).equals(key)){
+                entries.add(new int[]{-1, ~ref, valuePos - ~ref + length(valuePos), valuePos - ~ref});
+            }
+        }
+        if(!inserted){
+            entries.add(new int[]{keyId, -1, block.length, blockDelta});
+        }
+        int size = CONTAINER_HEADER + entries.size()*8;
+        for(int[] entry : entries){
+            size += entry[2];
+        }
+        byte[] result = new byte[size];
+        result[0] = OBJECT;
+        writeInt(result, 1, size);
+        writeInt(result, 5, entries.size());
+        int offset = CONTAINER_HEADER + entries.size()*8;
+        for(int i = 0; i < entries.size(); i++){
+            int[] entry = entries.get(i);
+            writeInt(result, CONTAINER_HEADER+i*8, (entry[0] >= 0) ? entry[0] : ~offset);
+            writeInt(result, CONTAINER_HEADER+i*8+4, offset + entry[3]);
+            if(entry[1] < 0){
+                System.arraycopy(block, 0, result, offset, block.length);
+            }else{
+                System.arraycopy(doc, entry[1], result, offset, entry[2]);
+            }
+            offset += entry[2];
+        }
+        doc = result;
+    }
+
+    /**
+     * Returns the position of the value of a key within an object
+     *
+     * @param object position of the object
+     * @param key the key
+     * @return int, -1 if the key does not exist
+     */
+    private int find(int object, String key){
+        int n = readInt(object+5);
+        int id = dictionary.idOf(key);
+        if(id < 0){
+            for(int i = n-1; i >= 0; i--){
+                int ref = readInt(object+CONTAINER_HEADER+i*8);
+                if(ref >= 0){
+                    return -1;
+                }
+                if(readString(object + ~ref).equals(key)){
+                    return object + readInt(object+CONTAINER_HEADER+i*8+4);
+                }
+            }
+            return -1;
+        }
+        int low = 0;
+        int high = n-1;
+        while(low <= high){
+            int mid = (low + high) >>> 1;
+            int midId = readInt(object+CONTAINER_HEADER+mid*8);
+            if(Integer.compareUnsigned(midId, id) < 0){ // keys without a number sort last
+                low = mid+1;
+            }else if(midId != id){
+                high = mid-1;
+            }else{
+                return object + readInt(object+CONTAINER_HEADER+mid*8+4);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of bytes used by the value at the given position
+     *
+     * @param pos position of the value
+     * @return int
+     */
+    private int length(int pos){
+        switch (doc[pos]){
+            case INT:
+            case FLOAT:
+                return 5;
+            case LONG:
+            case DOUBLE:
+                return 9;
+            case BIG_INTEGER:
+            case BIG_DECIMAL:
+            case STRING:
+                return 5 + readInt(pos+1);
+            case OBJECT:
+            case ARRAY:
+                return readInt(pos+1);
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Used to create the java representation of the value at the given position
+     *
+     * @param pos position of the value
+     * @return Object
+     */
+    private Object decode(int pos){
+        switch (doc[pos]){
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case INT:
+                return readInt(pos+1);
+            case LONG:
+                return readLong(pos+1);
+            case FLOAT:
+                return Float.intBitsToFloat(readInt(pos+1));
+            case DOUBLE:
+                return Double.longBitsToDouble(readLong(pos+1));
+            case BIG_INTEGER:
+                return new BigInteger(readString(pos));
+            case BIG_DECIMAL:
+                return new BigDecimal(readString(pos));
+            case STRING:
+                return readString(pos);
+            case OBJECT: {
+                int n = readInt(pos+5);
+                JSONObject jsonObject = new JSONObject();
+                for(int i = 0; i < n; i++){
+                    jsonObject.put(keyOf(pos, i), decode(pos+readInt(pos+CONTAINER_HEADER+i*8+4)));
+                }
+                return jsonObject;
+            }
+            case ARRAY: {
+                int n = readInt(pos+5);
+                JSONArray jsonArray = new JSONArray();
+                for(int i = 0; i < n; i++){
+                    jsonArray.put(decode(pos+readInt(pos+CONTAINER_HEADER+i*4)));
+                }
+                return jsonArray;
+            }
+            default:
+                return JSONObject.NULL;
+        }
+    }
+
+    /**
+     * Used to serialize the value at the given position as json
+     *
+     * @param pos position of the value
+     * @param out target
+     */
+    private void write(int pos, StringBuilder out){
+        switch (doc[pos]){
+            case STRING:
+                out.append(JSONObject.quote(readString(pos)));
+                break;
+            case OBJECT: {
+                int n = readInt(pos+5);
+                out.append('{');
+                for(int i = 0; i < n; i++){
+                    if(i > 0){ out.append(','); }
+                    out.append(JSONObject.quote(keyOf(pos, i))).append(':');
+                    write(pos+readInt(pos+CONTAINER_HEADER+i*8+4), out);
+                }
+                out.append('}');
+                break;
+            }
+            case ARRAY: {
+                int n = readInt(pos+5);
+                out.append('[');
+                for(int i = 0; i < n; i++){
+                    if(i > 0){ out.append(','); }
+                    write(pos+readInt(pos+CONTAINER_HEADER+i*4), out);
+                }
+                out.append(']');
+                break;
+            }
+            default:
+                out.append(JSONObject.valueToString(decode(pos)));
+        }
+    }
+
+    /**
+     * Returns the key of an entry of an object
+     *
+     * @param object position of the object
+     * @param index index of the entry
+     * @return String
+     */
+    private String keyOf(int object, int index){
+        int ref = readInt(object+CONTAINER_HEADER+index*8);
+        return (ref >= 0) ? dictionary.fieldOf(ref) : readString(object + ~ref);
+    }
+
+    private int readInt(int pos){
+        return ((doc[pos] & 0xff) << 24) | ((doc[pos+1] & 0xff) << 16) | ((doc[pos+2] & 0xff) << 8) | (doc[pos+3] & 0xff);
+    }
+
+    private long readLong(int pos){
+        return ((long) readInt(pos) << 32) | (readInt(pos+4) & 0xffffffffL);
+    }
+
+    private String readString(int pos){
+        return new String(doc, pos+5, readInt(pos+1), StandardCharsets.UTF_8);
+    }
+
+    private static void writeInt(byte[] buffer, int pos, int value){
+        buffer[pos] = (byte) (value >>> 24);
+        buffer[pos+1] = (byte) (value >>> 16);
+        buffer[pos+2] = (byte) (value >>> 8);
+        buffer[pos+3] = (byte) value;
+    }
+
+    /**
+     * Returns the tokens of a json pointer
+     * <p>
+     * JSONPointer does not expose its tokens, so they are parsed from its string representation
+     *
+     * @param pointer the pointer
+     * @return String[]
+     */
+    private static String[] tokensOf(JSONPointer pointer){
+        String path = pointer.toString();
+        String[] tokens = pointerCache.get(path);
+        if(tokens != null){
+            return tokens;
+        }
+        if(path.isEmpty()){
+            tokens = new String[0];
+        }else{
+            tokens = path.substring(1).split("/", -1);
+            for(int i = 0; i < tokens.length; i++){
+                tokens[i] = tokens[i].replace("~1", "/").replace("~0", "~").replace("\\\"", "\"").replace("\\\\", "\\");
+            }
+        }
+        if(pointerCache.size() >= 4096){
+            pointerCache.clear(); // keep only recently used pointers
+        }
+        pointerCache.put(path, tokens);
+        return tokens;
+    }
+
+    /**
+     * Growable buffer used to encode values
+     */
+    private static class Writer {
+
+        private final FieldDictionary dictionary;
+        private byte[] buffer;
+        private int pos = 0;
+
+        private Writer(int capacity, FieldDictionary dictionary){
+            this.dictionary = dictionary;
+            this.buffer = new byte[capacity];
+        }
+
+        private void ensure(int bytes){
+            if(pos + bytes > buffer.length){
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length*2, pos + bytes));
+            }
+        }
+
+        private void writeByte(byte value){
+            ensure(1);
+            buffer[pos++] = value;
+        }
+
+        private void writeInt(int value){
+            ensure(4);
+            CompactDocument.writeInt(buffer, pos, value);
+            pos += 4;
+        }
+
+        private void writeLong(long value){
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        private void writeString(byte tag, String value){
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensure(5 + bytes.length);
+            buffer[pos++] = tag;
+            writeInt(bytes.length);
+            System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        private void writeValue(Object value){
+            if(value == null || JSONObject.NULL.equals(value)){
+                writeByte(NULL);
+            }else if(value instanceof Boolean){
+                writeByte(((Boolean) value) ? TRUE : FALSE);
+            }else if(value instanceof Integer || value instanceof Short || value instanceof Byte){
+                writeByte(INT);
+                writeInt(((Number) value).intValue());
+            }else if(value instanceof Long){
+                writeByte(LONG);
+                writeLong((Long) value);
+            }else if(value instanceof Float){
+                writeByte(FLOAT);
+                writeInt(Float.floatToIntBits((Float) value));
+            }else if(value instanceof Double){
+                writeByte(DOUBLE);
+                writeLong(Double.doubleToLongBits((Double) value));
+            }else if(value instanceof BigInteger){
+                writeString(BIG_INTEGER, value.toString());
+            }else if(value instanceof Number){
+                writeString(BIG_DECIMAL, JSONObject.numberToString((Number) value));
+            }else if(value instanceof String){
+                writeString(STRING, (String) value);
+            }else if(value instanceof JSONObject){
+                writeObject((JSONObject) value);
+            }else if(value instanceof JSONArray){
+                writeArray((JSONArray) value);
+            }else{
+                Object wrapped = JSONObject.wrap(value);
+                if(wrapped instanceof JSONObject || wrapped instanceof JSONArray){
+                    writeValue(wrapped);
+                }else{
+                    writeString(STRING, String.valueOf(value));
+                }
+            }
+        }
+
+        private void writeObject(JSONObject jsonObject){
+            String[] keys = jsonObject.keySet().toArray(new String[0]);
+            int[][] entries = new int[keys.length][];
+            for(int i = 0; i < keys.length; i++){
+                entries[i] = new int[]{dictionary.assign(keys[i]), i};
+            }
+            Arrays.sort(entries, (a, b) -> Integer.compareUnsigned(a[0], b[0])); // keys without a number sort last
+            int start = pos;
+            ensure(CONTAINER_HEADER + entries.length*8);
+            buffer[pos] = OBJECT;
+            CompactDocument.writeInt(buffer, pos+5, entries.length);
+            pos += CONTAINER_HEADER + entries.length*8;
+            for(int o = 0; o < entries.length; o++){
+                if(entries[o][0] < 0){
+                    CompactDocument.writeInt(buffer, start+CONTAINER_HEADER+o*8, ~(pos-start));
+                    writeString(STRING, keys[entries[o][1]]);
+                }else{
+                    CompactDocument.writeInt(buffer, start+CONTAINER_HEADER+o*8, entries[o][0]);
+                }
+                CompactDocument.writeInt(buffer, start+CONTAINER_HEADER+o*8+4, pos-start);
+                writeValue(jsonObject.opt(keys[entries[o][1]]));
+            }
+            CompactDocument.writeInt(buffer, start+1, pos-start);
+        }
+
+        private void writeArray(JSONArray jsonArray){
+            int n = jsonArray.length();
+            int start = pos;
+            ensure(CONTAINER_HEADER + n*4);
+            buffer[pos] = ARRAY;
+            CompactDocument.writeInt(buffer, pos+5, n);
+            pos += CONTAINER_HEADER + n*4;
+            for(int o = 0; o < n; o++){
+                CompactDocument.writeInt(buffer, start+CONTAINER_HEADER+o*4, pos-start);
+                writeValue(jsonArray.opt(o));
+            }
+            CompactDocument.writeInt(buffer, start+1, pos-start);
+        }
+
+        private byte[] toByteArray(){
+            return Arrays.copyOf(buffer, pos);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.tools.document;
+
+import org.json.JSONObject;
+import org.json.JSONPointer;
+
+/**
+ * Representation of the data of a single DataSet while it is kept in memory
+ * <p>
+ * The top level of a document maps keys to values, datatypes are stored as json objects. Values are copied when they are inserted or returned,
+ * callers may modify them afterwards without affecting the document. Implementations are not thread safe.
+ *
+ * @author horstexplorer
+ */
+public interface Document {
+
+    /**
+     * Creates a new document containing the given data
+     *
+     * @param data the data, will not be retained
+     * @param compact whether a {@link CompactDocument} or a {@link JSONDocument} should be created
+     * @param dictionary dictionary used for the field names
+     * @return Document
+     */
+    static Document of(JSONObject data, boolean compact, FieldDictionary dictionary){
+        return (compact) ? new CompactDocument(data, dictionary) : new JSONDocument(data, dictionary);
+    }
+
+    /**
+     * Used to check if the document contains a specific key
+     *
+     * @param key the key
+     * @return boolean
+     */
+    boolean has(String key);
+
+    /**
+     * Returns a copy of the json object stored for a key
+     *
+     * @param key the key
+     * @return JSONObject or null if the key does not exist or is not an object
+     */
+    JSONObject getJSONObject(String key);
+
+    /**
+     * Used to store a copy of a json object for a key
+     *
+     * @param key the key
+     * @param value the value
+     */
+    void put(String key, JSONObject value);
+
+    /**
+     * Used to remove a key
+     *
+     * @param key the key
+     */
+    void remove(String key);
+
+    /**
+     * Returns the value at the given position
+     * <p>
+     * Objects and arrays are returned as {@link org.json.JSONObject} and {@link org.json.JSONArray} which must not be modified
+     *
+     * @param pointer the position
+     * @return Object or null if the value does not exist
+     */
+    Object optQuery(JSONPointer pointer);
+
+    /**
+     * Returns a copy of the whole document
+     *
+     * @return JSONObject
+     */
+    JSONObject toJSONObject();
+
+    /**
+     * Returns the data of the document without copying it if possible
+     * <p>
+     * The result must not be modified
+     *
+     * @return JSONObject
+     */
+    JSONObject view();
+
+    /**
+     * Returns the document serialized as json
+     *
+     * @return String
+     */
+    @Override
+    String toString();
+}
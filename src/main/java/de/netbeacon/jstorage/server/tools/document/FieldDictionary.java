@@ -0,0 +1,138 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.document;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a single instance of each field name used within the documents of a table
+ * <p>
+ * Each field name is assigned a number which {@link CompactDocument}s store instead of the name.
+ * The number of field names is limited, names exceeding this limit are used as they are and do not get a number.
+ *
+ * @author horstexplorer
+ */
+public class FieldDictionary {
+
+    private static final int MAX_FIELDS = 65536;
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] fields = new String[256];
+
+    /**
+     * Returns the instance of a field name kept by this dictionary
+     *
+     * @param field the field name
+     * @return String
+     */
+    public String intern(String field){
+        int id = assign(field);
+        return (id >= 0) ? fields[id] : field;
+    }
+
+    /**
+     * Returns the number of a field name
+     *
+     * @param field the field name
+     * @return int, -1 if the field name is unknown
+     */
+    public int idOf(String field){
+        Integer id = ids.get(field);
+        return (id != null) ? id : -1;
+    }
+
+    /**
+     * Returns the number of a field name, assigning a new one if the field name is unknown
+     *
+     * @param field the field name
+     * @return int, -1 if the field name is unknown and the limit has been reached
+     */
+    public int assign(String field){
+        Integer id = ids.get(field);
+        if(id != null){
+            return id;
+        }
+        synchronized (this){
+            id = ids.get(field);
+            if(id != null){
+                return id;
+            }
+            int size = ids.size();
+            if(size >= MAX_FIELDS){
+                return -1;
+            }
+            String[] f = fields;
+            if(size == f.length){
+                f = Arrays.copyOf(f, size*2);
+            }
+            f[size] = field;
+            fields = f;
+            ids.put(field, size);
+            return size;
+        }
+    }
+
+    /**
+     * Returns the field name of a number
+     *
+     * @param id the number
+     * @return String
+     */
+    public String fieldOf(int id){
+        return fields[id];
+    }
+
+    /**
+     * Returns a copy of a json object using the field names kept by this dictionary
+     *
+     * @param jsonObject the json object
+     * @return JSONObject
+     */
+    public JSONObject intern(JSONObject jsonObject){
+        JSONObject copy = new JSONObject();
+        for(String key : jsonObject.keySet()){
+            copy.put(intern(key), copyOf(jsonObject.opt(key)));
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the number of field names kept by this dictionary
+     *
+     * @return int
+     */
+    public int size(){
+        return ids.size();
+    }
+
+    private Object copyOf(Object value){
+        if(value instanceof JSONObject){
+            return intern((JSONObject) value);
+        }else if(value instanceof JSONArray){
+            JSONArray jsonArray = (JSONArray) value;
+            JSONArray copy = new JSONArray();
+            for(int i = 0; i < jsonArray.length(); i++){
+                copy.put(copyOf(jsonArray.opt(i)));
+            }
+            return copy;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.document;
+
+import org.json.JSONObject;
+import org.json.JSONPointer;
+
+/**
+ * Document keeping its data as tree of {@link JSONObject}s
+ *
+ * @author horstexplorer
+ */
+public class JSONDocument implements Document {
+
+    private final JSONObject data;
+    private final FieldDictionary dictionary;
+
+    /**
+     * Creates a new JSONDocument
+     *
+     * @param data the data, will not be retained
+     * @param dictionary dictionary used for the field names
+     */
+    public JSONDocument(JSONObject data, FieldDictionary dictionary){
+        this.dictionary = dictionary;
+        this.data = dictionary.intern(data);
+    }
+
+    @Override
+    public boolean has(String key) {
+        return data.has(key);
+    }
+
+    @Override
+    public JSONObject getJSONObject(String key) {
+        JSONObject value = data.optJSONObject(key);
+        return (value != null) ? dictionary.intern(value) : null;
+    }
+
+    @Override
+    public void put(String key, JSONObject value) {
+        data.put(dictionary.intern(key), dictionary.intern(value));
+    }
+
+    @Override
+    public void remove(String key) {
+        data.remove(key);
+    }
+
+    @Override
+    public Object optQuery(JSONPointer pointer) {
+        return data.optQuery(pointer);
+    }
+
+    @Override
+    public JSONObject toJSONObject() {
+        return dictionary.intern(data);
+    }
+
+    @Override
+    public JSONObject view() {
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return data.toString();
+    }
+}
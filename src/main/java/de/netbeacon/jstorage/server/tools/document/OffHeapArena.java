@@ -0,0 +1,165 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.document;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the data of documents outside of the heap
+ * <p>
+ * Space is allocated from direct buffers which are only handed out and never reused, data which has been replaced stays in place until the whole arena is released.
+ * Small documents share chunks growing up to 1MB, larger documents get a buffer of their own.
+ * Releasing an arena drops all of its buffers at once, documents which are still referenced keep their buffer alive until they are no longer used.
+ *
+ * @author horstexplorer
+ */
+public class OffHeapArena {
+
+    private static final int MIN_CHUNK = 64*1024;
+    private static final int MAX_CHUNK = 1024*1024;
+    private static final AtomicLong totalBytes = new AtomicLong(0);
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer current;
+    private long allocatedBytes = 0; // size of all buffers
+    private long usedBytes = 0; // bytes handed out
+    private long freedBytes = 0; // bytes handed out which are no longer used
+    private boolean released = false;
+
+    /**
+     * Returns the number of bytes allocated by all arenas
+     *
+     * @return long
+     */
+    public static long getTotalBytes(){
+        return totalBytes.get();
+    }
+
+    /**
+     * Used to store data within this arena
+     *
+     * @param data the data
+     * @return ByteBuffer containing the data, starting at position 0
+     */
+    public ByteBuffer store(byte[] data){
+        ByteBuffer slice;
+        synchronized (chunks){
+            if(data.length > MAX_CHUNK/4){
+                // dedicated buffer
+                slice = allocate(data.length);
+            }else{
+                if(current == null || current.remaining() < data.length){
+                    current = allocate((current == null) ? MIN_CHUNK : Math.min(current.capacity()*2, MAX_CHUNK));
+                }
+                int position = current.position();
+                current.position(position+data.length);
+                slice = current.duplicate().position(position).limit(position+data.length).slice();
+            }
+            usedBytes += data.length;
+        }
+        // the regions of the slices do not overlap
+        slice.put(0, data);
+        return slice;
+    }
+
+    /**
+     * Used to mark data stored in this arena as no longer used
+     * <p>
+     * The space will only be reclaimed when the arena is released
+     *
+     * @param length number of bytes
+     */
+    public void free(int length){
+        synchronized (chunks){
+            if(!released){
+                freedBytes += length;
+            }
+        }
+    }
+
+    /**
+     * Used to release all buffers of this arena
+     * <p>
+     * The arena should not be used afterwards
+     */
+    public void release(){
+        synchronized (chunks){
+            if(released){
+                return;
+            }
+            released = true;
+            totalBytes.addAndGet(-allocatedBytes);
+            chunks.clear();
+            current = null;
+            allocatedBytes = 0;
+            usedBytes = 0;
+            freedBytes = 0;
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated by this arena
+     *
+     * @return long
+     */
+    public long getAllocatedBytes(){
+        synchronized (chunks){
+            return allocatedBytes;
+        }
+    }
+
+    /**
+     * Returns the number of bytes used by data which is still in use
+     *
+     * @return long
+     */
+    public long getLiveBytes(){
+        synchronized (chunks){
+            return usedBytes-freedBytes;
+        }
+    }
+
+    /**
+     * Returns the number of bytes used by data which is no longer in use
+     *
+     * @return long
+     */
+    public long getFreedBytes(){
+        synchronized (chunks){
+            return freedBytes;
+        }
+    }
+
+    /**
+     * Used to allocate a new buffer
+     *
+     * @param size size of the buffer
+     * @return ByteBuffer
+     */
+    private ByteBuffer allocate(int size){
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        if(!released){
+            chunks.add(buffer);
+            allocatedBytes += size;
+            totalBytes.addAndGet(size);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.document;
+
+import org.json.JSONObject;
+import org.json.JSONPointer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Document keeping its data outside of the heap
+ * <p>
+ * The data is encoded like the data of a {@link CompactDocument} and stored within an {@link OffHeapArena}. Only the position of the data is kept on the heap,
+ * the data is copied back and decoded whenever it is accessed. Modifications store a new copy within the same arena.
+ *
+ * @author horstexplorer
+ */
+public class OffHeapDocument implements Document {
+
+    private final OffHeapArena arena;
+    private final FieldDictionary dictionary;
+    private ByteBuffer data;
+
+    /**
+     * Creates a new OffHeapDocument
+     *
+     * @param document the document which should be copied, will not be retained
+     * @param arena the arena the data should be stored in
+     * @param dictionary dictionary used to number the keys
+     */
+    public OffHeapDocument(Document document, OffHeapArena arena, FieldDictionary dictionary){
+        this.arena = arena;
+        this.dictionary = dictionary;
+        if(document instanceof OffHeapDocument){
+            document = ((OffHeapDocument) document).load();
+        }
+        if(document instanceof CompactDocument && ((CompactDocument) document).getDictionary() == dictionary){
+            this.data = arena.store(((CompactDocument) document).getEncoded());
+        }else{
+            this.data = arena.store(new CompactDocument(document.view(), dictionary).getEncoded());
+        }
+    }
+
+    /**
+     * Returns the arena the data of this document is stored in
+     *
+     * @return OffHeapArena
+     */
+    public OffHeapArena getArena(){
+        return arena;
+    }
+
+    /**
+     * Returns the number of bytes used by the data of this document
+     *
+     * @return int
+     */
+    public int getBytes(){
+        return data.capacity();
+    }
+
+    /**
+     * Used to mark the data of this document as no longer used within its arena
+     * <p>
+     * The document should not be modified afterwards
+     */
+    public void free(){
+        arena.free(data.capacity());
+    }
+
+    /*                  ACCESS                  */
+
+    @Override
+    public boolean has(String key) {
+        return load().has(key);
+    }
+
+    @Override
+    public JSONObject getJSONObject(String key) {
+        return load().getJSONObject(key);
+    }
+
+    @Override
+    public void put(String key, JSONObject value) {
+        CompactDocument document = load();
+        document.put(key, value);
+        store(document);
+    }
+
+    @Override
+    public void remove(String key) {
+        CompactDocument document = load();
+        document.remove(key);
+        store(document);
+    }
+
+    @Override
+    public Object optQuery(JSONPointer pointer) {
+        return load().optQuery(pointer);
+    }
+
+    @Override
+    public JSONObject toJSONObject() {
+        return load().toJSONObject();
+    }
+
+    @Override
+    public JSONObject view() {
+        return toJSONObject();
+    }
+
+    @Override
+    public String toString() {
+        return load().toString();
+    }
+
+    /*                  INTERNAL                  */
+
+    /**
+     * Used to copy the data back to the heap
+     *
+     * @return CompactDocument
+     */
+    private CompactDocument load(){
+        byte[] bytes = new byte[data.capacity()];
+        data.get(0, bytes);
+        return new CompactDocument(bytes, dictionary);
+    }
+
+    /**
+     * Used to replace the stored data
+     *
+     * @param document the new data
+     */
+    private void store(CompactDocument document){
+        ByteBuffer previous = data;
+        data = arena.store(document.getEncoded());
+        arena.free(previous.capacity());
+    }
+}
@@ -47,6 +47,9 @@ public class DataStorageException extends Exception{
                     4 - DataBase
                     5 - CachedData
                     6 - Cache
+                    7 - SecondaryIndex
+                    8 - ColumnProjection
+                    9 - Sketch
                 1x - Data Already Existing
                     1 - DataSet
                     2 - DataShard
@@ -54,6 +57,9 @@ public class DataStorageException extends Exception{
                     4 - DataBase
                     5 - CachedData
                     6 - Cache
+                    7 - SecondaryIndex
+                    8 - ColumnProjection
+                    9 - Sketch
                 2x - Mismatch
                     0 - Default (Database/Table/Cache)
                     1 - Structure
@@ -0,0 +1,302 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Used to execute tasks reading or writing stored data
+ * <p>
+ * Loading data is executed by its own threads so that it does not have to wait for background tasks. Background tasks share a limited number of threads
+ * and are executed by their priority, see {@link Priority}. The transfer rate of background tasks can be limited, each task states the number of bytes it is expected to transfer
+ * and waits until the limit allows it to start.
+ * Tasks submitted with a key are only queued once until they have been started.
+ *
+ * @author horstexplorer
+ */
+public class IOScheduler {
+
+    private static IOScheduler instance;
+
+    private final ThreadPoolExecutor foreground;
+    private final ThreadPoolExecutor background;
+    private final AtomicLong order = new AtomicLong();
+    private final AtomicInteger[] queued = new AtomicInteger[Priority.values().length];
+    private final AtomicLong[] completed = new AtomicLong[Priority.values().length];
+    private final AtomicInteger running = new AtomicInteger();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private volatile long bytesPerSecond = 0;
+    private long nextStart = 0; // guarded by this
+
+    private final Logger logger = LoggerFactory.getLogger(IOScheduler.class);
+
+    /**
+     * Priority classes of tasks, ordered from highest to lowest
+     */
+    public enum Priority{
+        /**
+         * Loading data which is required to answer a request
+         */
+        LOAD,
+        /**
+         * Writing and unloading data which is no longer in use
+         */
+        EVICT,
+        /**
+         * Writing data which stays loaded
+         */
+        SNAPSHOT,
+        /**
+         * Reorganizing stored data
+         */
+        OPTIMIZE
+    }
+
+    /**
+     * Returns the instance of this class
+     *
+     * @return IOScheduler
+     */
+    public static synchronized IOScheduler getInstance(){
+        if(instance == null){
+            instance = new IOScheduler();
+        }
+        return instance;
+    }
+
+    private IOScheduler(){
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors()/2);
+        for(int i = 0; i < queued.length; i++){
+            queued[i] = new AtomicInteger();
+            completed[i] = new AtomicLong();
+        }
+        foreground = createExecutor(threads, "IOScheduler-Load");
+        background = createExecutor(threads, "IOScheduler-Background");
+    }
+
+    /*                  SETTINGS                  */
+
+    /**
+     * Used to set the number of threads used for loading data and for background tasks each
+     *
+     * @param value number of threads, at least 1
+     */
+    public synchronized void setThreads(int value){
+        value = Math.max(1, value);
+        for(ThreadPoolExecutor executor : new ThreadPoolExecutor[]{foreground, background}){
+            if(value > executor.getMaximumPoolSize()){
+                executor.setMaximumPoolSize(value);
+                executor.setCorePoolSize(value);
+            }else{
+                executor.setCorePoolSize(value);
+                executor.setMaximumPoolSize(value);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of threads used for loading data and for background tasks each
+     *
+     * @return int
+     */
+    public int getThreads(){
+        return background.getMaximumPoolSize();
+    }
+
+    /**
+     * Used to limit the transfer rate of background tasks
+     *
+     * @param value bytes per second, 0 to disable the limit
+     */
+    public void setBytesPerSecond(long value){
+        bytesPerSecond = Math.max(0, value);
+    }
+
+    /**
+     * Returns the transfer rate background tasks are limited to
+     *
+     * @return long, 0 if not limited
+     */
+    public long getBytesPerSecond(){
+        return bytesPerSecond;
+    }
+
+    /*                  METRICS                  */
+
+    /**
+     * Returns the number of tasks waiting to be executed
+     *
+     * @param priority priority class
+     * @return int
+     */
+    public int getQueued(Priority priority){
+        return queued[priority.ordinal()].get();
+    }
+
+    /**
+     * Returns the number of tasks which have been executed
+     *
+     * @param priority priority class
+     * @return long
+     */
+    public long getCompleted(Priority priority){
+        return completed[priority.ordinal()].get();
+    }
+
+    /**
+     * Returns the number of tasks being executed at the moment
+     *
+     * @return int
+     */
+    public int getRunning(){
+        return running.get();
+    }
+
+    /*                  EXECUTION                  */
+
+    /**
+     * Used to execute a task
+     *
+     * @param priority priority class of the task
+     * @param bytes number of bytes the task is expected to transfer
+     * @param runnable the task
+     */
+    public void submit(Priority priority, long bytes, Runnable runnable){
+        submit(null, priority, bytes, runnable);
+    }
+
+    /**
+     * Used to execute a task if no other task with the same key is waiting to be executed
+     *
+     * @param key identifies the task, may be null
+     * @param priority priority class of the task
+     * @param bytes number of bytes the task is expected to transfer
+     * @param runnable the task
+     * @return false if a task with the same key is already waiting
+     */
+    public boolean submit(String key, Priority priority, long bytes, Runnable runnable){
+        if(key != null && !pending.add(key)){
+            return false;
+        }
+        queued[priority.ordinal()].incrementAndGet();
+        Task task = new Task(key, priority, bytes, order.incrementAndGet(), runnable);
+        if(priority == Priority.LOAD){
+            foreground.execute(task);
+        }else{
+            background.execute(task);
+        }
+        return true;
+    }
+
+    /**
+     * Used to wait until the transfer rate allows a task to start
+     *
+     * @param bytes number of bytes the task is expected to transfer
+     */
+    private void throttle(long bytes){
+        long rate = bytesPerSecond;
+        if(rate <= 0 || bytes <= 0){
+            return;
+        }
+        long wait;
+        synchronized (this){
+            long now = System.nanoTime();
+            if(nextStart - now < 0){
+                nextStart = now;
+            }
+            wait = nextStart - now;
+            nextStart += (long) (bytes * (1000000000d / rate));
+        }
+        if(wait > 0){
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    /**
+     * Creates an executor using daemon threads and a priority queue
+     *
+     * @param threads number of threads
+     * @param name name of the threads
+     * @return ThreadPoolExecutor
+     */
+    private static ThreadPoolExecutor createExecutor(int threads, String name){
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, name+"-"+counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * A single task, ordered by priority and submission
+     */
+    private class Task implements Runnable, Comparable<Task> {
+
+        private final String key;
+        private final Priority priority;
+        private final long bytes;
+        private final long order;
+        private final Runnable runnable;
+
+        private Task(String key, Priority priority, long bytes, long order, Runnable runnable){
+            this.key = key;
+            this.priority = priority;
+            this.bytes = bytes;
+            this.order = order;
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            if(key != null){
+                pending.remove(key);
+            }
+            queued[priority.ordinal()].decrementAndGet();
+            running.incrementAndGet();
+            try{
+                if(priority != Priority.LOAD){
+                    throttle(bytes);
+                }
+                runnable.run();
+            }catch (Exception | Error e){
+                logger.error("Executing "+priority+" Task Failed", e);
+            }finally {
+                running.decrementAndGet();
+                completed[priority.ordinal()].incrementAndGet();
+            }
+        }
+
+        @Override
+        public int compareTo(Task task) {
+            int c = Integer.compare(priority.ordinal(), task.priority.ordinal());
+            return (c != 0) ? c : Long.compare(order, task.order);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.file;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+
+/**
+ * Used to replace files without the risk of leaving them partially written
+ * <p>
+ * Content is written to a temporary file next to the target which is synced to disk and renamed to the target once it is complete.
+ * Each line is written as its own block, starting with a marker and the CRC32C checksum of its content. Blocks are verified while reading,
+ * damaged blocks are skipped so that the remaining content can still be used. Lines without checksum are accepted as they are to support files written by older versions.
+ *
+ * @author horstexplorer
+ */
+public class AtomicFile {
+
+    private static final char MARKER = '#';
+    private static final int HEADER = 10; // marker, 8 hex digits, space
+
+    private AtomicFile(){}
+
+    /**
+     * Used to replace the content of a file with a single line
+     *
+     * @param file the file
+     * @param content the content
+     * @throws IOException on failure, the previous content will be kept
+     */
+    public static void write(File file, String content) throws IOException{
+        try(Writer writer = new Writer(file)){
+            writer.writeLine(content);
+            writer.commit();
+        }
+    }
+
+    /**
+     * Used to read the content of a file written by {@link #write(File, String)}
+     *
+     * @param file the file
+     * @return String containing the content, empty if the file is empty
+     * @throws IOException if the file could not be read or its content is damaged
+     */
+    public static String read(File file) throws IOException{
+        StringBuilder stringBuilder = new StringBuilder();
+        int damaged = readLines(file, line -> {
+            stringBuilder.append(line);
+            return true;
+        });
+        if(damaged > 0){
+            throw new IOException("Content Of "+file.getName()+" Is Damaged");
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Used to read the lines of a file
+     * <p>
+     * Empty and damaged lines are skipped
+     *
+     * @param file the file
+     * @param consumer receives the content of each line, returns false to stop reading
+     * @return number of damaged lines which have been skipped
+     * @throws IOException if the file could not be read
+     */
+    public static int readLines(File file, Predicate<String> consumer) throws IOException{
+        if(!file.exists()){
+            return 0;
+        }
+        int damaged = 0;
+        CRC32C crc32C = new CRC32C();
+        try(BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 65536)){
+            String line;
+            while((line = bufferedReader.readLine()) != null){
+                if(line.isEmpty()){
+                    continue;
+                }
+                if(line.charAt(0) == MARKER){
+                    if(line.length() < HEADER || line.charAt(HEADER-1) != ' '){
+                        damaged++;
+                        continue;
+                    }
+                    String content = line.substring(HEADER);
+                    crc32C.reset();
+                    crc32C.update(content.getBytes(StandardCharsets.UTF_8));
+                    long checksum;
+                    try{
+                        checksum = Long.parseLong(line.substring(1, HEADER-1), 16);
+                    }catch (NumberFormatException e){
+                        checksum = -1;
+                    }
+                    if(checksum != crc32C.getValue()){
+                        damaged++;
+                        continue;
+                    }
+                    line = content;
+                }
+                if(!consumer.test(line)){
+                    break;
+                }
+            }
+        }
+        return damaged;
+    }
+
+    /**
+     * Writes lines to a temporary file which replaces the target once {@link #commit()} has been called
+     * <p>
+     * Closing the writer without committing discards the written content
+     */
+    public static class Writer implements Closeable {
+
+        private final File file;
+        private final File tmp;
+        private final FileOutputStream fileOutputStream;
+        private final OutputStream outputStream;
+        private final CRC32C crc32C = new CRC32C();
+        private boolean closed = false;
+
+        /**
+         * Creates a new Writer
+         *
+         * @param file the target file
+         * @throws IOException if the temporary file could not be created
+         */
+        public Writer(File file) throws IOException{
+            this.file = file;
+            this.tmp = new File(file.getParentFile(), file.getName()+".tmp");
+            this.fileOutputStream = new FileOutputStream(tmp);
+            this.outputStream = new BufferedOutputStream(fileOutputStream, 65536);
+        }
+
+        /**
+         * Used to write a single line
+         *
+         * @param content the content, must not contain line breaks
+         * @throws IOException on failure
+         */
+        public void writeLine(String content) throws IOException{
+            byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+            crc32C.reset();
+            crc32C.update(bytes);
+            String checksum = Long.toHexString(crc32C.getValue());
+            outputStream.write(MARKER);
+            for(int i = checksum.length(); i < 8; i++){
+                outputStream.write('0');
+            }
+            outputStream.write(checksum.getBytes(StandardCharsets.US_ASCII));
+            outputStream.write(' ');
+            outputStream.write(bytes);
+            outputStream.write('\n');
+        }
+
+        /**
+         * Used to sync the written content to disk and replace the target file with it
+         *
+         * @throws IOException on failure, the previous content will be kept
+         */
+        public void commit() throws IOException{
+            outputStream.flush();
+            fileOutputStream.getFD().sync();
+            closed = true;
+            outputStream.close();
+            try{
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }catch (AtomicMoveNotSupportedException e){
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            // make sure the rename is persisted as well, not supported on every platform
+            try(FileChannel fileChannel = FileChannel.open(file.getAbsoluteFile().getParentFile().toPath(), StandardOpenOption.READ)){
+                fileChannel.force(true);
+            }catch (IOException ignore){}
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(closed){
+                return;
+            }
+            closed = true;
+            outputStream.close();
+            tmp.delete();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.httpprocessing;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Used to write data using the chunked transfer encoding
+ * <p>
+ * Data is buffered until the chunk size is reached, then send as one chunk.
+ * Closing this writer sends the last chunk but does not close the underlying stream
+ *
+ * @author horstexplorer
+ */
+public class ChunkedWriter extends Writer {
+
+    private final OutputStream outputStream;
+    private final StringBuilder buffer;
+    private final int chunkSize;
+    private boolean closed = false;
+
+    /**
+     * Creates a new ChunkedWriter
+     *
+     * @param outputStream the stream to write to
+     * @param chunkSize number of chars which should be collected before sending a chunk
+     */
+    public ChunkedWriter(OutputStream outputStream, int chunkSize){
+        this.outputStream = outputStream;
+        this.chunkSize = chunkSize;
+        this.buffer = new StringBuilder(chunkSize);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        if(closed){
+            throw new IOException("Writer Closed");
+        }
+        buffer.append(cbuf, off, len);
+        if(buffer.length() >= chunkSize){
+            sendChunk();
+        }
+    }
+
+    @Override
+    public void write(String str) throws IOException {
+        if(closed){
+            throw new IOException("Writer Closed");
+        }
+        buffer.append(str);
+        if(buffer.length() >= chunkSize){
+            sendChunk();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        sendChunk();
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(!closed){
+            sendChunk();
+            outputStream.write("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            outputStream.flush();
+            closed = true;
+        }
+    }
+
+    /**
+     * Used to send the buffered data as chunk
+     *
+     * @throws IOException on exception
+     */
+    private void sendChunk() throws IOException{
+        if(buffer.length() == 0){
+            return;
+        }
+        byte[] data = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        buffer.setLength(0);
+        outputStream.write((Integer.toHexString(data.length)+"\r\n").getBytes(StandardCharsets.US_ASCII));
+        outputStream.write(data);
+        outputStream.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        outputStream.flush(); // blocks while the client does not accept more data
+    }
+}
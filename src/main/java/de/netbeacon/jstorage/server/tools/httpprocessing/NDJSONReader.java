@@ -0,0 +1,154 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.httpprocessing;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Used to read newline delimited json objects from a reader one by one
+ * <p>
+ * This allows processing large payloads without keeping them in memory as a whole.
+ * Reading stops at the first line exceeding the maximum line length, see {@link #exceededLineLength()}
+ *
+ * @author horstexplorer
+ */
+public class NDJSONReader implements Iterator<JSONObject> {
+
+    private final Reader reader;
+    private long remaining;
+    private final int maxLineLength;
+    private boolean exceeded = false;
+    private String nextLine;
+    private boolean finished = false;
+    private long lines = 0;
+
+    /**
+     * Creates a new NDJSONReader
+     *
+     * @param reader the reader to read from
+     * @param limit max number of chars which should be read from the reader, -1 to read until the end of the stream
+     */
+    public NDJSONReader(Reader reader, long limit){
+        this(reader, limit, -1);
+    }
+
+    /**
+     * Creates a new NDJSONReader
+     *
+     * @param reader the reader to read from
+     * @param limit max number of chars which should be read from the reader, -1 to read until the end of the stream
+     * @param maxLineLength max number of chars of a single line, -1 if unlimited
+     */
+    public NDJSONReader(Reader reader, long limit, int maxLineLength){
+        this.reader = reader;
+        this.remaining = limit;
+        this.maxLineLength = maxLineLength;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while(nextLine == null && !finished){
+            try{
+                String line = readLine();
+                if(line == null){
+                    finished = true;
+                }else if(!line.isBlank()){
+                    nextLine = line;
+                }
+            }catch (IOException e){
+                finished = true;
+            }
+        }
+        return nextLine != null;
+    }
+
+    /**
+     * Returns the next json object
+     * <p>
+     * Returns null if the next line does not contain a valid json object
+     *
+     * @return JSONObject or null
+     */
+    @Override
+    public JSONObject next() {
+        if(!hasNext()){
+            throw new NoSuchElementException();
+        }
+        String line = nextLine;
+        nextLine = null;
+        lines++;
+        try{
+            return new JSONObject(line);
+        }catch (Exception e){
+            return null;
+        }
+    }
+
+    /**
+     * Returns the number of lines returned by next()
+     *
+     * @return long
+     */
+    public long getLineCount(){
+        return lines;
+    }
+
+    /**
+     * Returns whether reading has been stopped as a line exceeded the maximum line length
+     *
+     * @return boolean
+     */
+    public boolean exceededLineLength(){
+        return exceeded;
+    }
+
+    /**
+     * Used to read a single line within the limit
+     *
+     * @return String or null if there is nothing left
+     * @throws IOException on exception
+     */
+    private String readLine() throws IOException{
+        if(remaining == 0){
+            return null;
+        }
+        StringBuilder stringBuilder = new StringBuilder();
+        int c;
+        while(remaining != 0 && (c = reader.read()) != -1){
+            if(remaining > 0){ remaining--; }
+            if(c == '\n'){
+                return stringBuilder.toString();
+            }else if(c != '\r'){
+                if(maxLineLength >= 0 && stringBuilder.length() >= maxLineLength){
+                    exceeded = true;
+                    remaining = 0; // the rest of the stream is not read
+                    return null;
+                }
+                stringBuilder.append((char) c);
+            }
+        }
+        if(remaining > 0){
+            remaining = 0; // stream ended early
+        }
+        return (stringBuilder.length() > 0) ? stringBuilder.toString() : null;
+    }
+}
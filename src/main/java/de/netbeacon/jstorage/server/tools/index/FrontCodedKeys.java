@@ -0,0 +1,324 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.index;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Immutable sorted array of keys with an int value each
+ * <p>
+ * Keys are ordered by their utf-8 bytes and stored in blocks of 16. The first key of each block is stored as it is, all others only store
+ * the length of the prefix shared with the previous key and the remaining bytes. Lookups search the first keys of the blocks and
+ * decode a single block. Instances can be read by any number of threads without synchronisation.
+ *
+ * @author horstexplorer
+ */
+public class FrontCodedKeys {
+
+    private static final int BLOCK_SIZE = 16;
+    private static final FrontCodedKeys EMPTY = new Builder(0).build();
+
+    private final byte[] data;
+    private final int[] blocks;
+    private final int[] values;
+    private final int size;
+    private final int maxKeyLength;
+
+    private FrontCodedKeys(byte[] data, int[] blocks, int[] values, int size, int maxKeyLength){
+        this.data = data;
+        this.blocks = blocks;
+        this.values = values;
+        this.size = size;
+        this.maxKeyLength = maxKeyLength;
+    }
+
+    /**
+     * Returns an instance without any keys
+     *
+     * @return FrontCodedKeys
+     */
+    public static FrontCodedKeys empty(){
+        return EMPTY;
+    }
+
+    /**
+     * Returns the number of keys
+     *
+     * @return int
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes used by the keys and values
+     *
+     * @return long
+     */
+    public long getBytes(){
+        return data.length + (long) blocks.length * 4 + (long) values.length * 4;
+    }
+
+    /**
+     * Returns the value of a key
+     *
+     * @param key the key
+     * @return int, -1 if the key does not exist
+     */
+    public int get(String key){
+        return get(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the value of a key
+     *
+     * @param key utf-8 bytes of the key
+     * @return int, -1 if the key does not exist
+     */
+    public int get(byte[] key){
+        if(size == 0){
+            return -1;
+        }
+        // last block starting with a key not greater than the requested one
+        int low = 0;
+        int high = blocks.length-1;
+        int block = -1;
+        int[] pos = new int[1];
+        while(low <= high){
+            int mid = (low + high) >>> 1;
+            pos[0] = blocks[mid];
+            readVarInt(pos); // shared prefix, always 0
+            int length = readVarInt(pos);
+            int c = Arrays.compareUnsigned(data, pos[0], pos[0]+length, key, 0, key.length);
+            if(c == 0){
+                return values[mid*BLOCK_SIZE];
+            }else if(c < 0){
+                block = mid;
+                low = mid+1;
+            }else{
+                high = mid-1;
+            }
+        }
+        if(block < 0){
+            return -1;
+        }
+        byte[] current = new byte[maxKeyLength];
+        pos[0] = blocks[block];
+        int end = Math.min((block+1)*BLOCK_SIZE, size);
+        int length = 0;
+        for(int i = block*BLOCK_SIZE; i < end; i++){
+            int shared = readVarInt(pos);
+            int suffix = readVarInt(pos);
+            System.arraycopy(data, pos[0], current, shared, suffix);
+            pos[0] += suffix;
+            length = shared+suffix;
+            int c = Arrays.compareUnsigned(current, 0, length, key, 0, key.length);
+            if(c == 0){
+                return values[i];
+            }else if(c > 0){
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a cursor positioned before the first key
+     *
+     * @return Cursor
+     */
+    public Cursor cursor(){
+        return new Cursor();
+    }
+
+    private int readVarInt(int[] pos){
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do{
+            b = data[pos[0]++];
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        }while(b < 0);
+        return value;
+    }
+
+    /**
+     * Iterates over all keys in ascending order
+     */
+    public class Cursor {
+
+        private final byte[] key = new byte[maxKeyLength];
+        private final int[] pos = new int[1];
+        private int length = 0;
+        private int index = -1;
+
+        private Cursor(){}
+
+        /**
+         * Used to move to the next key
+         *
+         * @return boolean false if there are no more keys
+         */
+        public boolean next(){
+            if(index+1 >= size){
+                index = size;
+                return false;
+            }
+            index++;
+            int shared = readVarInt(pos);
+            int suffix = readVarInt(pos);
+            System.arraycopy(data, pos[0], key, shared, suffix);
+            pos[0] += suffix;
+            length = shared+suffix;
+            return true;
+        }
+
+        /**
+         * Returns the bytes of the current key
+         * <p>
+         * The array is reused and only valid up to {@link #length()} until the cursor moves
+         *
+         * @return byte[]
+         */
+        public byte[] key(){
+            return key;
+        }
+
+        /**
+         * Returns the length of the current key
+         *
+         * @return int
+         */
+        public int length(){
+            return length;
+        }
+
+        /**
+         * Returns a copy of the current key
+         *
+         * @return String
+         */
+        public String keyString(){
+            return new String(key, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Returns the value of the current key
+         *
+         * @return int
+         */
+        public int value(){
+            return values[index];
+        }
+    }
+
+    /**
+     * Used to create new instances from keys added in ascending order
+     */
+    public static class Builder {
+
+        private byte[] data;
+        private int[] blocks;
+        private int[] values;
+        private int size = 0;
+        private int position = 0;
+        private int maxKeyLength = 0;
+        private byte[] previous = new byte[0];
+        private int previousLength = 0;
+
+        /**
+         * Creates a new Builder
+         *
+         * @param expected expected number of keys
+         */
+        public Builder(int expected){
+            expected = Math.max(expected, 16);
+            this.data = new byte[expected*8];
+            this.blocks = new int[expected/BLOCK_SIZE+1];
+            this.values = new int[expected];
+        }
+
+        /**
+         * Used to add the next key
+         *
+         * @param key utf-8 bytes of the key, has to be greater than the previous one
+         * @param length number of bytes of the key
+         * @param value the value, not negative
+         */
+        public void add(byte[] key, int length, int value){
+            if(size > 0 && Arrays.compareUnsigned(previous, 0, previousLength, key, 0, length) >= 0){
+                throw new IllegalArgumentException("Keys Have To Be Added In Ascending Order");
+            }
+            if(value < 0){
+                throw new IllegalArgumentException("Values Must Not Be Negative");
+            }
+            int shared = 0;
+            if(size % BLOCK_SIZE == 0){
+                if(size/BLOCK_SIZE >= blocks.length){
+                    blocks = Arrays.copyOf(blocks, blocks.length*2);
+                }
+                blocks[size/BLOCK_SIZE] = position;
+            }else{
+                int max = Math.min(previousLength, length);
+                while(shared < max && previous[shared] == key[shared]){
+                    shared++;
+                }
+            }
+            ensure(10 + length - shared);
+            writeVarInt(shared);
+            writeVarInt(length-shared);
+            System.arraycopy(key, shared, data, position, length-shared);
+            position += length-shared;
+            if(size >= values.length){
+                values = Arrays.copyOf(values, values.length*2);
+            }
+            values[size++] = value;
+            if(previous.length < length){
+                previous = new byte[Math.max(length, previous.length*2)];
+            }
+            System.arraycopy(key, 0, previous, 0, length);
+            previousLength = length;
+            maxKeyLength = Math.max(maxKeyLength, length);
+        }
+
+        /**
+         * Creates a new instance containing all added keys
+         *
+         * @return FrontCodedKeys
+         */
+        public FrontCodedKeys build(){
+            int blockCount = (size+BLOCK_SIZE-1)/BLOCK_SIZE;
+            return new FrontCodedKeys(Arrays.copyOf(data, position), Arrays.copyOf(blocks, blockCount), Arrays.copyOf(values, size), size, maxKeyLength);
+        }
+
+        private void ensure(int bytes){
+            if(position + bytes > data.length){
+                data = Arrays.copyOf(data, Math.max(data.length*2, position+bytes));
+            }
+        }
+
+        private void writeVarInt(int value){
+            while((value & ~0x7f) != 0){
+                data[position++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            data[position++] = (byte) value;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.jsonmatcher;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+
+/**
+ * Compiled form of a structure specification
+ * <p>
+ * Behaves like {@link JSONMatcher#structureMatch(JSONObject, JSONObject)} but does not need to copy or walk the specification for every check
+ *
+ * @author horstexplorer
+ */
+public class JSONStructure {
+
+    private final HashMap<String, JSONStructure> children = new HashMap<>();
+    private final HashMap<String, Class<?>> types = new HashMap<>();
+    private final Class<?> type;
+    private final JSONStructure element;
+
+    /**
+     * Compiles the given specification
+     *
+     * @param specification the predefined structure
+     */
+    public JSONStructure(JSONObject specification){
+        this.type = JSONObject.class;
+        this.element = null;
+        for(String key : specification.keySet()){
+            Object o = specification.get(key);
+            types.put(key, o.getClass());
+            if(o instanceof JSONObject){
+                children.put(key, new JSONStructure((JSONObject) o));
+            }else if(o instanceof JSONArray){
+                children.put(key, new JSONStructure((JSONArray) o));
+            }
+        }
+    }
+
+    /**
+     * Compiles the given specification
+     *
+     * @param specification the predefined structure
+     */
+    public JSONStructure(JSONArray specification){
+        this.type = JSONArray.class;
+        if(specification.isEmpty()){
+            this.element = null;
+            return;
+        }
+        Object o = specification.get(0);
+        types.put("", o.getClass());
+        if(o instanceof JSONObject){
+            this.element = new JSONStructure((JSONObject) o);
+        }else if(o instanceof JSONArray){
+            this.element = new JSONStructure((JSONArray) o);
+        }else{
+            this.element = null;
+        }
+    }
+
+    /**
+     * Checks if the structure of test matches this structure
+     *
+     * @param test the object containing the data
+     * @return boolean
+     */
+    public boolean matches(JSONObject test){
+        if(type != JSONObject.class || types.size() != test.length()){
+            return false;
+        }
+        for(String key : test.keySet()){
+            Class<?> c = types.get(key);
+            if(c == null){
+                return false;
+            }
+            Object o = test.get(key);
+            if(c != o.getClass()){
+                return false;
+            }
+            if(o instanceof JSONObject){
+                if(!children.get(key).matches((JSONObject) o)){
+                    return false;
+                }
+            }else if(o instanceof JSONArray){
+                if(!children.get(key).matches((JSONArray) o)){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the structure of test matches this structure
+     *
+     * @param test the object containing the data
+     * @return boolean
+     */
+    public boolean matches(JSONArray test){
+        if(type != JSONArray.class){
+            return false;
+        }
+        if(types.isEmpty()){
+            return true;
+        }
+        Class<?> c = types.get("");
+        for(Object o : test){
+            if(c != o.getClass()){
+                return false;
+            }
+            if(o instanceof JSONObject){
+                if(!element.matches((JSONObject) o)){
+                    return false;
+                }
+            }else if(o instanceof JSONArray){
+                if(!element.matches((JSONArray) o)){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
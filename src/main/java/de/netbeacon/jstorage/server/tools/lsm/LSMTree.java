@@ -0,0 +1,767 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.tools.lsm;
+
+import de.netbeacon.jstorage.server.tools.executor.IOScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Log structured merge tree mapping string keys to string values within a directory
+ * <p>
+ * Writes are appended to a write ahead log which is synced to disk before the write returns, and kept in a sorted memtable.
+ * Once the memtable exceeds its size it is written to a new immutable {@link Segment} on level 0.
+ * Reads check the memtable and then all segments from the newest to the oldest, skipping segments whose bloom filter rules out the key.
+ * Segments of level 0 are ordered by their sequence, each further level only contains data older than the levels above.
+ * Compaction runs in the background: once level 0 contains more than 4 segments they are merged with the single sorted run of level 1,
+ * each further level holds one run up to 10 times the size of the level above before it is merged into the next level. All writes to disk are sequential.
+ * <p>
+ * The tree opens itself on first access and can be closed to release its files and memory.
+ *
+ * @author horstexplorer
+ */
+public class LSMTree {
+
+    private static final Pattern segmentPattern = Pattern.compile("segment_(\\d+)_(\\d+)");
+
+    private final File directory;
+    private final long maxMemTableBytes;
+    private final int level0Segments;
+    private final int levelRatio;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock compactionLock = new ReentrantLock();
+    private final AtomicLong sequence = new AtomicLong(0);
+    private final List<List<Segment>> levels = new ArrayList<>();
+    private TreeMap<String, String> memTable = new TreeMap<>(); // null values are tombstones
+    private long memTableBytes = 0;
+    private DataOutputStream wal;
+    private FileOutputStream walFile;
+    private volatile boolean open = false;
+    private boolean compactionScheduled = false;
+
+    private final Logger logger = LoggerFactory.getLogger(LSMTree.class);
+
+    /**
+     * Creates a new LSMTree
+     * <p>
+     * The directory is not accessed before the tree is used
+     *
+     * @param directory the directory containing the files of the tree
+     */
+    public LSMTree(File directory){
+        this(directory, 4*1024*1024, 4, 10);
+    }
+
+    /**
+     * Creates a new LSMTree with custom limits
+     *
+     * @param directory the directory containing the files of the tree
+     * @param maxMemTableBytes estimated size of the memtable before it is written to a segment
+     * @param level0Segments number of level 0 segments before they are merged into level 1
+     * @param levelRatio size ratio between two levels
+     */
+    LSMTree(File directory, long maxMemTableBytes, int level0Segments, int levelRatio){
+        this.directory = directory;
+        this.maxMemTableBytes = maxMemTableBytes;
+        this.level0Segments = level0Segments;
+        this.levelRatio = levelRatio;
+    }
+
+    /*                  ACCESS                  */
+
+    /**
+     * Returns the value of a key
+     *
+     * @param key the key
+     * @return String or null if the key does not exist
+     * @throws IOException if the data could not be read
+     */
+    public String get(String key) throws IOException{
+        while(true){
+            ensureOpen();
+            lock.readLock().lock();
+            try{
+                if(!open){
+                    continue; // closed in between
+                }
+                if(memTable.containsKey(key)){
+                    return memTable.get(key);
+                }
+                for(Segment segment : segmentsNewestFirst()){
+                    String[] result = segment.find(key);
+                    if(result != null){
+                        return result[0];
+                    }
+                }
+                return null;
+            }finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Used to set the value of a key
+     *
+     * @param key the key
+     * @param value the value
+     * @throws IOException if the change could not be written to the log
+     */
+    public void put(String key, String value) throws IOException{
+        write(Collections.singletonMap(key, Objects.requireNonNull(value)));
+    }
+
+    /**
+     * Used to set the values of multiple keys
+     * <p>
+     * All entries are appended to the log at once and synced a single time
+     *
+     * @param entries keys and their values
+     * @throws IOException if the changes could not be written to the log
+     */
+    public void putAll(Map<String, String> entries) throws IOException{
+        entries.values().forEach(Objects::requireNonNull);
+        write(entries);
+    }
+
+    /**
+     * Used to remove a key
+     *
+     * @param key the key
+     * @throws IOException if the change could not be written to the log
+     */
+    public void delete(String key) throws IOException{
+        write(Collections.singletonMap(key, null));
+    }
+
+    /**
+     * Used to visit all entries in ascending order of their keys
+     * <p>
+     * Blocks writes while running
+     *
+     * @param consumer receives key and value, returns false to stop
+     * @throws IOException if the data could not be read
+     */
+    public void scan(BiPredicate<String, String> consumer) throws IOException{
+        while(true){
+            ensureOpen();
+            lock.readLock().lock();
+            List<Segment.Cursor> cursors = new ArrayList<>();
+            try{
+                if(!open){
+                    continue;
+                }
+                // sources ordered from newest to oldest, the first source containing a key wins
+                PriorityQueue<Source> queue = new PriorityQueue<>();
+                Iterator<Map.Entry<String, String>> mem = memTable.entrySet().iterator();
+                Source memSource = new Source(Long.MAX_VALUE, mem, null);
+                if(memSource.advance()){ queue.add(memSource); }
+                List<Segment> segments = segmentsNewestFirst();
+                for(int i = 0; i < segments.size(); i++){
+                    Segment.Cursor cursor = segments.get(i).cursor();
+                    cursors.add(cursor);
+                    Source source = new Source(segments.size()-i, null, cursor);
+                    if(source.advance()){ queue.add(source); }
+                }
+                while(!queue.isEmpty()){
+                    Source source = queue.poll();
+                    String key = source.key;
+                    String value = source.value;
+                    if(source.advance()){ queue.add(source); }
+                    // skip older versions
+                    while(!queue.isEmpty() && queue.peek().key.equals(key)){
+                        Source older = queue.poll();
+                        if(older.advance()){ queue.add(older); }
+                    }
+                    if(value != null && !consumer.test(key, value)){
+                        return;
+                    }
+                }
+                return;
+            }finally {
+                cursors.forEach(Segment.Cursor::close);
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    /*                  STORAGE                  */
+
+    /**
+     * Used to write the memtable to a new segment
+     *
+     * @throws IOException on exception
+     */
+    public void flush() throws IOException{
+        lock.writeLock().lock();
+        try{
+            if(open){
+                flushMemTable();
+            }
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Used to replace all entries of this tree
+     * <p>
+     * The new entries are written to a single segment together with tombstones for all keys which are no longer present,
+     * so that the replacement becomes visible at once when the segment is renamed. Previous segments are deleted afterwards.
+     * A failure or crash before the rename keeps the previous entries.
+     *
+     * @param entries the new entries
+     * @throws IOException on exception
+     */
+    public void replaceAll(Map<String, String> entries) throws IOException{
+        compactionLock.lock();
+        lock.writeLock().lock();
+        try{
+            if(!open){
+                open();
+            }
+            flushMemTable(); // the log is empty afterwards, so it can not override the new segment
+            TreeMap<String, String> replacement = new TreeMap<>();
+            scan((key, value) -> {
+                replacement.put(key, null);
+                return true;
+            });
+            replacement.putAll(entries);
+            List<Segment> previous = segmentsNewestFirst();
+            Segment segment = null;
+            if(!replacement.isEmpty()){
+                long seq = sequence.incrementAndGet();
+                File file = new File(directory, "segment_"+seq+"_0");
+                Segment.write(file, replacement.entrySet().iterator(), replacement.size());
+                segment = new Segment(file, seq, 0);
+            }
+            levels.forEach(List::clear);
+            if(segment != null){
+                level(0).add(segment);
+            }
+            for(Segment old : previous){
+                old.close();
+                old.getFile().delete();
+            }
+            Segment.syncDirectory(directory);
+        }finally {
+            lock.writeLock().unlock();
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Used to flush the memtable and release all files. The tree will be reopened on the next access
+     *
+     * @throws IOException on exception
+     */
+    public void close() throws IOException{
+        compactionLock.lock();
+        lock.writeLock().lock();
+        try{
+            if(!open){
+                return;
+            }
+            flushMemTable();
+            wal.close();
+            wal = null;
+            walFile = null;
+            levels.forEach(level -> level.forEach(Segment::close));
+            levels.clear();
+            open = false;
+        }finally {
+            lock.writeLock().unlock();
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Used to close the tree and delete all of its files
+     */
+    public void destroy(){
+        compactionLock.lock();
+        lock.writeLock().lock();
+        try{
+            if(wal != null){
+                try{ wal.close(); }catch (IOException ignore){}
+                wal = null;
+                walFile = null;
+            }
+            levels.forEach(level -> level.forEach(Segment::close));
+            levels.clear();
+            memTable = new TreeMap<>();
+            memTableBytes = 0;
+            open = false;
+            File[] files = directory.listFiles();
+            if(files != null){
+                for(File file : files){
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }finally {
+            lock.writeLock().unlock();
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of bytes used by the files of this tree
+     *
+     * @return long
+     */
+    public long getStoredBytes(){
+        File[] files = directory.listFiles();
+        long bytes = 0;
+        if(files != null){
+            for(File file : files){
+                bytes += file.length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Used to write changes to the log and the memtable
+     * <p>
+     * The log is synced once after all changes have been appended
+     *
+     * @param entries keys and their values, null values remove the key
+     * @throws IOException on exception
+     */
+    private void write(Map<String, String> entries) throws IOException{
+        if(entries.isEmpty()){
+            return;
+        }
+        lock.writeLock().lock();
+        try{
+            if(!open){
+                open();
+            }
+            for(Map.Entry<String, String> entry : entries.entrySet()){
+                wal.writeByte((entry.getValue() != null) ? 0 : 1);
+                Segment.writeString(wal, entry.getKey());
+                if(entry.getValue() != null){
+                    Segment.writeString(wal, entry.getValue());
+                }
+            }
+            wal.flush();
+            walFile.getFD().sync();
+            for(Map.Entry<String, String> entry : entries.entrySet()){
+                String key = entry.getKey();
+                String value = entry.getValue();
+                String previous = memTable.put(key, value);
+                memTableBytes += 2L * (key.length() + ((value != null) ? value.length() : 0) - ((previous != null) ? previous.length() : 0)) + 64;
+            }
+            if(memTableBytes > maxMemTableBytes){
+                flushMemTable();
+            }
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Used to open the directory of this tree, reading all segments and replaying the log
+     *
+     * @throws IOException on exception
+     */
+    private void ensureOpen() throws IOException{
+        if(open){
+            return;
+        }
+        lock.writeLock().lock();
+        try{
+            if(!open){
+                open();
+            }
+        }finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void open() throws IOException{
+        if(!directory.exists()){ directory.mkdirs(); }
+        File[] files = directory.listFiles();
+        List<Segment> segments = new ArrayList<>();
+        long maxSequence = 0;
+        try{
+            if(files != null){
+                for(File file : files){
+                    if(file.getName().endsWith(".tmp")){
+                        file.delete(); // unfinished segment
+                        continue;
+                    }
+                    Matcher matcher = segmentPattern.matcher(file.getName());
+                    if(matcher.matches()){
+                        Segment segment = new Segment(file, Long.parseLong(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+                        segments.add(segment);
+                        maxSequence = Math.max(maxSequence, segment.getSequence());
+                    }
+                }
+            }
+        }catch (IOException e){
+            segments.forEach(Segment::close);
+            throw e;
+        }
+        levels.clear();
+        segments.sort(Comparator.comparingLong(Segment::getSequence));
+        for(Segment segment : segments){
+            level(segment.getLevel()).add(segment);
+        }
+        sequence.set(maxSequence);
+        // replay log
+        memTable = new TreeMap<>();
+        memTableBytes = 0;
+        File log = new File(directory, "wal");
+        if(log.exists()){
+            try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(log)))){
+                while(true){
+                    boolean tombstone = in.readByte() == 1;
+                    String key = Segment.readString(in);
+                    String value = (tombstone) ? null : Segment.readString(in);
+                    memTable.put(key, value);
+                    memTableBytes += 2L * (key.length() + ((value != null) ? value.length() : 0)) + 64;
+                }
+            }catch (EOFException ignore){} // end of log or incomplete last entry
+        }
+        openLog(true);
+        open = true;
+        scheduleCompaction();
+    }
+
+    /**
+     * Used to write the memtable to a new level 0 segment and reset the log
+     * <p>
+     * The log is only reset once the segment and its directory entry have been synced. Has to be called while holding the write lock
+     *
+     * @throws IOException on exception
+     */
+    private void flushMemTable() throws IOException{
+        if(memTable.isEmpty()){
+            return;
+        }
+        long seq = sequence.incrementAndGet();
+        File file = new File(directory, "segment_"+seq+"_0");
+        Segment.write(file, memTable.entrySet().iterator(), memTable.size());
+        level(0).add(new Segment(file, seq, 0));
+        memTable = new TreeMap<>();
+        memTableBytes = 0;
+        wal.close();
+        openLog(false);
+        scheduleCompaction();
+    }
+
+    /**
+     * Used to open the write ahead log
+     *
+     * @param append if the existing content should be kept
+     * @throws IOException on exception
+     */
+    private void openLog(boolean append) throws IOException{
+        walFile = new FileOutputStream(new File(directory, "wal"), append);
+        wal = new DataOutputStream(new BufferedOutputStream(walFile));
+    }
+
+    /*                  COMPACTION                  */
+
+    private void scheduleCompaction(){
+        int level = findCompactionLevel();
+        if(compactionScheduled || level < 0){
+            return;
+        }
+        compactionScheduled = true;
+        long bytes = 0;
+        for(int i = level; i < Math.min(level+2, levels.size()); i++){
+            for(Segment segment : levels.get(i)){
+                bytes += segment.getBytes();
+            }
+        }
+        IOScheduler.getInstance().submit(IOScheduler.Priority.OPTIMIZE, bytes, () -> {
+            compactionLock.lock();
+            try{
+                while(compact()){ /* continue with the next level */ }
+            }catch (Exception e){
+                logger.error("Compaction Of "+directory.getPath()+" Failed", e);
+            }finally {
+                lock.writeLock().lock();
+                compactionScheduled = false;
+                lock.writeLock().unlock();
+                compactionLock.unlock();
+            }
+        });
+    }
+
+    /**
+     * Used to run all pending compactions on the current thread
+     *
+     * @throws IOException on exception
+     */
+    void compactNow() throws IOException{
+        compactionLock.lock();
+        try{
+            while(compact()){ /* continue with the next level */ }
+        }finally {
+            compactionLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of segments on each level
+     *
+     * @return int[]
+     */
+    int[] getSegmentCounts(){
+        lock.readLock().lock();
+        try{
+            return levels.stream().mapToInt(List::size).toArray();
+        }finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the level which should be merged into the next one
+     * <p>
+     * Has to be called while holding the lock
+     *
+     * @return int, -1 if none
+     */
+    private int findCompactionLevel(){
+        if(levels.size() > 0 && levels.get(0).size() > level0Segments){
+            return 0;
+        }
+        long limit = maxMemTableBytes * level0Segments;
+        for(int i = 1; i < levels.size(); i++){
+            limit *= levelRatio;
+            long bytes = 0;
+            for(Segment segment : levels.get(i)){
+                bytes += segment.getBytes();
+            }
+            if(bytes > limit || levels.get(i).size() > 1){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Used to merge one level into the next one
+     * <p>
+     * The segments are read and written without holding the lock, only replacing them is done while locked
+     *
+     * @return true if a level has been compacted
+     * @throws IOException on exception
+     */
+    private boolean compact() throws IOException{
+        List<Segment> inputs;
+        int target;
+        long seq;
+        boolean dropTombstones;
+        lock.readLock().lock();
+        try{
+            if(!open){
+                return false;
+            }
+            int source = findCompactionLevel();
+            if(source < 0){
+                return false;
+            }
+            target = source+1;
+            inputs = new ArrayList<>();
+            for(Segment segment : segmentsNewestFirst()){
+                if(segment.getLevel() == source || segment.getLevel() == target){
+                    inputs.add(segment); // newest first
+                }
+            }
+            // tombstones are only required as long as older data may exist below
+            dropTombstones = true;
+            for(int i = target+1; i < levels.size(); i++){
+                dropTombstones &= levels.get(i).isEmpty();
+            }
+            seq = sequence.incrementAndGet();
+        }finally {
+            lock.readLock().unlock();
+        }
+        File file = new File(directory, "segment_"+seq+"_"+target);
+        long expected = 0;
+        for(Segment segment : inputs){
+            expected += segment.getEntries();
+        }
+        List<Segment.Cursor> cursors = new ArrayList<>();
+        try{
+            PriorityQueue<Source> queue = new PriorityQueue<>();
+            for(int i = 0; i < inputs.size(); i++){
+                Segment.Cursor cursor = inputs.get(i).cursor();
+                cursors.add(cursor);
+                Source s = new Source(inputs.size()-i, null, cursor);
+                if(s.advance()){ queue.add(s); }
+            }
+            Segment.write(file, new MergeIterator(queue, dropTombstones), expected);
+        }finally {
+            cursors.forEach(Segment.Cursor::close);
+        }
+        Segment merged = new Segment(file, seq, target);
+        lock.writeLock().lock();
+        try{
+            for(List<Segment> level : levels){
+                level.removeAll(inputs);
+            }
+            level(target).add(merged);
+            level(target).sort(Comparator.comparingLong(Segment::getSequence));
+        }finally {
+            lock.writeLock().unlock();
+        }
+        // the merged segment and its directory entry have been synced, delete the oldest inputs first so a newer tombstone is not removed while older data remains
+        for(int i = inputs.size()-1; i >= 0; i--){
+            inputs.get(i).close();
+            inputs.get(i).getFile().delete();
+        }
+        Segment.syncDirectory(directory); // deleted inputs must not reappear above newer merged data
+        logger.debug("Compacted "+inputs.size()+" Segments Of "+directory.getPath()+" Into Level "+target);
+        return true;
+    }
+
+    /**
+     * Returns the segments of a level, creating missing levels
+     *
+     * @param level the level
+     * @return List of segments, oldest first
+     */
+    private List<Segment> level(int level){
+        while(levels.size() <= level){
+            levels.add(new ArrayList<>());
+        }
+        return levels.get(level);
+    }
+
+    /**
+     * Returns all segments ordered from the newest to the oldest
+     * <p>
+     * A merged segment gets a new sequence but only contains data older than the levels above, so segments are ordered by their level first
+     *
+     * @return List
+     */
+    private List<Segment> segmentsNewestFirst(){
+        List<Segment> list = new ArrayList<>();
+        for(int i = 0; i < levels.size(); i++){
+            List<Segment> level = new ArrayList<>(levels.get(i));
+            level.sort(Comparator.comparingLong(Segment::getSequence).reversed());
+            list.addAll(level);
+        }
+        return list;
+    }
+
+    /**
+     * Sorted source of records used while merging, ordered by key and then from the newest to the oldest source
+     */
+    private static class Source implements Comparable<Source> {
+
+        private final long sequence; // higher is newer
+        private final Iterator<Map.Entry<String, String>> iterator;
+        private final Segment.Cursor cursor;
+        private String key;
+        private String value;
+
+        private Source(long sequence, Iterator<Map.Entry<String, String>> iterator, Segment.Cursor cursor){
+            this.sequence = sequence;
+            this.iterator = iterator;
+            this.cursor = cursor;
+        }
+
+        private boolean advance() throws IOException{
+            if(iterator != null){
+                if(!iterator.hasNext()){
+                    return false;
+                }
+                Map.Entry<String, String> entry = iterator.next();
+                key = entry.getKey();
+                value = entry.getValue();
+                return true;
+            }
+            if(!cursor.next()){
+                return false;
+            }
+            key = cursor.getKey();
+            value = cursor.getValue();
+            return true;
+        }
+
+        @Override
+        public int compareTo(Source o) {
+            int c = key.compareTo(o.key);
+            return (c != 0) ? c : Long.compare(o.sequence, sequence);
+        }
+    }
+
+    /**
+     * Iterates over the newest version of each key of the given sources
+     */
+    private static class MergeIterator implements Iterator<Map.Entry<String, String>> {
+
+        private final PriorityQueue<Source> queue;
+        private final boolean dropTombstones;
+        private Map.Entry<String, String> next;
+
+        private MergeIterator(PriorityQueue<Source> queue, boolean dropTombstones){
+            this.queue = queue;
+            this.dropTombstones = dropTombstones;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try{
+                while(next == null && !queue.isEmpty()){
+                    Source source = queue.poll();
+                    String key = source.key;
+                    String value = source.value;
+                    if(source.advance()){ queue.add(source); }
+                    while(!queue.isEmpty() && queue.peek().key.equals(key)){
+                        Source older = queue.poll();
+                        if(older.advance()){ queue.add(older); }
+                    }
+                    if(value != null || !dropTombstones){
+                        next = new AbstractMap.SimpleEntry<>(key, value);
+                    }
+                }
+                return next != null;
+            }catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public Map.Entry<String, String> next() {
+            if(!hasNext()){
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, String> entry = next;
+            next = null;
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.tools.lsm;
+
+import de.netbeacon.jstorage.server.tools.btree.BloomFilter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Immutable sorted file of an {@link LSMTree}
+ * <p>
+ * The file contains all records sorted by key, followed by a sparse index containing every 32nd key, a bloom filter over all keys and a fixed size trailer.
+ * Only the sparse index and the bloom filter are kept in memory. Removed keys are stored as tombstones without value.
+ *
+ * @author horstexplorer
+ */
+class Segment {
+
+    private static final int magic = 0x4a53534d; // JSSM
+    private static final int trailerSize = 36;
+    private static final int indexInterval = 32;
+
+    private final File file;
+    private final long sequence;
+    private final int level;
+    private final long dataEnd;
+    private final long entries;
+    private final String[] indexKeys;
+    private final long[] indexOffsets;
+    private final BloomFilter bloomFilter;
+    private final FileChannel channel;
+
+    /**
+     * Opens an existing segment
+     *
+     * @param file the file
+     * @param sequence sequence number, higher numbers contain newer data
+     * @param level level of the segment
+     * @throws IOException if the file could not be read
+     */
+    Segment(File file, long sequence, int level) throws IOException{
+        this.file = file;
+        this.sequence = sequence;
+        this.level = level;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try{
+            long size = channel.size();
+            ByteBuffer trailer = readBlock(size - trailerSize, trailerSize);
+            this.dataEnd = trailer.getLong();
+            long indexOffset = trailer.getLong();
+            long bloomOffset = trailer.getLong();
+            this.entries = trailer.getLong();
+            if(trailer.getInt() != magic){
+                throw new IOException("Invalid Segment "+file.getName());
+            }
+            try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+                in.skipNBytes(indexOffset);
+                int count = in.readInt();
+                indexKeys = new String[count];
+                indexOffsets = new long[count];
+                for(int i = 0; i < count; i++){
+                    indexKeys[i] = readString(in);
+                    indexOffsets[i] = in.readLong();
+                }
+            }
+            try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+                in.skipNBytes(bloomOffset);
+                bloomFilter = BloomFilter.readFrom(in);
+            }
+        }catch (IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    long getSequence(){ return sequence; }
+
+    int getLevel(){ return level; }
+
+    long getEntries(){ return entries; }
+
+    long getBytes(){ return file.length(); }
+
+    File getFile(){ return file; }
+
+    /**
+     * Looks up a key
+     *
+     * @param key the key
+     * @return null if the key is not part of this segment, an array containing the value (null for tombstones) otherwise
+     * @throws IOException if the segment could not be read
+     */
+    String[] find(String key) throws IOException{
+        if(indexKeys.length == 0 || !bloomFilter.mightContain(key)){
+            return null;
+        }
+        int i = Arrays.binarySearch(indexKeys, key);
+        if(i < 0){
+            i = -i-2; // last index key smaller than the key
+            if(i < 0){
+                return null;
+            }
+        }
+        long start = indexOffsets[i];
+        long end = (i+1 < indexOffsets.length) ? indexOffsets[i+1] : dataEnd;
+        ByteBuffer block = readBlock(start, (int) (end - start));
+        while(block.hasRemaining()){
+            String k = readString(block);
+            boolean tombstone = block.get() == 1;
+            String value = (tombstone) ? null : readString(block);
+            int c = k.compareTo(key);
+            if(c == 0){
+                return new String[]{value};
+            }else if(c > 0){
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a cursor reading all records of this segment in order
+     *
+     * @return Cursor
+     * @throws IOException if the file could not be opened
+     */
+    Cursor cursor() throws IOException{
+        return new Cursor();
+    }
+
+    /**
+     * Used to close the file
+     */
+    void close(){
+        try{
+            channel.close();
+        }catch (IOException ignore){}
+    }
+
+    private ByteBuffer readBlock(long position, int length) throws IOException{
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()){
+            if(channel.read(buffer, position + buffer.position()) < 0){
+                throw new EOFException("Unexpected End Of Segment "+file.getName());
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Sequential reader over the records of a segment
+     */
+    class Cursor implements Closeable {
+
+        private final DataInputStream in;
+        private long position = 0;
+        private String key;
+        private String value;
+
+        private Cursor() throws IOException{
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+        }
+
+        /**
+         * Moves to the next record
+         *
+         * @return false if there are no more records
+         * @throws IOException on exception
+         */
+        boolean next() throws IOException{
+            if(position >= dataEnd){
+                key = null;
+                value = null;
+                return false;
+            }
+            key = read();
+            boolean tombstone = in.readByte() == 1;
+            position++;
+            value = (tombstone) ? null : read();
+            return true;
+        }
+
+        private String read() throws IOException{
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            position += 4 + bytes.length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        String getKey(){ return key; }
+
+        String getValue(){ return value; }
+
+        long getSequence(){ return sequence; }
+
+        @Override
+        public void close() {
+            try{
+                in.close();
+            }catch (IOException ignore){}
+        }
+    }
+
+    /*                  WRITE                  */
+
+    /**
+     * Used to write a new segment from sorted records
+     * <p>
+     * The segment is written to a temporary file which is synced and renamed once complete. The rename is synced as well before this returns,
+     * so the caller may remove the source of the records afterwards
+     *
+     * @param file target file
+     * @param records records sorted by key, null values are written as tombstones
+     * @param expected expected number of records, used to size the bloom filter
+     * @throws IOException on exception
+     */
+    static void write(File file, Iterator<Map.Entry<String, String>> records, long expected) throws IOException{
+        File tmp = new File(file.getParentFile(), file.getName()+".tmp");
+        List<String> indexKeys = new ArrayList<>();
+        List<Long> indexOffsets = new ArrayList<>();
+        BloomFilter bloomFilter = new BloomFilter(expected);
+        long position = 0;
+        long entries = 0;
+        try(FileOutputStream fos = new FileOutputStream(tmp); DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 65536))){
+            while(records.hasNext()){
+                Map.Entry<String, String> record = records.next();
+                if(entries % indexInterval == 0){
+                    indexKeys.add(record.getKey());
+                    indexOffsets.add(position);
+                }
+                position += writeString(out, record.getKey());
+                out.writeByte((record.getValue() == null) ? 1 : 0);
+                position += 1;
+                if(record.getValue() != null){
+                    position += writeString(out, record.getValue());
+                }
+                bloomFilter.add(record.getKey());
+                entries++;
+            }
+            long dataEnd = position;
+            long indexOffset = position;
+            out.writeInt(indexKeys.size());
+            position += 4;
+            for(int i = 0; i < indexKeys.size(); i++){
+                position += writeString(out, indexKeys.get(i));
+                out.writeLong(indexOffsets.get(i));
+                position += 8;
+            }
+            long bloomOffset = position;
+            bloomFilter.writeTo(out);
+            out.writeLong(dataEnd);
+            out.writeLong(indexOffset);
+            out.writeLong(bloomOffset);
+            out.writeLong(entries);
+            out.writeInt(magic);
+            out.flush();
+            fos.getFD().sync();
+        }
+        if(!tmp.renameTo(file)){
+            tmp.delete();
+            throw new IOException("Failed To Rename Segment "+file.getName());
+        }
+        syncDirectory(file.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Used to persist renamed, created or deleted files of a directory
+     * <p>
+     * Not supported on every platform, failures are ignored
+     *
+     * @param directory the directory
+     */
+    static void syncDirectory(File directory){
+        try(FileChannel fileChannel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)){
+            fileChannel.force(true);
+        }catch (IOException ignore){}
+    }
+
+    /*                  ENCODING                  */
+
+    static int writeString(DataOutput out, String s) throws IOException{
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return 4 + bytes.length;
+    }
+
+    static String readString(DataInput in) throws IOException{
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer buffer){
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
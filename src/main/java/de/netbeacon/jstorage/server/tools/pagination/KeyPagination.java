@@ -0,0 +1,358 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.pagination;
+
+import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Used to split large listings of identifiers into pages
+ * <p>
+ * Identifiers are returned in their natural (or reversed) order, the cursor contains the last identifier of the previous page.
+ * Each page only keeps the requested number of identifiers in memory, independent of the total number of identifiers.
+ * Sorted identifiers can be paged without looking at identifiers outside of the requested range
+ *
+ * @author horstexplorer
+ */
+public class KeyPagination {
+
+    private static final int defaultLimit = 1000;
+    private static final int maxLimit = 10000;
+
+    private final String prefix;
+    private final String after;
+    private final int limit;
+    private final String from;
+    private final String to;
+    private final boolean reverse;
+    private final Predicate<String> filter;
+
+    /**
+     * Creates a new KeyPagination
+     *
+     * @param prefix only identifiers starting with this prefix will be listed, may be null
+     * @param cursor cursor returned with the previous page, may be null
+     * @param limit max number of identifiers per page, values below 1 or above the max limit will be corrected
+     * @throws GenericObjectException if the cursor is invalid
+     */
+    public KeyPagination(String prefix, String cursor, int limit) throws GenericObjectException {
+        this(prefix, null, null, false, cursor, limit);
+    }
+
+    /**
+     * Creates a new KeyPagination
+     *
+     * @param prefix only identifiers starting with this prefix will be listed, may be null
+     * @param from only identifiers greater or equal will be listed, may be null
+     * @param to only identifiers less or equal will be listed, may be null
+     * @param reverse if the identifiers should be listed in reverse order
+     * @param cursor cursor returned with the previous page, may be null
+     * @param limit max number of identifiers per page, values below 1 or above the max limit will be corrected
+     * @throws GenericObjectException if the cursor is invalid
+     */
+    public KeyPagination(String prefix, String from, String to, boolean reverse, String cursor, int limit) throws GenericObjectException {
+        this.prefix = (prefix != null) ? prefix.toLowerCase() : "";
+        this.from = (from != null) ? from.toLowerCase() : null;
+        this.to = (to != null) ? to.toLowerCase() : null;
+        this.reverse = reverse;
+        this.after = (cursor != null && !cursor.isEmpty()) ? decodeCursor(cursor) : null;
+        this.limit = (limit < 1) ? defaultLimit : Math.min(limit, maxLimit);
+        this.filter = null;
+    }
+
+    private KeyPagination(KeyPagination pagination, String after, int limit, Predicate<String> filter){
+        this.prefix = pagination.prefix;
+        this.from = pagination.from;
+        this.to = pagination.to;
+        this.reverse = pagination.reverse;
+        this.after = after;
+        this.limit = (limit < 1) ? defaultLimit : Math.min(limit, maxLimit);
+        this.filter = filter;
+    }
+
+    /**
+     * Returns a copy of this pagination which only lists identifiers accepted by the given filter
+     *
+     * @param filter returns false for identifiers which should not be listed
+     * @return KeyPagination
+     */
+    public KeyPagination withFilter(Predicate<String> filter){
+        return new KeyPagination(this, after, limit, filter);
+    }
+
+    /**
+     * Returns a copy of this pagination without cursor
+     * <p>
+     * Used to continue a page within the next of multiple sorted sources, which do not need to be ordered among each other
+     *
+     * @param limit remaining number of identifiers of the page
+     * @return KeyPagination
+     */
+    public KeyPagination withoutCursor(int limit){
+        return new KeyPagination(this, null, limit, filter);
+    }
+
+    /**
+     * Creates a new KeyPagination from the arguments of a request
+     * <p>
+     * Uses the optional arguments prefix, from, to, reverse, cursor and limit
+     *
+     * @param args arguments of the request
+     * @return KeyPagination
+     * @throws GenericObjectException if any of the arguments is invalid
+     */
+    public static KeyPagination fromArgs(HashMap<String, String> args) throws GenericObjectException {
+        int limit = defaultLimit;
+        if(args.containsKey("limit")){
+            try{
+                limit = Integer.parseInt(args.get("limit"));
+            }catch (NumberFormatException e){
+                throw new GenericObjectException(400, "Invalid Limit");
+            }
+        }
+        boolean reverse = args.containsKey("reverse") && Boolean.parseBoolean(args.get("reverse"));
+        return new KeyPagination(args.get("prefix"), args.get("from"), args.get("to"), reverse, args.get("cursor"), limit);
+    }
+
+    /**
+     * Returns the prefix used to filter identifiers
+     *
+     * @return String, empty if not used
+     */
+    public String getPrefix(){
+        return prefix;
+    }
+
+    /**
+     * Returns the last identifier of the previous page
+     *
+     * @return String or null
+     */
+    public String getAfter(){
+        return after;
+    }
+
+    /**
+     * Returns the max number of identifiers per page
+     *
+     * @return int
+     */
+    public int getLimit(){
+        return limit;
+    }
+
+    /**
+     * Returns whether the identifiers are listed in reverse order
+     *
+     * @return boolean
+     */
+    public boolean isReverse(){
+        return reverse;
+    }
+
+    /**
+     * Checks whether the given identifier belongs to this or any following page
+     *
+     * @param identifier the identifier
+     * @return boolean
+     */
+    public boolean accepts(String identifier){
+        return identifier.startsWith(prefix)
+                && (from == null || identifier.compareTo(from) >= 0)
+                && (to == null || identifier.compareTo(to) <= 0)
+                && (after == null || (reverse ? identifier.compareTo(after) < 0 : identifier.compareTo(after) > 0))
+                && (filter == null || filter.test(identifier));
+    }
+
+    /**
+     * Selects the current page from the given identifiers
+     * <p>
+     * The identifiers do not need to be sorted. Only limit + 1 identifiers are kept at any time
+     *
+     * @param identifiers all identifiers
+     * @return Page
+     */
+    public Page page(Iterator<String> identifiers){
+        Comparator<String> order = (reverse) ? Comparator.reverseOrder() : Comparator.naturalOrder();
+        // heap containing the first identifiers with the last one on top, one more than required to know if there is another page
+        PriorityQueue<String> heap = new PriorityQueue<>(limit+1, order.reversed());
+        while(identifiers.hasNext()){
+            String identifier = identifiers.next();
+            if(!accepts(identifier)){
+                continue;
+            }
+            if(heap.size() <= limit){
+                heap.add(identifier);
+            }else if(order.compare(identifier, heap.peek()) < 0){
+                heap.poll();
+                heap.add(identifier);
+            }
+        }
+        boolean hasMore = heap.size() > limit;
+        if(hasMore){
+            heap.poll();
+        }
+        List<String> list = new ArrayList<>(heap);
+        list.sort(order);
+        return new Page(list, hasMore);
+    }
+
+    /**
+     * Selects the current page from the given sorted identifiers
+     * <p>
+     * Only the identifiers of this page are visited, so listing a page takes O(log n + limit)
+     *
+     * @param identifiers all identifiers, sorted by their natural order
+     * @return Page
+     */
+    public Page page(NavigableSet<String> identifiers){
+        // narrow down to the requested range
+        String lower = (from != null && from.compareTo(prefix) > 0) ? from : (prefix.isEmpty() ? null : prefix);
+        boolean lowerInclusive = true;
+        String upper = (prefix.isEmpty()) ? to : (to != null && to.compareTo(prefix+Character.MAX_VALUE) < 0) ? to : prefix+Character.MAX_VALUE;
+        boolean upperInclusive = true;
+        if(after != null && !reverse && (lower == null || after.compareTo(lower) >= 0)){
+            lower = after;
+            lowerInclusive = false;
+        }else if(after != null && reverse && (upper == null || after.compareTo(upper) <= 0)){
+            upper = after;
+            upperInclusive = false;
+        }
+        NavigableSet<String> view;
+        if(lower != null && upper != null){
+            if(lower.compareTo(upper) > 0 || (lower.equals(upper) && !(lowerInclusive && upperInclusive))){
+                return new Page(new ArrayList<>(), false);
+            }
+            view = identifiers.subSet(lower, lowerInclusive, upper, upperInclusive);
+        }else if(lower != null){
+            view = identifiers.tailSet(lower, lowerInclusive);
+        }else if(upper != null){
+            view = identifiers.headSet(upper, upperInclusive);
+        }else{
+            view = identifiers;
+        }
+        if(reverse){
+            view = view.descendingSet();
+        }
+        List<String> list = new ArrayList<>(Math.min(limit+1, 64));
+        for(String identifier : view){
+            if(!accepts(identifier)){
+                continue;
+            }
+            list.add(identifier);
+            if(list.size() > limit){
+                break;
+            }
+        }
+        boolean hasMore = list.size() > limit;
+        if(hasMore){
+            list.remove(list.size()-1);
+        }
+        return new Page(list, hasMore);
+    }
+
+    /**
+     * Used to create a cursor pointing behind the given identifier
+     *
+     * @param identifier the last identifier of a page
+     * @return String
+     */
+    public static String encodeCursor(String identifier){
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(identifier.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Used to get the identifier from a cursor
+     *
+     * @param cursor the cursor
+     * @return String
+     * @throws GenericObjectException if the cursor is invalid
+     */
+    public static String decodeCursor(String cursor) throws GenericObjectException {
+        try{
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        }catch (IllegalArgumentException e){
+            throw new GenericObjectException(400, "Invalid Cursor");
+        }
+    }
+
+    /**
+     * Represents a single page of identifiers
+     */
+    public static class Page {
+
+        private final List<String> identifiers;
+        private final boolean hasMore;
+
+        /**
+         * Creates a new Page
+         *
+         * @param identifiers sorted identifiers of this page
+         * @param hasMore if there are more identifiers after this page
+         */
+        public Page(List<String> identifiers, boolean hasMore){
+            this.identifiers = identifiers;
+            this.hasMore = hasMore;
+        }
+
+        /**
+         * Returns the identifiers of this page
+         *
+         * @return List
+         */
+        public List<String> getIdentifiers(){
+            return identifiers;
+        }
+
+        /**
+         * Returns whether there are more identifiers after this page
+         *
+         * @return boolean
+         */
+        public boolean hasMore(){
+            return hasMore;
+        }
+
+        /**
+         * Returns the cursor for the next page
+         *
+         * @return String or null if this is the last page
+         */
+        public String getNextCursor(){
+            if(!hasMore || identifiers.isEmpty()){
+                return null;
+            }
+            return encodeCursor(identifiers.get(identifiers.size()-1));
+        }
+
+        /**
+         * Used to add the content of this page to a response
+         *
+         * @param jsonObject the response
+         * @param key key under which the identifiers should be listed
+         * @return JSONObject
+         */
+        public JSONObject appendTo(JSONObject jsonObject, String key){
+            return jsonObject.put(key, new JSONArray(identifiers)).put("cursor", (getNextCursor() != null) ? getNextCursor() : JSONObject.NULL);
+        }
+    }
+}
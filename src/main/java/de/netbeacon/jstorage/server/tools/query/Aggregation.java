@@ -0,0 +1,384 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.query;
+
+import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONPointer;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Describes which values of the DataSets of a table should be aggregated
+ * <p>
+ * Aggregations are written as json: <br>
+ * { "filter":PREDICATE, "groupBy":[ "/datatype/field", ... ], "aggregates":[ { "op":"count|sum|avg|min|max", "path":"/datatype/field", "as":NAME }, ... ] } <br>
+ * filter and groupBy are optional, count does not require a path. See {@link QueryFilter} for the format of the predicate.
+ * Partial results are computed per shard and merged afterwards.
+ *
+ * @author horstexplorer
+ */
+public class Aggregation {
+
+    private final String key;
+    private final QueryFilter filter;
+    private final List<String> groupBy = new ArrayList<>();
+    private final List<JSONPointer> groupByPointers = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<String> ops = new ArrayList<>();
+    private final List<String> paths = new ArrayList<>();
+    private final List<JSONPointer> pointers = new ArrayList<>();
+
+    /**
+     * Creates a new Aggregation
+     *
+     * @param jsonObject the aggregation
+     * @throws GenericObjectException if the aggregation is invalid
+     */
+    public Aggregation(JSONObject jsonObject) throws GenericObjectException {
+        try{
+            filter = (jsonObject.has("filter")) ? QueryFilter.compile(jsonObject.getJSONObject("filter")) : null;
+            if(jsonObject.has("groupBy")){
+                JSONArray jsonArray = jsonObject.getJSONArray("groupBy");
+                for(int i = 0; i < jsonArray.length(); i++){
+                    String path = QueryFilter.normalizePath(jsonArray.getString(i));
+                    groupBy.add(path);
+                    groupByPointers.add(new JSONPointer(path));
+                }
+            }
+            JSONArray aggregates = jsonObject.getJSONArray("aggregates");
+            if(aggregates.isEmpty()){
+                throw new GenericObjectException(400, "Invalid Aggregation: At Least One Aggregate Required");
+            }
+            for(int i = 0; i < aggregates.length(); i++){
+                JSONObject aggregate = aggregates.getJSONObject(i);
+                String op = aggregate.getString("op").toLowerCase();
+                if(!(op.equals("count") || op.equals("sum") || op.equals("avg") || op.equals("min") || op.equals("max"))){
+                    throw new GenericObjectException(400, "Invalid Aggregation: Unknown Operator "+op);
+                }
+                String path = (aggregate.has("path")) ? QueryFilter.normalizePath(aggregate.getString("path")) : null;
+                if(path == null && !op.equals("count")){
+                    throw new GenericObjectException(400, "Invalid Aggregation: "+op+" Requires A Path");
+                }
+                ops.add(op);
+                paths.add(path);
+                pointers.add((path != null) ? new JSONPointer(path) : null);
+                names.add(aggregate.optString("as", (path != null) ? op+"("+path+")" : op));
+            }
+            // used to identify equal aggregations
+            key = new JSONObject()
+                    .put("filter", jsonObject.opt("filter"))
+                    .put("groupBy", new JSONArray(groupBy))
+                    .put("ops", new JSONArray(ops))
+                    .put("pointers", new JSONArray(pointers.stream().map(p -> (p != null) ? p.toString() : "").toArray()))
+                    .toString();
+        }catch (GenericObjectException e){
+            throw e;
+        }catch (Exception e){
+            throw new GenericObjectException(400, "Invalid Aggregation: "+e.getMessage());
+        }
+    }
+
+    /**
+     * Returns a key which is equal for aggregations producing the same partial results
+     *
+     * @return String
+     */
+    public String getKey(){ return key; }
+
+    /**
+     * Returns the filter
+     *
+     * @return QueryFilter or null if all DataSets should be aggregated
+     */
+    public QueryFilter getFilter(){ return filter; }
+
+    /**
+     * Returns the paths of all aggregated fields
+     *
+     * @return Set of paths
+     */
+    public Set<String> getPaths(){
+        Set<String> set = new HashSet<>(paths);
+        set.remove(null);
+        return set;
+    }
+
+    /**
+     * Checks whether this aggregation can be computed from the given fields only
+     * <p>
+     * Grouped aggregations always require the DataSets
+     *
+     * @param available paths of the available fields
+     * @return boolean
+     */
+    public boolean isColumnar(Set<String> available){
+        return groupBy.isEmpty() && available.containsAll(getPaths());
+    }
+
+    /**
+     * Creates a new empty partial result for this aggregation
+     *
+     * @return Partial
+     */
+    public Partial newPartial(){
+        return new Partial();
+    }
+
+    /**
+     * Partial result of an aggregation
+     * <p>
+     * Partials are only modified while they are built. Merging copies the values of the other partial
+     */
+    public class Partial {
+
+        private final HashMap<String, Group> groups = new HashMap<>();
+        private long version = -1;
+
+        private Partial(){}
+
+        /**
+         * Returns the version of the data this partial has been computed from
+         *
+         * @return long, -1 if not set
+         */
+        public long getVersion(){ return version; }
+
+        /**
+         * Used to set the version of the data this partial has been computed from
+         *
+         * @param version version
+         */
+        public void setVersion(long version){ this.version = version; }
+
+        /**
+         * Used to add the values of a DataSet if it matches the filter
+         *
+         * @param accessor returns the value at the given position of the DataSet or null
+         */
+        public void accept(Function<JSONPointer, Object> accessor){
+            if(filter != null && !filter.test(accessor)){
+                return;
+            }
+            JSONArray groupKey = new JSONArray();
+            for(JSONPointer pointer : groupByPointers){
+                Object value = accessor.apply(pointer);
+                groupKey.put((value != null) ? value : JSONObject.NULL);
+            }
+            Group group = groups.computeIfAbsent(groupKey.toString(), k -> new Group(groupKey));
+            for(int i = 0; i < ops.size(); i++){
+                group.accumulators[i].accept((pointers.get(i) != null) ? accessor.apply(pointers.get(i)) : Boolean.TRUE);
+            }
+        }
+
+        /**
+         * Used to add precomputed values of multiple DataSets to an aggregation without groups
+         *
+         * @param matching number of DataSets matching the filter
+         * @param summaries returns the summary of the values of the given field over the matching DataSets
+         */
+        public void accept(long matching, Function<String, Summary> summaries){
+            if(matching == 0){
+                return;
+            }
+            Group group = groups.computeIfAbsent(new JSONArray().toString(), k -> new Group(new JSONArray()));
+            for(int i = 0; i < ops.size(); i++){
+                Summary summary = (paths.get(i) != null) ? summaries.apply(paths.get(i)) : new Summary(matching, 0, 0, 0, false, null, null);
+                group.accumulators[i].add(summary.count, summary.numbers, summary.longSum, summary.doubleSum, summary.floating, summary.min, summary.max);
+            }
+        }
+
+        /**
+         * Used to add the values of another partial to this one
+         *
+         * @param other the other partial
+         */
+        public void merge(Partial other){
+            for(Map.Entry<String, Group> entry : other.groups.entrySet()){
+                Group group = groups.computeIfAbsent(entry.getKey(), k -> new Group(entry.getValue().key));
+                for(int i = 0; i < ops.size(); i++){
+                    group.accumulators[i].merge(entry.getValue().accumulators[i]);
+                }
+            }
+        }
+
+        /**
+         * Returns the result
+         *
+         * @return JSONObject containing one entry per group, ordered by the values of the group
+         */
+        public JSONObject toJSON(){
+            JSONArray result = new JSONArray();
+            new TreeMap<>(groups).forEach((k, group) -> {
+                JSONObject jsonObject = new JSONObject();
+                if(!groupBy.isEmpty()){
+                    JSONObject groupValues = new JSONObject();
+                    for(int i = 0; i < groupBy.size(); i++){
+                        groupValues.put(groupBy.get(i), group.key.get(i));
+                    }
+                    jsonObject.put("group", groupValues);
+                }
+                for(int i = 0; i < ops.size(); i++){
+                    jsonObject.put(names.get(i), group.accumulators[i].getResult(ops.get(i)));
+                }
+                result.put(jsonObject);
+            });
+            return new JSONObject().put("groups", result).put("groupCount", groups.size());
+        }
+    }
+
+    /**
+     * Precomputed values of a single field over multiple DataSets
+     */
+    public static class Summary {
+
+        private final long count;
+        private final long numbers;
+        private final long longSum;
+        private final double doubleSum;
+        private final boolean floating;
+        private final Object min;
+        private final Object max;
+
+        /**
+         * Creates a new Summary
+         *
+         * @param count number of existing values
+         * @param numbers number of numeric values
+         * @param longSum exact sum of integral values
+         * @param doubleSum sum of all other numeric values
+         * @param floating whether doubleSum contains any value
+         * @param min smallest value or null
+         * @param max largest value or null
+         */
+        public Summary(long count, long numbers, long longSum, double doubleSum, boolean floating, Object min, Object max){
+            this.count = count;
+            this.numbers = numbers;
+            this.longSum = longSum;
+            this.doubleSum = doubleSum;
+            this.floating = floating;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    /**
+     * Values of a single group
+     */
+    private class Group {
+
+        private final JSONArray key;
+        private final Accumulator[] accumulators;
+
+        private Group(JSONArray key){
+            this.key = key;
+            this.accumulators = new Accumulator[ops.size()];
+            for(int i = 0; i < accumulators.length; i++){
+                accumulators[i] = new Accumulator();
+            }
+        }
+    }
+
+    /**
+     * Collects the values required for all aggregate functions
+     * <p>
+     * Integral values are summed up exactly as long as they fit into a long
+     */
+    private static class Accumulator {
+
+        private long count = 0; // existing values
+        private long numbers = 0; // numeric values
+        private long longSum = 0;
+        private double doubleSum = 0;
+        private boolean floating = false;
+        private Object min = null;
+        private Object max = null;
+
+        private void accept(Object value){
+            if(value == null || value == JSONObject.NULL){
+                return;
+            }
+            count++;
+            if(value instanceof Number){
+                numbers++;
+                if(value instanceof Integer || value instanceof Long){
+                    try{
+                        longSum = Math.addExact(longSum, ((Number) value).longValue());
+                    }catch (ArithmeticException e){
+                        doubleSum += ((Number) value).doubleValue();
+                        floating = true;
+                    }
+                }else{
+                    doubleSum += ((Number) value).doubleValue();
+                    floating = true;
+                }
+            }
+            if(value instanceof Number || value instanceof String || value instanceof Boolean){
+                Integer c;
+                if(min == null || ((c = QueryFilter.compare(value, min)) != null && c < 0)){
+                    min = value;
+                }
+                if(max == null || ((c = QueryFilter.compare(value, max)) != null && c > 0)){
+                    max = value;
+                }
+            }
+        }
+
+        private void merge(Accumulator other){
+            add(other.count, other.numbers, other.longSum, other.doubleSum, other.floating, other.min, other.max);
+        }
+
+        private void add(long count, long numbers, long longSum, double doubleSum, boolean floating, Object min, Object max){
+            this.count += count;
+            this.numbers += numbers;
+            try{
+                this.longSum = Math.addExact(this.longSum, longSum);
+            }catch (ArithmeticException e){
+                this.doubleSum += longSum;
+                this.floating = true;
+            }
+            this.doubleSum += doubleSum;
+            this.floating |= floating;
+            Integer c;
+            if(min != null && (this.min == null || ((c = QueryFilter.compare(min, this.min)) != null && c < 0))){
+                this.min = min;
+            }
+            if(max != null && (this.max == null || ((c = QueryFilter.compare(max, this.max)) != null && c > 0))){
+                this.max = max;
+            }
+        }
+
+        private Object getResult(String op){
+            switch(op){
+                case "count":
+                    return count;
+                case "sum":
+                    return (floating) ? (Object) (longSum + doubleSum) : (Object) longSum;
+                case "avg":
+                    return (numbers > 0) ? (longSum + doubleSum) / numbers : JSONObject.NULL;
+                case "min":
+                    return (min != null) ? min : JSONObject.NULL;
+                case "max":
+                    return (max != null) ? max : JSONObject.NULL;
+                default:
+                    return JSONObject.NULL;
+            }
+        }
+    }
+}
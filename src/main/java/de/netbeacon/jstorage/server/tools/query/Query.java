@@ -0,0 +1,207 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.query;
+
+import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONPointer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Describes which DataSets of a table should be selected and how they should be returned
+ * <p>
+ * Queries are written as json: <br>
+ * { "filter":PREDICATE, "projection":[ "/datatype/field", ... ], "orderBy":"/datatype/field", "descending":BOOLEAN, "limit":INTEGER } <br>
+ * All keys are optional. See {@link QueryFilter} for the format of the predicate.
+ * Ordered queries always have a limit as the selected DataSets need to be kept in memory.
+ *
+ * @author horstexplorer
+ */
+public class Query {
+
+    private static final int defaultOrderedLimit = 1000;
+    private static final int maxOrderedLimit = 10000;
+
+    private final QueryFilter filter;
+    private final List<String> projection = new ArrayList<>();
+    private final List<JSONPointer> projectionPointers = new ArrayList<>();
+    private final String orderBy;
+    private final JSONPointer orderByPointer;
+    private final boolean descending;
+    private final int limit;
+
+    /**
+     * Creates a new Query
+     *
+     * @param jsonObject the query
+     * @throws GenericObjectException if the query is invalid
+     */
+    public Query(JSONObject jsonObject) throws GenericObjectException {
+        try{
+            filter = (jsonObject.has("filter")) ? QueryFilter.compile(jsonObject.getJSONObject("filter")) : null;
+            if(jsonObject.has("projection")){
+                JSONArray jsonArray = jsonObject.getJSONArray("projection");
+                for(int i = 0; i < jsonArray.length(); i++){
+                    String path = QueryFilter.normalizePath(jsonArray.getString(i));
+                    projection.add(path);
+                    projectionPointers.add(new JSONPointer(path));
+                }
+            }
+            if(jsonObject.has("orderBy")){
+                orderBy = QueryFilter.normalizePath(jsonObject.getString("orderBy"));
+                orderByPointer = new JSONPointer(orderBy);
+            }else{
+                orderBy = null;
+                orderByPointer = null;
+            }
+            descending = jsonObject.optBoolean("descending", false);
+            int l = jsonObject.optInt("limit", -1);
+            if(orderBy != null){
+                limit = (l < 1) ? defaultOrderedLimit : Math.min(l, maxOrderedLimit);
+            }else{
+                limit = (l < 1) ? -1 : l;
+            }
+        }catch (GenericObjectException e){
+            throw e;
+        }catch (Exception e){
+            throw new GenericObjectException(400, "Invalid Query: "+e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the filter
+     *
+     * @return QueryFilter or null if all DataSets should be selected
+     */
+    public QueryFilter getFilter(){ return filter; }
+
+    /**
+     * Returns the max number of DataSets which should be returned
+     *
+     * @return int, -1 if unlimited
+     */
+    public int getLimit(){ return limit; }
+
+    /**
+     * Returns whether the DataSets should be ordered
+     *
+     * @return boolean
+     */
+    public boolean isOrdered(){ return orderBy != null; }
+
+    /**
+     * Checks whether the DataSet matches the filter of this query
+     *
+     * @param accessor returns the value at the given position of the DataSet or null
+     * @return boolean
+     */
+    public boolean matches(Function<JSONPointer, Object> accessor){
+        return filter == null || filter.test(accessor);
+    }
+
+    /**
+     * Returns the comparator used to order DataSets
+     * <p>
+     * DataSets without a comparable value are placed last, DataSets with equal values are ordered by their identifier
+     *
+     * @return Comparator or null if the DataSets should not be ordered
+     */
+    public Comparator<JSONObject> getComparator(){
+        if(orderBy == null){
+            return null;
+        }
+        return (a, b) -> {
+            Object va = a.optQuery(orderByPointer);
+            Object vb = b.optQuery(orderByPointer);
+            Integer c = QueryFilter.compare(va, vb);
+            if(c == null){
+                // place values which can not be compared last, keep the type order stable
+                c = Integer.compare(typeOrder(va), typeOrder(vb));
+            }else if(descending){
+                c = -c;
+            }
+            if(c == 0){
+                c = a.optString("identifier").compareTo(b.optString("identifier"));
+            }
+            return c;
+        };
+    }
+
+    /**
+     * Used to reduce the data of a DataSet to the selected fields
+     *
+     * @param data the data of the DataSet
+     * @return JSONObject
+     */
+    public JSONObject project(JSONObject data){
+        if(projection.isEmpty()){
+            return data;
+        }
+        JSONObject result = new JSONObject()
+                .put("database", data.opt("database"))
+                .put("table", data.opt("table"))
+                .put("identifier", data.opt("identifier"));
+        for(int i = 0; i < projection.size(); i++){
+            Object value = data.optQuery(projectionPointers.get(i));
+            if(value == null){
+                continue;
+            }
+            // rebuild the path within the result
+            String[] parts = projection.get(i).substring(1).split("/", -1);
+            JSONObject current = result;
+            for(int o = 0; o < parts.length-1; o++){
+                String key = unescape(parts[o]);
+                JSONObject next = current.optJSONObject(key);
+                if(next == null){
+                    next = new JSONObject();
+                    current.put(key, next);
+                }
+                current = next;
+            }
+            current.put(unescape(parts[parts.length-1]), value);
+        }
+        return result;
+    }
+
+    /**
+     * Used to unescape a single part of a json pointer
+     *
+     * @param part the part
+     * @return String
+     */
+    private static String unescape(String part){
+        return part.replace("~1", "/").replace("~0", "~");
+    }
+
+    /**
+     * Returns the position of a value which can not be compared
+     *
+     * @param value the value
+     * @return int
+     */
+    private static int typeOrder(Object value){
+        if(value instanceof Boolean){ return 0; }
+        if(value instanceof Number){ return 1; }
+        if(value instanceof String){ return 2; }
+        return 3;
+    }
+}
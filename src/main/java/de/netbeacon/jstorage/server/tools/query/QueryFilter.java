@@ -0,0 +1,438 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.query;
+
+import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONPointer;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Compiled form of a predicate over the fields of a DataSet
+ * <p>
+ * Predicates are written as json: <br>
+ * { "path":"/datatype/field", "op":"eq|ne|gt|gte|lt|lte|in|prefix|exists", "value":VALUE } <br>
+ * { "and":[ PREDICATE, ... ] }, { "or":[ PREDICATE, ... ] }, { "not":PREDICATE } <br>
+ * Values of different types never match any comparison except ne.
+ *
+ * @author horstexplorer
+ */
+public abstract class QueryFilter {
+
+    /**
+     * Checks whether the DataSet matches this filter
+     *
+     * @param accessor returns the value at the given position of the DataSet or null
+     * @return boolean
+     */
+    public abstract boolean test(Function<JSONPointer, Object> accessor);
+
+    /**
+     * Returns a condition on one of the given paths which every matching DataSet has to fulfill
+     * <p>
+     * Used to narrow down the DataSets to check using a secondary index
+     *
+     * @param paths indexed paths
+     * @return Condition or null if there is no such condition
+     */
+    public Condition getIndexCondition(Set<String> paths){
+        return null;
+    }
+
+    /**
+     * Returns all DataSets matching this filter using primitive columns only
+     *
+     * @param selector provides the columns
+     * @return BitSet of ordinals or null if the filter can not be evaluated using the columns
+     */
+    public BitSet select(ColumnSelector selector){
+        return null;
+    }
+
+    /**
+     * Compiles the given predicate
+     *
+     * @param jsonObject the predicate
+     * @return QueryFilter
+     * @throws GenericObjectException if the predicate is invalid
+     */
+    public static QueryFilter compile(JSONObject jsonObject) throws GenericObjectException {
+        if(jsonObject.has("and") || jsonObject.has("or")){
+            boolean and = jsonObject.has("and");
+            JSONArray jsonArray = jsonObject.optJSONArray(and ? "and" : "or");
+            if(jsonArray == null || jsonArray.isEmpty()){
+                throw new GenericObjectException(400, "Invalid Filter: "+(and ? "and" : "or")+" Requires A Non Empty Array");
+            }
+            List<QueryFilter> filters = new ArrayList<>();
+            for(int i = 0; i < jsonArray.length(); i++){
+                JSONObject o = jsonArray.optJSONObject(i);
+                if(o == null){
+                    throw new GenericObjectException(400, "Invalid Filter: "+(and ? "and" : "or")+" Requires An Array Of Filters");
+                }
+                filters.add(compile(o));
+            }
+            return (and) ? new And(filters) : new Or(filters);
+        }
+        if(jsonObject.has("not")){
+            JSONObject o = jsonObject.optJSONObject("not");
+            if(o == null){
+                throw new GenericObjectException(400, "Invalid Filter: not Requires A Filter");
+            }
+            return new Not(compile(o));
+        }
+        if(!jsonObject.has("path") || !jsonObject.has("op")){
+            throw new GenericObjectException(400, "Invalid Filter: Requires path And op");
+        }
+        return new Condition(normalizePath(jsonObject.getString("path")), jsonObject.getString("op").toLowerCase(), jsonObject.opt("value"));
+    }
+
+    /**
+     * Used to bring a json pointer to the format used for DataSets
+     * <p>
+     * DataTypes are always lowercase, so only the first part of the path will be converted
+     *
+     * @param path json pointer starting with the datatype
+     * @return String
+     * @throws GenericObjectException if the path is not a valid pointer
+     */
+    public static String normalizePath(String path) throws GenericObjectException {
+        if(path == null || !path.startsWith("/") || path.length() < 2){
+            throw new GenericObjectException(400, "Invalid Path: Has To Start With /<datatype>");
+        }
+        int end = path.indexOf("/", 1);
+        return (end > 0) ? path.substring(0, end).toLowerCase()+path.substring(end) : path.toLowerCase();
+    }
+
+    /**
+     * Used to compare two values of a DataSet
+     *
+     * @param a first value
+     * @param b second value
+     * @return Integer or null if the values can not be compared
+     */
+    public static Integer compare(Object a, Object b){
+        if(a instanceof Number && b instanceof Number){
+            try{
+                return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString()));
+            }catch (NumberFormatException e){
+                return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+            }
+        }else if(a instanceof String && b instanceof String){
+            return ((String) a).compareTo((String) b);
+        }else if(a instanceof Boolean && b instanceof Boolean){
+            return Boolean.compare((Boolean) a, (Boolean) b);
+        }
+        return null;
+    }
+
+    /**
+     * Provides DataSets matching numeric comparisons, identified by their ordinal
+     */
+    public interface ColumnSelector {
+
+        /**
+         * Returns all DataSets
+         *
+         * @return BitSet of ordinals
+         */
+        BitSet all();
+
+        /**
+         * Returns all DataSets where the field matches the comparison
+         *
+         * @param path json pointer to the field
+         * @param op eq, ne, gt, gte, lt or lte
+         * @param value value to compare with
+         * @return BitSet of ordinals or null if the comparison is not supported
+         */
+        BitSet select(String path, String op, Number value);
+    }
+
+    /**
+     * Condition on a single field
+     */
+    public static class Condition extends QueryFilter {
+
+        private final String path;
+        private final JSONPointer pointer;
+        private final String op;
+        private final Object value;
+
+        /**
+         * Creates a new Condition
+         *
+         * @param path json pointer to the field
+         * @param op operator
+         * @param value value to compare with
+         * @throws GenericObjectException if the operator or value is invalid
+         */
+        private Condition(String path, String op, Object value) throws GenericObjectException {
+            this.path = path;
+            try{
+                this.pointer = new JSONPointer(path);
+            }catch (IllegalArgumentException e){
+                throw new GenericObjectException(400, "Invalid Path "+path);
+            }
+            this.op = op;
+            this.value = value;
+            switch(op){
+                case "eq":
+                case "ne":
+                    break;
+                case "gt":
+                case "gte":
+                case "lt":
+                case "lte":
+                    if(!(value instanceof Number || value instanceof String || value instanceof Boolean)){
+                        throw new GenericObjectException(400, "Invalid Filter: "+op+" Requires A Number, String Or Boolean");
+                    }
+                    break;
+                case "in":
+                    if(!(value instanceof JSONArray)){
+                        throw new GenericObjectException(400, "Invalid Filter: in Requires An Array");
+                    }
+                    break;
+                case "prefix":
+                    if(!(value instanceof String)){
+                        throw new GenericObjectException(400, "Invalid Filter: prefix Requires A String");
+                    }
+                    break;
+                case "exists":
+                    if(!(value instanceof Boolean)){
+                        throw new GenericObjectException(400, "Invalid Filter: exists Requires A Boolean");
+                    }
+                    break;
+                default:
+                    throw new GenericObjectException(400, "Invalid Filter: Unknown Operator "+op);
+            }
+        }
+
+        /**
+         * Returns the path of the field
+         *
+         * @return String
+         */
+        public String getPath(){ return path; }
+
+        /**
+         * Returns the operator
+         *
+         * @return String
+         */
+        public String getOp(){ return op; }
+
+        /**
+         * Returns the value to compare with
+         *
+         * @return Object
+         */
+        public Object getValue(){ return value; }
+
+        @Override
+        public boolean test(Function<JSONPointer, Object> accessor) {
+            Object current = accessor.apply(pointer);
+            if(current == JSONObject.NULL){
+                current = null;
+            }
+            Integer c;
+            switch(op){
+                case "eq":
+                    return equal(current, value);
+                case "ne":
+                    return !equal(current, value);
+                case "gt":
+                    return (c = compare(current, value)) != null && c > 0;
+                case "gte":
+                    return (c = compare(current, value)) != null && c >= 0;
+                case "lt":
+                    return (c = compare(current, value)) != null && c < 0;
+                case "lte":
+                    return (c = compare(current, value)) != null && c <= 0;
+                case "in":
+                    for(Object o : (JSONArray) value){
+                        if(equal(current, o)){
+                            return true;
+                        }
+                    }
+                    return false;
+                case "prefix":
+                    return current instanceof String && ((String) current).startsWith((String) value);
+                case "exists":
+                    return (current != null) == (Boolean) value;
+                default:
+                    return false;
+            }
+        }
+
+        @Override
+        public Condition getIndexCondition(Set<String> paths) {
+            if(paths.contains(path) && ((op.equals("eq") && value != null && value != JSONObject.NULL) || op.equals("gt") || op.equals("gte") || op.equals("lt") || op.equals("lte"))){
+                return this;
+            }
+            return null;
+        }
+
+        @Override
+        public BitSet select(ColumnSelector selector) {
+            if(!(value instanceof Number) || op.equals("in") || op.equals("prefix") || op.equals("exists")){
+                return null;
+            }
+            return selector.select(path, op, (Number) value);
+        }
+
+        /**
+         * Checks if both values are equal
+         *
+         * @param current value of the DataSet
+         * @param expected value to compare with
+         * @return boolean
+         */
+        private static boolean equal(Object current, Object expected){
+            if(expected == null || expected == JSONObject.NULL){
+                return current == null;
+            }
+            Integer c = compare(current, expected);
+            return c != null && c == 0;
+        }
+    }
+
+    /**
+     * Matches if all filters match
+     */
+    private static class And extends QueryFilter {
+
+        private final List<QueryFilter> filters;
+
+        private And(List<QueryFilter> filters){
+            this.filters = filters;
+        }
+
+        @Override
+        public boolean test(Function<JSONPointer, Object> accessor) {
+            for(QueryFilter filter : filters){
+                if(!filter.test(accessor)){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Condition getIndexCondition(Set<String> paths) {
+            // prefer equality as it usually selects less DataSets
+            Condition found = null;
+            for(QueryFilter filter : filters){
+                Condition condition = filter.getIndexCondition(paths);
+                if(condition != null && (found == null || condition.getOp().equals("eq"))){
+                    found = condition;
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public BitSet select(ColumnSelector selector) {
+            BitSet result = null;
+            for(QueryFilter filter : filters){
+                BitSet selection = filter.select(selector);
+                if(selection == null){
+                    return null;
+                }
+                if(result == null){
+                    result = selection;
+                }else{
+                    result.and(selection);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Matches if any filter matches
+     */
+    private static class Or extends QueryFilter {
+
+        private final List<QueryFilter> filters;
+
+        private Or(List<QueryFilter> filters){
+            this.filters = filters;
+        }
+
+        @Override
+        public boolean test(Function<JSONPointer, Object> accessor) {
+            for(QueryFilter filter : filters){
+                if(filter.test(accessor)){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public BitSet select(ColumnSelector selector) {
+            BitSet result = null;
+            for(QueryFilter filter : filters){
+                BitSet selection = filter.select(selector);
+                if(selection == null){
+                    return null;
+                }
+                if(result == null){
+                    result = selection;
+                }else{
+                    result.or(selection);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Matches if the filter does not match
+     */
+    private static class Not extends QueryFilter {
+
+        private final QueryFilter filter;
+
+        private Not(QueryFilter filter){
+            this.filter = filter;
+        }
+
+        @Override
+        public boolean test(Function<JSONPointer, Object> accessor) {
+            return !filter.test(accessor);
+        }
+
+        @Override
+        public BitSet select(ColumnSelector selector) {
+            BitSet selection = filter.select(selector);
+            if(selection == null){
+                return null;
+            }
+            BitSet result = selector.all();
+            result.andNot(selection);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.tools.sketch;
+
+import de.netbeacon.jstorage.server.tools.crypt.Base64;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Estimates the number of distinct values using the HyperLogLog algorithm
+ * <p>
+ * Uses 2^12 registers of one byte each, resulting in a standard error of about 1.6% independent of the number of values.
+ * Values can only be added, not removed
+ *
+ * @author horstexplorer
+ */
+public class HyperLogLog {
+
+    private static final int precision = 12;
+    private static final int registerCount = 1 << precision;
+    private static final double alpha = 0.7213 / (1 + 1.079 / registerCount);
+
+    private final byte[] registers = new byte[registerCount];
+
+    /**
+     * Used to add a value
+     *
+     * @param value string representation of the value
+     */
+    public synchronized void add(String value){
+        long hash = hash(value);
+        int index = (int) (hash >>> (64 - precision));
+        // position of the first set bit within the remaining bits
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1);
+        if(registers[index] < rank){
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Returns the estimated number of distinct values
+     *
+     * @return long
+     */
+    public synchronized long estimate(){
+        double sum = 0;
+        int zeros = 0;
+        for(byte register : registers){
+            sum += 1.0 / (1L << register);
+            if(register == 0){
+                zeros++;
+            }
+        }
+        double estimate = alpha * registerCount * registerCount / sum;
+        if(estimate <= 2.5 * registerCount && zeros > 0){
+            // linear counting is more accurate for small cardinalities
+            estimate = registerCount * Math.log((double) registerCount / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Used to reset this sketch
+     */
+    public synchronized void clear(){
+        java.util.Arrays.fill(registers, (byte) 0);
+    }
+
+    /**
+     * Returns the registers as base64 encoded string
+     *
+     * @return String
+     */
+    public synchronized String export(){
+        return new String(Base64.encode(registers), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Used to restore previously exported registers
+     *
+     * @param exported base64 encoded registers
+     * @throws IllegalArgumentException if the registers do not match this sketch
+     */
+    public synchronized void restore(String exported){
+        byte[] bytes = Base64.decode(exported.getBytes(StandardCharsets.UTF_8));
+        if(bytes.length != registerCount){
+            throw new IllegalArgumentException("Invalid Register Count "+bytes.length);
+        }
+        System.arraycopy(bytes, 0, registers, 0, registerCount);
+    }
+
+    /**
+     * Calculates a 64 bit hash of the given value
+     *
+     * @param value the value
+     * @return long
+     */
+    private static long hash(String value){
+        // FNV-1a followed by the murmur3 finalizer to spread the bits
+        long h = 0xcbf29ce484222325L;
+        for(int i = 0; i < value.length(); i++){
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.tools.sketch;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Estimates quantiles of numeric values using a KLL sketch
+ * <p>
+ * Values are kept in levels of compactors. Once a level is full it is sorted and every second value is promoted to the next level, doubling its weight.
+ * The size of the sketch only depends on k, the rank error is about 1.7 / k. Values can only be added, not removed
+ *
+ * @author horstexplorer
+ */
+public class KLLSketch {
+
+    private static final int k = 200;
+
+    private final List<double[]> levels = new ArrayList<>();
+    private final List<Integer> sizes = new ArrayList<>();
+    private long count = 0;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    /**
+     * Creates a new KLLSketch
+     */
+    public KLLSketch(){
+        addLevel();
+    }
+
+    /**
+     * Used to add a value
+     *
+     * @param value the value
+     */
+    public synchronized void add(double value){
+        if(Double.isNaN(value)){
+            return;
+        }
+        count++;
+        min = (Double.isNaN(min)) ? value : Math.min(min, value);
+        max = (Double.isNaN(max)) ? value : Math.max(max, value);
+        put(0, value);
+        compress();
+    }
+
+    /**
+     * Returns the number of added values
+     *
+     * @return long
+     */
+    public synchronized long getCount(){ return count; }
+
+    /**
+     * Returns the smallest added value
+     *
+     * @return double, NaN if empty
+     */
+    public synchronized double getMin(){ return min; }
+
+    /**
+     * Returns the largest added value
+     *
+     * @return double, NaN if empty
+     */
+    public synchronized double getMax(){ return max; }
+
+    /**
+     * Returns the estimated value at the given quantile
+     *
+     * @param quantile quantile within 0 and 1
+     * @return double, NaN if empty
+     */
+    public synchronized double quantile(double quantile){
+        if(count == 0){
+            return Double.NaN;
+        }
+        if(quantile <= 0){ return min; }
+        if(quantile >= 1){ return max; }
+        // collect all values with their weight
+        int total = 0;
+        for(int size : sizes){ total += size; }
+        double[] values = new double[total];
+        long[] weights = new long[total];
+        int p = 0;
+        for(int h = 0; h < levels.size(); h++){
+            double[] level = levels.get(h);
+            for(int i = 0; i < sizes.get(h); i++){
+                values[p] = level[i];
+                weights[p++] = 1L << h;
+            }
+        }
+        Integer[] order = new Integer[total];
+        for(int i = 0; i < total; i++){ order[i] = i; }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        long totalWeight = 0;
+        for(long weight : weights){ totalWeight += weight; }
+        double target = quantile * totalWeight;
+        long cumulative = 0;
+        for(int i : order){
+            cumulative += weights[i];
+            if(cumulative >= target){
+                return values[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Used to reset this sketch
+     */
+    public synchronized void clear(){
+        levels.clear();
+        sizes.clear();
+        addLevel();
+        count = 0;
+        min = Double.NaN;
+        max = Double.NaN;
+    }
+
+    /**
+     * Returns the content as json object
+     *
+     * @return JSONObject
+     */
+    public synchronized JSONObject export(){
+        JSONArray jsonArray = new JSONArray();
+        for(int h = 0; h < levels.size(); h++){
+            jsonArray.put(new JSONArray(Arrays.copyOf(levels.get(h), sizes.get(h))));
+        }
+        return new JSONObject()
+                .put("count", count)
+                .put("min", (count > 0) ? min : JSONObject.NULL)
+                .put("max", (count > 0) ? max : JSONObject.NULL)
+                .put("levels", jsonArray);
+    }
+
+    /**
+     * Used to restore previously exported content
+     *
+     * @param jsonObject exported content
+     */
+    public synchronized void restore(JSONObject jsonObject){
+        clear();
+        JSONArray jsonArray = jsonObject.getJSONArray("levels");
+        for(int h = 0; h < jsonArray.length(); h++){
+            JSONArray level = jsonArray.getJSONArray(h);
+            while(levels.size() <= h){
+                addLevel();
+            }
+            for(int i = 0; i < level.length(); i++){
+                put(h, level.getDouble(i));
+            }
+        }
+        count = jsonObject.getLong("count");
+        min = jsonObject.optDouble("min", Double.NaN);
+        max = jsonObject.optDouble("max", Double.NaN);
+        compress();
+    }
+
+    /**
+     * Returns the max number of values within the given level
+     * <p>
+     * Lower levels get smaller, so the total size stays bounded
+     *
+     * @param level the level
+     * @return int
+     */
+    private int capacity(int level){
+        int depth = levels.size() - level - 1;
+        return Math.max(2, (int) Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+    }
+
+    private void addLevel(){
+        levels.add(new double[8]);
+        sizes.add(0);
+    }
+
+    private void put(int level, double value){
+        double[] values = levels.get(level);
+        int size = sizes.get(level);
+        if(size == values.length){
+            values = Arrays.copyOf(values, size * 2);
+            levels.set(level, values);
+        }
+        values[size] = value;
+        sizes.set(level, size + 1);
+    }
+
+    /**
+     * Used to compact full levels
+     */
+    private void compress(){
+        for(int h = 0; h < levels.size(); h++){
+            int size = sizes.get(h);
+            if(size < capacity(h)){
+                continue;
+            }
+            if(h + 1 == levels.size()){
+                addLevel();
+            }
+            double[] values = levels.get(h);
+            Arrays.sort(values, 0, size);
+            // an odd value stays within this level
+            int keep = size % 2;
+            int offset = ThreadLocalRandom.current().nextInt(2);
+            for(int i = keep + offset; i < size; i += 2){
+                put(h + 1, values[i]);
+            }
+            sizes.set(h, keep);
+        }
+    }
+}
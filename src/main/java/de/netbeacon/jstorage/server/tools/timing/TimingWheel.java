@@ -0,0 +1,186 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.netbeacon.jstorage.server.tools.timing;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel used to find entries whose deadline has passed without looking at all entries
+ * <p>
+ * The wheel consists of 4 levels with 64 slots each. Level 0 covers the next 64 ticks with one slot per tick, each higher level covers 64 times the range of the level below.
+ * Entries are moved down one level whenever the wheel reaches their slot, entries beyond the highest level are kept in an overflow list which is checked once per rotation of the highest level.
+ * Scheduling and expiring an entry therefore takes constant time. Entries can not be cancelled, the owner has to verify if an expired entry is still valid.
+ *
+ * @param <T> type of the keys
+ * @author horstexplorer
+ */
+public class TimingWheel<T> {
+
+    private static final int bits = 6;
+    private static final int slots = 1 << bits;
+    private static final int mask = slots - 1;
+    private static final int levels = 4;
+
+    private final long tickMillis;
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final List<Entry<T>>[][] wheel = new List[levels][slots];
+    private final List<Entry<T>> overflow = new ArrayList<>();
+    private final List<Entry<T>> due = new ArrayList<>();
+    private long currentTick; // next tick to process
+    private int size = 0;
+
+    /**
+     * Creates a new TimingWheel
+     *
+     * @param tickMillis duration of one tick in milliseconds
+     */
+    public TimingWheel(long tickMillis){
+        this.tickMillis = tickMillis;
+        this.currentTick = System.currentTimeMillis() / tickMillis;
+    }
+
+    /**
+     * Used to add an entry
+     *
+     * @param key key of the entry
+     * @param deadline timestamp in milliseconds after which the entry expires
+     */
+    public synchronized void schedule(T key, long deadline){
+        insert(new Entry<>(key, deadline));
+        size++;
+    }
+
+    /**
+     * Returns the number of entries which have not expired yet
+     *
+     * @return int
+     */
+    public synchronized int size(){ return size; }
+
+    /**
+     * Used to remove all entries
+     */
+    public synchronized void clear(){
+        for(List<Entry<T>>[] level : wheel){
+            java.util.Arrays.fill(level, null);
+        }
+        overflow.clear();
+        due.clear();
+        size = 0;
+    }
+
+    /**
+     * Used to advance the wheel to the given time
+     *
+     * @param now current timestamp in milliseconds
+     * @return List of all entries which expired until now
+     */
+    public synchronized List<Entry<T>> advance(long now){
+        long target = now / tickMillis;
+        List<Entry<T>> expired = new ArrayList<>(due);
+        due.clear();
+        while(currentTick < target && size > expired.size()){
+            // move entries of higher levels down once their slot has been reached
+            if((currentTick & ((1L << (bits * levels)) - 1)) == 0 && !overflow.isEmpty()){
+                List<Entry<T>> list = new ArrayList<>(overflow);
+                overflow.clear();
+                list.forEach(this::insert);
+            }
+            for(int l = levels - 1; l > 0; l--){
+                if((currentTick & ((1L << (bits * l)) - 1)) == 0){
+                    int slot = (int) ((currentTick >>> (bits * l)) & mask);
+                    List<Entry<T>> list = wheel[l][slot];
+                    if(list != null){
+                        wheel[l][slot] = null;
+                        list.forEach(this::insert);
+                    }
+                }
+            }
+            int slot = (int) (currentTick & mask);
+            List<Entry<T>> list = wheel[0][slot];
+            if(list != null){
+                wheel[0][slot] = null;
+                expired.addAll(list);
+            }
+            currentTick++;
+        }
+        if(currentTick < target){
+            // nothing left to expire, skip the remaining ticks
+            currentTick = target;
+        }
+        expired.addAll(due);
+        due.clear();
+        size -= expired.size();
+        return expired;
+    }
+
+    /**
+     * Used to put an entry into the matching slot
+     *
+     * @param entry the entry
+     */
+    private void insert(Entry<T> entry){
+        long tick = entry.deadline / tickMillis;
+        if(tick < currentTick){
+            due.add(entry);
+            return;
+        }
+        for(int l = 0; l < levels; l++){
+            if((tick >>> (bits * l)) - (currentTick >>> (bits * l)) < slots){
+                int slot = (int) ((tick >>> (bits * l)) & mask);
+                if(wheel[l][slot] == null){
+                    wheel[l][slot] = new ArrayList<>();
+                }
+                wheel[l][slot].add(entry);
+                return;
+            }
+        }
+        overflow.add(entry);
+    }
+
+    /**
+     * Entry of the wheel
+     *
+     * @param <T> type of the key
+     */
+    public static class Entry<T> {
+
+        private final T key;
+        private final long deadline;
+
+        private Entry(T key, long deadline){
+            this.key = key;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Returns the key
+         *
+         * @return T
+         */
+        public T getKey(){ return key; }
+
+        /**
+         * Returns the deadline
+         *
+         * @return long
+         */
+        public long getDeadline(){ return deadline; }
+    }
+}
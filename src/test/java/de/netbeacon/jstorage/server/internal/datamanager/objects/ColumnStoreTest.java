@@ -0,0 +1,145 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import de.netbeacon.jstorage.server.tools.query.Aggregation;
+import de.netbeacon.jstorage.server.tools.query.QueryFilter;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnStoreTest {
+
+    private final LinkedHashMap<String, JSONObject> dataSets = new LinkedHashMap<>();
+
+    private ColumnStore createStore(){
+        dataSets.put("a", new JSONObject().put("value", new JSONObject().put("number", 1)));
+        dataSets.put("b", new JSONObject().put("value", new JSONObject().put("number", 2L)));
+        dataSets.put("c", new JSONObject().put("value", new JSONObject().put("number", 2.5)));
+        dataSets.put("d", new JSONObject().put("value", new JSONObject().put("other", 1)));
+        dataSets.put("e", new JSONObject().put("value", new JSONObject().put("number", -3)));
+        ColumnStore columnStore = new ColumnStore();
+        assertEquals("/value/number", columnStore.addColumn("/VALUE/number"));
+        dataSets.forEach((identifier, jsonObject) -> columnStore.build(identifier, jsonObject::optQuery));
+        return columnStore;
+    }
+
+    private List<String> scan(QueryFilter filter){
+        List<String> list = new ArrayList<>();
+        dataSets.forEach((identifier, jsonObject) -> {
+            if(filter.test(jsonObject::optQuery)){
+                list.add(identifier);
+            }
+        });
+        return list;
+    }
+
+    private JSONObject scan(Aggregation aggregation){
+        Aggregation.Partial partial = aggregation.newPartial();
+        dataSets.values().forEach(jsonObject -> partial.accept(jsonObject::optQuery));
+        return partial.toJSON();
+    }
+
+    @Test
+    void columnsAreUnusableUntilBuilt() throws Exception{
+        ColumnStore columnStore = createStore();
+        assertNull(columnStore.select("/value/number", "gt", 0));
+        assertFalse(columnStore.getUsablePaths().contains("/value/number"));
+        columnStore.finishBuilding();
+        assertTrue(columnStore.getUsablePaths().contains("/value/number"));
+        assertEquals(List.of("b", "c"), columnStore.getIdentifiers(columnStore.select("/value/number", "gt", 1)));
+        assertNull(columnStore.select("/value/missing", "gt", 1));
+    }
+
+    @Test
+    void selectionsMatchTheScan() throws Exception{
+        ColumnStore columnStore = createStore();
+        columnStore.finishBuilding();
+        String[] filters = {
+                "{\"path\":\"/value/number\",\"op\":\"eq\",\"value\":2}",
+                "{\"path\":\"/value/number\",\"op\":\"ne\",\"value\":2}",
+                "{\"path\":\"/value/number\",\"op\":\"gte\",\"value\":2}",
+                "{\"path\":\"/value/number\",\"op\":\"lt\",\"value\":2.5}",
+                "{\"path\":\"/value/number\",\"op\":\"lte\",\"value\":-3}",
+                "{\"not\":{\"path\":\"/value/number\",\"op\":\"gt\",\"value\":0}}",
+                "{\"and\":[{\"path\":\"/value/number\",\"op\":\"gt\",\"value\":0},{\"path\":\"/value/number\",\"op\":\"ne\",\"value\":2}]}",
+                "{\"or\":[{\"path\":\"/value/number\",\"op\":\"lt\",\"value\":0},{\"path\":\"/value/number\",\"op\":\"eq\",\"value\":1}]}"
+        };
+        for(String filter : filters){
+            QueryFilter queryFilter = QueryFilter.compile(new JSONObject(filter));
+            BitSet selection = queryFilter.select(columnStore);
+            assertNotNull(selection, filter);
+            assertEquals(scan(queryFilter), columnStore.getIdentifiers(selection), filter);
+        }
+        // DataSets without the field do not equal any number
+        assertTrue(columnStore.getIdentifiers(columnStore.select("/value/number", "ne", 1)).contains("d"));
+        // values of other types can not be selected using the columns
+        assertNull(QueryFilter.compile(new JSONObject("{\"path\":\"/value/number\",\"op\":\"eq\",\"value\":\"2\"}")).select(columnStore));
+    }
+
+    @Test
+    void aggregationsMatchTheScan() throws Exception{
+        ColumnStore columnStore = createStore();
+        columnStore.finishBuilding();
+        Aggregation aggregation = new Aggregation(new JSONObject("{\"filter\":{\"path\":\"/value/number\",\"op\":\"ne\",\"value\":1},\"aggregates\":[{\"op\":\"count\"},{\"op\":\"count\",\"path\":\"/value/number\"},{\"op\":\"sum\",\"path\":\"/value/number\"},{\"op\":\"avg\",\"path\":\"/value/number\"},{\"op\":\"min\",\"path\":\"/value/number\"},{\"op\":\"max\",\"path\":\"/value/number\"}]}"));
+        JSONObject expected = scan(aggregation).getJSONArray("groups").getJSONObject(0);
+        JSONObject result = columnStore.aggregate(aggregation, Collections.emptySet()).getJSONArray("groups").getJSONObject(0);
+        assertEquals(4, result.getLong("count"));
+        assertEquals(expected.getLong("count"), result.getLong("count"));
+        assertEquals(expected.getLong("count(/value/number)"), result.getLong("count(/value/number)"));
+        assertEquals(expected.getDouble("sum(/value/number)"), result.getDouble("sum(/value/number)"));
+        assertEquals(expected.getDouble("avg(/value/number)"), result.getDouble("avg(/value/number)"));
+        assertEquals(expected.getDouble("min(/value/number)"), result.getDouble("min(/value/number)"));
+        assertEquals(expected.getDouble("max(/value/number)"), result.getDouble("max(/value/number)"));
+
+        JSONObject excluded = columnStore.aggregate(aggregation, Set.of("b", "d")).getJSONArray("groups").getJSONObject(0);
+        assertEquals(2, excluded.getLong("count"));
+        assertEquals(-0.5, excluded.getDouble("sum(/value/number)"));
+    }
+
+    @Test
+    void longSumsFallBackToDoubleOnOverflow() throws Exception{
+        ColumnStore columnStore = createStore();
+        columnStore.finishBuilding();
+        Aggregation aggregation = new Aggregation(new JSONObject("{\"filter\":{\"path\":\"/value/number\",\"op\":\"gt\",\"value\":0},\"aggregates\":[{\"op\":\"sum\",\"path\":\"/value/number\",\"as\":\"sum\"}]}"));
+        assertEquals(5.5, columnStore.aggregate(aggregation, Collections.emptySet()).getJSONArray("groups").getJSONObject(0).getDouble("sum"));
+
+        Aggregation integral = new Aggregation(new JSONObject("{\"filter\":{\"path\":\"/value/number\",\"op\":\"gte\",\"value\":1},\"aggregates\":[{\"op\":\"sum\",\"path\":\"/value/number\",\"as\":\"sum\"}]}"));
+        dataSets.put("c", new JSONObject().put("value", new JSONObject().put("number", Long.MAX_VALUE)));
+        columnStore.update("c", dataSets.get("c")::optQuery, "value");
+        Object sum = columnStore.aggregate(integral, Collections.emptySet()).getJSONArray("groups").getJSONObject(0).get("sum");
+        assertTrue(sum instanceof Double);
+        assertEquals((double) Long.MAX_VALUE + 3, (Double) sum);
+        assertEquals(scan(integral).getJSONArray("groups").getJSONObject(0).getDouble("sum"), (Double) sum);
+    }
+
+    @Test
+    void unsupportedValuesDisableTheColumnUntilRemoved() throws Exception{
+        ColumnStore columnStore = createStore();
+        columnStore.finishBuilding();
+        Aggregation aggregation = new Aggregation(new JSONObject("{\"aggregates\":[{\"op\":\"sum\",\"path\":\"/value/number\",\"as\":\"sum\"}]}"));
+        columnStore.update("f", new JSONObject().put("value", new JSONObject().put("number", "text"))::optQuery, null);
+        assertNull(columnStore.select("/value/number", "gt", 0));
+        assertNull(columnStore.aggregate(aggregation, Collections.emptySet()));
+        columnStore.remove("f");
+        assertEquals(List.of("a", "b", "c", "d", "e"), columnStore.getIdentifiers(columnStore.all()));
+        assertEquals(2.5, columnStore.aggregate(aggregation, Collections.emptySet()).getJSONArray("groups").getJSONObject(0).getDouble("sum"));
+    }
+}
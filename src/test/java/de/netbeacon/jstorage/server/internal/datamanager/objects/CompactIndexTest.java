@@ -0,0 +1,114 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactIndexTest {
+
+    @Test
+    void entriesSurviveMerges() throws Exception{
+        CompactIndex index = new CompactIndex();
+        HashMap<String, String> expected = new HashMap<>();
+        for(int i = 0; i < 50000; i++){
+            String shard = "shard"+(i % 7);
+            assertNull(index.put("dataset"+i, shard));
+            expected.put("dataset"+i, shard);
+        }
+        for(int i = 0; i < 50000; i += 3){
+            assertEquals(expected.remove("dataset"+i), index.remove("dataset"+i));
+        }
+        for(int i = 1; i < 50000; i += 5){
+            if(expected.containsKey("dataset"+i)){
+                assertEquals(expected.put("dataset"+i, "moved"), index.put("dataset"+i, "moved"));
+            }
+        }
+        assertEquals(expected.size(), index.size());
+        expected.forEach((key, value) -> assertEquals(value, index.get(key), key));
+        assertNull(index.get("dataset0"));
+        assertFalse(index.containsKey("dataset3"));
+        assertNull(index.get(3));
+        assertEquals(expected, new HashMap<>(index));
+    }
+
+    @Test
+    void conditionalModifications() throws Exception{
+        CompactIndex index = new CompactIndex(Map.of("a", "shard1"));
+        assertEquals("shard1", index.putIfAbsent("a", "shard2"));
+        assertNull(index.putIfAbsent("b", "shard2"));
+        assertFalse(index.replace("a", "shard2", "shard3"));
+        assertTrue(index.replace("a", "shard1", "shard3"));
+        assertNull(index.replace("c", "shard1"));
+        assertFalse(index.containsKey("c"));
+        assertFalse(index.remove("b", "shard1"));
+        assertTrue(index.remove("b", "shard2"));
+        assertEquals(Map.of("a", "shard3"), new HashMap<>(index));
+        index.clear();
+        assertEquals(0, index.size());
+        assertNull(index.get("a"));
+    }
+
+    @Test
+    void iteratorRemovesEntries() throws Exception{
+        CompactIndex index = new CompactIndex();
+        for(int i = 0; i < 20000; i++){
+            index.put("dataset"+i, "shard"+(i % 2));
+        }
+        Iterator<Map.Entry<String, String>> iterator = index.entrySet().iterator();
+        int listed = 0;
+        while(iterator.hasNext()){
+            Map.Entry<String, String> entry = iterator.next();
+            listed++;
+            if(entry.getValue().equals("shard1")){
+                iterator.remove();
+            }
+        }
+        assertEquals(20000, listed);
+        assertEquals(10000, index.size());
+        assertFalse(index.containsValue("shard1"));
+    }
+
+    @Test
+    void concurrentWritersKeepAllEntries() throws Exception{
+        CompactIndex index = new CompactIndex();
+        Thread[] threads = new Thread[4];
+        for(int t = 0; t < threads.length; t++){
+            int offset = t;
+            threads[t] = new Thread(() -> {
+                for(int i = 0; i < 20000; i++){
+                    index.put("dataset"+offset+"_"+i, "shard"+offset);
+                }
+            });
+            threads[t].start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+        assertEquals(80000, index.size());
+        for(int t = 0; t < threads.length; t++){
+            for(int i = 0; i < 20000; i++){
+                assertEquals("shard"+t, index.get("dataset"+t+"_"+i));
+            }
+        }
+    }
+}
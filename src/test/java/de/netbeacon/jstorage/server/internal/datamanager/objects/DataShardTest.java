@@ -0,0 +1,187 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import de.netbeacon.jstorage.server.tools.query.Aggregation;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataShardTest {
+
+    private DataBase dataBase;
+
+    @AfterEach
+    void cleanUp() throws Exception{
+        if(dataBase != null){
+            dataBase.delete();
+            FileUtils.deleteDirectory(new File("./jstorage/data/db/"+dataBase.getIdentifier()));
+        }
+    }
+
+    private DataTable createTable(String name, StorageEngine.Type type) throws Exception{
+        dataBase = new DataBase(name);
+        DataTable table = new DataTable(dataBase, "table");
+        table.setStorageEngineType(type);
+        dataBase.insertTable(table);
+        return table;
+    }
+
+    private static JSONObject data(DataTable table, String identifier, int value){
+        return new JSONObject()
+                .put("database", table.getDataBase().getIdentifier())
+                .put("table", table.getIdentifier())
+                .put("identifier", identifier)
+                .put("timestamp", System.currentTimeMillis())
+                .put("value", new JSONObject().put("number", value));
+    }
+
+    /**
+     * Blocks serializing the DataSet for a snapshot until released
+     */
+    private static class BlockingDataSet extends DataSet {
+
+        private final CountDownLatch reached = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private BlockingDataSet(DataTable table, String identifier) throws Exception{
+            super(table.getDataBase(), table, identifier, data(table, identifier, 1));
+        }
+
+        @Override
+        protected String getSerializedData(VersionStore.Snapshot snapshot){
+            reached.countDown();
+            try{
+                release.await(10, TimeUnit.SECONDS);
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            return super.getSerializedData(snapshot);
+        }
+    }
+
+    private static long sum(DataShard dataShard, Aggregation aggregation) throws Exception{
+        return dataShard.aggregateData(null, aggregation).toJSON().getJSONArray("groups").getJSONObject(0).getLong("sum(/value/number)");
+    }
+
+    @Test
+    void aggregationsContainPendingWrites() throws Exception{
+        DataTable table = createTable("shardtestpending", StorageEngine.Type.LSM);
+        table.setWriteBehindWindow(60000);
+        for(int i = 0; i < 10; i++){
+            table.insertDataSet(new DataSet(dataBase, table, "dataset"+i, data(table, "dataset"+i, 1)));
+        }
+        DataShard dataShard = table.getDataPool().values().iterator().next();
+        Aggregation aggregation = new Aggregation(new JSONObject("{\"aggregates\":[{\"op\":\"sum\",\"path\":\"/value/number\"}]}"));
+        assertEquals(10, sum(dataShard, aggregation));
+
+        assertTrue(table.getDataSet("dataset0").update("value", data(table, "dataset0", 100)));
+        assertEquals(1, dataShard.getPendingWrites());
+        assertEquals(109, sum(dataShard, aggregation));
+        assertEquals(0, dataShard.getPendingWrites());
+
+        assertTrue(table.getDataSet("dataset1").update("value", data(table, "dataset1", 100)));
+        dataShard.unloadData(false, true, false); // writes the pending modification
+        assertEquals(0, dataShard.getPendingWrites());
+        assertEquals(208, sum(dataShard, aggregation));
+        assertEquals(208, sum(dataShard, aggregation));
+    }
+
+    @Test
+    void cachedAggregationsRequireTheSameIdentifiers() throws Exception{
+        DataTable table = createTable("shardtestcache", StorageEngine.Type.FILE);
+        for(int i = 0; i < 10; i++){
+            table.insertDataSet(new DataSet(dataBase, table, "dataset"+i, data(table, "dataset"+i, 1)));
+        }
+        DataShard dataShard = table.getDataPool().values().iterator().next();
+        Aggregation aggregation = new Aggregation(new JSONObject("{\"aggregates\":[{\"op\":\"sum\",\"path\":\"/value/number\"}]}"));
+        Aggregation.Partial all = dataShard.aggregateData(null, aggregation);
+        assertSame(all, dataShard.aggregateData(null, aggregation));
+        Set<String> identifiers = new HashSet<>(Set.of("dataset0", "dataset1", "dataset2"));
+        Aggregation.Partial subset = dataShard.aggregateData(identifiers, aggregation);
+        assertNotSame(all, subset);
+        assertEquals(3, subset.toJSON().getJSONArray("groups").getJSONObject(0).getLong("sum(/value/number)"));
+        assertSame(subset, dataShard.aggregateData(new TreeSet<>(identifiers), aggregation));
+        assertEquals(10, sum(dataShard, aggregation));
+    }
+
+    @Test
+    void cachedAggregationsAreReplacedOnceTheShardChanges() throws Exception{
+        DataTable table = createTable("shardtestinvalidate", StorageEngine.Type.FILE);
+        for(int i = 0; i < 10; i++){
+            table.insertDataSet(new DataSet(dataBase, table, "dataset"+i, data(table, "dataset"+i, 1)));
+        }
+        DataShard dataShard = table.getDataPool().values().iterator().next();
+        Aggregation aggregation = new Aggregation(new JSONObject("{\"aggregates\":[{\"op\":\"sum\",\"path\":\"/value/number\"}]}"));
+        Aggregation.Partial cached = dataShard.aggregateData(null, aggregation);
+        // equal aggregations share the cached partial
+        assertSame(cached, dataShard.aggregateData(null, new Aggregation(new JSONObject("{\"aggregates\":[{\"op\":\"sum\",\"path\":\"/value/number\"}]}"))));
+
+        assertTrue(table.getDataSet("dataset0").update("value", data(table, "dataset0", 100)));
+        assertNotSame(cached, dataShard.aggregateData(null, aggregation));
+        assertEquals(109, sum(dataShard, aggregation));
+
+        table.deleteDataSet("dataset1");
+        assertEquals(108, sum(dataShard, aggregation));
+        table.insertDataSet(new DataSet(dataBase, table, "dataset1", data(table, "dataset1", 5)));
+        assertEquals(113, sum(dataShard, aggregation));
+    }
+
+    @Test
+    void snapshotsDoNotOverwriteDataStoredByAConcurrentUnload() throws Exception{
+        DataTable table = createTable("shardtestsnapshot", StorageEngine.Type.FILE);
+        table.insertDataSet(new DataSet(dataBase, table, "dataset0", data(table, "dataset0", 1)));
+        BlockingDataSet blocking = new BlockingDataSet(table, "dataset1");
+        table.insertDataSet(blocking);
+        DataShard dataShard = table.getDataPool().values().iterator().next();
+        Aggregation aggregation = new Aggregation(new JSONObject("{\"aggregates\":[{\"op\":\"sum\",\"path\":\"/value/number\"}]}"));
+
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread snapshot = new Thread(() -> {
+            try{
+                dataShard.unloadData(false, true, false); // captures the DataSets, then blocks while serializing
+            }catch (Exception e){
+                failure.set(e);
+            }
+        });
+        snapshot.start();
+        assertTrue(blocking.reached.await(10, TimeUnit.SECONDS));
+        // the snapshot does not block the shard, so newer data can be stored in the meantime
+        assertTrue(table.getDataSet("dataset0").update("value", data(table, "dataset0", 100)));
+        dataShard.unloadData(true, true, false);
+        assertEquals(0, dataShard.getStatus());
+        blocking.release.countDown();
+        snapshot.join(10000);
+        assertFalse(snapshot.isAlive());
+        assertNull(failure.get());
+        // the older snapshot must have been discarded
+        assertEquals(101, sum(dataShard, aggregation));
+        dataShard.loadData();
+        assertEquals(100, dataShard.getDataPool().get("dataset0").getFullData().getJSONObject("value").getInt("number"));
+    }
+}
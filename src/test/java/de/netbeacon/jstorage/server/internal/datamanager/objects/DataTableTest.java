@@ -0,0 +1,117 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import de.netbeacon.jstorage.server.tools.exceptions.DataStorageException;
+import org.apache.commons.io.FileUtils;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DataTableTest {
+
+    private DataBase dataBase;
+
+    @AfterEach
+    void cleanUp() throws Exception{
+        if(dataBase != null){
+            dataBase.delete();
+            FileUtils.deleteDirectory(new File("./jstorage/data/db/"+dataBase.getIdentifier()));
+        }
+    }
+
+    private DataTable createTable(String name) throws Exception{
+        dataBase = new DataBase(name);
+        DataTable table = new DataTable(dataBase, "table");
+        dataBase.insertTable(table);
+        return table;
+    }
+
+    private static JSONObject data(DataTable table, String identifier, int value){
+        return new JSONObject()
+                .put("database", table.getDataBase().getIdentifier())
+                .put("table", table.getIdentifier())
+                .put("identifier", identifier)
+                .put("timestamp", System.currentTimeMillis())
+                .put("value", new JSONObject().put("number", value));
+    }
+
+    private interface Action {
+        JSONObject execute() throws DataStorageException;
+    }
+
+    private static DataTable.BatchOperation operation(String identifier, Action action){
+        return new DataTable.BatchOperation() {
+            @Override
+            public String getDataSetIdentifier() {
+                return identifier;
+            }
+
+            @Override
+            public JSONObject execute() throws DataStorageException {
+                return action.execute();
+            }
+        };
+    }
+
+    @Test
+    void failedAtomicBatchRestoresThePreviousState() throws Exception{
+        DataTable table = createTable("tabletestrollback");
+        table.addSecondaryIndex("/value/number");
+        table.insertDataSet(new DataSet(dataBase, table, "dataset0", data(table, "dataset0", 1)));
+        table.insertDataSet(new DataSet(dataBase, table, "dataset1", data(table, "dataset1", 2)));
+        table.setDataSetTTL("dataset0", 3600);
+        long expiry = table.getDataSetExpiry("dataset0");
+
+        List<Object> results = table.executeBatch(List.of(
+                operation("dataset0", () -> {
+                    table.getDataSet("dataset0").update("value", data(table, "dataset0", 50));
+                    return new JSONObject();
+                }),
+                operation("dataset1", () -> {
+                    table.deleteDataSet("dataset1");
+                    return new JSONObject();
+                }),
+                operation("dataset2", () -> {
+                    table.insertDataSet(new DataSet(dataBase, table, "dataset2", data(table, "dataset2", 3)));
+                    return new JSONObject();
+                }),
+                operation("dataset3", () -> {
+                    throw new DataStorageException(400, "Failing Operation");
+                })
+        ), true);
+
+        assertEquals(4, results.size());
+        results.forEach(result -> assertTrue(result instanceof DataStorageException));
+        assertEquals(1, table.getDataSet("dataset0").getFullData().getJSONObject("value").getInt("number"));
+        assertEquals(expiry, table.getDataSetExpiry("dataset0"));
+        assertEquals(2, table.getDataSet("dataset1").getFullData().getJSONObject("value").getInt("number"));
+        assertFalse(table.containsDataSet("dataset2"));
+
+        SecondaryIndex secondaryIndex = table.getSecondaryIndex("/value/number");
+        assertEquals(List.of("dataset0"), secondaryIndex.lookup(1, 10));
+        assertEquals(List.of("dataset1"), secondaryIndex.lookup(2, 10));
+        assertTrue(secondaryIndex.lookup(50, 10).isEmpty());
+        assertTrue(secondaryIndex.lookup(3, 10).isEmpty());
+        assertEquals(2, secondaryIndex.size());
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskIndexTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void entriesSurviveReopening() throws Exception{
+        File treeFile = new File(directory, "index.bt");
+        File bloomFile = new File(directory, "index.bloom");
+        DiskIndex diskIndex = new DiskIndex(treeFile, bloomFile);
+        for(int i = 0; i < 5000; i++){
+            diskIndex.put("id"+i, "shard"+(i % 7));
+        }
+        diskIndex.remove("id42");
+        diskIndex.close();
+
+        diskIndex = new DiskIndex(treeFile, bloomFile);
+        assertEquals(4999, diskIndex.size());
+        assertEquals("shard3", diskIndex.get("id3"));
+        assertNull(diskIndex.get("id42"));
+        assertNull(diskIndex.get("missing"));
+        diskIndex.close();
+    }
+
+    @Test
+    void outdatedBloomFilterIsRebuilt() throws Exception{
+        File treeFile = new File(directory, "index.bt");
+        File bloomFile = new File(directory, "index.bloom");
+        DiskIndex diskIndex = new DiskIndex(treeFile, bloomFile);
+        for(int i = 0; i < 100; i++){
+            diskIndex.put("id"+i, "shard0");
+        }
+        diskIndex.flush();
+        byte[] outdated = Files.readAllBytes(bloomFile.toPath());
+        for(int i = 100; i < 5000; i++){
+            diskIndex.put("id"+i, "shard1");
+        }
+        diskIndex.close();
+        // the tree has been written but the bloom filter has not, as if the index had been stopped in between
+        Files.write(bloomFile.toPath(), outdated);
+
+        diskIndex = new DiskIndex(treeFile, bloomFile);
+        assertEquals(5000, diskIndex.size());
+        for(int i = 0; i < 5000; i++){
+            assertNotNull(diskIndex.get("id"+i), "id"+i);
+        }
+        diskIndex.close();
+    }
+}
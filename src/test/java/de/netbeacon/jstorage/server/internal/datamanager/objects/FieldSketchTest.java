@@ -0,0 +1,63 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FieldSketchTest {
+
+    @Test
+    void pathSelectsTheDataType() throws Exception{
+        FieldSketch fieldSketch = new FieldSketch("/user/age");
+        assertEquals("/user/age", fieldSketch.getPath());
+        assertEquals("user", fieldSketch.getDataType());
+        assertEquals(42, new JSONObject().put("user", new JSONObject().put("age", 42)).optQuery(fieldSketch.getPointer()));
+    }
+
+    @Test
+    void equalNumbersAreCountedOnce() throws Exception{
+        FieldSketch fieldSketch = new FieldSketch("/user/age");
+        fieldSketch.add(1);
+        fieldSketch.add(1L);
+        fieldSketch.add(1.0d);
+        fieldSketch.add("1");
+        fieldSketch.add(null);
+        fieldSketch.add(JSONObject.NULL);
+        JSONObject estimate = fieldSketch.estimate(new double[]{0.5});
+        assertEquals(4, estimate.getLong("values"));
+        assertEquals(3, estimate.getLong("numbers"));
+        assertEquals(2, estimate.getLong("distinct"));
+        assertEquals(1.0, estimate.getDouble("min"), 0);
+    }
+
+    @Test
+    void exportedContentCanBeRestored() throws Exception{
+        FieldSketch fieldSketch = new FieldSketch("/user/age");
+        for(int i = 0; i < 1000; i++){
+            fieldSketch.add(i % 100);
+        }
+        FieldSketch restored = new FieldSketch("/user/age");
+        restored.restore(fieldSketch.export());
+        assertTrue(fieldSketch.estimate(new double[]{0.5}).similar(restored.estimate(new double[]{0.5})));
+        restored.clear();
+        assertEquals(0, restored.estimate(new double[0]).getLong("values"));
+        assertEquals(JSONObject.NULL, restored.estimate(new double[0]).get("min"));
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SecondaryIndexTest {
+
+    private static SecondaryIndex createIndex(){
+        SecondaryIndex secondaryIndex = new SecondaryIndex("/VALUE/field");
+        secondaryIndex.update("string", "b");
+        secondaryIndex.update("decimal", 2.5);
+        secondaryIndex.update("long", 3L);
+        secondaryIndex.update("true", true);
+        secondaryIndex.update("int", 1);
+        secondaryIndex.update("false", false);
+        secondaryIndex.update("numericstring", "1");
+        return secondaryIndex;
+    }
+
+    @Test
+    void pathsAreNormalized(){
+        SecondaryIndex secondaryIndex = new SecondaryIndex("/VALUE/Field");
+        assertEquals("/value/Field", secondaryIndex.getPath());
+        assertEquals("value", secondaryIndex.getDataType());
+        assertThrows(IllegalArgumentException.class, () -> new SecondaryIndex("value/field"));
+    }
+
+    @Test
+    void valuesAreOrderedByTypeThenValue(){
+        SecondaryIndex secondaryIndex = createIndex();
+        assertEquals(7, secondaryIndex.size());
+        // boolean < number < string
+        assertEquals(List.of("false", "true", "int", "decimal", "long", "numericstring", "string"), secondaryIndex.lookupRange(null, null, 100));
+        assertEquals(List.of("false", "true", "int"), secondaryIndex.lookupRange(null, null, 3));
+    }
+
+    @Test
+    void rangesAreInclusive(){
+        SecondaryIndex secondaryIndex = createIndex();
+        assertEquals(List.of("int", "decimal"), secondaryIndex.lookupRange(1.0, 2.5, 100));
+        assertEquals(List.of("decimal", "long"), secondaryIndex.lookupRange(2, 3, 100));
+        assertEquals(List.of("long", "numericstring", "string"), secondaryIndex.lookupRange(3, null, 100));
+        assertEquals(List.of("false", "true", "int"), secondaryIndex.lookupRange(null, 1, 100));
+        assertEquals(List.of("numericstring", "string"), secondaryIndex.lookupRange("", "c", 100));
+        assertEquals(List.of("true", "int", "decimal", "long", "numericstring"), secondaryIndex.lookupRange(true, "1", 100));
+        assertTrue(secondaryIndex.lookupRange(3, 1, 100).isEmpty());
+        assertTrue(secondaryIndex.lookupRange("a", 1, 100).isEmpty());
+    }
+
+    @Test
+    void lookupsMatchNumbersByValue(){
+        SecondaryIndex secondaryIndex = createIndex();
+        secondaryIndex.update("double", 1.00);
+        secondaryIndex.update("bigger", 100L);
+        assertEquals(List.of("double", "int"), secondaryIndex.lookup(1L, 100));
+        assertEquals(List.of("double"), secondaryIndex.lookup(1, 1));
+        assertEquals(List.of("bigger"), secondaryIndex.lookup(100.0, 100));
+        assertEquals(List.of("numericstring"), secondaryIndex.lookup("1", 100));
+        assertEquals(List.of("true"), secondaryIndex.lookup(true, 100));
+        assertTrue(secondaryIndex.lookup(null, 100).isEmpty());
+        assertTrue(secondaryIndex.lookup(Double.NaN, 100).isEmpty());
+    }
+
+    @Test
+    void updatesReplaceTheIndexedValue(){
+        SecondaryIndex secondaryIndex = createIndex();
+        secondaryIndex.update("int", 4);
+        assertTrue(secondaryIndex.lookup(1, 100).isEmpty());
+        assertEquals(List.of("long", "int"), secondaryIndex.lookupRange(3, 4, 100));
+        // values which can not be indexed remove the DataSet
+        secondaryIndex.update("long", new Object());
+        secondaryIndex.remove("string");
+        assertEquals(5, secondaryIndex.size());
+        assertEquals(List.of("int", "numericstring"), secondaryIndex.lookupRange(3, "b", 100));
+    }
+
+    @Test
+    void outdatedValuesAreIgnoredWhileBuilding(){
+        SecondaryIndex secondaryIndex = new SecondaryIndex("/value/field");
+        secondaryIndex.startBuilding();
+        secondaryIndex.update("modified", 2);
+        secondaryIndex.build("modified", 1);
+        secondaryIndex.build("unmodified", 1);
+        secondaryIndex.finishBuilding();
+        assertEquals(List.of("unmodified"), secondaryIndex.lookup(1, 100));
+        assertEquals(List.of("modified"), secondaryIndex.lookup(2, 100));
+    }
+
+    @Test
+    void exportedValuesCanBeRestored(){
+        SecondaryIndex secondaryIndex = createIndex();
+        SecondaryIndex restored = new SecondaryIndex("/value/field");
+        restored.restore(secondaryIndex.export());
+        assertEquals(secondaryIndex.size(), restored.size());
+        assertEquals(secondaryIndex.lookupRange(null, null, 100), restored.lookupRange(null, null, 100));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.internal.datamanager.objects;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionStoreTest {
+
+    private final VersionStore versionStore = VersionStore.getInstance();
+
+    private static JSONObject data(int value){
+        return new JSONObject().put("type", new JSONObject().put("value", value));
+    }
+
+    @Test
+    void snapshotsReadTheDataOfTheirTime() throws Exception{
+        String key = VersionStore.keyOf("test", "versions", "snapshots");
+        JSONObject current = data(1);
+        try(VersionStore.Snapshot first = versionStore.openSnapshot()){
+            JSONObject previous = current;
+            long seq = versionStore.begin(key, () -> previous);
+            current = data(2);
+            versionStore.finish(seq);
+            try(VersionStore.Snapshot second = versionStore.openSnapshot()){
+                JSONObject before = current;
+                seq = versionStore.begin(key, () -> before);
+                current = null; // deleted
+                versionStore.finish(seq);
+
+                assertTrue(data(1).similar(versionStore.read(key, first, current)));
+                assertTrue(data(2).similar(versionStore.read(key, second, current)));
+                try(VersionStore.Snapshot third = versionStore.openSnapshot()){
+                    assertNull(versionStore.read(key, third, current));
+                }
+            }
+        }
+    }
+
+    @Test
+    void dataSetsCreatedAfterTheSnapshotAreNotVisible() throws Exception{
+        String key = VersionStore.keyOf("test", "versions", "created");
+        try(VersionStore.Snapshot snapshot = versionStore.openSnapshot()){
+            long seq = versionStore.begin(key, null);
+            versionStore.finish(seq);
+            assertNull(versionStore.read(key, snapshot, data(1)));
+        }
+    }
+
+    @Test
+    void versionsAreDroppedOnceNoSnapshotNeedsThem() throws Exception{
+        String key = VersionStore.keyOf("test", "versions", "dropped");
+        JSONObject current = data(1);
+        VersionStore.Snapshot snapshot = versionStore.openSnapshot();
+        JSONObject previous = current;
+        long seq = versionStore.begin(key, () -> previous);
+        versionStore.finish(seq);
+        current = data(2);
+        assertTrue(data(1).similar(versionStore.read(key, snapshot, current)));
+        snapshot.close();
+        try(VersionStore.Snapshot later = versionStore.openSnapshot()){
+            assertSame(current, versionStore.read(key, later, current));
+        }
+        // no snapshot is open, so changes are not recorded
+        seq = versionStore.begin(key, () -> { throw new IllegalStateException("previous state requested"); });
+        versionStore.finish(seq);
+    }
+}
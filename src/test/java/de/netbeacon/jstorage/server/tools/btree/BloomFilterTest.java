@@ -0,0 +1,66 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.btree;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void addedKeysAreAlwaysFound() throws Exception{
+        BloomFilter bloomFilter = new BloomFilter(10000);
+        for(int i = 0; i < 10000; i++){
+            bloomFilter.add("key"+i);
+        }
+        for(int i = 0; i < 10000; i++){
+            assertTrue(bloomFilter.mightContain("key"+i));
+        }
+        int falsePositives = 0;
+        for(int i = 0; i < 10000; i++){
+            if(bloomFilter.mightContain("other"+i)){
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "false positives "+falsePositives);
+        assertFalse(bloomFilter.isSaturated());
+        bloomFilter.add("one more");
+        assertTrue(bloomFilter.isSaturated());
+    }
+
+    @Test
+    void filterSurvivesWritingAndReading() throws Exception{
+        File file = new File(directory, "bloom");
+        BloomFilter bloomFilter = new BloomFilter(100);
+        for(int i = 0; i < 100; i++){
+            bloomFilter.add("key"+i);
+        }
+        bloomFilter.write(file);
+        BloomFilter read = BloomFilter.read(file);
+        assertEquals(bloomFilter.getCapacity(), read.getCapacity());
+        for(int i = 0; i < 100; i++){
+            assertTrue(read.mightContain("key"+i));
+        }
+    }
+}
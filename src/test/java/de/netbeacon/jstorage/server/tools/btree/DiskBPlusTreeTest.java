@@ -0,0 +1,115 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.btree;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskBPlusTreeTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void entriesCanBeReadAfterReopening() throws Exception{
+        File file = new File(directory, "tree");
+        DiskBPlusTree tree = new DiskBPlusTree(file, 16);
+        TreeMap<String, String> expected = new TreeMap<>();
+        for(int i = 0; i < 20000; i++){
+            String key = "key"+((i * 7919) % 20000);
+            assertNull(tree.put(key, "v"+i));
+            expected.put(key, "v"+i);
+        }
+        assertEquals("v0", tree.put("key0", "replaced"));
+        expected.put("key0", "replaced");
+        for(int i = 0; i < 20000; i += 3){
+            assertEquals(expected.remove("key"+i), tree.remove("key"+i));
+        }
+        assertNull(tree.remove("missing"));
+        tree.close();
+
+        tree = new DiskBPlusTree(file, 16);
+        assertEquals(expected.size(), tree.size());
+        for(int i = 0; i < 20000; i++){
+            assertEquals(expected.get("key"+i), tree.get("key"+i));
+        }
+        tree.close();
+    }
+
+    @Test
+    void entriesAreListedInAscendingOrder() throws Exception{
+        DiskBPlusTree tree = new DiskBPlusTree(new File(directory, "tree"), 16);
+        TreeMap<String, String> expected = new TreeMap<>();
+        for(int i = 0; i < 5000; i++){
+            String key = Integer.toHexString(i * 31);
+            tree.put(key, key);
+            expected.put(key, key);
+        }
+        List<String> listed = new ArrayList<>();
+        String after = null;
+        List<Map.Entry<String, String>> entries;
+        while(!(entries = tree.entriesAfter(after, 100)).isEmpty()){
+            assertTrue(entries.size() <= 100);
+            entries.forEach(entry -> listed.add(entry.getKey()));
+            after = entries.get(entries.size()-1).getKey();
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), listed);
+        tree.close();
+    }
+
+    @Test
+    void generationChangesOnceDataIsWrittenAfterAFlush() throws Exception{
+        DiskBPlusTree tree = new DiskBPlusTree(new File(directory, "tree"), 16);
+        long generation = tree.getGeneration();
+        tree.flush();
+        assertEquals(generation, tree.getGeneration());
+        tree.put("a", "b");
+        assertEquals(generation, tree.getGeneration());
+        tree.flush();
+        long flushed = tree.getGeneration();
+        assertTrue(flushed > generation);
+        // evicted pages are written before the next flush
+        for(int i = 0; i < 20000; i++){
+            tree.put("key"+i, "value"+i);
+        }
+        assertTrue(tree.getGeneration() > flushed);
+        tree.close();
+    }
+
+    @Test
+    void clearRemovesAllEntries() throws Exception{
+        DiskBPlusTree tree = new DiskBPlusTree(new File(directory, "tree"), 16);
+        for(int i = 0; i < 1000; i++){
+            tree.put("key"+i, "value"+i);
+        }
+        tree.clear();
+        assertEquals(0, tree.size());
+        assertNull(tree.get("key1"));
+        assertTrue(tree.entriesAfter(null, 10).isEmpty());
+        assertFalse(DiskBPlusTree.fits("key", "x".repeat(DiskBPlusTree.maxEntrySize)));
+        assertTrue(DiskBPlusTree.fits("key", "value"));
+        tree.close();
+    }
+}
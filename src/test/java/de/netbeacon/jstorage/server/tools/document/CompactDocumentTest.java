@@ -0,0 +1,101 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.document;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONPointer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactDocumentTest {
+
+    private static JSONObject sample(){
+        return new JSONObject()
+                .put("user", new JSONObject().put("name", "horst").put("age", 42).put("score", 1.5d).put("id", 9007199254740993L))
+                .put("list", new JSONObject().put("values", new JSONArray().put(1).put("two").put(JSONObject.NULL).put(new JSONObject().put("x", true))));
+    }
+
+    @Test
+    void encodedDataMatchesTheSource() throws Exception{
+        CompactDocument document = new CompactDocument(sample(), new FieldDictionary());
+        assertTrue(sample().similar(document.toJSONObject()));
+        assertTrue(sample().similar(new JSONObject(document.toString())));
+        assertEquals("horst", document.optQuery(new JSONPointer("/user/name")));
+        assertEquals(9007199254740993L, document.optQuery(new JSONPointer("/user/id")));
+        assertEquals(Boolean.TRUE, document.optQuery(new JSONPointer("/list/values/3/x")));
+        assertNull(document.optQuery(new JSONPointer("/list/values/4")));
+        assertNull(document.optQuery(new JSONPointer("/user/missing")));
+    }
+
+    @Test
+    void entriesCanBeReplacedAndRemoved() throws Exception{
+        CompactDocument document = new CompactDocument(sample(), new FieldDictionary());
+        document.put("user", new JSONObject().put("name", "explorer"));
+        document.put("extra", new JSONObject().put("a", 1));
+        assertEquals("explorer", document.optQuery(new JSONPointer("/user/name")));
+        assertNull(document.optQuery(new JSONPointer("/user/age")));
+        assertTrue(document.has("extra"));
+        document.remove("list");
+        assertFalse(document.has("list"));
+        assertTrue(new JSONObject().put("user", new JSONObject().put("name", "explorer")).put("extra", new JSONObject().put("a", 1)).similar(document.toJSONObject()));
+    }
+
+    @Test
+    void keysPastTheDictionaryLimitAreStoredWithinTheDocument() throws Exception{
+        FieldDictionary dictionary = new FieldDictionary();
+        dictionary.assign("known");
+        for(int i = 1; dictionary.size() < 65536; i++){
+            dictionary.assign("filler"+i);
+        }
+        assertEquals(-1, dictionary.assign("unknown"));
+
+        JSONObject data = new JSONObject()
+                .put("known", new JSONObject().put("inner", 1).put("filler7", 2))
+                .put("unknown", new JSONObject().put("value", "a"));
+        CompactDocument document = new CompactDocument(data, dictionary);
+        assertEquals(65536, dictionary.size());
+        assertTrue(data.similar(document.toJSONObject()));
+        assertTrue(data.similar(new JSONObject(document.toString())));
+        assertEquals(1, document.optQuery(new JSONPointer("/known/inner")));
+        assertEquals("a", document.optQuery(new JSONPointer("/unknown/value")));
+
+        document.put("unknown", new JSONObject().put("value", "b"));
+        document.put("another", new JSONObject().put("value", "c"));
+        document.put("known", new JSONObject().put("inner", 3));
+        assertEquals("b", document.getJSONObject("unknown").getString("value"));
+        assertEquals("c", document.optQuery(new JSONPointer("/another/value")));
+        assertEquals(3, document.optQuery(new JSONPointer("/known/inner")));
+        document.remove("unknown");
+        assertFalse(document.has("unknown"));
+        assertTrue(new JSONObject().put("known", new JSONObject().put("inner", 3)).put("another", new JSONObject().put("value", "c")).similar(document.toJSONObject()));
+        assertEquals(65536, dictionary.size());
+    }
+
+    @Test
+    void documentsOfDifferentDictionariesAreReencoded() throws Exception{
+        FieldDictionary first = new FieldDictionary();
+        FieldDictionary second = new FieldDictionary();
+        second.assign("list");
+        CompactDocument document = new CompactDocument(sample(), first);
+        OffHeapArena arena = new OffHeapArena();
+        OffHeapDocument offHeapDocument = new OffHeapDocument(document, arena, second);
+        assertTrue(sample().similar(offHeapDocument.toJSONObject()));
+        assertEquals("horst", offHeapDocument.optQuery(new JSONPointer("/user/name")));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.document;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapArenaTest {
+
+    private static byte[] bytes(int length, int seed){
+        byte[] bytes = new byte[length];
+        for(int i = 0; i < length; i++){
+            bytes[i] = (byte) (i * 31 + seed);
+        }
+        return bytes;
+    }
+
+    @Test
+    void storedDataDoesNotOverlap() throws Exception{
+        OffHeapArena arena = new OffHeapArena();
+        List<ByteBuffer> buffers = new ArrayList<>();
+        int[] lengths = new int[]{1, 100, 70000, 300000, 5, 1024*1024};
+        for(int i = 0; i < 300; i++){
+            buffers.add(arena.store(bytes(lengths[i % lengths.length], i)));
+        }
+        for(int i = 0; i < buffers.size(); i++){
+            ByteBuffer buffer = buffers.get(i);
+            byte[] read = new byte[buffer.capacity()];
+            buffer.get(0, read);
+            assertTrue(Arrays.equals(bytes(lengths[i % lengths.length], i), read), "buffer "+i);
+        }
+        arena.release();
+    }
+
+    @Test
+    void bytesAreAccounted() throws Exception{
+        long total = OffHeapArena.getTotalBytes();
+        OffHeapArena arena = new OffHeapArena();
+        ByteBuffer first = arena.store(bytes(1000, 1));
+        arena.store(bytes(500, 2));
+        assertEquals(1500, arena.getLiveBytes());
+        assertTrue(arena.getAllocatedBytes() >= 1500);
+        assertEquals(total + arena.getAllocatedBytes(), OffHeapArena.getTotalBytes());
+        arena.free(first.capacity());
+        assertEquals(500, arena.getLiveBytes());
+        assertEquals(1000, arena.getFreedBytes());
+        arena.release();
+        assertEquals(0, arena.getAllocatedBytes());
+        assertEquals(0, arena.getLiveBytes());
+        assertEquals(total, OffHeapArena.getTotalBytes());
+    }
+}
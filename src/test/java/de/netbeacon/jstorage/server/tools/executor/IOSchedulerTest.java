@@ -0,0 +1,139 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.executor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IOSchedulerTest {
+
+    private final IOScheduler ioScheduler = IOScheduler.getInstance();
+    private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+    private int threads;
+
+    @BeforeEach
+    void setUp(){
+        threads = ioScheduler.getThreads();
+        ioScheduler.setThreads(1);
+        ioScheduler.setBytesPerSecond(0);
+    }
+
+    @AfterEach
+    void tearDown(){
+        ioScheduler.setBytesPerSecond(0);
+        ioScheduler.setThreads(threads);
+    }
+
+    private Runnable record(String name, CountDownLatch done){
+        return () -> {
+            executed.add(name);
+            done.countDown();
+        };
+    }
+
+    /**
+     * Occupies the only background thread until released
+     */
+    private CountDownLatch block() throws Exception{
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ioScheduler.submit(IOScheduler.Priority.OPTIMIZE, 0, () -> {
+            started.countDown();
+            try{
+                release.await(10, TimeUnit.SECONDS);
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        return release;
+    }
+
+    @Test
+    void tasksAreExecutedByPriorityThenSubmission() throws Exception{
+        CountDownLatch release = block();
+        CountDownLatch done = new CountDownLatch(5);
+        ioScheduler.submit(IOScheduler.Priority.OPTIMIZE, 0, record("optimize1", done));
+        ioScheduler.submit(IOScheduler.Priority.SNAPSHOT, 0, record("snapshot", done));
+        ioScheduler.submit(IOScheduler.Priority.EVICT, 0, record("evict1", done));
+        ioScheduler.submit(IOScheduler.Priority.OPTIMIZE, 0, record("optimize2", done));
+        ioScheduler.submit(IOScheduler.Priority.EVICT, 0, record("evict2", done));
+        assertEquals(2, ioScheduler.getQueued(IOScheduler.Priority.OPTIMIZE));
+        assertEquals(2, ioScheduler.getQueued(IOScheduler.Priority.EVICT));
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of("evict1", "evict2", "snapshot", "optimize1", "optimize2"), executed);
+        assertEquals(0, ioScheduler.getQueued(IOScheduler.Priority.OPTIMIZE));
+    }
+
+    @Test
+    void loadingDoesNotWaitForBackgroundTasks() throws Exception{
+        CountDownLatch release = block();
+        try{
+            CountDownLatch done = new CountDownLatch(1);
+            ioScheduler.submit(IOScheduler.Priority.LOAD, 0, record("load", done));
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void keyedTasksAreOnlyQueuedOnce() throws Exception{
+        CountDownLatch release = block();
+        CountDownLatch done = new CountDownLatch(2);
+        assertTrue(ioScheduler.submit("key", IOScheduler.Priority.SNAPSHOT, 0, record("first", done)));
+        assertFalse(ioScheduler.submit("key", IOScheduler.Priority.SNAPSHOT, 0, record("second", done)));
+        assertTrue(ioScheduler.submit("other", IOScheduler.Priority.SNAPSHOT, 0, record("other", done)));
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of("first", "other"), executed);
+        // can be queued again once started
+        CountDownLatch again = new CountDownLatch(1);
+        assertTrue(ioScheduler.submit("key", IOScheduler.Priority.SNAPSHOT, 0, record("again", again)));
+        assertTrue(again.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void backgroundTasksAreThrottled() throws Exception{
+        ioScheduler.setBytesPerSecond(1000000);
+        CountDownLatch done = new CountDownLatch(3);
+        long start = System.nanoTime();
+        for(int i = 0; i < 3; i++){
+            ioScheduler.submit(IOScheduler.Priority.SNAPSHOT, 200000, record("snapshot"+i, done));
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        // the first task starts at once, each following one waits for the bytes of the previous ones
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-start) >= 390);
+
+        // loading is not throttled
+        CountDownLatch load = new CountDownLatch(1);
+        start = System.nanoTime();
+        ioScheduler.submit(IOScheduler.Priority.LOAD, 100000000, record("load", load));
+        assertTrue(load.await(10, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime()-start) < 5000);
+    }
+}
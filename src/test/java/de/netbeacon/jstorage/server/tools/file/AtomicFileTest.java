@@ -0,0 +1,75 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.file;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AtomicFileTest {
+
+    @TempDir
+    File directory;
+
+    @Test
+    void writtenContentCanBeRead() throws Exception{
+        File file = new File(directory, "content");
+        assertEquals("", AtomicFile.read(file));
+        AtomicFile.write(file, "{\"key\":\"välue\"}");
+        assertEquals("{\"key\":\"välue\"}", AtomicFile.read(file));
+        AtomicFile.write(file, "replaced");
+        assertEquals("replaced", AtomicFile.read(file));
+        assertFalse(new File(directory, "content.tmp").exists());
+    }
+
+    @Test
+    void uncommittedContentIsDiscarded() throws Exception{
+        File file = new File(directory, "content");
+        AtomicFile.write(file, "previous");
+        try(AtomicFile.Writer writer = new AtomicFile.Writer(file)){
+            writer.writeLine("next");
+        }
+        assertEquals("previous", AtomicFile.read(file));
+        assertFalse(new File(directory, "content.tmp").exists());
+    }
+
+    @Test
+    void damagedLinesAreSkipped() throws Exception{
+        File file = new File(directory, "lines");
+        try(AtomicFile.Writer writer = new AtomicFile.Writer(file)){
+            writer.writeLine("first");
+            writer.writeLine("second");
+            writer.writeLine("third");
+            writer.commit();
+        }
+        String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        Files.write(file.toPath(), (content.replace("second", "sec0nd")+"unchecked\n").getBytes(StandardCharsets.UTF_8));
+
+        List<String> lines = new ArrayList<>();
+        assertEquals(1, AtomicFile.readLines(file, lines::add));
+        assertEquals(List.of("first", "third", "unchecked"), lines);
+        assertThrows(IOException.class, () -> AtomicFile.read(file));
+    }
+}
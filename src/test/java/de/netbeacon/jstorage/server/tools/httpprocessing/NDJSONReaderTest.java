@@ -0,0 +1,60 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.httpprocessing;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NDJSONReaderTest {
+
+    @Test
+    void readsObjectsLineByLine(){
+        NDJSONReader reader = new NDJSONReader(new StringReader("{\"a\":1}\r\n\n{\"a\":2}\nnot json\n{\"a\":3}"), -1);
+        assertEquals(1, reader.next().getInt("a"));
+        assertEquals(2, reader.next().getInt("a"));
+        assertNull(reader.next());
+        assertEquals(3, reader.next().getInt("a"));
+        assertFalse(reader.hasNext());
+        assertEquals(4, reader.getLineCount());
+        assertFalse(reader.exceededLineLength());
+    }
+
+    @Test
+    void stopsAtCharLimit(){
+        String content = "{\"a\":1}\n{\"a\":2}\n";
+        NDJSONReader reader = new NDJSONReader(new StringReader(content), 8);
+        assertEquals(1, reader.next().getInt("a"));
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    void stopsAtLongLine(){
+        StringBuilder longLine = new StringBuilder("{\"a\":\"");
+        for(int i = 0; i < 100; i++){
+            longLine.append('x');
+        }
+        longLine.append("\"}");
+        NDJSONReader reader = new NDJSONReader(new StringReader("{\"a\":1}\n"+longLine+"\n{\"a\":3}\n"), -1, 64);
+        assertEquals(1, reader.next().getInt("a"));
+        assertFalse(reader.hasNext());
+        assertTrue(reader.exceededLineLength());
+        assertEquals(1, reader.getLineCount());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrontCodedKeysTest {
+
+    private static FrontCodedKeys build(TreeMap<String, Integer> entries){
+        FrontCodedKeys.Builder builder = new FrontCodedKeys.Builder(entries.size());
+        entries.forEach((key, value) -> {
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            builder.add(bytes, bytes.length, value);
+        });
+        return builder.build();
+    }
+
+    @Test
+    void keysAreFound() throws Exception{
+        TreeMap<String, Integer> entries = new TreeMap<>();
+        for(int i = 0; i < 10000; i++){
+            entries.put("dataset"+i, i);
+        }
+        entries.put("ä", 10000);
+        entries.put("", 10001);
+        FrontCodedKeys keys = build(entries);
+        assertEquals(entries.size(), keys.size());
+        entries.forEach((key, value) -> assertEquals((int) value, keys.get(key), key));
+        assertEquals(-1, keys.get("dataset"));
+        assertEquals(-1, keys.get("dataset10000"));
+        assertEquals(-1, keys.get("zzz"));
+        assertEquals(-1, FrontCodedKeys.empty().get("dataset1"));
+    }
+
+    @Test
+    void cursorListsKeysInOrder() throws Exception{
+        TreeMap<String, Integer> entries = new TreeMap<>();
+        for(int i = 0; i < 1000; i++){
+            entries.put(Integer.toString(i * 7, 36), i);
+        }
+        FrontCodedKeys.Cursor cursor = build(entries).cursor();
+        List<String> listed = new ArrayList<>();
+        while(cursor.next()){
+            assertEquals((int) entries.get(cursor.keyString()), cursor.value());
+            listed.add(cursor.keyString());
+        }
+        assertFalse(cursor.next());
+        assertEquals(new ArrayList<>(entries.keySet()), listed);
+    }
+
+    @Test
+    void keysHaveToBeAscending() throws Exception{
+        FrontCodedKeys.Builder builder = new FrontCodedKeys.Builder(2);
+        builder.add("b".getBytes(StandardCharsets.UTF_8), 1, 0);
+        assertThrows(IllegalArgumentException.class, () -> builder.add("a".getBytes(StandardCharsets.UTF_8), 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> builder.add("c".getBytes(StandardCharsets.UTF_8), 1, -1));
+    }
+}
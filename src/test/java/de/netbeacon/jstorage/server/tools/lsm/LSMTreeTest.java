@@ -0,0 +1,174 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.lsm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LSMTreeTest {
+
+    @TempDir
+    File directory;
+
+    private static String value(String prefix){
+        StringBuilder stringBuilder = new StringBuilder(prefix);
+        while(stringBuilder.length() < 600){
+            stringBuilder.append('x');
+        }
+        return stringBuilder.toString();
+    }
+
+    @Test
+    void readsWritesAndDeletesAcrossReopen() throws Exception{
+        LSMTree tree = new LSMTree(directory);
+        tree.put("a", "1");
+        tree.put("b", "2");
+        tree.put("c", "3");
+        tree.delete("b");
+        assertEquals("1", tree.get("a"));
+        assertNull(tree.get("b"));
+        tree.close(); // writes the memtable to a segment
+        tree.put("a", "4"); // stays within the log
+        LSMTree reopened = new LSMTree(directory);
+        assertEquals("4", reopened.get("a"));
+        assertNull(reopened.get("b"));
+        assertEquals("3", reopened.get("c"));
+        reopened.close();
+    }
+
+    @Test
+    void putAllIsReplayedFromTheLog() throws Exception{
+        LSMTree tree = new LSMTree(directory);
+        tree.put("a", "old");
+        HashMap<String, String> entries = new HashMap<>();
+        for(int i = 0; i < 100; i++){
+            entries.put("key"+i, "value"+i);
+        }
+        entries.put("a", "new");
+        tree.putAll(entries);
+        tree.putAll(Map.of());
+        HashMap<String, String> invalid = new HashMap<>();
+        invalid.put("b", "1");
+        invalid.put("c", null);
+        assertThrows(NullPointerException.class, () -> tree.putAll(invalid));
+        assertNull(tree.get("b"));
+        LSMTree reopened = new LSMTree(directory); // reads the log of the still open tree
+        for(Map.Entry<String, String> entry : entries.entrySet()){
+            assertEquals(entry.getValue(), reopened.get(entry.getKey()));
+        }
+        reopened.close();
+    }
+
+    @Test
+    void scanReturnsNewestValuesInOrder() throws Exception{
+        LSMTree tree = new LSMTree(directory, 1, 100, 10); // every write creates a segment
+        tree.put("b", "old");
+        tree.put("a", "1");
+        tree.put("c", "3");
+        tree.put("b", "2");
+        tree.delete("c");
+        List<String> entries = new ArrayList<>();
+        tree.scan((key, value) -> entries.add(key+"="+value));
+        assertEquals(List.of("a=1", "b=2"), entries);
+        tree.close();
+    }
+
+    @Test
+    void mergedLowerLevelDoesNotHideNewerLevel0Data() throws Exception{
+        // level 0 -> level 1
+        LSMTree tree = new LSMTree(directory, 1<<20, 100, 10);
+        tree.put("a", value("v1"));
+        tree.flush();
+        tree.put("b", value("b"));
+        tree.flush();
+        tree.put("c", value("c"));
+        tree.close();
+        tree = new LSMTree(directory, 1<<20, 1, 1000000);
+        tree.get("a");
+        tree.compactNow();
+        assertArrayEquals(new int[]{0, 1}, tree.getSegmentCounts());
+        tree.close();
+        // newer value on level 0 while level 1 stays below its limit
+        tree = new LSMTree(directory, 1, 1, 1000000);
+        tree.put("a", value("v2"));
+        assertArrayEquals(new int[]{1, 1}, tree.getSegmentCounts());
+        tree.close();
+        // level 1 exceeds its limit and is merged into level 2 with a new sequence
+        tree = new LSMTree(directory, 1, 1, 1000);
+        tree.get("b");
+        tree.compactNow();
+        assertArrayEquals(new int[]{1, 0, 1}, tree.getSegmentCounts());
+        assertEquals(value("v2"), tree.get("a"));
+        List<String> values = new ArrayList<>();
+        tree.scan((key, value) -> values.add(value));
+        assertEquals(List.of(value("v2"), value("b"), value("c")), values);
+        tree.close();
+    }
+
+    @Test
+    void compactionKeepsNewestValues() throws Exception{
+        LSMTree tree = new LSMTree(directory, 256, 2, 2);
+        Map<String, String> expected = new HashMap<>();
+        for(int round = 0; round < 20; round++){
+            for(int i = 0; i < 50; i++){
+                String key = "k"+((i*7+round) % 60);
+                if((i+round) % 11 == 0){
+                    tree.delete(key);
+                    expected.remove(key);
+                }else{
+                    tree.put(key, key+"@"+round);
+                    expected.put(key, key+"@"+round);
+                }
+            }
+            tree.compactNow();
+        }
+        for(int i = 0; i < 60; i++){
+            assertEquals(expected.get("k"+i), tree.get("k"+i), "k"+i);
+        }
+        Map<String, String> scanned = new HashMap<>();
+        tree.scan((key, value) -> { scanned.put(key, value); return true; });
+        assertEquals(expected, scanned);
+        tree.close();
+    }
+
+    @Test
+    void replaceAllRemovesPreviousEntries() throws Exception{
+        LSMTree tree = new LSMTree(directory, 1, 100, 10);
+        tree.put("a", "1");
+        tree.put("b", "2");
+        tree.put("c", "3");
+        tree.replaceAll(Map.of("b", "20", "d", "40"));
+        assertNull(tree.get("a"));
+        assertEquals("20", tree.get("b"));
+        tree.close();
+        tree = new LSMTree(directory);
+        Map<String, String> scanned = new HashMap<>();
+        tree.scan((key, value) -> { scanned.put(key, value); return true; });
+        assertEquals(Map.of("b", "20", "d", "40"), scanned);
+        tree.replaceAll(Map.of());
+        assertNull(tree.get("b"));
+        tree.close();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.pagination;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyPaginationTest {
+
+    private static TreeSet<String> identifiers(int count){
+        TreeSet<String> identifiers = new TreeSet<>();
+        for(int i = 0; i < count; i++){
+            identifiers.add(String.format("id%04d", i));
+        }
+        return identifiers;
+    }
+
+    @Test
+    void sortedAndUnsortedSourcesReturnTheSamePages() throws Exception{
+        TreeSet<String> identifiers = identifiers(250);
+        String cursor = null;
+        List<String> listed = new ArrayList<>();
+        do{
+            KeyPagination pagination = new KeyPagination(null, cursor, 100);
+            KeyPagination.Page sorted = pagination.page(identifiers);
+            KeyPagination.Page unsorted = pagination.page(new ArrayList<>(identifiers.descendingSet()).iterator());
+            assertEquals(sorted.getIdentifiers(), unsorted.getIdentifiers());
+            assertEquals(sorted.getNextCursor(), unsorted.getNextCursor());
+            listed.addAll(sorted.getIdentifiers());
+            cursor = sorted.getNextCursor();
+        }while(cursor != null);
+        assertEquals(new ArrayList<>(identifiers), listed);
+    }
+
+    @Test
+    void rangePrefixAndReverse() throws Exception{
+        TreeSet<String> identifiers = identifiers(250);
+        KeyPagination.Page page = new KeyPagination("id01", null, "id0120", true, null, 5).page(identifiers);
+        assertEquals(List.of("id0120", "id0119", "id0118", "id0117", "id0116"), page.getIdentifiers());
+        assertTrue(page.hasMore());
+        page = new KeyPagination("id01", null, "id0120", true, page.getNextCursor(), 100).page(identifiers);
+        assertEquals(16, page.getIdentifiers().size());
+        assertEquals("id0100", page.getIdentifiers().get(15));
+        assertFalse(page.hasMore());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void withoutCursorContinuesWithinTheNextSource() throws Exception{
+        KeyPagination pagination = new KeyPagination(null, KeyPagination.encodeCursor("b"), 3);
+        KeyPagination.Page first = pagination.page(new TreeSet<>(List.of("a", "b", "c")));
+        assertEquals(List.of("c"), first.getIdentifiers());
+        assertFalse(first.hasMore());
+        KeyPagination.Page second = pagination.withoutCursor(2).page(new TreeSet<>(List.of("a", "d", "e")));
+        assertEquals(List.of("a", "d"), second.getIdentifiers());
+        assertTrue(second.hasMore());
+    }
+
+    @Test
+    void filteredIdentifiersAreSkipped() throws Exception{
+        TreeSet<String> identifiers = identifiers(10);
+        KeyPagination pagination = new KeyPagination(null, null, 3).withFilter(identifier -> !identifier.endsWith("1") && !identifier.endsWith("2"));
+        KeyPagination.Page page = pagination.page(identifiers);
+        assertEquals(List.of("id0000", "id0003", "id0004"), page.getIdentifiers());
+        assertEquals(page.getIdentifiers(), pagination.page(identifiers.iterator()).getIdentifiers());
+        assertEquals(List.of("id0000", "id0003"), pagination.withoutCursor(2).page(identifiers).getIdentifiers());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.query;
+
+import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AggregationTest {
+
+    private static List<JSONObject> dataSets(){
+        List<JSONObject> list = new ArrayList<>();
+        String[] colors = {"red", "blue", "red", "green", "blue", "red"};
+        for(int i = 0; i < colors.length; i++){
+            list.add(new JSONObject().put("value", new JSONObject().put("color", colors[i]).put("number", i)));
+        }
+        list.add(new JSONObject().put("value", new JSONObject().put("color", "blue")));
+        return list;
+    }
+
+    @Test
+    void groupsAreOrderedAndAggregated() throws Exception{
+        Aggregation aggregation = new Aggregation(new JSONObject("{\"groupBy\":[\"/VALUE/color\"],\"aggregates\":[{\"op\":\"count\"},{\"op\":\"sum\",\"path\":\"/value/number\",\"as\":\"sum\"},{\"op\":\"avg\",\"path\":\"/value/number\",\"as\":\"avg\"},{\"op\":\"min\",\"path\":\"/value/number\",\"as\":\"min\"},{\"op\":\"max\",\"path\":\"/value/number\",\"as\":\"max\"}]}"));
+        Aggregation.Partial partial = aggregation.newPartial();
+        dataSets().forEach(jsonObject -> partial.accept(jsonObject::optQuery));
+        JSONObject result = partial.toJSON();
+        assertEquals(3, result.getInt("groupCount"));
+        JSONArray groups = result.getJSONArray("groups");
+        JSONObject blue = groups.getJSONObject(0);
+        assertEquals("blue", blue.getJSONObject("group").getString("/value/color"));
+        assertEquals(3, blue.getLong("count"));
+        assertEquals(5, blue.getLong("sum"));
+        assertEquals(2.5, blue.getDouble("avg"));
+        assertEquals(1, blue.getLong("min"));
+        assertEquals(4, blue.getLong("max"));
+        assertEquals("green", groups.getJSONObject(1).getJSONObject("group").getString("/value/color"));
+        JSONObject red = groups.getJSONObject(2);
+        assertEquals(7, red.getLong("sum"));
+        assertEquals(0, red.getLong("min"));
+    }
+
+    @Test
+    void mergedPartialsMatchASinglePass() throws Exception{
+        Aggregation aggregation = new Aggregation(new JSONObject("{\"filter\":{\"path\":\"/value/color\",\"op\":\"ne\",\"value\":\"green\"},\"groupBy\":[\"/value/color\"],\"aggregates\":[{\"op\":\"count\"},{\"op\":\"sum\",\"path\":\"/value/number\"},{\"op\":\"max\",\"path\":\"/value/number\"}]}"));
+        List<JSONObject> dataSets = dataSets();
+        Aggregation.Partial single = aggregation.newPartial();
+        Aggregation.Partial first = aggregation.newPartial();
+        Aggregation.Partial second = aggregation.newPartial();
+        for(int i = 0; i < dataSets.size(); i++){
+            single.accept(dataSets.get(i)::optQuery);
+            ((i % 2 == 0) ? first : second).accept(dataSets.get(i)::optQuery);
+        }
+        Aggregation.Partial merged = aggregation.newPartial();
+        merged.merge(first);
+        merged.merge(second);
+        assertEquals(2, merged.toJSON().getInt("groupCount"));
+        assertEquals(single.toJSON().toString(), merged.toJSON().toString());
+    }
+
+    @Test
+    void longSumsFallBackToDoubleOnOverflow() throws Exception{
+        Aggregation aggregation = new Aggregation(new JSONObject("{\"aggregates\":[{\"op\":\"sum\",\"path\":\"/value/number\",\"as\":\"sum\"}]}"));
+        Aggregation.Partial first = aggregation.newPartial();
+        first.accept(new JSONObject().put("value", new JSONObject().put("number", Long.MAX_VALUE))::optQuery);
+        assertEquals(Long.MAX_VALUE, first.toJSON().getJSONArray("groups").getJSONObject(0).get("sum"));
+        Aggregation.Partial second = aggregation.newPartial();
+        second.accept(new JSONObject().put("value", new JSONObject().put("number", 1))::optQuery);
+        first.merge(second);
+        Object sum = first.toJSON().getJSONArray("groups").getJSONObject(0).get("sum");
+        assertTrue(sum instanceof Double);
+        assertEquals((double) Long.MAX_VALUE + 1, (Double) sum);
+    }
+
+    @Test
+    void precomputedSummariesMatchSingleValues() throws Exception{
+        Aggregation aggregation = new Aggregation(new JSONObject("{\"aggregates\":[{\"op\":\"count\"},{\"op\":\"sum\",\"path\":\"/value/number\",\"as\":\"sum\"},{\"op\":\"min\",\"path\":\"/value/number\",\"as\":\"min\"}]}"));
+        Aggregation.Partial scanned = aggregation.newPartial();
+        scanned.accept(new JSONObject().put("value", new JSONObject().put("number", 2))::optQuery);
+        scanned.accept(new JSONObject().put("value", new JSONObject().put("number", 3))::optQuery);
+        scanned.accept(new JSONObject().put("value", new JSONObject())::optQuery);
+        Aggregation.Partial summarized = aggregation.newPartial();
+        summarized.accept(3, path -> new Aggregation.Summary(2, 2, 5, 0, false, 2L, 3L));
+        JSONObject expected = scanned.toJSON().getJSONArray("groups").getJSONObject(0);
+        JSONObject result = summarized.toJSON().getJSONArray("groups").getJSONObject(0);
+        assertEquals(expected.getLong("count"), result.getLong("count"));
+        assertEquals(expected.getLong("sum"), result.getLong("sum"));
+        assertEquals(expected.getLong("min"), result.getLong("min"));
+        // nothing matched, so there is no group
+        Aggregation.Partial empty = aggregation.newPartial();
+        empty.accept(0, path -> null);
+        assertEquals(0, empty.toJSON().getInt("groupCount"));
+    }
+
+    @Test
+    void keysIdentifyEqualAggregations() throws Exception{
+        Aggregation a = new Aggregation(new JSONObject("{\"aggregates\":[{\"op\":\"SUM\",\"path\":\"/Value/number\",\"as\":\"a\"}]}"));
+        Aggregation b = new Aggregation(new JSONObject("{\"aggregates\":[{\"op\":\"sum\",\"path\":\"/value/number\",\"as\":\"b\"}]}"));
+        Aggregation c = new Aggregation(new JSONObject("{\"aggregates\":[{\"op\":\"max\",\"path\":\"/value/number\"}]}"));
+        assertEquals(a.getKey(), b.getKey());
+        assertNotEquals(a.getKey(), c.getKey());
+        assertEquals(Set.of("/value/number"), a.getPaths());
+        assertTrue(a.isColumnar(Set.of("/value/number")));
+        assertFalse(a.isColumnar(Set.of("/value/other")));
+        assertFalse(new Aggregation(new JSONObject("{\"groupBy\":[\"/value/color\"],\"aggregates\":[{\"op\":\"count\"}]}")).isColumnar(Set.of("/value/color")));
+    }
+
+    @Test
+    void invalidAggregationsAreRejected(){
+        String[] invalid = {
+                "{\"aggregates\":[]}",
+                "{\"aggregates\":[{\"op\":\"median\",\"path\":\"/value/number\"}]}",
+                "{\"aggregates\":[{\"op\":\"sum\"}]}",
+                "{\"aggregates\":[{\"op\":\"sum\",\"path\":\"value/number\"}]}",
+                "{\"filter\":{\"op\":\"eq\"},\"aggregates\":[{\"op\":\"count\"}]}"
+        };
+        for(String aggregation : invalid){
+            assertEquals(400, assertThrows(GenericObjectException.class, () -> new Aggregation(new JSONObject(aggregation))).getType());
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.query;
+
+import de.netbeacon.jstorage.server.tools.exceptions.GenericObjectException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryFilterTest {
+
+    private static final JSONObject DATASET = new JSONObject()
+            .put("value", new JSONObject()
+                    .put("number", 5)
+                    .put("large", Long.MAX_VALUE)
+                    .put("decimal", 2.5)
+                    .put("name", "jstorage")
+                    .put("flag", true)
+                    .put("empty", JSONObject.NULL));
+
+    private static boolean test(String filter) throws GenericObjectException {
+        return QueryFilter.compile(new JSONObject(filter)).test(DATASET::optQuery);
+    }
+
+    @Test
+    void conditionsCompareValuesOfTheSameType() throws Exception{
+        assertTrue(test("{\"path\":\"/value/number\",\"op\":\"eq\",\"value\":5.0}"));
+        assertTrue(test("{\"path\":\"/value/number\",\"op\":\"gt\",\"value\":4.5}"));
+        assertTrue(test("{\"path\":\"/value/large\",\"op\":\"gt\",\"value\":9223372036854775806}"));
+        assertTrue(test("{\"path\":\"/value/decimal\",\"op\":\"lte\",\"value\":2.5}"));
+        assertTrue(test("{\"path\":\"/value/name\",\"op\":\"lt\",\"value\":\"jt\"}"));
+        assertTrue(test("{\"path\":\"/value/name\",\"op\":\"prefix\",\"value\":\"js\"}"));
+        assertTrue(test("{\"path\":\"/value/flag\",\"op\":\"eq\",\"value\":true}"));
+        assertTrue(test("{\"path\":\"/value/number\",\"op\":\"in\",\"value\":[1,\"5\",5]}"));
+        // values of different types never match
+        assertFalse(test("{\"path\":\"/value/number\",\"op\":\"eq\",\"value\":\"5\"}"));
+        assertFalse(test("{\"path\":\"/value/name\",\"op\":\"gt\",\"value\":1}"));
+        assertFalse(test("{\"path\":\"/value/number\",\"op\":\"in\",\"value\":[\"5\"]}"));
+        assertTrue(test("{\"path\":\"/value/number\",\"op\":\"ne\",\"value\":\"5\"}"));
+    }
+
+    @Test
+    void missingValuesAreTreatedAsNull() throws Exception{
+        assertTrue(test("{\"path\":\"/value/missing\",\"op\":\"ne\",\"value\":1}"));
+        assertFalse(test("{\"path\":\"/value/missing\",\"op\":\"lt\",\"value\":1}"));
+        assertTrue(test("{\"path\":\"/value/missing\",\"op\":\"eq\",\"value\":null}"));
+        assertTrue(test("{\"path\":\"/value/empty\",\"op\":\"exists\",\"value\":false}"));
+        assertTrue(test("{\"path\":\"/other/number\",\"op\":\"exists\",\"value\":false}"));
+        assertTrue(test("{\"path\":\"/value/number\",\"op\":\"exists\",\"value\":true}"));
+    }
+
+    @Test
+    void filtersCanBeCombined() throws Exception{
+        assertTrue(test("{\"and\":[{\"path\":\"/value/number\",\"op\":\"gt\",\"value\":1},{\"path\":\"/VALUE/flag\",\"op\":\"eq\",\"value\":true}]}"));
+        assertFalse(test("{\"and\":[{\"path\":\"/value/number\",\"op\":\"gt\",\"value\":1},{\"path\":\"/value/flag\",\"op\":\"eq\",\"value\":false}]}"));
+        assertTrue(test("{\"or\":[{\"path\":\"/value/number\",\"op\":\"lt\",\"value\":1},{\"path\":\"/value/flag\",\"op\":\"eq\",\"value\":true}]}"));
+        assertTrue(test("{\"not\":{\"path\":\"/value/number\",\"op\":\"lt\",\"value\":1}}"));
+    }
+
+    @Test
+    void indexConditionsPreferEquality() throws Exception{
+        QueryFilter filter = QueryFilter.compile(new JSONObject("{\"and\":[{\"path\":\"/value/number\",\"op\":\"gt\",\"value\":1},{\"path\":\"/value/name\",\"op\":\"eq\",\"value\":\"jstorage\"},{\"path\":\"/value/flag\",\"op\":\"eq\",\"value\":true}]}"));
+        QueryFilter.Condition condition = filter.getIndexCondition(Set.of("/value/number", "/value/name"));
+        assertEquals("/value/name", condition.getPath());
+        assertEquals("gt", filter.getIndexCondition(Set.of("/value/number")).getOp());
+        assertNull(filter.getIndexCondition(Set.of("/value/other")));
+        assertNull(QueryFilter.compile(new JSONObject("{\"or\":[{\"path\":\"/value/number\",\"op\":\"eq\",\"value\":1},{\"path\":\"/value/number\",\"op\":\"eq\",\"value\":2}]}")).getIndexCondition(Set.of("/value/number")));
+        assertNull(QueryFilter.compile(new JSONObject("{\"path\":\"/value/number\",\"op\":\"ne\",\"value\":1}")).getIndexCondition(Set.of("/value/number")));
+    }
+
+    @Test
+    void invalidFiltersAreRejected(){
+        String[] invalid = {
+                "{\"and\":[]}",
+                "{\"or\":[1]}",
+                "{\"not\":1}",
+                "{\"path\":\"/value/number\"}",
+                "{\"path\":\"value\",\"op\":\"eq\",\"value\":1}",
+                "{\"path\":\"/value/number\",\"op\":\"like\",\"value\":1}",
+                "{\"path\":\"/value/number\",\"op\":\"in\",\"value\":1}",
+                "{\"path\":\"/value/number\",\"op\":\"exists\",\"value\":1}"
+        };
+        for(String filter : invalid){
+            assertEquals(400, assertThrows(GenericObjectException.class, () -> QueryFilter.compile(new JSONObject(filter))).getType());
+        }
+    }
+}
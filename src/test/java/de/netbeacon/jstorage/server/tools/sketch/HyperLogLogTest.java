@@ -0,0 +1,52 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimatesTheNumberOfDistinctValues() throws Exception{
+        HyperLogLog hyperLogLog = new HyperLogLog();
+        assertEquals(0, hyperLogLog.estimate());
+        for(int i = 0; i < 100; i++){
+            hyperLogLog.add("value"+(i % 10));
+        }
+        assertEquals(10, hyperLogLog.estimate());
+        for(int i = 0; i < 100000; i++){
+            hyperLogLog.add("value"+i);
+        }
+        long estimate = hyperLogLog.estimate();
+        assertTrue(Math.abs(estimate - 100000) < 100000 * 0.05, "estimate "+estimate);
+    }
+
+    @Test
+    void exportedContentCanBeRestored() throws Exception{
+        HyperLogLog hyperLogLog = new HyperLogLog();
+        for(int i = 0; i < 5000; i++){
+            hyperLogLog.add("value"+i);
+        }
+        HyperLogLog restored = new HyperLogLog();
+        restored.restore(hyperLogLog.export());
+        assertEquals(hyperLogLog.estimate(), restored.estimate());
+        restored.clear();
+        assertEquals(0, restored.estimate());
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KLLSketchTest {
+
+    @Test
+    void estimatesQuantilesWithinTheRankError() throws Exception{
+        KLLSketch sketch = new KLLSketch();
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        int n = 200000;
+        for(int i = 0; i < n; i++){
+            sketch.add((i * 7919L) % n); // every value once, not in order
+        }
+        assertEquals(n, sketch.getCount());
+        assertEquals(0, sketch.getMin(), 0);
+        assertEquals(n-1, sketch.getMax(), 0);
+        for(double q : new double[]{0.1, 0.5, 0.9, 0.99}){
+            double estimate = sketch.quantile(q);
+            assertTrue(Math.abs(estimate - q * n) < n * 0.02, "quantile "+q+" estimate "+estimate);
+        }
+    }
+
+    @Test
+    void exportedContentCanBeRestored() throws Exception{
+        KLLSketch sketch = new KLLSketch();
+        for(int i = 0; i < 10000; i++){
+            sketch.add(i);
+        }
+        KLLSketch restored = new KLLSketch();
+        restored.restore(sketch.export());
+        assertEquals(sketch.getCount(), restored.getCount());
+        assertEquals(sketch.quantile(0.5), restored.quantile(0.5), 0);
+        restored.clear();
+        assertEquals(0, restored.getCount());
+        assertTrue(Double.isNaN(restored.getMin()));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *     Copyright 2020 Horstexplorer @ https://www.netbeacon.de
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.netbeacon.jstorage.server.tools.timing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    private static Set<String> keys(List<TimingWheel.Entry<String>> entries){
+        return entries.stream().map(TimingWheel.Entry::getKey).collect(Collectors.toSet());
+    }
+
+    @Test
+    void entriesExpireOnceTheirDeadlinePassed() throws Exception{
+        long start = System.currentTimeMillis();
+        TimingWheel<String> wheel = new TimingWheel<>(10);
+        wheel.schedule("near", start + 50);
+        wheel.schedule("level1", start + 5_000);
+        wheel.schedule("level2", start + 200_000);
+        wheel.schedule("overflow", start + 10L * 24 * 3600 * 1000);
+        wheel.schedule("past", start - 1000);
+        assertEquals(5, wheel.size());
+
+        assertEquals(Set.of("past"), keys(wheel.advance(start + 20)));
+        assertEquals(Set.of("near"), keys(wheel.advance(start + 100)));
+        assertEquals(Set.of(), keys(wheel.advance(start + 4_900)));
+        assertEquals(Set.of("level1"), keys(wheel.advance(start + 5_100)));
+        assertEquals(Set.of("level2"), keys(wheel.advance(start + 200_100)));
+        assertEquals(1, wheel.size());
+        assertEquals(Set.of("overflow"), keys(wheel.advance(start + 10L * 24 * 3600 * 1000 + 100)));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void everyEntryExpiresExactlyOnce() throws Exception{
+        long start = System.currentTimeMillis();
+        TimingWheel<String> wheel = new TimingWheel<>(1);
+        for(int i = 0; i < 10_000; i++){
+            wheel.schedule("k"+i, start + (i * 37L) % 300_000);
+        }
+        Set<String> expired = new HashSet<>();
+        for(long now = start; now < start + 300_000 + 997; now += 997){
+            for(TimingWheel.Entry<String> entry : wheel.advance(now)){
+                assertTrue(entry.getDeadline() <= now);
+                assertTrue(expired.add(entry.getKey()));
+            }
+        }
+        assertEquals(10_000, expired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void clearRemovesAllEntries() throws Exception{
+        long start = System.currentTimeMillis();
+        TimingWheel<String> wheel = new TimingWheel<>(10);
+        wheel.schedule("a", start + 10);
+        wheel.schedule("b", start + 100_000);
+        wheel.clear();
+        assertEquals(0, wheel.size());
+        assertTrue(wheel.advance(start + 200_000).isEmpty());
+    }
+}